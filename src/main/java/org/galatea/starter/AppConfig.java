@@ -1,11 +1,24 @@
 package org.galatea.starter;
 
 import feign.Logger;
+import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
-import net.sf.aspect4log.aspect.LogAspect;
 import org.galatea.starter.domain.SettlementMission;
 import org.galatea.starter.service.IAgreementTransformer;
+import org.galatea.starter.utils.cache.CaffeineCacheSpecs;
+import org.galatea.starter.utils.cache.ICacheValueCodec;
+import org.galatea.starter.utils.cache.IRefreshAheadLoader;
+import org.galatea.starter.utils.cache.OffHeapCacheSizes;
+import org.galatea.starter.utils.cache.PerCacheCaffeineCacheManager;
+import org.galatea.starter.utils.cache.TieredCacheManager;
+import org.galatea.starter.utils.resilience.UpstreamGuardProperties;
+import org.galatea.starter.utils.trace.MethodTraceProperties;
+import org.galatea.starter.utils.trace.TracingAdvisor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cache.ehcache.EhCacheCacheManager;
@@ -15,20 +28,24 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.EnableAspectJAutoProxy;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @Slf4j
 @Configuration
 @EnableAspectJAutoProxy
 @EnableCaching
+@EnableConfigurationProperties({CaffeineCacheSpecs.class, OffHeapCacheSizes.class,
+    MethodTraceProperties.class})
 @EnableFeignClients
+@EnableScheduling
 public class AppConfig {
 
   /**
-   * Create a LogAspect for use with the SpringAOP @Log annotation.
+   * Create a TracingAdvisor for use with the SpringAOP @Traced annotation.
    */
   @Bean
-  public LogAspect createLogAspect() {
-    return new LogAspect();
+  public TracingAdvisor tracingAdvisor(final MethodTraceProperties methodTraceProperties) {
+    return new TracingAdvisor(methodTraceProperties);
   }
 
   /**
@@ -46,10 +63,18 @@ public class AppConfig {
   /**
    * CacheManager that contains the Cache Configuration. Spring will use this cache if any
    * cache annotations are used.
+   *
+   * <p>Backed by EhCache 2, configured by the file named in cache-config, with the off-heap tiers
+   * configured under cache.off-heap. Used when cache.provider is ehcache.
    */
   @Bean
-  public CacheManager cacheManager(final EhCacheManagerFactoryBean ehCacheCacheManagerFactoryBean) {
-    return new EhCacheCacheManager(ehCacheCacheManagerFactoryBean.getObject());
+  @ConditionalOnProperty(name = "cache.provider", havingValue = "ehcache", matchIfMissing = true)
+  public CacheManager cacheManager(final EhCacheManagerFactoryBean ehCacheCacheManagerFactoryBean,
+      final OffHeapCacheSizes offHeapCacheSizes,
+      final ObjectProvider<ICacheValueCodec<?>> cacheValueCodecs) {
+    return new TieredCacheManager(
+        new EhCacheCacheManager(ehCacheCacheManagerFactoryBean.getObject()),
+        offHeapCacheSizes.getSizes(), cacheValueCodecs.stream().collect(Collectors.toList()));
   }
 
   /**
@@ -58,6 +83,7 @@ public class AppConfig {
    * @return factory bean for the EhCache to be passed to EhCacheCacheManager.
    */
   @Bean
+  @ConditionalOnProperty(name = "cache.provider", havingValue = "ehcache", matchIfMissing = true)
   public EhCacheManagerFactoryBean ehCacheCacheManagerFactoryBean(
           @Value("${cache-config}") final String cacheConfig) {
     EhCacheManagerFactoryBean cmfb = new EhCacheManagerFactoryBean();
@@ -66,6 +92,35 @@ public class AppConfig {
     return cmfb;
   }
 
+  /**
+   * CacheManager backed by Caffeine, whose W-TinyLFU eviction keeps more of the hot entries than
+   * LRU does under a skewed access pattern. Each cache is configured by its spec under
+   * cache.caffeine.specs, and reloaded ahead of expiry by its IRefreshAheadLoader, if it has one
+   * and its spec sets refreshAfterWrite. The off-heap tiers are configured under cache.off-heap.
+   * Used when cache.provider is caffeine.
+   */
+  @Bean(name = "cacheManager")
+  @ConditionalOnProperty(name = "cache.provider", havingValue = "caffeine")
+  public CacheManager caffeineCacheManager(final CaffeineCacheSpecs caffeineCacheSpecs,
+      final ObjectProvider<IRefreshAheadLoader> refreshAheadLoaders,
+      final OffHeapCacheSizes offHeapCacheSizes,
+      final ObjectProvider<ICacheValueCodec<?>> cacheValueCodecs) {
+    return new TieredCacheManager(
+        new PerCacheCaffeineCacheManager(caffeineCacheSpecs.getSpecs(),
+            refreshAheadLoaders.stream().collect(Collectors.toList())),
+        offHeapCacheSizes.getSizes(), cacheValueCodecs.stream().collect(Collectors.toList()));
+  }
+
+  /**
+   * How calls to each IEX endpoint are held back when IEX slows down or fails (see
+   * IexUpstreamGuards), bound from iex.resilience in application.yml.
+   */
+  @Bean
+  @ConfigurationProperties("iex.resilience")
+  public UpstreamGuardProperties iexUpstreamGuardProperties() {
+    return new UpstreamGuardProperties();
+  }
+
   /**
    * Set the Feign log level for interfaces annotated with @FeignClient.
    *
@@ -4,7 +4,12 @@ import java.util.function.BiConsumer;
 import javax.jms.ConnectionFactory;
 import javax.jms.Message;
 import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.entrypoint.SettlementJmsBatchListener;
+import org.galatea.starter.utils.jms.FuseBatchMessageListenerContainer;
 import org.galatea.starter.utils.jms.FuseJmsListenerContainerFactory;
+import org.galatea.starter.utils.jms.IBatchMessageListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.jms.DefaultJmsListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -23,6 +28,15 @@ import org.springframework.messaging.handler.annotation.support.MessageHandlerMe
 @EnableJms
 public class JmsConfig implements JmsListenerConfigurer {
 
+  @Value("${jms.listener-concurrency}")
+  private String listenerConcurrency;
+
+  @Value("${jms.batch.max-messages}")
+  private int batchSize;
+
+  @Value("${jms.batch.max-wait-ms}")
+  private long batchTimeoutMs;
+
   /**
    * Returns an implementation of failed message consumer that simply logs the message.
    */
@@ -69,6 +83,50 @@ public class JmsConfig implements JmsListenerConfigurer {
     return listenerFactory;
   }
 
+  /**
+   * Listener container that delivers batches of JSON agreement messages to the batch listener.
+   * Only created when batching is enabled, in which case SettlementJmsListener isn't.
+   */
+  @Bean
+  @ConditionalOnProperty(value = "jms.batch.enabled", havingValue = "true")
+  public FuseBatchMessageListenerContainer jsonAgreementBatchListenerContainer(
+      final ConnectionFactory queueConnectionFactory,
+      final BiConsumer<Message, Exception> failedMessageConsumer,
+      final SettlementJmsBatchListener batchListener,
+      @Value("${jms.agreement-queue-json}") final String destination) {
+    return batchListenerContainer(queueConnectionFactory, failedMessageConsumer, destination,
+        batchListener::settleAgreementsJson);
+  }
+
+  /**
+   * Listener container that delivers batches of protobuf agreement messages to the batch listener.
+   */
+  @Bean
+  @ConditionalOnProperty(value = "jms.batch.enabled", havingValue = "true")
+  public FuseBatchMessageListenerContainer protoAgreementBatchListenerContainer(
+      final ConnectionFactory queueConnectionFactory,
+      final BiConsumer<Message, Exception> failedMessageConsumer,
+      final SettlementJmsBatchListener batchListener,
+      @Value("${jms.agreement-queue-proto}") final String destination) {
+    return batchListenerContainer(queueConnectionFactory, failedMessageConsumer, destination,
+        batchListener::settleAgreementsProto);
+  }
+
+  private FuseBatchMessageListenerContainer batchListenerContainer(
+      final ConnectionFactory queueConnectionFactory,
+      final BiConsumer<Message, Exception> failedMessageConsumer, final String destination,
+      final IBatchMessageListener listener) {
+    FuseBatchMessageListenerContainer container =
+        new FuseBatchMessageListenerContainer(failedMessageConsumer);
+    container.setConnectionFactory(queueConnectionFactory);
+    container.setDestinationName(destination);
+    container.setConcurrency(listenerConcurrency);
+    container.setBatchSize(batchSize);
+    container.setBatchTimeoutMs(batchTimeoutMs);
+    container.setMessageListener(listener);
+    return container;
+  }
+
   /**
    * For JSON messages we want to use the spring messaging converter instead of the spring jms
    * converter. The spring jms converter expects the type of object to deserialize the json to being
@@ -1,30 +1,48 @@
 package org.galatea.starter;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.collect.Sets;
+import java.util.Arrays;
 import java.util.List;
 import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessage;
 import org.galatea.starter.utils.FuseHttpTraceRepository;
 import org.galatea.starter.utils.http.converter.SettlementMissionCsvConverter;
+import org.galatea.starter.utils.http.converter.SettlementMissionStreamConverter;
 import org.galatea.starter.utils.http.converter.SettlementMissionXlsxConverter;
+import org.galatea.starter.utils.rest.EndpointTimingFilter;
 import org.galatea.starter.utils.rest.FuseHttpTraceFilter;
+import org.galatea.starter.utils.trace.HttpTraceProperties;
+import org.galatea.starter.utils.translation.ITranslator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.actuate.trace.http.HttpExchangeTracer;
-import org.springframework.boot.actuate.trace.http.Include;
 import org.springframework.boot.actuate.web.trace.servlet.HttpTraceFilter;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.ByteArrayHttpMessageConverter;
 import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.http.converter.protobuf.ProtobufHttpMessageConverter;
 import org.springframework.http.converter.xml.Jaxb2RootElementHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
 import org.springframework.web.servlet.config.annotation.ContentNegotiationConfigurer;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @Slf4j
 @Configuration
 @EnableWebMvc
+@EnableConfigurationProperties(HttpTraceProperties.class)
+// The stream converter needs the protobuf translator even when only the web layer is loaded, e.g.
+// in a @WebMvcTest
+@Import(ProtoMessageTranslationConfig.class)
 public class MvcConfig implements WebMvcConfigurer {
 
   public static final MediaType TEXT_CSV = new MediaType("text", "csv");
@@ -33,6 +51,25 @@ public class MvcConfig implements WebMvcConfigurer {
   public static final MediaType APPLICATION_EXCEL = new MediaType("application", "vnd.ms-excel");
   public static final String APPLICATION_EXCEL_VALUE = "application/vnd.ms-excel";
 
+  public static final MediaType APPLICATION_PROTOBUF = new MediaType("application", "x-protobuf");
+  public static final String APPLICATION_PROTOBUF_VALUE = "application/x-protobuf";
+
+  @Value("${mvc.max-size-trace-payload}")
+  private int maxSizeTracePayload;
+
+  @Value("${mvc.xlsx-row-access-window-size}")
+  private int xlsxRowAccessWindowSize;
+
+  @Value("${mvc.async-request-timeout-ms}")
+  private long asyncRequestTimeoutMillis;
+
+  @Autowired
+  private HttpTraceProperties httpTraceProperties;
+
+  @Autowired
+  private ITranslator<SettlementMission, SettlementMissionProtoMessage>
+      settlementMissionProtoTranslator;
+
   /**
    * This is used to trace web requests and store that trace info.
    *
@@ -40,16 +77,27 @@ public class MvcConfig implements WebMvcConfigurer {
    */
   @Bean
   public HttpTraceFilter httpTraceFilter() {
+    // Binary bodies would be unreadable in the logs
     return new FuseHttpTraceFilter(fuseHttpTraceRepository(), httpExchangeTracer(),
-        path -> path.startsWith("/trace"));
+        path -> path.startsWith("/trace"), maxSizeTracePayload,
+        Arrays.asList(APPLICATION_PROTOBUF, APPLICATION_EXCEL, MediaType.APPLICATION_OCTET_STREAM));
   }
 
   /**
-   * Repository for storing trace info.
+   * Times every request handled by a controller method, for per-endpoint latency and throughput
+   * metrics.
+   */
+  @Bean
+  public EndpointTimingFilter endpointTimingFilter() {
+    return new EndpointTimingFilter();
+  }
+
+  /**
+   * Repository for storing trace info. Traces are sampled and then written on a background thread.
    */
   @Bean
   public FuseHttpTraceRepository fuseHttpTraceRepository() {
-    return new FuseHttpTraceRepository(new ObjectMapper());
+    return new FuseHttpTraceRepository(new ObjectMapper(), httpTraceProperties);
   }
 
   /**
@@ -59,8 +107,18 @@ public class MvcConfig implements WebMvcConfigurer {
    */
   @Bean
   public HttpExchangeTracer httpExchangeTracer() {
-    // Trace everything!
-    return new HttpExchangeTracer(Sets.newHashSet(Include.values()));
+    return new HttpExchangeTracer(httpTraceProperties.getInclude());
+  }
+
+  @Override
+  public void addInterceptors(final InterceptorRegistry registry) {
+    registry.addInterceptor(endpointTimingFilter().handlerInterceptor());
+  }
+
+  @Override
+  public void configureAsyncSupport(final AsyncSupportConfigurer configurer) {
+    // Requests completed asynchronously, e.g. once IEX answers, are failed after this long
+    configurer.setDefaultTimeout(asyncRequestTimeoutMillis);
   }
 
   @Override
@@ -78,6 +136,7 @@ public class MvcConfig implements WebMvcConfigurer {
     configurer.mediaType("xml", MediaType.APPLICATION_XML);
     configurer.mediaType("csv", TEXT_CSV);
     configurer.mediaType("xlsx", APPLICATION_EXCEL);
+    configurer.mediaType("protobuf", APPLICATION_PROTOBUF);
 
   }
 
@@ -86,10 +145,19 @@ public class MvcConfig implements WebMvcConfigurer {
     // The Protobuf converter MUST be added first, otherwise Jackson will try and handle our
     // protobuf to JSON conversion (and will of course, fail).
     converters.add(new ProtobufHttpMessageConverter()); // Protobuf, XML & JSON supported
+    // Must also come before Jackson, which would otherwise claim to be able to write the stream
+    converters.add(new SettlementMissionStreamConverter(Jackson2ObjectMapperBuilder.json().build(),
+        settlementMissionProtoTranslator, xlsxRowAccessWindowSize));
+    // And so must this one, so that bodies written already, such as the JSON of the symbol
+    // universe, go out as they are rather than as a base64 JSON string
+    converters.add(new ByteArrayHttpMessageConverter());
     converters.add(new MappingJackson2HttpMessageConverter()); // JSON
     converters.add(new Jaxb2RootElementHttpMessageConverter()); // XML
     converters.add(new SettlementMissionCsvConverter());
-    converters.add(new SettlementMissionXlsxConverter());
+    converters.add(new SettlementMissionXlsxConverter(xlsxRowAccessWindowSize));
+    // Last, so that Jackson still writes Strings returned for JSON; this one writes the plain
+    // text ones, such as /actuator/prometheus
+    converters.add(new StringHttpMessageConverter());
   }
 
 }
@@ -65,6 +65,18 @@ public class ProtoMessageTranslationConfig {
         .setQty(msg.getQty()).setVersion(msg.getVersion()).build();
   }
 
+  /**
+   * Implements a translator to convert SettlementMission protobuf messages back to domain
+   * SettlementMission objects.
+   */
+  @Bean
+  public ITranslator<SettlementMissionProtoMessage, SettlementMission>
+      settlementMissionProtoMessageTranslator() {
+    return msg -> SettlementMission.builder().id(msg.getId()).depot(msg.getDepot())
+        .direction(msg.getDirection()).externalParty(msg.getExternalParty())
+        .instrument(msg.getInstrument()).qty(msg.getQty()).version(msg.getVersion()).build();
+  }
+
   /**
    * Implements a translator to convert a TradeAgreement protobuf collection to a list of
    * TradeAgreement domain objects.
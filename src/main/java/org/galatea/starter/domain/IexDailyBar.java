@@ -0,0 +1,82 @@
+package org.galatea.starter.domain;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Table;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * One symbol's prices for one trading day, as kept in the local store of IEX historical prices.
+ *
+ * <p>A day's bar never changes once the day has closed, so bars are only ever inserted. isNew() is
+ * always true, which has save() insert them straight away instead of first selecting each one to
+ * see whether it needs updating.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@NoArgsConstructor(access = AccessLevel.PRIVATE) // For hibernate
+@Builder
+@Data
+@Entity
+@IdClass(IexDailyBar.Key.class)
+@Table(name = "iex_daily_bar")
+public class IexDailyBar implements Persistable<IexDailyBar.Key> {
+
+  @Id
+  @NonNull
+  private String symbol;
+
+  @Id
+  @NonNull
+  private LocalDate date;
+
+  // IEX quotes prices to 4 decimal places
+  @Column(precision = 19, scale = 4)
+  private BigDecimal open;
+
+  @Column(precision = 19, scale = 4)
+  private BigDecimal high;
+
+  @Column(precision = 19, scale = 4)
+  private BigDecimal low;
+
+  @Column(precision = 19, scale = 4)
+  private BigDecimal close;
+
+  private Integer volume;
+
+  @Override
+  public Key getId() {
+    return new Key(symbol, date);
+  }
+
+  @Override
+  public boolean isNew() {
+    return true;
+  }
+
+  /**
+   * The primary key of a bar: its symbol and day.
+   */
+  @AllArgsConstructor
+  @NoArgsConstructor
+  @Data
+  public static class Key implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String symbol;
+
+    private LocalDate date;
+  }
+}
@@ -0,0 +1,28 @@
+package org.galatea.starter.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * One symbol's historical prices, out of a request for those of many: either the prices, or why
+ * they couldn't be fetched.
+ */
+@Value
+@Builder
+@JsonInclude(Include.NON_NULL)
+public class IexHistoricalPriceResult {
+
+  private String symbol;
+
+  /**
+   * The symbol's prices, oldest first, written as IEX writes them.
+   */
+  private IexHistoricalPriceSeries prices;
+
+  /**
+   * Why the symbol's prices couldn't be fetched, if they couldn't.
+   */
+  private String error;
+}
@@ -0,0 +1,474 @@
+package org.galatea.starter.domain;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import java.io.IOException;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.Arrays;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * A symbol's historical prices, held column by column in primitive arrays rather than as an
+ * IexHistoricalPrice per bar: prices as longs scaled by 10^PRICE_SCALE, volumes as longs and dates
+ * as epoch days. A series of several thousand bars is a handful of arrays instead of tens of
+ * thousands of objects.
+ *
+ * <p>Its JSON form is IEX's, an array of bars, so it is read straight from IEX's responses and
+ * written back out in the shape /iex/historicalPrice has always returned. Fields of a bar other
+ * than the ones held are skipped when reading. A field a bar doesn't have is held as MISSING (or
+ * MISSING_DATE) and written as null.
+ */
+@EqualsAndHashCode
+@JsonSerialize(using = IexHistoricalPriceSeries.Serializer.class)
+@JsonDeserialize(using = IexHistoricalPriceSeries.Deserializer.class)
+public final class IexHistoricalPriceSeries implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Decimal places prices are held to. IEX quotes to 4.
+   */
+  public static final int PRICE_SCALE = 4;
+
+  /**
+   * A price or volume a bar doesn't have.
+   */
+  public static final long MISSING = Long.MIN_VALUE;
+
+  /**
+   * The date of a bar that doesn't have one.
+   */
+  public static final int MISSING_DATE = Integer.MIN_VALUE;
+
+  private static final long PRICE_FACTOR = 10_000L;
+
+  private static final IexHistoricalPriceSeries EMPTY = new Builder().build();
+
+  /**
+   * The symbol the prices are for, or null if there are none.
+   */
+  @Getter
+  private final String symbol;
+
+  private final int[] dates;
+  private final long[] opens;
+  private final long[] highs;
+  private final long[] lows;
+  private final long[] closes;
+  private final long[] volumes;
+
+  private IexHistoricalPriceSeries(final Builder builder) {
+    int size = builder.size;
+    this.symbol = builder.symbol;
+    this.dates = Arrays.copyOf(builder.dates, size);
+    this.opens = Arrays.copyOf(builder.opens, size);
+    this.highs = Arrays.copyOf(builder.highs, size);
+    this.lows = Arrays.copyOf(builder.lows, size);
+    this.closes = Arrays.copyOf(builder.closes, size);
+    this.volumes = Arrays.copyOf(builder.volumes, size);
+  }
+
+  /**
+   * Return a series with no prices.
+   */
+  public static IexHistoricalPriceSeries empty() {
+    return EMPTY;
+  }
+
+  /**
+   * Return a builder to add bars to, oldest first.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * The number of bars.
+   */
+  public int size() {
+    return dates.length;
+  }
+
+  /**
+   * Whether there are no bars.
+   */
+  public boolean isEmpty() {
+    return dates.length == 0;
+  }
+
+  /**
+   * The date of the given bar as an epoch day, or MISSING_DATE.
+   */
+  public int getEpochDay(final int index) {
+    return dates[index];
+  }
+
+  /**
+   * The opening price of the given bar, scaled by 10^PRICE_SCALE, or MISSING.
+   */
+  public long getOpen(final int index) {
+    return opens[index];
+  }
+
+  /**
+   * The high price of the given bar, scaled by 10^PRICE_SCALE, or MISSING.
+   */
+  public long getHigh(final int index) {
+    return highs[index];
+  }
+
+  /**
+   * The low price of the given bar, scaled by 10^PRICE_SCALE, or MISSING.
+   */
+  public long getLow(final int index) {
+    return lows[index];
+  }
+
+  /**
+   * The closing price of the given bar, scaled by 10^PRICE_SCALE, or MISSING.
+   */
+  public long getClose(final int index) {
+    return closes[index];
+  }
+
+  /**
+   * The volume of the given bar, or MISSING.
+   */
+  public long getVolume(final int index) {
+    return volumes[index];
+  }
+
+  /**
+   * Return the given bar as an object of its own.
+   */
+  public IexHistoricalPrice get(final int index) {
+    return IexHistoricalPrice.builder()
+        .symbol(symbol)
+        .date(dates[index] == MISSING_DATE ? null : LocalDate.ofEpochDay(dates[index]).toString())
+        .open(toPrice(opens[index]))
+        .high(toPrice(highs[index]))
+        .low(toPrice(lows[index]))
+        .close(toPrice(closes[index]))
+        .volume(volumes[index] == MISSING ? null : Math.toIntExact(volumes[index]))
+        .build();
+  }
+
+  @Override
+  public String toString() {
+    return "IexHistoricalPriceSeries(symbol=" + symbol + ", size=" + size() + ")";
+  }
+
+  /**
+   * Return the given price scaled by 10^PRICE_SCALE, rounded half-even, or MISSING if it's null.
+   */
+  public static long toScaled(final BigDecimal price) {
+    return price == null ? MISSING
+        : price.setScale(PRICE_SCALE, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+  }
+
+  /**
+   * Return the given scaled price without trailing zeros, or null if it's MISSING.
+   */
+  public static BigDecimal toPrice(final long scaled) {
+    return scaled == MISSING ? null : new BigDecimal(format(scaled));
+  }
+
+  // Plain decimal, trailing zeros dropped, the way IEX writes prices
+  private static String format(final long scaled) {
+    StringBuilder text = new StringBuilder(24);
+    if (scaled < 0) {
+      text.append('-');
+    }
+    long magnitude = Math.abs(scaled);
+    text.append(magnitude / PRICE_FACTOR);
+    long fraction = magnitude % PRICE_FACTOR;
+    if (fraction != 0) {
+      text.append('.');
+      for (long digit = PRICE_FACTOR / 10; fraction != 0; digit /= 10) {
+        text.append((char) ('0' + fraction / digit));
+        fraction %= digit;
+      }
+    }
+    return text.toString();
+  }
+
+  /**
+   * Collects bars into a series. The symbol is taken from the first bar that has one.
+   */
+  public static final class Builder {
+
+    private static final int INITIAL_CAPACITY = 32;
+
+    private String symbol;
+    private int size;
+    private int[] dates = new int[INITIAL_CAPACITY];
+    private long[] opens = new long[INITIAL_CAPACITY];
+    private long[] highs = new long[INITIAL_CAPACITY];
+    private long[] lows = new long[INITIAL_CAPACITY];
+    private long[] closes = new long[INITIAL_CAPACITY];
+    private long[] volumes = new long[INITIAL_CAPACITY];
+
+    private Builder() {
+    }
+
+    /**
+     * Set the symbol, unless it's already been set.
+     */
+    public Builder symbol(final String symbol) {
+      if (this.symbol == null) {
+        this.symbol = symbol;
+      }
+      return this;
+    }
+
+    /**
+     * Add a bar, its prices scaled by 10^PRICE_SCALE. Anything it doesn't have is MISSING, or
+     * MISSING_DATE.
+     */
+    public Builder add(final int epochDay, final long open, final long high, final long low,
+        final long close, final long volume) {
+      if (size == dates.length) {
+        int capacity = size * 2;
+        dates = Arrays.copyOf(dates, capacity);
+        opens = Arrays.copyOf(opens, capacity);
+        highs = Arrays.copyOf(highs, capacity);
+        lows = Arrays.copyOf(lows, capacity);
+        closes = Arrays.copyOf(closes, capacity);
+        volumes = Arrays.copyOf(volumes, capacity);
+      }
+      dates[size] = epochDay;
+      opens[size] = open;
+      highs[size] = high;
+      lows[size] = low;
+      closes[size] = close;
+      volumes[size] = volume;
+      size++;
+      return this;
+    }
+
+    /**
+     * Return a series of the bars added so far.
+     */
+    public IexHistoricalPriceSeries build() {
+      return new IexHistoricalPriceSeries(this);
+    }
+  }
+
+  /**
+   * Writes a series as IEX's array of bars.
+   */
+  public static class Serializer extends StdSerializer<IexHistoricalPriceSeries> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Construct a Serializer; Jackson needs a public no-arg constructor.
+     */
+    public Serializer() {
+      super(IexHistoricalPriceSeries.class);
+    }
+
+    @Override
+    public void serialize(final IexHistoricalPriceSeries series, final JsonGenerator gen,
+        final SerializerProvider provider) throws IOException {
+      gen.writeStartArray(series.size());
+      for (int i = 0; i < series.size(); i++) {
+        gen.writeStartObject();
+        writePrice(gen, "close", series.closes[i]);
+        writePrice(gen, "high", series.highs[i]);
+        writePrice(gen, "low", series.lows[i]);
+        writePrice(gen, "open", series.opens[i]);
+        gen.writeStringField("symbol", series.symbol);
+        if (series.volumes[i] == MISSING) {
+          gen.writeNullField("volume");
+        } else {
+          gen.writeNumberField("volume", series.volumes[i]);
+        }
+        gen.writeStringField("date", series.dates[i] == MISSING_DATE ? null
+            : LocalDate.ofEpochDay(series.dates[i]).toString());
+        gen.writeEndObject();
+      }
+      gen.writeEndArray();
+    }
+
+    private static void writePrice(final JsonGenerator gen, final String field, final long price)
+        throws IOException {
+      gen.writeFieldName(field);
+      if (price == MISSING) {
+        gen.writeNull();
+      } else {
+        gen.writeNumber(format(price));
+      }
+    }
+  }
+
+  /**
+   * Reads IEX's array of bars into a series, a token at a time, without creating an object per
+   * bar. Prices are parsed from the characters of the number as written, straight into scaled
+   * longs.
+   */
+  public static class Deserializer extends StdDeserializer<IexHistoricalPriceSeries> {
+
+    private static final long serialVersionUID = 1L;
+
+    // Digits of a price's whole part beyond which it might not fit in a scaled long
+    private static final int MAX_WHOLE_DIGITS = 14;
+
+    /**
+     * Construct a Deserializer; Jackson needs a public no-arg constructor.
+     */
+    public Deserializer() {
+      super(IexHistoricalPriceSeries.class);
+    }
+
+    @Override
+    public IexHistoricalPriceSeries deserialize(final JsonParser parser,
+        final DeserializationContext context) throws IOException {
+      if (!parser.isExpectedStartArrayToken()) {
+        return (IexHistoricalPriceSeries) context.handleUnexpectedToken(
+            IexHistoricalPriceSeries.class, parser);
+      }
+      Builder builder = builder();
+      JsonToken token;
+      while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+        int date = MISSING_DATE;
+        long open = MISSING;
+        long high = MISSING;
+        long low = MISSING;
+        long close = MISSING;
+        long volume = MISSING;
+        String field;
+        while ((field = parser.nextFieldName()) != null) {
+          JsonToken value = parser.nextToken();
+          switch (field) {
+            case "open":
+              open = readPrice(parser, value, context);
+              break;
+            case "high":
+              high = readPrice(parser, value, context);
+              break;
+            case "low":
+              low = readPrice(parser, value, context);
+              break;
+            case "close":
+              close = readPrice(parser, value, context);
+              break;
+            case "volume":
+              volume = value == JsonToken.VALUE_NULL ? MISSING : parser.getValueAsLong();
+              break;
+            case "date":
+              date = value == JsonToken.VALUE_STRING ? readEpochDay(parser) : MISSING_DATE;
+              break;
+            case "symbol":
+              if (value == JsonToken.VALUE_STRING) {
+                builder.symbol(parser.getText());
+              }
+              break;
+            default:
+              parser.skipChildren();
+          }
+        }
+        builder.add(date, open, high, low, close, volume);
+      }
+      if (token != JsonToken.END_ARRAY) {
+        return (IexHistoricalPriceSeries) context.handleUnexpectedToken(
+            IexHistoricalPriceSeries.class, parser);
+      }
+      return builder.build();
+    }
+
+    private static long readPrice(final JsonParser parser, final JsonToken token,
+        final DeserializationContext context) throws IOException {
+      switch (token) {
+        case VALUE_NULL:
+          return MISSING;
+        case VALUE_NUMBER_INT:
+          return Math.multiplyExact(parser.getLongValue(), PRICE_FACTOR);
+        case VALUE_NUMBER_FLOAT:
+          long scaled = parseScaled(parser.getTextCharacters(), parser.getTextOffset(),
+              parser.getTextLength());
+          // Exponents, more than 4 decimal places and huge prices take the slow way
+          return scaled != MISSING ? scaled : toScaled(parser.getDecimalValue());
+        case VALUE_STRING:
+          return toScaled(new BigDecimal(parser.getText().trim()));
+        default:
+          return (Long) context.handleUnexpectedToken(Long.class, parser);
+      }
+    }
+
+    // A plain decimal with at most PRICE_SCALE decimal places as a scaled long, or MISSING
+    private static long parseScaled(final char[] text, final int offset, final int length) {
+      int end = offset + length;
+      int i = offset;
+      boolean negative = i < end && text[i] == '-';
+      if (negative) {
+        i++;
+      }
+      long value = 0;
+      int wholeDigits = 0;
+      for (; i < end && text[i] != '.'; i++) {
+        char c = text[i];
+        if (c < '0' || c > '9' || ++wholeDigits > MAX_WHOLE_DIGITS) {
+          return MISSING;
+        }
+        value = value * 10 + (c - '0');
+      }
+      int decimals = 0;
+      if (i < end) {
+        // Skip the point
+        for (i++; i < end; i++) {
+          char c = text[i];
+          if (c < '0' || c > '9' || ++decimals > PRICE_SCALE) {
+            return MISSING;
+          }
+          value = value * 10 + (c - '0');
+        }
+      }
+      for (; decimals < PRICE_SCALE; decimals++) {
+        value *= 10;
+      }
+      return negative ? -value : value;
+    }
+
+    // yyyy-MM-dd, as IEX writes dates
+    private static int readEpochDay(final JsonParser parser) throws IOException {
+      char[] text = parser.getTextCharacters();
+      int offset = parser.getTextOffset();
+      if (parser.getTextLength() != 10 || text[offset + 4] != '-' || text[offset + 7] != '-') {
+        return Math.toIntExact(LocalDate.parse(parser.getText()).toEpochDay());
+      }
+      int year = digits(text, offset, 4);
+      int month = digits(text, offset + 5, 2);
+      int day = digits(text, offset + 8, 2);
+      if (year < 0 || month < 0 || day < 0) {
+        // Let LocalDate say what's wrong with it
+        return Math.toIntExact(LocalDate.parse(parser.getText()).toEpochDay());
+      }
+      return Math.toIntExact(LocalDate.of(year, month, day).toEpochDay());
+    }
+
+    // The number written in the given digits, or -1 if they aren't all digits
+    private static int digits(final char[] text, final int offset, final int count) {
+      int value = 0;
+      for (int i = offset; i < offset + count; i++) {
+        char c = text[i];
+        if (c < '0' || c > '9') {
+          return -1;
+        }
+        value = value * 10 + (c - '0');
+      }
+      return value;
+    }
+  }
+}
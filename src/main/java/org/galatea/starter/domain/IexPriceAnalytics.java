@@ -0,0 +1,75 @@
+package org.galatea.starter.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import java.util.SortedMap;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Aggregates of one symbol's daily prices over a range, computed server-side so that clients
+ * needn't download every bar to get them. Returns are of closing prices, and volatility is the
+ * sample standard deviation of the daily log returns. Aggregates that can't be computed, e.g.
+ * returns from a single bar, are left out of the JSON.
+ */
+@Value
+@Builder
+@JsonInclude(Include.NON_NULL)
+public class IexPriceAnalytics {
+
+  private String symbol;
+
+  /**
+   * The number of bars with a closing price.
+   */
+  private int bars;
+
+  /**
+   * The first and last days of the range, as yyyy-MM-dd.
+   */
+  private String from;
+
+  private String to;
+
+  private Double firstClose;
+
+  private Double lastClose;
+
+  private Double high;
+
+  private Double low;
+
+  /**
+   * The change in closing price from the first bar to the last, as a fraction of the first.
+   */
+  private Double totalReturn;
+
+  /**
+   * The mean daily log return.
+   */
+  private Double meanDailyReturn;
+
+  private Double dailyVolatility;
+
+  /**
+   * Daily volatility scaled to a year of 252 trading days.
+   */
+  private Double annualizedVolatility;
+
+  /**
+   * Volume weighted average of each bar's typical price, (high + low + close) / 3.
+   */
+  private Double vwap;
+
+  private Long volume;
+
+  /**
+   * The mean closing price of the last n bars, by n. Left out for an n larger than the range.
+   */
+  private SortedMap<Integer, Double> movingAverages;
+
+  /**
+   * Why the symbol's prices couldn't be fetched, if they couldn't.
+   */
+  private String error;
+}
@@ -0,0 +1,39 @@
+package org.galatea.starter.domain;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+
+/**
+ * How much of a symbol's daily price history the local store holds: every bar IEX has from
+ * coveredFrom on, as of syncedAt.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@NoArgsConstructor(access = AccessLevel.PRIVATE) // For hibernate
+@Builder
+@Data
+@Entity
+public class IexPriceHistory {
+
+  @Id
+  @NonNull
+  private String symbol;
+
+  /**
+   * The first day held, or null if the whole history since the symbol was listed is.
+   */
+  private LocalDate coveredFrom;
+
+  /**
+   * When the bars were last brought up to date with IEX.
+   */
+  @NonNull
+  private Instant syncedAt;
+}
@@ -0,0 +1,359 @@
+package org.galatea.starter.domain;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+import lombok.Getter;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Every symbol IEX supports, held as one immutable index rather than as an IexSymbol per symbol:
+ * a column per field, sorted by symbol so that a symbol or a prefix is found by binary search.
+ * Repeated values, such as the handful of security types, share one String.
+ *
+ * <p>The JSON of the whole universe, as /iex/symbols has always returned it, is written once when
+ * the index is built, along with a gzipped copy and an ETag of each, so serving it means no more
+ * than copying bytes out.
+ *
+ * <p>It is read straight from IEX's JSON, a token at a time, without creating an IexSymbol per
+ * symbol.
+ */
+@JsonDeserialize(using = IexSymbolUniverse.Deserializer.class)
+public final class IexSymbolUniverse {
+
+  /**
+   * The date of a symbol that doesn't have one.
+   */
+  public static final long MISSING_DATE = Long.MIN_VALUE;
+
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private static final IexSymbolUniverse EMPTY = new Builder().build();
+
+  private final String[] symbols;
+  private final String[] names;
+  // Epoch millis, as the JSON has always had them
+  private final long[] dates;
+  private final boolean[] enabled;
+  private final String[] types;
+  private final String[] iexIds;
+
+  /**
+   * The JSON array of every symbol, as /iex/symbols returns it.
+   */
+  @Getter
+  private final byte[] json;
+
+  /**
+   * The JSON, gzipped.
+   */
+  @Getter
+  private final byte[] gzippedJson;
+
+  /**
+   * A strong ETag of the JSON, quoted.
+   */
+  @Getter
+  private final String etag;
+
+  /**
+   * A strong ETag of the gzipped JSON, quoted. A strong ETag names the bytes sent, so the gzipped
+   * and plain JSON can't share one.
+   */
+  @Getter
+  private final String gzippedEtag;
+
+  private IexSymbolUniverse(final Builder builder) {
+    int size = builder.size;
+    // IEX lists symbols in order already, but the index relies on it
+    Integer[] order = new Integer[size];
+    for (int i = 0; i < size; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, Comparator.comparing(i -> builder.symbols[i]));
+
+    this.symbols = new String[size];
+    this.names = new String[size];
+    this.dates = new long[size];
+    this.enabled = new boolean[size];
+    this.types = new String[size];
+    this.iexIds = new String[size];
+    for (int i = 0; i < size; i++) {
+      int from = order[i];
+      symbols[i] = builder.symbols[from];
+      names[i] = builder.names[from];
+      dates[i] = builder.dates[from];
+      enabled[i] = builder.enabled[from];
+      types[i] = builder.types[from];
+      iexIds[i] = builder.iexIds[from];
+    }
+    this.json = writeJson();
+    this.gzippedJson = gzip(json);
+    String digest = DigestUtils.md5DigestAsHex(json);
+    this.etag = "\"" + digest + "\"";
+    this.gzippedEtag = "\"" + digest + "-gzip\"";
+  }
+
+  /**
+   * An empty universe, e.g. for before the first one has been fetched.
+   */
+  public static IexSymbolUniverse empty() {
+    return EMPTY;
+  }
+
+  /**
+   * Return a builder to add symbols to.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * The number of symbols.
+   */
+  public int size() {
+    return symbols.length;
+  }
+
+  /**
+   * Return the given symbol, if there is one, matched exactly.
+   */
+  public Optional<IexSymbol> find(final String symbol) {
+    int index = Arrays.binarySearch(symbols, symbol);
+    return index < 0 ? Optional.empty() : Optional.of(get(index));
+  }
+
+  /**
+   * Return the symbols starting with the given prefix, matched exactly, in order.
+   *
+   * @param prefix the start of the symbols to return
+   * @param limit the most symbols to return
+   */
+  public List<IexSymbol> findByPrefix(final String prefix, final int limit) {
+    int from = Arrays.binarySearch(symbols, prefix);
+    if (from < 0) {
+      from = -from - 1;
+    }
+    List<IexSymbol> found = new ArrayList<>();
+    for (int i = from; i < symbols.length && found.size() < limit
+        && symbols[i].startsWith(prefix); i++) {
+      found.add(get(i));
+    }
+    return found;
+  }
+
+  /**
+   * Return the symbol at the given position in symbol order.
+   */
+  public IexSymbol get(final int index) {
+    return IexSymbol.builder()
+        .symbol(symbols[index])
+        .name(names[index])
+        .date(dates[index] == MISSING_DATE ? null : new Date(dates[index]))
+        .isEnabled(enabled[index])
+        .type(types[index])
+        .iexId(iexIds[index])
+        .build();
+  }
+
+  @Override
+  public String toString() {
+    return "IexSymbolUniverse(size=" + size() + ", etag=" + etag + ")";
+  }
+
+  // The fields in the order Jackson has always written an IexSymbol in
+  private byte[] writeJson() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(symbols.length * 128);
+    try (JsonGenerator gen = JSON_FACTORY.createGenerator(out)) {
+      gen.writeStartArray();
+      for (int i = 0; i < symbols.length; i++) {
+        gen.writeStartObject();
+        gen.writeStringField("symbol", symbols[i]);
+        gen.writeStringField("name", names[i]);
+        gen.writeFieldName("date");
+        if (dates[i] == MISSING_DATE) {
+          gen.writeNull();
+        } else {
+          gen.writeNumber(dates[i]);
+        }
+        gen.writeStringField("type", types[i]);
+        gen.writeStringField("iexId", iexIds[i]);
+        gen.writeBooleanField("enabled", enabled[i]);
+        gen.writeEndObject();
+      }
+      gen.writeEndArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out.toByteArray();
+  }
+
+  private static byte[] gzip(final byte[] bytes) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(bytes);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Collects symbols into a universe, sharing one String between equal names, types and so on.
+   */
+  public static final class Builder {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Map<String, String> interned = new HashMap<>();
+    private int size;
+    private String[] symbols = new String[INITIAL_CAPACITY];
+    private String[] names = new String[INITIAL_CAPACITY];
+    private long[] dates = new long[INITIAL_CAPACITY];
+    private boolean[] enabled = new boolean[INITIAL_CAPACITY];
+    private String[] types = new String[INITIAL_CAPACITY];
+    private String[] iexIds = new String[INITIAL_CAPACITY];
+
+    private Builder() {
+    }
+
+    /**
+     * Add a symbol. Symbols without a symbol are skipped.
+     *
+     * @param date epoch millis, or MISSING_DATE
+     */
+    public Builder add(final String symbol, final String name, final long date,
+        final boolean isEnabled, final String type, final String iexId) {
+      if (symbol == null) {
+        return this;
+      }
+      if (size == symbols.length) {
+        int capacity = size * 2;
+        symbols = Arrays.copyOf(symbols, capacity);
+        names = Arrays.copyOf(names, capacity);
+        dates = Arrays.copyOf(dates, capacity);
+        enabled = Arrays.copyOf(enabled, capacity);
+        types = Arrays.copyOf(types, capacity);
+        iexIds = Arrays.copyOf(iexIds, capacity);
+      }
+      symbols[size] = intern(symbol);
+      names[size] = intern(name);
+      dates[size] = date;
+      enabled[size] = isEnabled;
+      types[size] = intern(type);
+      iexIds[size] = intern(iexId);
+      size++;
+      return this;
+    }
+
+    private String intern(final String value) {
+      return value == null ? null : interned.computeIfAbsent(value, key -> key);
+    }
+
+    /**
+     * Return a universe of the symbols added so far.
+     */
+    public IexSymbolUniverse build() {
+      return new IexSymbolUniverse(this);
+    }
+  }
+
+  /**
+   * Reads IEX's array of symbols into a universe, a token at a time. Fields other than the ones
+   * held are skipped.
+   */
+  public static class Deserializer extends StdDeserializer<IexSymbolUniverse> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Construct a Deserializer; Jackson needs a public no-arg constructor.
+     */
+    public Deserializer() {
+      super(IexSymbolUniverse.class);
+    }
+
+    @Override
+    public IexSymbolUniverse deserialize(final JsonParser parser,
+        final DeserializationContext context) throws IOException {
+      if (!parser.isExpectedStartArrayToken()) {
+        return (IexSymbolUniverse) context.handleUnexpectedToken(IexSymbolUniverse.class, parser);
+      }
+      Builder builder = builder();
+      JsonToken token;
+      while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+        String symbol = null;
+        String name = null;
+        long date = MISSING_DATE;
+        boolean isEnabled = false;
+        String type = null;
+        String iexId = null;
+        String field;
+        while ((field = parser.nextFieldName()) != null) {
+          JsonToken value = parser.nextToken();
+          switch (field) {
+            case "symbol":
+              symbol = parser.getValueAsString();
+              break;
+            case "name":
+              name = parser.getValueAsString();
+              break;
+            case "date":
+              date = readDate(parser, value);
+              break;
+            case "isEnabled":
+            case "enabled":
+              isEnabled = parser.getValueAsBoolean();
+              break;
+            case "type":
+              type = parser.getValueAsString();
+              break;
+            case "iexId":
+              iexId = parser.getValueAsString();
+              break;
+            default:
+              parser.skipChildren();
+          }
+        }
+        builder.add(symbol, name, date, isEnabled, type, iexId);
+      }
+      if (token != JsonToken.END_ARRAY) {
+        return (IexSymbolUniverse) context.handleUnexpectedToken(IexSymbolUniverse.class, parser);
+      }
+      return builder.build();
+    }
+
+    // IEX writes yyyy-MM-dd, which Jackson has always read as midnight UTC
+    private static long readDate(final JsonParser parser, final JsonToken token)
+        throws IOException {
+      switch (token) {
+        case VALUE_NUMBER_INT:
+          return parser.getLongValue();
+        case VALUE_STRING:
+          return LocalDate.parse(parser.getText()).atStartOfDay(ZoneOffset.UTC).toInstant()
+              .toEpochMilli();
+        default:
+          return MISSING_DATE;
+      }
+    }
+  }
+
+}
@@ -2,7 +2,6 @@ package org.galatea.starter.domain;
 
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.Version;
 import javax.validation.constraints.DecimalMin;
@@ -13,7 +12,11 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
+import org.galatea.starter.utils.persistence.PooledSequenceGenerator;
 import org.galatea.starter.utils.validation.StringEnumeration;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 /* For builder since we explicitly want to make the all args ctor private */
 @AllArgsConstructor(access = AccessLevel.PRIVATE)
@@ -24,8 +27,13 @@ import org.galatea.starter.utils.validation.StringEnumeration;
 @XmlRootElement(name = "settlementMission")
 public class SettlementMission {
 
+  // Ids are reserved in blocks so that spawning missions can batch its inserts. See
+  // PooledSequenceGenerator for how to configure the block size
   @Id
-  @GeneratedValue(strategy = GenerationType.AUTO)
+  @GeneratedValue(generator = "settlement_mission_id")
+  @GenericGenerator(name = "settlement_mission_id", strategy = PooledSequenceGenerator.STRATEGY,
+      parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM,
+          value = "settlement_mission_seq"))
   protected Long id;
 
   @NonNull
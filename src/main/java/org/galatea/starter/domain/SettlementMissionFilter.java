@@ -0,0 +1,32 @@
+package org.galatea.starter.domain;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Criteria for listing settlement missions. Every criterion is optional; a null criterion matches
+ * every mission.
+ *
+ * <p>Missions are always listed in ascending id order, so a caller can page through all matching
+ * missions by passing the id of the last mission it received as {@code afterId} on its next
+ * request (keyset pagination). Unlike offset pagination, the database can seek straight to the
+ * start of the page using the primary key index no matter how deep into the results it is.
+ */
+@Builder
+@Value
+public class SettlementMissionFilter {
+
+  private String depot;
+
+  private String instrument;
+
+  private String externalParty;
+
+  private String direction;
+
+  // Only missions with an id greater than this are listed
+  private Long afterId;
+
+  // The maximum number of missions to list; null means no limit
+  private Integer limit;
+}
@@ -0,0 +1,30 @@
+package org.galatea.starter.domain.rpsy;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import org.galatea.starter.domain.IexDailyBar;
+import org.springframework.data.repository.CrudRepository;
+
+public interface IIexDailyBarRpsy extends CrudRepository<IexDailyBar, IexDailyBar.Key> {
+
+  /**
+   * Retrieves all of the symbol's bars, oldest first.
+   */
+  List<IexDailyBar> findBySymbolOrderByDate(String symbol);
+
+  /**
+   * Retrieves the symbol's bars from the given day on, oldest first.
+   */
+  List<IexDailyBar> findBySymbolAndDateGreaterThanEqualOrderByDate(String symbol, LocalDate from);
+
+  /**
+   * Retrieves the symbol's oldest bar.
+   */
+  Optional<IexDailyBar> findFirstBySymbolOrderByDateAsc(String symbol);
+
+  /**
+   * Retrieves the symbol's latest bar.
+   */
+  Optional<IexDailyBar> findFirstBySymbolOrderByDateDesc(String symbol);
+}
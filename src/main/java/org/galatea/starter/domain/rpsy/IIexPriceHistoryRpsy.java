@@ -0,0 +1,8 @@
+package org.galatea.starter.domain.rpsy;
+
+import org.galatea.starter.domain.IexPriceHistory;
+import org.springframework.data.repository.CrudRepository;
+
+public interface IIexPriceHistoryRpsy extends CrudRepository<IexPriceHistory, String> {
+
+}
@@ -1,10 +1,8 @@
 package org.galatea.starter.domain.rpsy;
 
 import java.util.List;
-import java.util.Optional;
 import org.galatea.starter.domain.SettlementMission;
 import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.repository.CrudRepository;
 
 public interface ISettlementMissionRpsy extends CrudRepository<SettlementMission, Long> {
@@ -14,10 +12,6 @@ public interface ISettlementMissionRpsy extends CrudRepository<SettlementMission
    */
   List<SettlementMission> findByDepot(String depot);
 
-  @Override
-  @Cacheable(cacheNames = "missions", sync = true)
-  Optional<SettlementMission> findById(Long id);
-
   @Override
   @CacheEvict(cacheNames = "missions")
   void deleteById(Long id);
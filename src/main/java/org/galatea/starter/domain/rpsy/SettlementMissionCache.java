@@ -0,0 +1,262 @@
+package org.galatea.starter.domain.rpsy;
+
+import com.google.common.util.concurrent.Striped;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.utils.cache.TieredCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+/**
+ * Access to the "missions" cache, which get() reads through to ISettlementMissionRpsy.findById().
+ *
+ * <p>Spring's Cache abstraction only reads one key at a time, so the lookup goes straight to the
+ * provider's own bulk read instead: Ehcache.getAll() or Caffeine's getAllPresent(). The latter
+ * also never triggers the refresh-ahead loader, which a get through Spring would. Missions not
+ * found on-heap are then looked for in the off-heap tier, if the cache has one. Keys and values
+ * are the mission id and the mission, with null cached for an id that has no mission, as Spring's
+ * caching annotations would store them.
+ *
+ * <p>Every write is guarded by the mission's version, the read-through's included: an entry is
+ * only ever replaced by a newer version of the same mission, so a slow reader or writer holding
+ * an older copy can't overwrite a newer one that has already been cached. This is why the
+ * read-through is done here rather than by @Cacheable on findById(), whose put isn't guarded.
+ */
+@Slf4j
+@Component
+public class SettlementMissionCache {
+
+  public static final String CACHE_NAME = "missions";
+
+  public static final String LOOKUPS_METER = "missions.cache.bulk.lookups";
+
+  private final Cache cache;
+
+  private final Counter hits;
+
+  private final Counter misses;
+
+  private final boolean writeThrough;
+
+  // Only one thread at a time reads a given mission through to the database
+  private final Striped<Lock> loadLocks = Striped.lock(64);
+
+  /**
+   * Construct a SettlementMissionCache over the "missions" cache of the given CacheManager.
+   *
+   * @param cacheManager holds the "missions" cache
+   * @param meterRegistry registers the hit and miss counters for bulk lookups
+   * @param writeThrough whether writeThrough() caches the missions it is given
+   */
+  public SettlementMissionCache(final CacheManager cacheManager,
+      final MeterRegistry meterRegistry,
+      @Value("${missions.cache.write-through}") final boolean writeThrough) {
+    this.cache = cacheManager.getCache(CACHE_NAME);
+    if (this.cache == null) {
+      throw new IllegalStateException("No cache named '" + CACHE_NAME + "' is configured");
+    }
+    this.hits = Counter.builder(LOOKUPS_METER).tag("result", "hit")
+        .description("Missions found in the cache by bulk lookups").register(meterRegistry);
+    this.misses = Counter.builder(LOOKUPS_METER).tag("result", "miss")
+        .description("Missions missing from the cache in bulk lookups").register(meterRegistry);
+    this.writeThrough = writeThrough;
+  }
+
+  /**
+   * Return the mission with the given id from the cache, or else from the given loader, caching
+   * what it returns unless a newer version of the mission has been cached meanwhile.
+   *
+   * @param id the id of the mission
+   * @param loader reads the mission from the database
+   * @return the mission, or empty if there is no mission with the given id
+   */
+  public Optional<SettlementMission> get(final Long id,
+      final Function<Long, Optional<SettlementMission>> loader) {
+    Cache.ValueWrapper cached = cache.get(id);
+    if (cached != null) {
+      return Optional.ofNullable((SettlementMission) cached.get());
+    }
+
+    Lock lock = loadLocks.get(id);
+    lock.lock();
+    try {
+      cached = cache.get(id);
+      if (cached != null) {
+        return Optional.ofNullable((SettlementMission) cached.get());
+      }
+      Optional<SettlementMission> loaded = loader.apply(id);
+      if (!loaded.isPresent()) {
+        cache.putIfAbsent(id, null);
+        return loaded;
+      }
+      if (putIfNewer(loaded.get())) {
+        return loaded;
+      }
+      // A newer version was cached while this one was being read
+      cached = cache.get(id);
+      return cached != null && cached.get() instanceof SettlementMission
+          ? Optional.of((SettlementMission) cached.get()) : loaded;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Return the cached missions for the given ids. Ids that aren't cached, or that are cached as
+   * not existing, are left out of the result.
+   *
+   * @param ids the ids of the missions to look up; must not contain duplicates
+   * @return the cached missions, keyed by id
+   */
+  public Map<Long, SettlementMission> getAll(final Collection<Long> ids) {
+    Map<Long, SettlementMission> found = new HashMap<>();
+    Object nativeCache = cache.getNativeCache();
+    if (nativeCache instanceof com.github.benmanes.caffeine.cache.Cache) {
+      ((com.github.benmanes.caffeine.cache.Cache<?, ?>) nativeCache).getAllPresent(ids)
+          .forEach((id, value) -> {
+            if (value instanceof SettlementMission) {
+              found.put((Long) id, (SettlementMission) value);
+            }
+          });
+    } else if (nativeCache instanceof Ehcache) {
+      for (Element element : ((Ehcache) nativeCache).getAll(ids).values()) {
+        if (element != null && element.getObjectValue() instanceof SettlementMission) {
+          found.put((Long) element.getObjectKey(), (SettlementMission) element.getObjectValue());
+        }
+      }
+    } else {
+      for (Long id : ids) {
+        Cache.ValueWrapper wrapper = cache.get(id);
+        if (wrapper != null && wrapper.get() instanceof SettlementMission) {
+          found.put(id, (SettlementMission) wrapper.get());
+        }
+      }
+    }
+
+    if (cache instanceof TieredCache && found.size() < ids.size()) {
+      // Missions evicted from the heap tier may still be off-heap
+      TieredCache tieredCache = (TieredCache) cache;
+      for (Long id : ids) {
+        if (!found.containsKey(id)) {
+          Object value = tieredCache.getOffHeap(id);
+          if (value instanceof SettlementMission) {
+            found.put(id, (SettlementMission) value);
+          }
+        }
+      }
+    }
+
+    hits.increment(found.size());
+    misses.increment(ids.size() - found.size());
+    log.debug("Found {} of {} mission(s) in the cache", found.size(), ids.size());
+    return found;
+  }
+
+  /**
+   * Cache missions that have just been saved, if write-through is enabled, so that the first read
+   * of each one doesn't have to go to the database. Otherwise do nothing, and leave the missions
+   * to be cached when they are first read.
+   *
+   * @param missions the saved missions
+   */
+  public void writeThrough(final Iterable<SettlementMission> missions) {
+    if (writeThrough) {
+      putAll(missions);
+    }
+  }
+
+  /**
+   * Cache the given missions under their ids, skipping any mission whose cached version is the
+   * same as or newer than the given one.
+   *
+   * @param missions the missions to cache
+   */
+  public void putAll(final Iterable<SettlementMission> missions) {
+    for (SettlementMission mission : missions) {
+      if (!putIfNewer(mission)) {
+        log.debug("Mission {} version {} is already cached at the same or a newer version",
+            mission.getId(), mission.getVersion());
+      }
+    }
+  }
+
+  /**
+   * Cache the given mission unless the cache already holds the same or a newer version of it.
+   *
+   * @param mission the mission to cache
+   * @return true if the mission was cached
+   */
+  public boolean putIfNewer(final SettlementMission mission) {
+    boolean cached = putIfNewerOnHeap(mission);
+    if (cache instanceof TieredCache) {
+      cached |= ((TieredCache) cache).putOffHeapIf(mission.getId(), mission,
+          current -> isOlder(current, mission));
+    }
+    return cached;
+  }
+
+  private boolean putIfNewerOnHeap(final SettlementMission mission) {
+    Object nativeCache = cache.getNativeCache();
+    if (nativeCache instanceof com.github.benmanes.caffeine.cache.Cache) {
+      ConcurrentMap<Object, Object> entries =
+          ((com.github.benmanes.caffeine.cache.Cache<Object, Object>) nativeCache).asMap();
+      return entries.compute(mission.getId(),
+          (id, current) -> isOlder(current, mission) ? mission : current) == mission;
+    } else if (nativeCache instanceof Ehcache) {
+      return compareAndSet((Ehcache) nativeCache, mission);
+    }
+
+    // Spring's Cache has no compare-and-set, so writers to other providers take turns
+    synchronized (this) {
+      Cache.ValueWrapper current = cache.get(mission.getId());
+      if (current != null && !isOlder(current.get(), mission)) {
+        return false;
+      }
+      cache.put(mission.getId(), mission);
+      return true;
+    }
+  }
+
+  // Compare-and-set until the mission is either cached or beaten by a newer version
+  private static boolean compareAndSet(final Ehcache ehcache, final SettlementMission mission) {
+    Element replacement = new Element(mission.getId(), mission);
+    while (true) {
+      Element current = ehcache.putIfAbsent(replacement);
+      if (current == null) {
+        return true;
+      }
+      if (!isOlder(current.getObjectValue(), mission)) {
+        return false;
+      }
+      if (ehcache.replace(current, replacement)) {
+        return true;
+      }
+    }
+  }
+
+  /*
+   * Anything that isn't a mission, such as the placeholder @Cacheable stores when findById() finds
+   * nothing, counts as older than any mission.
+   */
+  private static boolean isOlder(final Object cached, final SettlementMission mission) {
+    if (!(cached instanceof SettlementMission)) {
+      return true;
+    }
+    Long cachedVersion = ((SettlementMission) cached).getVersion();
+    return cachedVersion == null
+        || (mission.getVersion() != null && mission.getVersion() > cachedVersion);
+  }
+}
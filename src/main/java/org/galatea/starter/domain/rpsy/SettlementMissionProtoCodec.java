@@ -0,0 +1,50 @@
+package org.galatea.starter.domain.rpsy;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessage;
+import org.galatea.starter.utils.cache.ICacheValueCodec;
+import org.galatea.starter.utils.translation.ITranslator;
+import org.galatea.starter.utils.translation.TranslationException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Encodes the missions in the "missions" cache as SettlementMissionProtoMessages for its off-heap
+ * tier, at a few dozen bytes each.
+ */
+@RequiredArgsConstructor
+@Component
+public class SettlementMissionProtoCodec implements ICacheValueCodec<SettlementMission> {
+
+  @NonNull
+  private final ITranslator<SettlementMission, SettlementMissionProtoMessage> toProtoTranslator;
+
+  @NonNull
+  private final ITranslator<SettlementMissionProtoMessage, SettlementMission> fromProtoTranslator;
+
+  @Override
+  public String getCacheName() {
+    return SettlementMissionCache.CACHE_NAME;
+  }
+
+  @Override
+  public Class<SettlementMission> getValueType() {
+    return SettlementMission.class;
+  }
+
+  @Override
+  public byte[] encode(final SettlementMission mission) {
+    return toProtoTranslator.translate(mission).toByteArray();
+  }
+
+  @Override
+  public SettlementMission decode(final byte[] bytes) {
+    try {
+      return fromProtoTranslator.translate(SettlementMissionProtoMessage.parseFrom(bytes));
+    } catch (InvalidProtocolBufferException e) {
+      throw new TranslationException("Could not decode a cached settlement mission.", e);
+    }
+  }
+}
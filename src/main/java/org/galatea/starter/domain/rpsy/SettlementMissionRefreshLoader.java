@@ -0,0 +1,33 @@
+package org.galatea.starter.domain.rpsy;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.utils.cache.IRefreshAheadLoader;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reloads entries of the "missions" cache ahead of expiry, when Caffeine is the cache provider
+ * and the cache's spec sets refreshAfterWrite. Reads straight from the repository, whose
+ * findById() isn't cached.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Component
+public class SettlementMissionRefreshLoader implements IRefreshAheadLoader {
+
+  @NonNull
+  private final ISettlementMissionRpsy missionrpsy;
+
+  @Override
+  public String getCacheName() {
+    return SettlementMissionCache.CACHE_NAME;
+  }
+
+  @Override
+  public SettlementMission load(final Object id) {
+    log.debug("Refreshing cached mission {}", id);
+    return missionrpsy.findById((Long) id).orElse(null);
+  }
+}
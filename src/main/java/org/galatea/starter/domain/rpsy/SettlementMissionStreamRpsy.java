@@ -0,0 +1,89 @@
+package org.galatea.starter.domain.rpsy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.SettlementMissionFilter;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Streams settlement missions straight from the database, for listings that are too large to be
+ * loaded into memory all at once.
+ *
+ * <p>Spring Data can't build a query from a set of optional criteria, so this is implemented
+ * directly against the EntityManager rather than as a method on ISettlementMissionRpsy.
+ */
+@Slf4j
+@Repository
+public class SettlementMissionStreamRpsy {
+
+  private final EntityManager entityManager;
+
+  private final int fetchSize;
+
+  /**
+   * Create a repository that fetches the given number of rows from the database at a time.
+   */
+  public SettlementMissionStreamRpsy(final EntityManager entityManager,
+      @Value("${missions.stream-fetch-size}") final int fetchSize) {
+    this.entityManager = entityManager;
+    this.fetchSize = fetchSize;
+  }
+
+  /**
+   * Stream the missions matching the given filter in ascending id order.
+   *
+   * <p>Must be called inside a transaction, and the returned stream must be closed (e.g. with
+   * try-with-resources) to release the underlying JDBC result set. Each mission is detached from
+   * the persistence context as it is read, so memory use doesn't grow with the number of missions.
+   */
+  public Stream<SettlementMission> streamMissions(final SettlementMissionFilter filter) {
+    CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+    CriteriaQuery<SettlementMission> criteria = cb.createQuery(SettlementMission.class);
+    Root<SettlementMission> mission = criteria.from(SettlementMission.class);
+
+    List<Predicate> predicates = new ArrayList<>();
+    if (filter.getDepot() != null) {
+      predicates.add(cb.equal(mission.get("depot"), filter.getDepot()));
+    }
+    if (filter.getInstrument() != null) {
+      predicates.add(cb.equal(mission.get("instrument"), filter.getInstrument()));
+    }
+    if (filter.getExternalParty() != null) {
+      predicates.add(cb.equal(mission.get("externalParty"), filter.getExternalParty()));
+    }
+    if (filter.getDirection() != null) {
+      predicates.add(cb.equal(mission.get("direction"), filter.getDirection()));
+    }
+    if (filter.getAfterId() != null) {
+      predicates.add(cb.greaterThan(mission.get("id"), filter.getAfterId()));
+    }
+    criteria.select(mission)
+        .where(predicates.toArray(new Predicate[0]))
+        .orderBy(cb.asc(mission.get("id")));
+
+    TypedQuery<SettlementMission> query = entityManager.createQuery(criteria)
+        // How many rows the JDBC driver pulls per round trip while the stream is consumed. Note
+        // that MySQL's driver ignores this and buffers the whole result unless it is
+        // Integer.MIN_VALUE
+        .setHint(QueryHints.FETCH_SIZE, fetchSize)
+        // Nothing read here is modified, so Hibernate needn't keep snapshots for dirty checking
+        .setHint(QueryHints.READ_ONLY, true);
+    if (filter.getLimit() != null) {
+      query.setMaxResults(filter.getLimit());
+    }
+
+    log.info("Streaming settlement missions matching {}", filter);
+    return query.getResultStream().peek(entityManager::detach);
+  }
+}
@@ -8,11 +8,13 @@ import lombok.AccessLevel;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import net.sf.aspect4log.Log;
-import net.sf.aspect4log.Log.Level;
 import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.SettlementMissionFilter;
 import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionStream;
 import org.galatea.starter.service.SettlementService;
+import org.galatea.starter.utils.trace.Traced;
+import org.slf4j.event.Level;
 
 /**
  * Implements a base class for settlement rest controllers to avoid duplicating the logic of calling
@@ -20,7 +22,7 @@ import org.galatea.starter.service.SettlementService;
  */
 @RequiredArgsConstructor(access = AccessLevel.PROTECTED)
 @Slf4j
-@Log(enterLevel = Level.INFO, exitLevel = Level.INFO)
+@Traced(level = Level.INFO)
 public abstract class BaseSettlementRestController extends BaseRestController {
 
   @NonNull
@@ -53,6 +55,15 @@ public abstract class BaseSettlementRestController extends BaseRestController {
     return settlementService.findMissions(ids);
   }
 
+  /**
+   * Lists the settlement missions matching the given filter. The missions aren't read until the
+   * returned stream is written to the response.
+   */
+  protected SettlementMissionStream listMissionsInternal(final SettlementMissionFilter filter) {
+    return new SettlementMissionStream(
+        handler -> settlementService.streamMissions(filter, handler));
+  }
+
   /**
    * Updates settlement mission, if it exists.
    */
@@ -1,5 +1,8 @@
 package org.galatea.starter.entrypoint;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
@@ -7,23 +10,37 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import javax.validation.constraints.Positive;
+import javax.validation.constraints.Size;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import net.sf.aspect4log.Log;
-import net.sf.aspect4log.Log.Level;
-import org.galatea.starter.domain.IexHistoricalPrice;
+import org.galatea.starter.domain.IexHistoricalPriceResult;
+import org.galatea.starter.domain.IexHistoricalPriceSeries;
 import org.galatea.starter.domain.IexLastTradedPrice;
+import org.galatea.starter.domain.IexPriceAnalytics;
 import org.galatea.starter.domain.IexSymbol;
+import org.galatea.starter.domain.IexSymbolUniverse;
+import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
+import org.galatea.starter.service.IexAnalyticsService;
+import org.galatea.starter.service.IexHistoricalPriceFanOut;
 import org.galatea.starter.service.IexService;
+import org.galatea.starter.utils.trace.Traced;
+import org.slf4j.event.Level;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
 @Slf4j
-@Log(enterLevel = Level.INFO, exitLevel = Level.INFO)
+@Traced(level = Level.INFO)
 @Validated
 @RestController
 @RequiredArgsConstructor
@@ -32,14 +49,98 @@ public class IexRestController {
   @NonNull
   private IexService iexService;
 
+  @NonNull
+  private IexAnalyticsService iexAnalyticsService;
+
+  @NonNull
+  private IexHistoricalPriceFanOut iexHistoricalPriceFanOut;
+
+  @NonNull
+  private ObjectMapper objectMapper;
+
   /**
-   * Exposes an endpoint to get all of the symbols available on IEX.
+   * Exposes an endpoint to get all of the symbols available on IEX. The JSON is written once per
+   * fetch of the symbols from IEX, so is sent as it is, gzipped if the client accepts it, with an
+   * ETag of the bytes sent that lets a client holding them already be told they haven't changed.
    *
-   * @return a list of all IexStockSymbols.
+   * @param request the request, for its conditional and Accept-Encoding headers.
+   * @return a list of all IexStockSymbols, as JSON.
    */
   @GetMapping(value = "${mvc.iex.getAllSymbolsPath}", produces = {MediaType.APPLICATION_JSON_VALUE})
-  public List<IexSymbol> getAllStockSymbols() {
-    return iexService.getAllSymbols();
+  public ResponseEntity<byte[]> getAllStockSymbols(final WebRequest request) {
+    IexSymbolUniverse universe = iexService.getAllSymbols();
+    boolean gzip = acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+    String etag = gzip ? universe.getGzippedEtag() : universe.getEtag();
+    if (request.checkNotModified(etag)) {
+      return null;
+    }
+    ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+        .contentType(MediaType.APPLICATION_JSON_UTF8)
+        .eTag(etag)
+        .varyBy(HttpHeaders.ACCEPT_ENCODING);
+    if (gzip) {
+      return response.header(HttpHeaders.CONTENT_ENCODING, "gzip")
+          .body(universe.getGzippedJson());
+    }
+    return response.body(universe.getJson());
+  }
+
+  // Whether an Accept-Encoding header accepts gzip: named, or matched by *, with a non-zero q
+  private static boolean acceptsGzip(final String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+    Double gzipQuality = null;
+    Double anyQuality = null;
+    for (String coding : acceptEncoding.split(",")) {
+      String[] parts = coding.split(";");
+      String name = parts[0].trim().toLowerCase(Locale.ROOT);
+      double quality = 1;
+      for (int i = 1; i < parts.length; i++) {
+        String param = parts[i].trim().toLowerCase(Locale.ROOT);
+        if (param.startsWith("q=")) {
+          try {
+            quality = Double.parseDouble(param.substring(2).trim());
+          } catch (NumberFormatException e) {
+            quality = 0;
+          }
+        }
+      }
+      if (name.equals("gzip") || name.equals("x-gzip")) {
+        gzipQuality = quality;
+      } else if (name.equals("*")) {
+        anyQuality = quality;
+      }
+    }
+    Double quality = gzipQuality != null ? gzipQuality : anyQuality;
+    return quality != null && quality > 0;
+  }
+
+  /**
+   * Get one of the symbols available on IEX.
+   *
+   * @param symbol the symbol to get, in any case.
+   * @return the symbol.
+   */
+  @GetMapping(value = "${mvc.iex.getSymbolPath}", produces = {MediaType.APPLICATION_JSON_VALUE})
+  public IexSymbol getSymbol(@RequestParam(value = "symbol") final String symbol) {
+    return iexService.getAllSymbols().find(symbol.toUpperCase(Locale.ROOT))
+        .orElseThrow(() -> new EntityNotFoundException(IexSymbol.class, symbol));
+  }
+
+  /**
+   * Get the symbols available on IEX that start with the given prefix, in order.
+   *
+   * @param prefix the start of the symbols to get, in any case.
+   * @param limit the most symbols to get.
+   * @return the symbols starting with the prefix.
+   */
+  @GetMapping(value = "${mvc.iex.searchSymbolsPath}", produces = {
+      MediaType.APPLICATION_JSON_VALUE})
+  public List<IexSymbol> searchSymbols(@RequestParam(value = "prefix") final String prefix,
+      @RequestParam(value = "limit", defaultValue = "20")
+      @Positive(message = "Limit must be greater than 0") final int limit) {
+    return iexService.getAllSymbols().findByPrefix(prefix.toUpperCase(Locale.ROOT), limit);
   }
 
   /**
@@ -61,15 +162,88 @@ public class IexRestController {
    * @param symbol stock symbol to get historical data for.
    * @param range specified time range of the request.
    * @param date specified date in the format YYYYMMDD.
-   * @return a list of historical price data for the given symbol, range, and date.
+   * @return the historical price data for the given symbol, range, and date, written as a JSON
+   *     array of bars. The request is completed asynchronously, once the prices are fetched, so
+   *     no request thread waits on IEX.
    */
   @GetMapping(value = "${mvc.iex.getHistoricalPricePath}", produces = {
       MediaType.APPLICATION_JSON_VALUE})
-  public List<IexHistoricalPrice> getHistoricalPrice(
+  public CompletableFuture<IexHistoricalPriceSeries> getHistoricalPrice(
       @RequestParam(value = "symbol") final String symbol,
       @RequestParam(value = "range", required = false) final String range,
       @RequestParam(value = "date", required = false) final String date) {
-    return iexService.getHistoricalPrice(symbol, range, date);
+    return iexService.getHistoricalPriceAsync(symbol, range, date);
+  }
+
+  /**
+   * Get the historical price data of each of the given stock symbols, fetched concurrently and
+   * streamed back as newline-delimited JSON, a line per symbol in the order they're fetched. A
+   * symbol whose prices couldn't be fetched gets a line with its error instead; the other symbols
+   * are unaffected.
+   *
+   * @param symbols stock symbols to get historical data for, at most
+   *     IexHistoricalPriceFanOut.MAX_SYMBOLS of them.
+   * @param range specified time range of the request.
+   * @param date specified date in the format YYYYMMDD.
+   * @return the historical price data of each symbol, as each is fetched.
+   */
+  @GetMapping(value = "${mvc.iex.getHistoricalPricesPath}", produces = {
+      MediaType.APPLICATION_STREAM_JSON_VALUE})
+  public ResponseEntity<ResponseBodyEmitter> getHistoricalPrices(
+      @RequestParam(value = "symbols") @Size(max = IexHistoricalPriceFanOut.MAX_SYMBOLS,
+          message = "At most " + IexHistoricalPriceFanOut.MAX_SYMBOLS + " symbols can be fetched")
+      final List<String> symbols,
+      @RequestParam(value = "range", required = false) final String range,
+      @RequestParam(value = "date", required = false) final String date) {
+    // Long enough for every symbol to be fetched or given up on, rather than the default
+    ResponseBodyEmitter emitter = new ResponseBodyEmitter(
+        iexHistoricalPriceFanOut.maxDuration(symbols.size()).toMillis());
+    iexHistoricalPriceFanOut.fetch(symbols, range, date, result -> send(emitter, result))
+        .whenComplete((done, failure) -> {
+          if (failure == null) {
+            emitter.complete();
+          } else {
+            emitter.completeWithError(failure);
+          }
+        });
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_STREAM_JSON).body(emitter);
+  }
+
+  private void send(final ResponseBodyEmitter emitter, final IexHistoricalPriceResult result) {
+    try {
+      // One write per line, so a line is never split by another symbol's
+      ByteArrayOutputStream line = new ByteArrayOutputStream();
+      objectMapper.writeValue(line, result);
+      line.write('\n');
+      emitter.send(line.toByteArray(), MediaType.APPLICATION_STREAM_JSON);
+    } catch (IOException | IllegalStateException e) {
+      // The client has gone, or the request timed out; the emitter is completed regardless
+      log.debug("Couldn't send the historical prices of {}", result.getSymbol(), e);
+    }
+  }
+
+  /**
+   * Get analytics of the daily prices of each of the given symbols over the given range: returns,
+   * volatility, VWAP and moving averages of the closing price. Computed server-side, so only the
+   * aggregates are sent rather than every bar.
+   *
+   * @param symbols the symbols to analyze, at most IexAnalyticsService.MAX_SYMBOLS of them.
+   * @param range the range of daily prices to analyze; a month if not given.
+   * @param windows the numbers of bars to compute moving averages over.
+   * @return the analytics of each symbol, in the order given. The request is completed
+   *     asynchronously, once every symbol is analyzed, so no request thread waits on IEX.
+   */
+  @GetMapping(value = "${mvc.iex.getPriceAnalyticsPath}", produces = {
+      MediaType.APPLICATION_JSON_VALUE})
+  public CompletableFuture<List<IexPriceAnalytics>> getPriceAnalytics(
+      @RequestParam(value = "symbols") @Size(max = IexAnalyticsService.MAX_SYMBOLS,
+          message = "At most " + IexAnalyticsService.MAX_SYMBOLS + " symbols can be analyzed")
+      final List<String> symbols,
+      @RequestParam(value = "range", required = false) final String range,
+      @RequestParam(value = "windows", defaultValue = "20,50")
+      final List<@Positive(message = "Windows must be greater than 0") Integer> windows) {
+    return iexAnalyticsService.analyze(symbols, range,
+        windows.stream().mapToInt(Integer::intValue).toArray());
   }
 
 }
@@ -0,0 +1,98 @@
+package org.galatea.starter.entrypoint;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.TextMessage;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessage;
+import org.galatea.starter.service.SettlementService;
+import org.galatea.starter.utils.translation.ITranslator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jms.support.converter.MessageConversionException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Batching alternative to SettlementJmsListener, enabled with jms.batch.enabled=true. Every
+ * agreement in a batch of messages is settled with a single call to the settlement service, and
+ * so a single bulk save.
+ *
+ * <p>The listener containers that deliver the batches are set up in JmsConfig.
+ */
+@RequiredArgsConstructor
+@Slf4j
+@Component
+@ConditionalOnProperty(value = "jms.batch.enabled", havingValue = "true")
+public class SettlementJmsBatchListener {
+
+  @NonNull
+  protected SettlementService settlementService;
+
+  @NonNull
+  protected ITranslator<byte[], TradeAgreement> tradeAgreementProtoTranslator;
+
+  @NonNull
+  protected ITranslator<TradeAgreementMessage, TradeAgreement> tradeAgreementMessageTranslator;
+
+  @NonNull
+  protected ObjectMapper objectMapper;
+
+  /**
+   * Spawns missions for a batch of TradeAgreements pulled off the jms queue in JSON format.
+   */
+  public void settleAgreementsJson(final List<Message> messages) throws JMSException {
+    List<TradeAgreement> agreements = new ArrayList<>(messages.size());
+    for (Message message : messages) {
+      TradeAgreementMessage agreementMessage = readJson(message);
+      agreements.add(tradeAgreementMessageTranslator.translate(agreementMessage));
+    }
+    settle(agreements);
+  }
+
+  /**
+   * Spawns missions for a batch of TradeAgreements pulled off the jms queue in protobuf format.
+   */
+  public void settleAgreementsProto(final List<Message> messages) throws JMSException {
+    List<TradeAgreement> agreements = new ArrayList<>(messages.size());
+    for (Message message : messages) {
+      agreements.add(tradeAgreementProtoTranslator.translate(readBytes(message)));
+    }
+    settle(agreements);
+  }
+
+  private void settle(final List<TradeAgreement> agreements) {
+    log.info("Handling {} agreement(s)", agreements.size());
+    Set<Long> missionIds = settlementService.spawnMissions(agreements);
+    log.info("Created missions {}", missionIds);
+  }
+
+  private TradeAgreementMessage readJson(final Message message) throws JMSException {
+    if (!(message instanceof TextMessage)) {
+      throw new MessageConversionException("Expected a TextMessage but got " + message);
+    }
+    try {
+      return objectMapper.readValue(((TextMessage) message).getText(),
+          TradeAgreementMessage.class);
+    } catch (IOException e) {
+      throw new MessageConversionException("Could not read agreement JSON", e);
+    }
+  }
+
+  private static byte[] readBytes(final Message message) throws JMSException {
+    if (!(message instanceof BytesMessage)) {
+      throw new MessageConversionException("Expected a BytesMessage but got " + message);
+    }
+    BytesMessage bytesMessage = (BytesMessage) message;
+    byte[] bytes = new byte[(int) bytesMessage.getBodyLength()];
+    bytesMessage.readBytes(bytes);
+    return bytes;
+  }
+}
@@ -9,12 +9,15 @@ import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessage;
 import org.galatea.starter.service.SettlementService;
 import org.galatea.starter.utils.translation.ITranslator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.jms.annotation.JmsListener;
 import org.springframework.stereotype.Component;
 
 @RequiredArgsConstructor
 @Slf4j
 @Component
+// See SettlementJmsBatchListener for the batching alternative
+@ConditionalOnProperty(value = "jms.batch.enabled", havingValue = "false", matchIfMissing = true)
 public class SettlementJmsListener {
 
   @NonNull
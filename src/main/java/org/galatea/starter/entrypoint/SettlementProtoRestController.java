@@ -5,15 +5,15 @@ import java.util.Optional;
 import java.util.Set;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
-import net.sf.aspect4log.Log;
-import net.sf.aspect4log.Log.Level;
 import org.galatea.starter.domain.SettlementMission;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessage;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementResponseProtoMessage;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessages;
 import org.galatea.starter.service.SettlementService;
+import org.galatea.starter.utils.trace.Traced;
 import org.galatea.starter.utils.translation.ITranslator;
+import org.slf4j.event.Level;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -30,7 +30,7 @@ import org.springframework.web.bind.annotation.RestController;
  * protobuf messages.
  */
 @Slf4j
-@Log(enterLevel = Level.INFO, exitLevel = Level.INFO)
+@Traced(level = Level.INFO)
 @Validated
 @RestController
 public class SettlementProtoRestController extends BaseSettlementRestController {
@@ -5,20 +5,23 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
+import javax.validation.constraints.Positive;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
-import net.sf.aspect4log.Log;
-import net.sf.aspect4log.Log.Level;
 import org.galatea.starter.MvcConfig;
 import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.SettlementMissionFilter;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
 import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionList;
 import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionMessage;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionStream;
 import org.galatea.starter.entrypoint.messagecontracts.SettlementResponseMessage;
 import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessages;
 import org.galatea.starter.service.SettlementService;
+import org.galatea.starter.utils.trace.Traced;
 import org.galatea.starter.utils.translation.ITranslator;
+import org.slf4j.event.Level;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.http.MediaType;
@@ -37,7 +40,7 @@ import org.springframework.web.bind.annotation.RestController;
  * Missions from TradeAgreements and query them back out.
  */
 @Slf4j
-@Log(enterLevel = Level.INFO, exitLevel = Level.INFO)
+@Traced(level = Level.INFO)
 @Validated
 @RestController
 public class SettlementRestController extends BaseSettlementRestController {
@@ -145,6 +148,45 @@ public class SettlementRestController extends BaseSettlementRestController {
     return new SettlementMissionList(missions);
   }
 
+  /**
+   * List the missions matching the given criteria in ascending id order, streaming them from the
+   * database into the response as they are read.
+   *
+   * <p>To page through a large listing, pass the id of the last mission received as afterId on
+   * the next request. Omitting limit lists every matching mission in a single response.
+   */
+  // @GetMapping to link http GET requests to this method
+  // Each @RequestParam is optional, e.g. http://url?depot=DTC&afterId=100&limit=1000
+  @GetMapping(value = "${mvc.listMissionsPath}", produces = {
+      MediaType.APPLICATION_JSON_VALUE,
+      MvcConfig.TEXT_CSV_VALUE,
+      MvcConfig.APPLICATION_EXCEL_VALUE,
+      MvcConfig.APPLICATION_PROTOBUF_VALUE})
+  public SettlementMissionStream listMissions(
+      @RequestParam(value = "depot", required = false) final String depot,
+      @RequestParam(value = "instrument", required = false) final String instrument,
+      @RequestParam(value = "externalParty", required = false) final String externalParty,
+      @RequestParam(value = "direction", required = false) final String direction,
+      @RequestParam(value = "afterId", required = false) final Long afterId,
+      @RequestParam(value = "limit", required = false)
+      @Positive(message = "Limit must be greater than 0") final Integer limit,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    SettlementMissionFilter filter = SettlementMissionFilter.builder()
+        .depot(depot)
+        .instrument(instrument)
+        .externalParty(externalParty)
+        .direction(direction)
+        .afterId(afterId)
+        .limit(limit)
+        .build();
+
+    return listMissionsInternal(filter);
+  }
+
   /**
    * Update an existing mission given an ID.
    */
@@ -0,0 +1,40 @@
+package org.galatea.starter.entrypoint.messagecontracts;
+
+import java.io.IOException;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.galatea.starter.service.IMissionStreamHandler;
+
+/**
+ * A listing of settlement missions that is read from the database only when it is written to the
+ * HTTP response, one mission at a time. See SettlementMissionStreamConverter.
+ *
+ * <p>Like SettlementMissionList, this wrapper lets an HttpMessageConverter tell from the return
+ * type of a controller method what it is being asked to write. Unlike SettlementMissionList, it
+ * never holds the missions themselves, so it can't be serialized by the standard converters.
+ */
+@RequiredArgsConstructor
+public class SettlementMissionStream {
+
+  /**
+   * Opens a stream of missions and passes it to a handler.
+   */
+  @FunctionalInterface
+  public interface ISource {
+
+    /**
+     * Pass the missions to the given handler, releasing any resources once it returns.
+     */
+    void open(IMissionStreamHandler handler) throws IOException;
+  }
+
+  @NonNull
+  private final ISource source;
+
+  /**
+   * Read the missions and pass them to the given handler.
+   */
+  public void consume(final IMissionStreamHandler handler) throws IOException {
+    source.open(handler);
+  }
+}
@@ -0,0 +1,17 @@
+package org.galatea.starter.service;
+
+import java.io.IOException;
+import java.util.stream.Stream;
+import org.galatea.starter.domain.SettlementMission;
+
+/**
+ * Consumes a stream of settlement missions while the transaction that reads them is open.
+ */
+@FunctionalInterface
+public interface IMissionStreamHandler {
+
+  /**
+   * Consume the given missions. The stream is only valid until this method returns.
+   */
+  void handle(Stream<SettlementMission> missions) throws IOException;
+}
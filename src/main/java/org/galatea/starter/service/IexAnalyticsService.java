@@ -0,0 +1,112 @@
+package org.galatea.starter.service;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.IexHistoricalPriceSeries;
+import org.galatea.starter.domain.IexPriceAnalytics;
+import org.galatea.starter.utils.bulkhead.Bulkhead;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Computes analytics of historical prices server-side, for many symbols at once.
+ *
+ * <p>Each symbol's prices come from IexService.getHistoricalPriceAsync(), so through its caches and
+ * the local store of daily prices, without a thread waiting on IEX. A request fetches up to
+ * max-concurrent-symbols of its symbols at a time, through a Bulkhead of its own, and gives up on
+ * any one symbol-timeout-ms after it starts. As each symbol's prices arrive they're analyzed on a
+ * fork-join pool of the service's own, which only does that CPU-bound work, rather than on the
+ * common pool, which parallel streams elsewhere share.
+ */
+@Slf4j
+@Service
+public class IexAnalyticsService implements DisposableBean {
+
+  /**
+   * The most symbols analyzed in one call.
+   */
+  public static final int MAX_SYMBOLS = 100;
+
+  private final IexService iexService;
+
+  private final int maxConcurrentSymbols;
+
+  private final long symbolTimeoutMillis;
+
+  private final ForkJoinPool pool;
+
+  /**
+   * Construct an IexAnalyticsService.
+   *
+   * @param maxConcurrentSymbols the most symbols of one request fetched at a time
+   * @param symbolTimeoutMillis how long one symbol's prices may take to fetch
+   * @param parallelism the most symbols analyzed at a time, once fetched
+   */
+  public IexAnalyticsService(final IexService iexService,
+      @Value("${iex.analytics.max-concurrent-symbols}") final int maxConcurrentSymbols,
+      @Value("${iex.analytics.symbol-timeout-ms}") final long symbolTimeoutMillis,
+      @Value("${iex.analytics.parallelism}") final int parallelism) {
+    this.iexService = iexService;
+    this.maxConcurrentSymbols = maxConcurrentSymbols;
+    this.symbolTimeoutMillis = symbolTimeoutMillis;
+    this.pool = new ForkJoinPool(parallelism);
+  }
+
+  /**
+   * Compute the analytics of each of the given symbols' daily prices over the given range.
+   *
+   * @param symbols the symbols to analyze, at most MAX_SYMBOLS of them
+   * @param range the range of daily prices to analyze, as for IexService.getHistoricalPrice()
+   * @param windows the numbers of bars to compute moving averages over
+   * @return each symbol's analytics, in the order the symbols were given, once every symbol is
+   *     analyzed or given up on. A symbol whose prices couldn't be fetched has only its error set
+   * @throws IllegalArgumentException if more than MAX_SYMBOLS symbols are given
+   */
+  public CompletableFuture<List<IexPriceAnalytics>> analyze(final List<String> symbols,
+      final String range, final int[] windows) {
+    if (symbols.size() > MAX_SYMBOLS) {
+      throw new IllegalArgumentException("At most " + MAX_SYMBOLS + " symbols can be analyzed");
+    }
+    List<String> distinctSymbols = symbols.stream().filter(symbol -> !symbol.isEmpty())
+        .map(symbol -> symbol.toUpperCase(Locale.ROOT)).distinct().collect(Collectors.toList());
+    // Every symbol of the request fits in its queue, so none is rejected
+    Bulkhead bulkhead = new Bulkhead("iex.analytics", maxConcurrentSymbols,
+        Math.max(distinctSymbols.size(), 1));
+    List<CompletableFuture<IexPriceAnalytics>> analytics = distinctSymbols.stream()
+        .map(symbol -> bulkhead.submit(() -> iexService.getHistoricalPriceAsync(symbol, range, null)
+            .orTimeout(symbolTimeoutMillis, TimeUnit.MILLISECONDS))
+            .handleAsync((prices, failure) -> analyze(symbol, prices, failure, windows), pool))
+        .collect(Collectors.toList());
+    return CompletableFuture.allOf(analytics.toArray(new CompletableFuture<?>[0]))
+        .thenApply(done -> analytics.stream().map(CompletableFuture::join)
+            .collect(Collectors.toList()));
+  }
+
+  private IexPriceAnalytics analyze(final String symbol, final IexHistoricalPriceSeries prices,
+      final Throwable failure, final int[] windows) {
+    if (failure != null) {
+      Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+          ? failure.getCause() : failure;
+      String error = cause instanceof TimeoutException
+          ? "Timed out after " + symbolTimeoutMillis + "ms" : IexUpstreamGuards.describe(cause);
+      log.warn("Couldn't fetch the historical prices of {} to analyze", symbol, cause);
+      return IexPriceAnalytics.builder().symbol(symbol).error(error).build();
+    }
+    IexPriceAnalytics analytics = IexPriceAnalyzer.analyze(prices, windows);
+    return analytics.getSymbol() != null ? analytics
+        : IexPriceAnalytics.builder().symbol(symbol).bars(analytics.getBars()).build();
+  }
+
+  @Override
+  public void destroy() {
+    pool.shutdown();
+  }
+}
@@ -0,0 +1,202 @@
+package org.galatea.starter.service;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.IexHistoricalPriceSeries;
+import org.galatea.starter.utils.bulkhead.Bulkhead;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+/**
+ * A non-blocking client of IEX Cloud's historical prices: each call returns straight away, with a
+ * CompletableFuture of what IEX sends back, so no thread waits on IEX while it answers.
+ *
+ * <p>The symbols and last traded prices are still fetched with the blocking IexClient. The symbol
+ * universe is only waited on by the first request for it, and last traded prices are fetched by
+ * the requests themselves, in the batches IexLastTradedPriceCollapser shares between them.
+ *
+ * <p>Calls go over one java.net.http.HttpClient, which keeps its connections alive and pooled, and
+ * speaks HTTP/2 to hosts that offer it, multiplexing calls over one connection. Each call has a
+ * timeout, and the calls go through a Bulkhead, so a slow IEX can only hold up a bounded number
+ * of calls; beyond that they fail straight away. Responses are read on a small pool of the
+ * client's own.
+ *
+ * <p>A response other than a 2xx fails the call with an HttpClientErrorException or an
+ * HttpServerErrorException, as a RestTemplate's would.
+ */
+@Slf4j
+@Component
+public class IexAsyncClient implements MeterBinder, DisposableBean {
+
+  private final ObjectMapper objectMapper;
+
+  private final String iexCloudPath;
+
+  private final String iexApiToken;
+
+  private final Duration requestTimeout;
+
+  private final ExecutorService executor;
+
+  private final HttpClient httpClient;
+
+  private final Bulkhead bulkhead;
+
+  /**
+   * Construct an IexAsyncClient.
+   *
+   * @param objectMapper reads IEX's responses
+   * @param connectTimeoutMillis how long a new connection to IEX may take to open
+   * @param requestTimeoutMillis how long IEX may take to answer a call
+   * @param maxConcurrentPerHost the most calls in flight to IEX at a time
+   * @param maxQueuedPerHost the most calls waiting to be made to IEX
+   * @param threads the number of threads responses are read on
+   */
+  public IexAsyncClient(final ObjectMapper objectMapper,
+      @Value("${spring.rest.iexCloudPath}") final String iexCloudPath,
+      @Value("${spring.rest.iexApiToken}") final String iexApiToken,
+      @Value("${iex.http.connect-timeout-ms}") final long connectTimeoutMillis,
+      @Value("${iex.http.request-timeout-ms}") final long requestTimeoutMillis,
+      @Value("${iex.http.max-concurrent-per-host}") final int maxConcurrentPerHost,
+      @Value("${iex.http.max-queued-per-host}") final int maxQueuedPerHost,
+      @Value("${iex.http.threads}") final int threads) {
+    this.objectMapper = objectMapper;
+    this.iexCloudPath = withoutTrailingSlash(iexCloudPath);
+    this.iexApiToken = iexApiToken;
+    this.requestTimeout = Duration.ofMillis(requestTimeoutMillis);
+    this.executor = Executors.newFixedThreadPool(threads, daemonThreads());
+    this.httpClient = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_2)
+        .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+        .executor(executor)
+        .build();
+    this.bulkhead = new Bulkhead("iex." + URI.create(this.iexCloudPath).getAuthority(),
+        maxConcurrentPerHost, maxQueuedPerHost);
+  }
+
+  @Override
+  public void bindTo(final MeterRegistry registry) {
+    bulkhead.bindTo(registry);
+  }
+
+  /**
+   * Get the prices of the given stock over the given range. See
+   * https://iexcloud.io/docs/api/#historical-prices.
+   */
+  public CompletableFuture<IexHistoricalPriceSeries> getHistoricalPriceByRange(
+      final String symbol, final String range) {
+    return getChart(symbol, range);
+  }
+
+  /**
+   * Get the prices of the given stock on the given date, as YYYYMMDD. See
+   * https://iexcloud.io/docs/api/#historical-prices.
+   */
+  public CompletableFuture<IexHistoricalPriceSeries> getHistoricalPriceByDate(
+      final String symbol, final String date) {
+    return getChart(symbol, date);
+  }
+
+  /**
+   * Get the prices of the given stock over the given range and date. See
+   * https://iexcloud.io/docs/api/#historical-prices.
+   */
+  public CompletableFuture<IexHistoricalPriceSeries> getHistoricalPriceByRangeDate(
+      final String symbol, final String range, final String date) {
+    return getChart(symbol, range, date);
+  }
+
+  @Override
+  public void destroy() {
+    executor.shutdown();
+  }
+
+  private CompletableFuture<IexHistoricalPriceSeries> getChart(final String symbol,
+      final String... rangeOrDate) {
+    StringBuilder url = new StringBuilder(iexCloudPath).append("/stock/").append(encode(symbol))
+        .append("/chart");
+    for (String part : rangeOrDate) {
+      url.append('/').append(encode(part));
+    }
+    url.append("?token=").append(encode(iexApiToken));
+    return get(url.toString(), IexHistoricalPriceSeries.class);
+  }
+
+  private <T> CompletableFuture<T> get(final String url, final Class<T> type) {
+    return get(url, objectMapper.getTypeFactory().constructType(type));
+  }
+
+  private <T> CompletableFuture<T> get(final String url, final JavaType type) {
+    URI uri = URI.create(url);
+    HttpRequest request = HttpRequest.newBuilder(uri)
+        .timeout(requestTimeout)
+        .header(HttpHeaders.ACCEPT, "application/json")
+        .GET()
+        .build();
+    return bulkhead.submit(() -> httpClient.sendAsync(request, BodyHandlers.ofByteArray()))
+        .thenApply(response -> read(uri, response, type));
+  }
+
+  private <T> T read(final URI uri, final HttpResponse<byte[]> response, final JavaType type) {
+    HttpStatus status = HttpStatus.resolve(response.statusCode());
+    if (status == null || !status.is2xxSuccessful()) {
+      // Only the path is logged, since the query has the token in it
+      log.debug("IEX answered {} with {}", uri.getPath(), response.statusCode());
+      HttpHeaders headers = new HttpHeaders();
+      response.headers().map().forEach(headers::addAll);
+      if (status != null && status.is4xxClientError()) {
+        throw HttpClientErrorException.create(status, status.getReasonPhrase(), headers,
+            response.body(), StandardCharsets.UTF_8);
+      }
+      throw HttpServerErrorException.create(
+          status == null ? HttpStatus.INTERNAL_SERVER_ERROR : status,
+          status == null ? String.valueOf(response.statusCode()) : status.getReasonPhrase(),
+          headers, response.body(), StandardCharsets.UTF_8);
+    }
+    try {
+      return objectMapper.readValue(response.body(), type);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Couldn't read IEX's answer to " + uri.getPath(), e);
+    }
+  }
+
+  private static String encode(final String value) {
+    return URLEncoder.encode(value, StandardCharsets.UTF_8);
+  }
+
+  private static String withoutTrailingSlash(final String path) {
+    return path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+  }
+
+  private static ThreadFactory daemonThreads() {
+    AtomicInteger count = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, "iex-http-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+}
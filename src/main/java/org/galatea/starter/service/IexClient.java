@@ -2,7 +2,7 @@ package org.galatea.starter.service;
 
 import java.util.List;
 import org.galatea.starter.domain.IexLastTradedPrice;
-import org.galatea.starter.domain.IexSymbol;
+import org.galatea.starter.domain.IexSymbolUniverse;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -18,10 +18,10 @@ public interface IexClient {
    * Get a list of all stocks supported by IEX. See https://iextrading.com/developer/docs/#symbols.
    * As of July 2019 this returns almost 9,000 symbols, so maybe don't call it in a loop.
    *
-   * @return a list of all of the stock symbols supported by IEX.
+   * @return all of the stock symbols supported by IEX, read straight into an index of them.
    */
   @GetMapping("/ref-data/symbols")
-  List<IexSymbol> getAllSymbols();
+  IexSymbolUniverse getAllSymbols();
 
   /**
    * Get the last traded price for each stock symbol passed in. See https://iextrading.com/developer/docs/#last.
@@ -0,0 +1,140 @@
+package org.galatea.starter.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.IexHistoricalPriceResult;
+import org.galatea.starter.domain.IexHistoricalPriceSeries;
+import org.galatea.starter.utils.bulkhead.Bulkhead;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Fetches the historical prices of many symbols at once, handing back each symbol's as soon as
+ * they're fetched, so a caller can pass them on without waiting for the slowest.
+ *
+ * <p>Each request fetches up to max-concurrent-symbols of its symbols at a time, through a
+ * Bulkhead of its own, so one request for a large portfolio can't crowd out every other request
+ * to IEX. Fetching a symbol doesn't block (see IexService.getHistoricalPriceAsync()), so it is
+ * started on whichever thread makes room for it, and given up on symbol-timeout-ms after it
+ * starts. A symbol that fails or times out is handed back with its error; the others are
+ * unaffected.
+ *
+ * <p>Results are handed over on the service's own pool, which does nothing else, rather than on
+ * whichever thread completed the fetch: one of the few IexAsyncClient shares between every call
+ * to IEX, or the one that times calls out.
+ */
+@Slf4j
+@Service
+public class IexHistoricalPriceFanOut implements DisposableBean {
+
+  /**
+   * The most symbols fetched in one call.
+   */
+  public static final int MAX_SYMBOLS = 100;
+
+  private final IexService iexService;
+
+  private final int maxConcurrentSymbols;
+
+  private final long symbolTimeoutMillis;
+
+  private final ExecutorService executor;
+
+  /**
+   * Construct an IexHistoricalPriceFanOut.
+   *
+   * @param maxConcurrentSymbols the most symbols of one request fetched at a time
+   * @param symbolTimeoutMillis how long one symbol's prices may take to fetch
+   * @param threads the number of threads results are handed over on
+   */
+  public IexHistoricalPriceFanOut(final IexService iexService,
+      @Value("${iex.historical-prices.max-concurrent-symbols}") final int maxConcurrentSymbols,
+      @Value("${iex.historical-prices.symbol-timeout-ms}") final long symbolTimeoutMillis,
+      @Value("${iex.historical-prices.threads}") final int threads) {
+    this.iexService = iexService;
+    this.maxConcurrentSymbols = maxConcurrentSymbols;
+    this.symbolTimeoutMillis = symbolTimeoutMillis;
+    this.executor = Executors.newFixedThreadPool(threads,
+        new CustomizableThreadFactory("iex-historical-prices-hand-over-"));
+  }
+
+  /**
+   * Fetch the historical prices of each of the given symbols, as IexService.getHistoricalPrice()
+   * does, handing each symbol's result to the given consumer once it's fetched.
+   *
+   * @param symbols the symbols to fetch prices of, in any case, at most MAX_SYMBOLS of them.
+   *     Repeats are fetched once
+   * @param range the range of prices to fetch, or null
+   * @param date the date to fetch prices of, as YYYYMMDD, or null
+   * @param onResult called with each symbol's result, in the order they complete, one at a time
+   * @return completes once every symbol's result has been handed over
+   * @throws IllegalArgumentException if more than MAX_SYMBOLS symbols are given
+   */
+  public CompletableFuture<Void> fetch(final List<String> symbols, final String range,
+      final String date, final Consumer<IexHistoricalPriceResult> onResult) {
+    if (symbols.size() > MAX_SYMBOLS) {
+      throw new IllegalArgumentException("At most " + MAX_SYMBOLS + " symbols can be fetched");
+    }
+    List<String> distinctSymbols = symbols.stream().filter(symbol -> !symbol.isEmpty())
+        .map(symbol -> symbol.toUpperCase(Locale.ROOT)).distinct().collect(Collectors.toList());
+    // Every symbol of the request fits in its queue, so none is rejected
+    Bulkhead bulkhead = new Bulkhead("iex.historical-prices", maxConcurrentSymbols,
+        Math.max(distinctSymbols.size(), 1));
+    Object handOver = new Object();
+    CompletableFuture<?>[] results = distinctSymbols.stream()
+        .map(symbol -> bulkhead.submit(() -> fetchSymbol(symbol, range, date))
+            .handle((prices, failure) -> result(symbol, prices, failure))
+            .thenAcceptAsync(result -> {
+              synchronized (handOver) {
+                onResult.accept(result);
+              }
+            }, executor))
+        .toArray(CompletableFuture[]::new);
+    return CompletableFuture.allOf(results);
+  }
+
+  /**
+   * The longest fetching the given number of symbols can take: a symbol-timeout-ms for each of
+   * the rounds of max-concurrent-symbols they're fetched in, and one more to hand the results over.
+   */
+  public Duration maxDuration(final int symbolCount) {
+    long rounds = (symbolCount + maxConcurrentSymbols - 1) / maxConcurrentSymbols;
+    return Duration.ofMillis((rounds + 1) * symbolTimeoutMillis);
+  }
+
+  @Override
+  public void destroy() {
+    executor.shutdown();
+  }
+
+  private CompletableFuture<IexHistoricalPriceSeries> fetchSymbol(final String symbol,
+      final String range, final String date) {
+    return iexService.getHistoricalPriceAsync(symbol, range, date)
+        .orTimeout(symbolTimeoutMillis, TimeUnit.MILLISECONDS);
+  }
+
+  private IexHistoricalPriceResult result(final String symbol,
+      final IexHistoricalPriceSeries prices, final Throwable failure) {
+    if (failure == null) {
+      return IexHistoricalPriceResult.builder().symbol(symbol).prices(prices).build();
+    }
+    Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+        ? failure.getCause() : failure;
+    String error = cause instanceof TimeoutException
+        ? "Timed out after " + symbolTimeoutMillis + "ms" : IexUpstreamGuards.describe(cause);
+    log.warn("Couldn't fetch the historical prices of {}", symbol, cause);
+    return IexHistoricalPriceResult.builder().symbol(symbol).error(error).build();
+  }
+}
@@ -0,0 +1,360 @@
+package org.galatea.starter.service;
+
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.IexDailyBar;
+import org.galatea.starter.domain.IexHistoricalPriceSeries;
+import org.galatea.starter.domain.IexPriceHistory;
+import org.galatea.starter.domain.rpsy.IIexDailyBarRpsy;
+import org.galatea.starter.domain.rpsy.IIexPriceHistoryRpsy;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * A local store of the daily prices IEX has given us, so that asking for a range of them again
+ * reads them from the database instead of downloading and parsing years of bars each time.
+ *
+ * <p>The first request for a symbol's range fetches the whole range from IEX. After that, the
+ * store is brought up to date at most once per market close, by fetching the smallest range that
+ * reaches back to the latest bar held and keeping only the days after it. IEX publishes a day's
+ * bar a while after the close, so until the store holds it, it is fetched again at most every few
+ * minutes, for up to half a day after the close; a close with no bar by then, such as a holiday's,
+ * is taken to have none. A request for a longer
+ * range than is held fetches that range once, keeping only the days before the oldest bar held.
+ * If IEX can't be reached to bring a symbol up to date, the bars already held are served. Calls
+ * to IEX go through the historical prices UpstreamGuard.
+ *
+ * <p>IEX is called with the IexAsyncClient, so no thread waits on it. The store's own work, reading
+ * and writing the database, is done on a small pool of its own, one request for a symbol after
+ * another.
+ *
+ * <p>A range is the trailing window ending at the latest bar held, which is the latest close IEX
+ * has a bar for.
+ */
+@Slf4j
+@Service
+public class IexHistoricalPriceStore implements DisposableBean {
+
+  /**
+   * IEX trades on New York time, so that's where its days close.
+   */
+  private static final ZoneId MARKET_ZONE = ZoneId.of("America/New_York");
+
+  private static final LocalTime MARKET_CLOSE = LocalTime.of(16, 0);
+
+  // How long after a close IEX may still publish its bar
+  private static final Duration PUBLISH_GRACE = Duration.ofHours(12);
+
+  // How long to wait before asking IEX again for a bar it hasn't published yet
+  private static final Duration CATCH_UP_RETRY = Duration.ofMinutes(5);
+
+  private final IexAsyncClient iexAsyncClient;
+
+  private final IexUpstreamGuards guards;
+
+  private final IIexDailyBarRpsy barRpsy;
+
+  private final IIexPriceHistoryRpsy historyRpsy;
+
+  private final ExecutorService executor;
+
+  private final Clock clock;
+
+  // The latest request to bring each symbol up to date, which the next one waits for, so that
+  // only one at a time does. Removed once done, if no other request has waited for it
+  private final Map<String, CompletableFuture<Void>> syncs = new ConcurrentHashMap<>();
+
+  // When to next ask IEX for the last close's bar, for the symbols it hadn't published it for
+  private final Map<String, Instant> catchUpRetryAt = new ConcurrentHashMap<>();
+
+  /**
+   * Construct an IexHistoricalPriceStore that fetches from IEX with the given client.
+   *
+   * @param threads the number of threads the store reads and writes the database on
+   */
+  @Autowired
+  public IexHistoricalPriceStore(final IexAsyncClient iexAsyncClient,
+      final IexUpstreamGuards guards, final IIexDailyBarRpsy barRpsy,
+      final IIexPriceHistoryRpsy historyRpsy,
+      @Value("${iex.price-store.threads}") final int threads) {
+    this(iexAsyncClient, guards, barRpsy, historyRpsy,
+        Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("iex-price-store-")),
+        Clock.system(MARKET_ZONE));
+  }
+
+  IexHistoricalPriceStore(final IexAsyncClient iexAsyncClient, final IexUpstreamGuards guards,
+      final IIexDailyBarRpsy barRpsy, final IIexPriceHistoryRpsy historyRpsy,
+      final ExecutorService executor, final Clock clock) {
+    this.iexAsyncClient = iexAsyncClient;
+    this.guards = guards;
+    this.barRpsy = barRpsy;
+    this.historyRpsy = historyRpsy;
+    this.executor = executor;
+    this.clock = clock;
+  }
+
+  /**
+   * Get the daily prices of the given symbol over the given range, from the store, after bringing
+   * the store up to date with IEX if need be.
+   *
+   * @param symbol the upper case symbol to get prices for
+   * @param range the range of days to get prices for
+   * @return the symbol's prices over the range, oldest first, once the store is up to date
+   */
+  public CompletableFuture<IexHistoricalPriceSeries> getDailyPrices(final String symbol,
+      final DailyRange range) {
+    CompletableFuture<Void> done = new CompletableFuture<>();
+    CompletableFuture<Void> previous = syncs.put(symbol, done);
+    CompletableFuture<Void> synced = (previous == null
+        ? CompletableFuture.<Void>completedFuture(null) : previous)
+        .thenComposeAsync(ignored -> sync(symbol, range), executor);
+    synced.whenComplete((ignored, failure) -> {
+      syncs.remove(symbol, done);
+      done.complete(null);
+    });
+    return synced.thenApplyAsync(ignored -> read(symbol, range), executor);
+  }
+
+  @Override
+  public void destroy() {
+    executor.shutdown();
+  }
+
+  private IexHistoricalPriceSeries read(final String symbol, final DailyRange range) {
+    Optional<LocalDate> latest = latestDate(symbol);
+    if (!latest.isPresent()) {
+      return IexHistoricalPriceSeries.empty();
+    }
+    List<IexDailyBar> bars = range == DailyRange.MAX ? barRpsy.findBySymbolOrderByDate(symbol)
+        : barRpsy.findBySymbolAndDateGreaterThanEqualOrderByDate(symbol,
+            range.from(latest.get()));
+    IexHistoricalPriceSeries.Builder series = IexHistoricalPriceSeries.builder().symbol(symbol);
+    for (IexDailyBar bar : bars) {
+      series.add(Math.toIntExact(bar.getDate().toEpochDay()),
+          IexHistoricalPriceSeries.toScaled(bar.getOpen()),
+          IexHistoricalPriceSeries.toScaled(bar.getHigh()),
+          IexHistoricalPriceSeries.toScaled(bar.getLow()),
+          IexHistoricalPriceSeries.toScaled(bar.getClose()),
+          bar.getVolume() == null ? IexHistoricalPriceSeries.MISSING : bar.getVolume());
+    }
+    return series.build();
+  }
+
+  // Runs on the executor, as does everything that follows a fetch from IEX
+  private CompletableFuture<Void> sync(final String symbol, final DailyRange range) {
+    Instant now = clock.instant();
+    Optional<IexPriceHistory> history = historyRpsy.findById(symbol);
+    if (!history.isPresent() || !covers(history.get(), range)) {
+      log.info("Fetching {} of {} from IEX into the store", range.getIexName(), symbol);
+      return fetch(symbol, range).thenAcceptAsync(prices -> {
+        store(symbol, prices);
+        LocalDate coveredFrom = range == DailyRange.MAX ? null
+            : range.from(latestDate(symbol).orElse(LocalDate.now(clock)));
+        if (history.isPresent() && (history.get().getCoveredFrom() == null
+            || coveredFrom != null && history.get().getCoveredFrom().isBefore(coveredFrom))) {
+          coveredFrom = history.get().getCoveredFrom();
+        }
+        historyRpsy.save(IexPriceHistory.builder()
+            .symbol(symbol).coveredFrom(coveredFrom).syncedAt(syncedAt(symbol, now)).build());
+      }, executor);
+    } else if (history.get().getSyncedAt().isBefore(lastClose(now))
+        && !now.isBefore(catchUpRetryAt.getOrDefault(symbol, Instant.MIN))) {
+      return catchUp(symbol).thenRun(() -> {
+        history.get().setSyncedAt(syncedAt(symbol, now));
+        historyRpsy.save(history.get());
+      }).exceptionally(e -> {
+        log.warn("Couldn't bring the stored prices of {} up to date; serving them as they are",
+            symbol, e);
+        return null;
+      });
+    }
+    return CompletableFuture.completedFuture(null);
+  }
+
+  // Now, if the store holds the last close's bar or IEX has had its chance to publish it.
+  // Otherwise just before the last close, so that the bar is fetched again after a backoff
+  private Instant syncedAt(final String symbol, final Instant now) {
+    Instant lastClose = lastClose(now);
+    LocalDate lastCloseDate = lastClose.atZone(MARKET_ZONE).toLocalDate();
+    Optional<LocalDate> latest = latestDate(symbol);
+    if (!latest.isPresent() || !latest.get().isBefore(lastCloseDate)
+        || !now.isBefore(lastClose.plus(PUBLISH_GRACE))) {
+      catchUpRetryAt.remove(symbol);
+      return now;
+    }
+    log.debug("IEX hasn't published the {} bar of {} yet; asking again in {}", lastCloseDate,
+        symbol, CATCH_UP_RETRY);
+    catchUpRetryAt.put(symbol, now.plus(CATCH_UP_RETRY));
+    return lastClose.minusMillis(1);
+  }
+
+  // Fetch the smallest range that reaches back to the latest bar held
+  private CompletableFuture<Void> catchUp(final String symbol) {
+    LocalDate today = LocalDate.now(clock);
+    Optional<LocalDate> latest = latestDate(symbol);
+    DailyRange range = latest.map(date -> Arrays.stream(DailyRange.values())
+        .filter(candidate -> candidate != DailyRange.YEAR_TO_DATE)
+        .filter(candidate -> candidate == DailyRange.MAX
+            || !candidate.from(today).isAfter(date.plusDays(1)))
+        .findFirst().get())
+        .orElse(DailyRange.FIVE_DAYS);
+    log.debug("Fetching {} of {} from IEX to bring the store up to date", range.getIexName(),
+        symbol);
+    return fetch(symbol, range).thenAcceptAsync(prices -> store(symbol, prices), executor);
+  }
+
+  private CompletableFuture<IexHistoricalPriceSeries> fetch(final String symbol,
+      final DailyRange range) {
+    return guards.getHistoricalPrices().callAsync(
+        () -> iexAsyncClient.getHistoricalPriceByRange(symbol, range.getIexName()));
+  }
+
+  private boolean covers(final IexPriceHistory history, final DailyRange range) {
+    if (history.getCoveredFrom() == null) {
+      return true;
+    }
+    return range != DailyRange.MAX && !history.getCoveredFrom()
+        .isAfter(range.from(latestDate(history.getSymbol()).orElse(LocalDate.now(clock))));
+  }
+
+  // Insert the days not held yet: those before the oldest bar held and after the latest
+  private void store(final String symbol, final IexHistoricalPriceSeries prices) {
+    Optional<LocalDate> oldest = barRpsy.findFirstBySymbolOrderByDateAsc(symbol)
+        .map(IexDailyBar::getDate);
+    Optional<LocalDate> latest = latestDate(symbol);
+    Map<LocalDate, IexDailyBar> bars = new TreeMap<>();
+    for (int i = 0; i < prices.size(); i++) {
+      if (prices.getEpochDay(i) == IexHistoricalPriceSeries.MISSING_DATE) {
+        continue;
+      }
+      LocalDate date = LocalDate.ofEpochDay(prices.getEpochDay(i));
+      if (oldest.isPresent() && !date.isBefore(oldest.get())
+          && !date.isAfter(latest.get())) {
+        continue;
+      }
+      bars.put(date, IexDailyBar.builder()
+          .symbol(symbol)
+          .date(date)
+          .open(IexHistoricalPriceSeries.toPrice(prices.getOpen(i)))
+          .high(IexHistoricalPriceSeries.toPrice(prices.getHigh(i)))
+          .low(IexHistoricalPriceSeries.toPrice(prices.getLow(i)))
+          .close(IexHistoricalPriceSeries.toPrice(prices.getClose(i)))
+          .volume(prices.getVolume(i) == IexHistoricalPriceSeries.MISSING ? null
+              : Math.toIntExact(prices.getVolume(i)))
+          .build());
+    }
+    barRpsy.saveAll(bars.values());
+    log.debug("Stored {} new bar(s) of {}", bars.size(), symbol);
+  }
+
+  private Optional<LocalDate> latestDate(final String symbol) {
+    return barRpsy.findFirstBySymbolOrderByDateDesc(symbol).map(IexDailyBar::getDate);
+  }
+
+  // The latest weekday close at or before now. Holidays just cost the fetches that find nothing
+  // new until PUBLISH_GRACE is up
+  private static Instant lastClose(final Instant now) {
+    ZonedDateTime close = now.atZone(MARKET_ZONE).with(MARKET_CLOSE);
+    if (close.toInstant().isAfter(now)) {
+      close = close.minusDays(1);
+    }
+    while (close.getDayOfWeek() == DayOfWeek.SATURDAY
+        || close.getDayOfWeek() == DayOfWeek.SUNDAY) {
+      close = close.minusDays(1);
+    }
+    return close.toInstant();
+  }
+
+  /**
+   * The IEX ranges of daily prices, smallest first, as the window of days each covers up to a
+   * given day.
+   */
+  @RequiredArgsConstructor
+  public enum DailyRange {
+    FIVE_DAYS("5d"),
+    ONE_MONTH("1m"),
+    THREE_MONTHS("3m"),
+    SIX_MONTHS("6m"),
+    YEAR_TO_DATE("ytd"),
+    ONE_YEAR("1y"),
+    TWO_YEARS("2y"),
+    FIVE_YEARS("5y"),
+    MAX("max");
+
+    /**
+     * The range's name in IEX's API.
+     */
+    @Getter
+    private final String iexName;
+
+    /**
+     * Return the range with the given name, in any case, if it is one of daily prices.
+     */
+    public static Optional<DailyRange> forName(final String name) {
+      return Arrays.stream(values())
+          .filter(range -> range.iexName.equals(name.toLowerCase(Locale.ROOT)))
+          .findFirst();
+    }
+
+    /**
+     * Return the first day the range covers when it ends on the given day. Not defined for MAX,
+     * which covers every day.
+     */
+    public LocalDate from(final LocalDate end) {
+      switch (this) {
+        case FIVE_DAYS:
+          return minusWeekdays(end, 4);
+        case ONE_MONTH:
+          return end.minusMonths(1).plusDays(1);
+        case THREE_MONTHS:
+          return end.minusMonths(3).plusDays(1);
+        case SIX_MONTHS:
+          return end.minusMonths(6).plusDays(1);
+        case YEAR_TO_DATE:
+          return end.withDayOfYear(1);
+        case ONE_YEAR:
+          return end.minusYears(1).plusDays(1);
+        case TWO_YEARS:
+          return end.minusYears(2).plusDays(1);
+        case FIVE_YEARS:
+          return end.minusYears(5).plusDays(1);
+        default:
+          throw new UnsupportedOperationException("Max has no first day");
+      }
+    }
+
+    private static LocalDate minusWeekdays(final LocalDate end, final int weekdays) {
+      LocalDate from = end;
+      int remaining = weekdays;
+      while (remaining > 0) {
+        from = from.minusDays(1);
+        if (from.getDayOfWeek() != DayOfWeek.SATURDAY && from.getDayOfWeek() != DayOfWeek.SUNDAY) {
+          remaining--;
+        }
+      }
+      return from;
+    }
+  }
+}
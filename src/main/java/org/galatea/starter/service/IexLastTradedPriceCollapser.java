@@ -0,0 +1,47 @@
+package org.galatea.starter.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.galatea.starter.domain.IexLastTradedPrice;
+import org.galatea.starter.utils.collapse.RequestCollapser;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Collapses concurrent requests for last traded prices into shared calls to IEX's /tops/last, one
+ * per batch of symbols, so that callers asking for the same symbols at about the same time don't
+ * each make their own call.
+ *
+ * <p>Batches are tagged "iex.last.traded.price" in the collapser.* metrics. Each batch's call goes
+ * through the last traded prices UpstreamGuard, so while IEX is failing, batches fail at once.
+ */
+@Component
+public class IexLastTradedPriceCollapser extends RequestCollapser<String, IexLastTradedPrice> {
+
+  /**
+   * Construct an IexLastTradedPriceCollapser.
+   *
+   * @param iexClient makes the calls to IEX
+   * @param guards hold back the calls while IEX is failing
+   * @param maxWaitMillis how long a batch waits for more symbols before it's looked up
+   * @param maxSymbols the most symbols looked up in one call
+   */
+  public IexLastTradedPriceCollapser(final IexClient iexClient,
+      final IexUpstreamGuards guards,
+      @Value("${iex.last-traded-price.max-wait-ms}") final long maxWaitMillis,
+      @Value("${iex.last-traded-price.max-symbols}") final int maxSymbols) {
+    super("iex.last.traded.price",
+        symbols -> guards.getLastTradedPrices().call(() -> lookUp(iexClient, symbols)),
+        Duration.ofMillis(maxWaitMillis), maxSymbols);
+  }
+
+  private static Map<String, IexLastTradedPrice> lookUp(final IexClient iexClient,
+      final Set<String> symbols) {
+    return iexClient.getLastTradedPriceForSymbols(symbols.toArray(new String[0])).stream()
+        .collect(Collectors.toMap(IexLastTradedPrice::getSymbol, Function.identity(),
+            (first, second) -> first));
+  }
+}
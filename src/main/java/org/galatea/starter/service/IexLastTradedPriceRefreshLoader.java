@@ -0,0 +1,38 @@
+package org.galatea.starter.service;
+
+import java.util.Collections;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.IexLastTradedPrice;
+import org.galatea.starter.utils.cache.IRefreshAheadLoader;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reloads entries of the last traded prices cache in the background once they are stale, when
+ * Caffeine is the cache provider and the cache's spec sets refreshAfterWrite. Readers are handed
+ * the stale price in the meantime.
+ *
+ * <p>Reloads go through the IexLastTradedPriceCollapser, so prices that go stale together are
+ * fetched from IEX together.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Component
+public class IexLastTradedPriceRefreshLoader implements IRefreshAheadLoader {
+
+  @NonNull
+  private final IexLastTradedPriceCollapser lastTradedPriceCollapser;
+
+  @Override
+  public String getCacheName() {
+    return IexService.LAST_TRADED_PRICES_CACHE;
+  }
+
+  @Override
+  public IexLastTradedPrice load(final Object symbol) {
+    log.debug("Refreshing cached last traded price of {}", symbol);
+    return lastTradedPriceCollapser.getAll(Collections.singletonList((String) symbol))
+        .get(symbol);
+  }
+}
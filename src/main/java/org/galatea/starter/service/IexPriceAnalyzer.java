@@ -0,0 +1,135 @@
+package org.galatea.starter.service;
+
+import java.time.LocalDate;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import org.galatea.starter.domain.IexHistoricalPriceSeries;
+import org.galatea.starter.domain.IexPriceAnalytics;
+
+/**
+ * Computes a series' IexPriceAnalytics in a single pass over its columns, without creating an
+ * object per bar. Mean and variance of the returns are accumulated with Welford's method, which
+ * stays accurate over long series, and the sums behind the moving averages are kept as scaled
+ * longs, so they're exact.
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class IexPriceAnalyzer {
+
+  private static final double TRADING_DAYS_PER_YEAR = 252;
+
+  private static final double PRICE_FACTOR = Math.pow(10, IexHistoricalPriceSeries.PRICE_SCALE);
+
+  /**
+   * Compute the analytics of the given series.
+   *
+   * @param series the bars to analyze, oldest first
+   * @param windows the numbers of bars to compute moving averages of closing prices over
+   */
+  public static IexPriceAnalytics analyze(final IexHistoricalPriceSeries series,
+      final int[] windows) {
+    int size = series.size();
+    long[] windowSums = new long[windows.length];
+    int[] windowCounts = new int[windows.length];
+
+    int bars = 0;
+    int firstDate = IexHistoricalPriceSeries.MISSING_DATE;
+    int lastDate = IexHistoricalPriceSeries.MISSING_DATE;
+    long firstClose = IexHistoricalPriceSeries.MISSING;
+    long previousClose = IexHistoricalPriceSeries.MISSING;
+    long high = Long.MIN_VALUE;
+    long low = Long.MAX_VALUE;
+    long volume = 0;
+    double weightedPrice = 0;
+    int returns = 0;
+    double meanReturn = 0;
+    double squaredDeviations = 0;
+
+    for (int i = 0; i < size; i++) {
+      long close = series.getClose(i);
+      if (close == IexHistoricalPriceSeries.MISSING) {
+        continue;
+      }
+      bars++;
+      if (firstClose == IexHistoricalPriceSeries.MISSING) {
+        firstClose = close;
+        firstDate = series.getEpochDay(i);
+      }
+      lastDate = series.getEpochDay(i);
+
+      long barHigh = orElse(series.getHigh(i), close);
+      long barLow = orElse(series.getLow(i), close);
+      high = Math.max(high, barHigh);
+      low = Math.min(low, barLow);
+
+      long barVolume = series.getVolume(i);
+      if (barVolume != IexHistoricalPriceSeries.MISSING) {
+        volume += barVolume;
+        weightedPrice += (barHigh + barLow + close) / 3.0 * barVolume;
+      }
+
+      if (previousClose != IexHistoricalPriceSeries.MISSING && previousClose > 0 && close > 0) {
+        double logReturn = Math.log((double) close / previousClose);
+        returns++;
+        double delta = logReturn - meanReturn;
+        meanReturn += delta / returns;
+        squaredDeviations += delta * (logReturn - meanReturn);
+      }
+      previousClose = close;
+
+      for (int w = 0; w < windows.length; w++) {
+        if (i >= size - windows[w]) {
+          windowSums[w] += close;
+          windowCounts[w]++;
+        }
+      }
+    }
+
+    IexPriceAnalytics.IexPriceAnalyticsBuilder analytics = IexPriceAnalytics.builder()
+        .symbol(series.getSymbol())
+        .bars(bars);
+    if (bars == 0) {
+      return analytics.build();
+    }
+
+    SortedMap<Integer, Double> movingAverages = new TreeMap<>();
+    for (int w = 0; w < windows.length; w++) {
+      // A window reaching back before the first bar has no average
+      if (windows[w] <= size && windowCounts[w] > 0) {
+        movingAverages.put(windows[w], windowSums[w] / PRICE_FACTOR / windowCounts[w]);
+      }
+    }
+    analytics
+        .from(toDate(firstDate))
+        .to(toDate(lastDate))
+        .firstClose(firstClose / PRICE_FACTOR)
+        .lastClose(previousClose / PRICE_FACTOR)
+        .high(high / PRICE_FACTOR)
+        .low(low / PRICE_FACTOR)
+        .volume(volume)
+        .vwap(volume > 0 ? weightedPrice / volume / PRICE_FACTOR : null)
+        .movingAverages(movingAverages);
+    if (firstClose > 0) {
+      analytics.totalReturn((double) (previousClose - firstClose) / firstClose);
+    }
+    if (returns > 0) {
+      analytics.meanDailyReturn(meanReturn);
+    }
+    if (returns > 1) {
+      double dailyVolatility = Math.sqrt(squaredDeviations / (returns - 1));
+      analytics.dailyVolatility(dailyVolatility)
+          .annualizedVolatility(dailyVolatility * Math.sqrt(TRADING_DAYS_PER_YEAR));
+    }
+    return analytics.build();
+  }
+
+  private static long orElse(final long price, final long fallback) {
+    return price == IexHistoricalPriceSeries.MISSING ? fallback : price;
+  }
+
+  private static String toDate(final int epochDay) {
+    return epochDay == IexHistoricalPriceSeries.MISSING_DATE ? null
+        : LocalDate.ofEpochDay(epochDay).toString();
+  }
+}
@@ -1,34 +1,111 @@
 package org.galatea.starter.service;
 
 import java.time.LocalDate;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.galatea.starter.domain.IexHistoricalPrice;
+import org.galatea.starter.domain.IexHistoricalPriceSeries;
 import org.galatea.starter.domain.IexLastTradedPrice;
-import org.galatea.starter.domain.IexSymbol;
+import org.galatea.starter.domain.IexSymbolUniverse;
+import org.galatea.starter.service.IexHistoricalPriceStore.DailyRange;
+import org.galatea.starter.utils.resilience.CallNotPermittedException;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
 /**
  * A layer for transformation, aggregation, and business required when retrieving data from IEX.
+ *
+ * <p>What is fetched from IEX is cached, for as long as it can be without going out of date:
+ * last traded prices for a second or so, historical prices of days the market has closed on for
+ * a long time, since they never change. Each cache is left out if it isn't configured, and IEX
+ * called every time instead.
+ *
+ * <p>The symbol universe is held as one IexSymbolUniverse, fetched on first use and replaced
+ * with a fresh copy every iex.symbols.refresh-ms in the background, so no request ever waits on
+ * the few megabytes of it being fetched again. If IEX can't be reached, the copy held is kept.
+ *
+ * <p>Calls to each IEX endpoint go through its UpstreamGuard (see IexUpstreamGuards), so that
+ * while IEX is failing they fail at once instead of waiting on it. Prices fetched are also kept as
+ * the last known ones, and while a guard's circuit is open, a request for prices falls back on the
+ * last known ones where there are any.
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class IexService {
 
+  /**
+   * Last traded price by symbol.
+   */
+  public static final String LAST_TRADED_PRICES_CACHE = "iexLastTradedPrices";
+
+  /**
+   * Historical prices by symbol, range and date, of requests for days the market has closed on.
+   */
+  public static final String HISTORICAL_PRICES_CACHE = "iexHistoricalPrices";
+
+  /**
+   * Historical prices by symbol, range and date, of requests running up to today.
+   */
+  public static final String RECENT_HISTORICAL_PRICES_CACHE = "iexRecentHistoricalPrices";
+
+  /**
+   * The last prices fetched, by the keys of the other caches, to fall back on while IEX is
+   * failing.
+   */
+  public static final String LAST_KNOWN_PRICES_CACHE = "iexLastKnownPrices";
+
+  /**
+   * IEX trades on New York time, so that's where its days close.
+   */
+  private static final ZoneId MARKET_ZONE = ZoneId.of("America/New_York");
+
   @NonNull
   private IexClient iexClient;
 
   @NonNull
-  private IexCloudClient iexCloudClient;
+  private IexAsyncClient iexAsyncClient;
+
+  @NonNull
+  private IexLastTradedPriceCollapser lastTradedPriceCollapser;
+
+  @NonNull
+  private CacheManager cacheManager;
+
+  @NonNull
+  private IexHistoricalPriceStore historicalPriceStore;
+
+  @NonNull
+  private IexUpstreamGuards guards;
+
+  private volatile IexSymbolUniverse symbolUniverse;
+
+  // Fetches of historical prices from IEX in flight, by cache key
+  private final Map<Object, CompletableFuture<IexHistoricalPriceSeries>> historicalPriceFetches =
+      new ConcurrentHashMap<>();
 
   /**
    * Valid range values documentation: https://iexcloud.io/docs/api/#historical-prices.
@@ -54,54 +131,270 @@ public class IexService {
   /**
    * Get all stock symbols from IEX.
    *
-   * @return a list of all Stock Symbols from IEX.
+   * @return every symbol IEX supports, as an index to look them up in.
    */
-  public List<IexSymbol> getAllSymbols() {
-    return iexClient.getAllSymbols();
+  public IexSymbolUniverse getAllSymbols() {
+    IexSymbolUniverse universe = symbolUniverse;
+    if (universe == null) {
+      synchronized (this) {
+        universe = symbolUniverse;
+        if (universe == null) {
+          universe = guards.getSymbols().call(iexClient::getAllSymbols);
+          symbolUniverse = universe;
+        }
+      }
+    }
+    return universe;
   }
 
   /**
-   * Get the last traded price for each Symbol that is passed in.
+   * Fetch the symbol universe from IEX and swap it for the one held, if one is held already: the
+   * first request for it loads it.
+   */
+  @Scheduled(fixedDelayString = "${iex.symbols.refresh-ms}",
+      initialDelayString = "${iex.symbols.refresh-ms}")
+  public void refreshSymbols() {
+    if (symbolUniverse == null) {
+      return;
+    }
+    try {
+      IexSymbolUniverse universe = guards.getSymbols().call(iexClient::getAllSymbols);
+      symbolUniverse = universe;
+      log.debug("Refreshed the symbol universe: {}", universe);
+    } catch (RuntimeException e) {
+      log.warn("Couldn't refresh the symbol universe; keeping the one held", e);
+    }
+  }
+
+  /**
+   * Get the last traded price for each Symbol that is passed in. Prices cached a little while ago
+   * are returned as they are, and reloaded in the background; only the symbols not cached are
+   * fetched from IEX, in calls shared by requests made at about the same time (see
+   * IexLastTradedPriceCollapser).
    *
    * @param symbols the list of symbols to get a last traded price for.
-   * @return a list of last traded price objects for each Symbol that is passed in.
+   * @return a list of last traded price objects for each Symbol that is passed in, in the order
+   *     they were passed in. Symbols IEX doesn't know are left out.
    */
   public List<IexLastTradedPrice> getLastTradedPriceForSymbols(final List<String> symbols) {
     if (CollectionUtils.isEmpty(symbols)) {
       return Collections.emptyList();
     } else {
-      return iexClient.getLastTradedPriceForSymbols(symbols.toArray(new String[0]));
+      // IEX symbols are upper case, whatever case they're asked for in
+      List<String> upperCaseSymbols = symbols.stream().filter(symbol -> !symbol.isEmpty())
+          .map(symbol -> symbol.toUpperCase(Locale.ROOT)).collect(Collectors.toList());
+      Cache cache = cacheManager.getCache(LAST_TRADED_PRICES_CACHE);
+      if (cache == null) {
+        return new ArrayList<>(fetchLastTradedPrices(upperCaseSymbols).values());
+      }
+
+      Map<String, IexLastTradedPrice> prices = new LinkedHashMap<>();
+      List<String> missing = new ArrayList<>();
+      for (String symbol : upperCaseSymbols) {
+        IexLastTradedPrice price = cachedPrice(cache, symbol);
+        if (price == null) {
+          missing.add(symbol);
+        }
+        prices.put(symbol, price);
+      }
+      if (!missing.isEmpty()) {
+        fetchLastTradedPrices(missing).forEach((symbol, price) -> {
+          cache.put(symbol, price);
+          prices.put(symbol, price);
+        });
+      }
+      prices.values().removeIf(Objects::isNull);
+      return new ArrayList<>(prices.values());
     }
   }
 
+  // Only if every symbol has a last known price are they fallen back on; leaving any out would
+  // look like IEX not knowing them
+  private Map<String, IexLastTradedPrice> fetchLastTradedPrices(final List<String> symbols) {
+    Cache lastKnown = cacheManager.getCache(LAST_KNOWN_PRICES_CACHE);
+    try {
+      Map<String, IexLastTradedPrice> prices = lastTradedPriceCollapser.getAll(symbols);
+      if (lastKnown != null) {
+        prices.forEach(lastKnown::put);
+      }
+      return prices;
+    } catch (CallNotPermittedException e) {
+      if (!e.isCircuitOpen()) {
+        throw e;
+      }
+      Map<String, IexLastTradedPrice> known = new LinkedHashMap<>();
+      for (String symbol : symbols) {
+        IexLastTradedPrice price =
+            lastKnown == null ? null : lastKnown.get(symbol, IexLastTradedPrice.class);
+        if (price == null) {
+          throw e;
+        }
+        known.put(symbol, price);
+      }
+      log.warn("Serving the last known prices of {}: {}", symbols, e.getMessage());
+      return known;
+    }
+  }
+
+  // A get through Spring would load a Caffeine miss on its own, one symbol at a time, so Caffeine's
+  // getIfPresent() is used instead. It still returns a stale price and has it refreshed
+  private static IexLastTradedPrice cachedPrice(final Cache cache, final String symbol) {
+    Object nativeCache = cache.getNativeCache();
+    Object price = nativeCache instanceof com.github.benmanes.caffeine.cache.Cache
+        ? ((com.github.benmanes.caffeine.cache.Cache<?, ?>) nativeCache).getIfPresent(symbol)
+        : cache.get(symbol, Object.class);
+    return price instanceof IexLastTradedPrice ? (IexLastTradedPrice) price : null;
+  }
+
   /**
-   * Get the historical price data for a given stock symbol.
+   * Get the historical price data for a given stock symbol. Ranges of daily prices are served
+   * from the IexHistoricalPriceStore, which only fetches from IEX the days it doesn't hold yet.
    *
    * @param symbol stock symbol to get historical data for.
    * @param range specified time range of the request.
    * @param date specified date in the format YYYYMMDD.
-   * @return a list of historical price data for the given symbol.
+   * @return the historical price data for the given symbol, oldest first.
    */
-  public List<IexHistoricalPrice> getHistoricalPrice(final String symbol, final String range,
+  public IexHistoricalPriceSeries getHistoricalPrice(final String symbol, final String range,
       final String date) {
+    try {
+      return getHistoricalPriceAsync(symbol, range, date).join();
+    } catch (CompletionException e) {
+      // Fail the way a call straight to IEX would
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Get the historical price data for a given stock symbol, as getHistoricalPrice() does, without
+   * waiting on IEX: prices are fetched from IEX with the IexAsyncClient, and the
+   * IexHistoricalPriceStore does its work on threads of its own.
+   *
+   * @param symbol stock symbol to get historical data for.
+   * @param range specified time range of the request.
+   * @param date specified date in the format YYYYMMDD.
+   * @return the historical price data for the given symbol, oldest first, once it's fetched.
+   */
+  public CompletableFuture<IexHistoricalPriceSeries> getHistoricalPriceAsync(final String symbol,
+      final String range, final String date) {
     log.info("Retrieving historical price with symbol {}, range {}, date {}", symbol, range, date);
     boolean isAllLetters = Pattern.matches("[a-zA-Z]+", symbol);
     if (!symbol.isEmpty() && isAllLetters) {
       if (date == null) {
-        if (range == null) {
-          return iexCloudClient.getHistoricalPriceForSymbol(symbol);
+        Optional<DailyRange> dailyRange =
+            range == null ? Optional.of(DailyRange.ONE_MONTH) : DailyRange.forName(range);
+        if (dailyRange.isPresent()) {
+          // IEX's default range is a month of daily prices
+          return sharedHistoricalPriceAsync(historicalPricesCache(null),
+              historicalPriceKey(symbol, range, null),
+              () -> historicalPriceStore.getDailyPrices(symbol.toUpperCase(Locale.ROOT),
+                  dailyRange.get()));
         } else if (rangeIsValid(range)) {
-          return iexCloudClient.getHistoricalPriceByRange(symbol, range);
+          return cachedHistoricalPriceAsync(symbol, range, null,
+              () -> iexAsyncClient.getHistoricalPriceByRange(symbol, range));
         }
       } else if (dateIsValid(date)) {
         if (range == null) {
-          return iexCloudClient.getHistoricalPriceByDate(symbol, date);
+          return cachedHistoricalPriceAsync(symbol, null, date,
+              () -> iexAsyncClient.getHistoricalPriceByDate(symbol, date));
         } else if (rangeIsValid(range)) {
-          return iexCloudClient.getHistoricalPriceByRangeDate(symbol, range, date);
+          return cachedHistoricalPriceAsync(symbol, range, date,
+              () -> iexAsyncClient.getHistoricalPriceByRangeDate(symbol, range, date));
         }
       }
     }
-    return Collections.emptyList();
+    return CompletableFuture.completedFuture(IexHistoricalPriceSeries.empty());
+  }
+
+  private CompletableFuture<IexHistoricalPriceSeries> cachedHistoricalPriceAsync(
+      final String symbol, final String range, final String date,
+      final Supplier<CompletableFuture<IexHistoricalPriceSeries>> loader) {
+    Object key = historicalPriceKey(symbol, range, date);
+    return orLastKnown(key, sharedHistoricalPriceAsync(historicalPricesCache(date), key,
+        () -> guards.getHistoricalPrices().callAsync(loader)));
+  }
+
+  // Concurrent misses of a key share the one fetch by sharing its future, rather than by waiting
+  // on the cache
+  private CompletableFuture<IexHistoricalPriceSeries> sharedHistoricalPriceAsync(
+      final String cacheName, final Object key,
+      final Supplier<CompletableFuture<IexHistoricalPriceSeries>> loader) {
+    Cache cache = cacheManager.getCache(cacheName);
+    if (cache == null) {
+      return loader.get();
+    }
+    IexHistoricalPriceSeries cached = cache.get(key, IexHistoricalPriceSeries.class);
+    if (cached != null) {
+      return CompletableFuture.completedFuture(cached);
+    }
+    CompletableFuture<IexHistoricalPriceSeries> fetch = new CompletableFuture<>();
+    CompletableFuture<IexHistoricalPriceSeries> shared = historicalPriceFetches.putIfAbsent(key,
+        fetch);
+    if (shared != null) {
+      return shared;
+    }
+    CompletableFuture<IexHistoricalPriceSeries> loading;
+    try {
+      loading = loader.get();
+    } catch (RuntimeException e) {
+      // Fail the shared fetch too, rather than leave it for every later miss to wait on
+      loading = CompletableFuture.failedFuture(e);
+    }
+    loading.whenComplete((prices, failure) -> {
+      if (failure == null) {
+        cache.put(key, prices);
+      }
+      historicalPriceFetches.remove(key, fetch);
+      if (failure == null) {
+        fetch.complete(prices);
+      } else {
+        fetch.completeExceptionally(failure);
+      }
+    });
+    return fetch;
+  }
+
+  // The last known prices aren't put in the other caches, so they're only ever served while the
+  // guard's circuit is open, not when it holds calls back for the sake of our own resources
+  private CompletableFuture<IexHistoricalPriceSeries> orLastKnown(final Object key,
+      final CompletableFuture<IexHistoricalPriceSeries> fetch) {
+    Cache lastKnown = cacheManager.getCache(LAST_KNOWN_PRICES_CACHE);
+    if (lastKnown == null) {
+      return fetch;
+    }
+    return fetch.handle((prices, failure) -> {
+      if (failure == null) {
+        lastKnown.put(key, prices);
+        return fetch;
+      }
+      Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+          ? failure.getCause() : failure;
+      IexHistoricalPriceSeries known = cause instanceof CallNotPermittedException
+          && ((CallNotPermittedException) cause).isCircuitOpen()
+          ? lastKnown.get(key, IexHistoricalPriceSeries.class) : null;
+      if (known == null) {
+        return fetch;
+      }
+      log.warn("Serving the last known historical prices of {}: {}", key, cause.getMessage());
+      return CompletableFuture.completedFuture(known);
+    }).thenCompose(Function.identity());
+  }
+
+  // A request for a day that's over gets the same prices whenever it's made. One that runs up to
+  // today, having no date, doesn't
+  private String historicalPricesCache(final String date) {
+    boolean closed = date != null
+        && LocalDate.parse(date, dateFormatter).isBefore(LocalDate.now(MARKET_ZONE));
+    return closed ? HISTORICAL_PRICES_CACHE : RECENT_HISTORICAL_PRICES_CACHE;
+  }
+
+  private static Object historicalPriceKey(final String symbol, final String range,
+      final String date) {
+    return new SimpleKey(symbol.toUpperCase(Locale.ROOT),
+        range == null ? null : range.toLowerCase(Locale.ROOT), date);
   }
 
 }
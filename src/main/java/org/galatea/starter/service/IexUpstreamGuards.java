@@ -0,0 +1,103 @@
+package org.galatea.starter.service;
+
+import feign.FeignException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import lombok.Getter;
+import org.galatea.starter.utils.resilience.CallNotPermittedException;
+import org.galatea.starter.utils.resilience.UpstreamGuard;
+import org.galatea.starter.utils.resilience.UpstreamGuardProperties;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+
+/**
+ * An UpstreamGuard for each IEX endpoint we call, shared by every client of it, blocking or not,
+ * so that each endpoint has one circuit and one limit on calls to it whoever makes them.
+ *
+ * <p>A 4xx response from IEX is taken as the request's fault rather than IEX's: it neither counts
+ * against the endpoint nor is retried, and nor is a call we held back ourselves. Anything else that
+ * fails a call, a 5xx response, a timeout or a connection refused or reset, does.
+ */
+@Getter
+@Component
+public class IexUpstreamGuards implements MeterBinder {
+
+  /**
+   * Guards /ref-data/symbols.
+   */
+  private final UpstreamGuard symbols;
+
+  /**
+   * Guards /tops/last.
+   */
+  private final UpstreamGuard lastTradedPrices;
+
+  /**
+   * Guards /stock/{symbol}/chart, whichever range and date are asked for.
+   */
+  private final UpstreamGuard historicalPrices;
+
+  /**
+   * Construct the guards, all held back as the given properties say.
+   */
+  public IexUpstreamGuards(final UpstreamGuardProperties properties) {
+    this.symbols = new UpstreamGuard("iex.symbols", properties, IexUpstreamGuards::isFailure);
+    this.lastTradedPrices = new UpstreamGuard("iex.last.traded.prices", properties,
+        IexUpstreamGuards::isFailure);
+    this.historicalPrices = new UpstreamGuard("iex.historical.prices", properties,
+        IexUpstreamGuards::isFailure);
+  }
+
+  @Override
+  public void bindTo(final MeterRegistry registry) {
+    symbols.bindTo(registry);
+    lastTradedPrices.bindTo(registry);
+    historicalPrices.bindTo(registry);
+  }
+
+  /**
+   * Whether a call to IEX failing with the given exception is IEX's fault.
+   */
+  public static boolean isFailure(final Throwable failure) {
+    Throwable cause = unwrap(failure);
+    // Held back by us, by a guard or a Bulkhead, rather than failed by IEX
+    if (cause instanceof HttpClientErrorException || cause instanceof CallNotPermittedException
+        || cause instanceof RejectedExecutionException) {
+      return false;
+    }
+    if (cause instanceof FeignException) {
+      int status = ((FeignException) cause).status();
+      return status < 400 || status >= 500;
+    }
+    return true;
+  }
+
+  /**
+   * Describe why a call to IEX failed, fit to hand back to our own callers. The failure's message
+   * isn't: Feign's names the URL called, token and all, when the connection fails.
+   */
+  public static String describe(final Throwable failure) {
+    Throwable cause = unwrap(failure);
+    int status = 0;
+    if (cause instanceof HttpClientErrorException) {
+      status = ((HttpClientErrorException) cause).getRawStatusCode();
+    } else if (cause instanceof FeignException) {
+      status = ((FeignException) cause).status();
+    }
+    if (status == HttpStatus.NOT_FOUND.value()) {
+      return "Not found at IEX";
+    }
+    if (status >= 400 && status < 500) {
+      return "Rejected by IEX with status " + status;
+    }
+    return "Upstream unavailable";
+  }
+
+  private static Throwable unwrap(final Throwable failure) {
+    return failure instanceof CompletionException && failure.getCause() != null
+        ? failure.getCause() : failure;
+  }
+}
@@ -2,27 +2,36 @@ package org.galatea.starter.service;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
-import java.util.HashSet;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 import javax.validation.Valid;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import net.sf.aspect4log.Log;
 import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.SettlementMissionFilter;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.domain.rpsy.ISettlementMissionRpsy;
+import org.galatea.starter.domain.rpsy.SettlementMissionCache;
+import org.galatea.starter.domain.rpsy.SettlementMissionStreamRpsy;
 import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
+import org.galatea.starter.utils.trace.Traced;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.annotation.Validated;
 
 @RequiredArgsConstructor
 @Slf4j
-@Log
+@Traced
 @Validated
 @Service
 public class SettlementService {
@@ -33,6 +42,12 @@ public class SettlementService {
   @NonNull
   IAgreementTransformer agreementTransformer;
 
+  @NonNull
+  SettlementMissionStreamRpsy missionStreamRpsy;
+
+  @NonNull
+  SettlementMissionCache missionCache;
+
   /**
    * Create missions based on the agreements provided.
    *
@@ -45,6 +60,8 @@ public class SettlementService {
     Iterable<SettlementMission> savedMissions = missionrpsy.saveAll(agreements.stream()
         .map(agr -> agreementTransformer.transform(agr)).collect(Collectors.toList()));
     log.debug("The following missions were saved: {}", savedMissions);
+    // Clients usually GET the new missions straight away
+    missionCache.writeThrough(savedMissions);
 
     // We have to do all of this StreamSupport crap since the repository returns an iterable instead
     // of a normal collection
@@ -57,36 +74,68 @@ public class SettlementService {
 
 
   /**
-   * Retrieve a previously-generated settlement mission from the database.
+   * Retrieve a previously-generated settlement mission, from the missions cache if it's there and
+   * from the database otherwise.
    *
    * @param id the ID of the mission to retrieve
    */
   public Optional<SettlementMission> findMission(final Long id) {
     log.info("Retrieving settlement mission with id {}", id);
-    return missionrpsy.findById(id);
+    return missionCache.get(id, missionrpsy::findById);
   }
 
   /**
-   * Retrieve multiple previously-generated settlement missions from the database.
+   * Retrieve multiple previously-generated settlement missions, from the missions cache where
+   * possible and from the database otherwise.
+   *
+   * <p>The cache is read in one bulk call and only the ids it doesn't hold are queried, in a single
+   * IN query, so the cost of a request scales with its misses rather than its size. Missions read
+   * from the database are added to the cache.
    *
    * @param ids a comma-separated list of IDs of the missions to retrieve
+   * @return the missions, in the order their ids were first requested
    */
   public List<SettlementMission> findMissions(final List<Long> ids) {
     log.info("Retrieving settlement missions with ids: {}", ids);
 
-    List<SettlementMission> retrievedMissions = Lists.newArrayList(missionrpsy.findAllById(ids));
+    Set<Long> distinctIds = new LinkedHashSet<>(ids);
+    Map<Long, SettlementMission> missionsById = new HashMap<>(missionCache.getAll(distinctIds));
+
+    Set<Long> uncachedIds = Sets.difference(distinctIds, missionsById.keySet()).immutableCopy();
+    if (!uncachedIds.isEmpty()) {
+      List<SettlementMission> retrievedMissions =
+          Lists.newArrayList(missionrpsy.findAllById(uncachedIds));
+      missionCache.putAll(retrievedMissions);
+      retrievedMissions.forEach(mission -> missionsById.put(mission.getId(), mission));
+    }
 
     // CrudRepository.findAll(Iterable ids) succeeds even if some provided IDs aren't found, so
     // if we want to alert on any not-found IDs we have to manually check
-    Set<Long> retrievedMissionIds = retrievedMissions.stream()
-        .map(SettlementMission::getId)
-        .collect(Collectors.toSet());
-    Sets.SetView<Long> missingMissions = Sets.difference(new HashSet<>(ids), retrievedMissionIds);
+    Sets.SetView<Long> missingMissions = Sets.difference(distinctIds, missionsById.keySet());
     if (!missingMissions.isEmpty()) {
       throw new EntityNotFoundException(SettlementMission.class, missingMissions);
     }
 
-    return retrievedMissions;
+    return distinctIds.stream().map(missionsById::get).collect(Collectors.toList());
+  }
+
+  /**
+   * Stream the settlement missions matching the given filter, in ascending id order, to the given
+   * handler.
+   *
+   * <p>Missions are read from the database as the handler consumes them rather than all up front,
+   * so this is suitable for listings too large to hold in memory. The read-only transaction (and
+   * with it the database cursor) stays open until the handler returns.
+   *
+   * @param filter the criteria that the missions must match
+   * @param handler consumes the matching missions
+   */
+  @Transactional(readOnly = true)
+  public void streamMissions(final SettlementMissionFilter filter,
+      final IMissionStreamHandler handler) throws IOException {
+    try (Stream<SettlementMission> missions = missionStreamRpsy.streamMissions(filter)) {
+      handler.handle(missions);
+    }
   }
 
   /**
@@ -100,6 +149,9 @@ public class SettlementService {
     mission.setId(id);
     SettlementMission savedMission = missionrpsy.save(mission);
     log.info("The following mission was updated: {}", savedMission);
+    if (savedMission != null) {
+      missionCache.writeThrough(Collections.singletonList(savedMission));
+    }
     return Optional.ofNullable(savedMission);
   }
 
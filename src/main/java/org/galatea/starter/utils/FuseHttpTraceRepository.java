@@ -2,23 +2,139 @@ package org.galatea.starter.utils;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.EqualsAndHashCode;
-import lombok.RequiredArgsConstructor;
-import lombok.ToString;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.utils.trace.BoundedRingBuffer;
+import org.galatea.starter.utils.trace.HttpTraceProperties;
+import org.galatea.starter.utils.trace.HttpTraceSampler;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.boot.actuate.trace.http.HttpTrace;
 import org.springframework.boot.actuate.trace.http.InMemoryHttpTraceRepository;
 
-@RequiredArgsConstructor
-@ToString(callSuper = true)
-@EqualsAndHashCode(callSuper = true)
+/**
+ * Keeps the most recent HTTP traces in memory, for /actuator/httptrace, and logs each one as JSON.
+ *
+ * <p>add() is called on the thread serving the request, so it does no more than sample the trace
+ * and hand it to a bounded ring buffer. A background writer thread takes traces off the buffer,
+ * serializes and logs them, and stores them. If the writer falls behind and the buffer fills up,
+ * traces are dropped rather than slowing requests down. Sampled-out and dropped traces are counted
+ * by the http.traces.sampled.out and http.traces.dropped metrics.
+ */
 @Slf4j
-public class FuseHttpTraceRepository extends InMemoryHttpTraceRepository {
+public class FuseHttpTraceRepository extends InMemoryHttpTraceRepository
+    implements InitializingBean, DisposableBean, MeterBinder {
+
+  public static final String DROPPED_METER = "http.traces.dropped";
+
+  public static final String SAMPLED_OUT_METER = "http.traces.sampled.out";
+
+  public static final String PENDING_METER = "http.traces.pending";
+
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
 
   private final ObjectMapper objectMapper;
 
+  private final HttpTraceSampler sampler;
+
+  private final BoundedRingBuffer<HttpTrace> pending;
+
+  private final AtomicLong dropped = new AtomicLong();
+
+  private final AtomicLong sampledOut = new AtomicLong();
+
+  private final Thread writer = new Thread(this::writeTraces, "http-trace-writer");
+
+  private volatile boolean running;
+
+  /**
+   * Construct a FuseHttpTraceRepository. The writer thread is started by afterPropertiesSet().
+   *
+   * @param objectMapper serializes traces for logging
+   * @param properties the sample rates and buffer size
+   */
+  public FuseHttpTraceRepository(final ObjectMapper objectMapper,
+      final HttpTraceProperties properties) {
+    this.objectMapper = objectMapper;
+    this.sampler = new HttpTraceSampler(properties);
+    this.pending = new BoundedRingBuffer<>(properties.getBufferSize());
+    this.writer.setDaemon(true);
+  }
+
   @Override
   public void add(final HttpTrace trace) {
+    if (!sampler.sample(trace)) {
+      sampledOut.incrementAndGet();
+    } else if (!pending.offer(trace)) {
+      dropped.incrementAndGet();
+    }
+  }
+
+  @Override
+  public void afterPropertiesSet() {
+    running = true;
+    writer.start();
+  }
+
+  /**
+   * Stop the writer thread, then write any traces still waiting.
+   */
+  @Override
+  public void destroy() throws InterruptedException {
+    running = false;
+    LockSupport.unpark(writer);
+    writer.join();
+    writePending();
+  }
+
+  @Override
+  public void bindTo(final MeterRegistry registry) {
+    FunctionCounter.builder(DROPPED_METER, dropped, AtomicLong::get)
+        .description("HTTP traces dropped because the trace buffer was full").register(registry);
+    FunctionCounter.builder(SAMPLED_OUT_METER, sampledOut, AtomicLong::get)
+        .description("HTTP traces not kept by sampling").register(registry);
+    Gauge.builder(PENDING_METER, pending, BoundedRingBuffer::size)
+        .description("HTTP traces waiting to be written").register(registry);
+  }
+
+  /**
+   * The number of traces dropped because the buffer was full.
+   */
+  public long getDroppedCount() {
+    return dropped.get();
+  }
+
+  /**
+   * The number of traces not kept by sampling.
+   */
+  public long getSampledOutCount() {
+    return sampledOut.get();
+  }
+
+  private void writeTraces() {
+    while (running) {
+      if (writePending() == 0) {
+        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+      }
+    }
+  }
+
+  private int writePending() {
+    int written = 0;
+    for (HttpTrace trace = pending.poll(); trace != null; trace = pending.poll()) {
+      write(trace);
+      written++;
+    }
+    return written;
+  }
+
+  private void write(final HttpTrace trace) {
     // HttpTrace has no toString, nor do its inner classes...
     try {
       log.info("Adding trace info: {}", objectMapper.writeValueAsString(trace));
@@ -0,0 +1,177 @@
+package org.galatea.starter.utils.bulkhead;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Bounds how many asynchronous calls, e.g. to one upstream host, are in flight at a time, without
+ * blocking anyone to do it.
+ *
+ * <p>A call is started straight away while fewer than maxConcurrent are in flight. Otherwise it
+ * waits in a queue of up to maxQueued calls, and is started when one in flight completes; a call
+ * that finds the queue full fails at once with a RejectedExecutionException. So however slow the
+ * upstream gets, what piles up in front of it is bounded, and callers hear so rather than wait.
+ *
+ * <p>Calls are started on whichever thread submits them or completes the call before them. A
+ * call that completes as it's started, e.g. from a cache, hands its slot on once its start has
+ * returned rather than from within it, so a run of such calls is started one after another and
+ * doesn't deepen the stack.
+ */
+public class Bulkhead implements MeterBinder {
+
+  public static final String IN_FLIGHT_METER = "bulkhead.calls.in.flight";
+
+  public static final String QUEUED_METER = "bulkhead.calls.queued";
+
+  public static final String REJECTED_METER = "bulkhead.calls.rejected";
+
+  private final String name;
+
+  private final int maxConcurrent;
+
+  private final int maxQueued;
+
+  private final Object lock = new Object();
+
+  // Guarded by lock
+  private int inFlight;
+
+  // Guarded by lock
+  private final Queue<Runnable> queued = new ArrayDeque<>();
+
+  private volatile Counter rejected;
+
+  // The calls waiting on the thread starting queued calls, while it's starting one
+  private final ThreadLocal<Queue<Runnable>> starting = new ThreadLocal<>();
+
+  /**
+   * Construct a Bulkhead.
+   *
+   * @param name tags the bulkhead's metrics
+   * @param maxConcurrent the most calls in flight at a time
+   * @param maxQueued the most calls waiting to start. Zero fails every call beyond maxConcurrent
+   */
+  public Bulkhead(final String name, final int maxConcurrent, final int maxQueued) {
+    if (maxConcurrent <= 0) {
+      throw new IllegalArgumentException("Max concurrent must be positive: " + maxConcurrent);
+    }
+    if (maxQueued < 0) {
+      throw new IllegalArgumentException("Max queued must not be negative: " + maxQueued);
+    }
+    this.name = name;
+    this.maxConcurrent = maxConcurrent;
+    this.maxQueued = maxQueued;
+  }
+
+  @Override
+  public void bindTo(final MeterRegistry registry) {
+    Gauge.builder(IN_FLIGHT_METER, this, Bulkhead::getInFlight).tag("name", name)
+        .description("Calls in flight").register(registry);
+    Gauge.builder(QUEUED_METER, this, Bulkhead::getQueued).tag("name", name)
+        .description("Calls waiting to start").register(registry);
+    rejected = Counter.builder(REJECTED_METER).tag("name", name)
+        .description("Calls failed because the queue was full").register(registry);
+  }
+
+  /**
+   * Start the given call now, or once there's room for it.
+   *
+   * @param call starts the call, returning its result
+   * @return the call's result, or a future failed with a RejectedExecutionException if the queue
+   *     was full
+   */
+  public <T> CompletableFuture<T> submit(final Supplier<CompletableFuture<T>> call) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    Runnable start = () -> start(call, result);
+    synchronized (lock) {
+      if (inFlight < maxConcurrent) {
+        inFlight++;
+      } else if (queued.size() < maxQueued) {
+        queued.add(start);
+        return result;
+      } else {
+        Counter counter = rejected;
+        if (counter != null) {
+          counter.increment();
+        }
+        result.completeExceptionally(new RejectedExecutionException(
+            "Bulkhead " + name + " is full: " + inFlight + " calls in flight and " + queued.size()
+                + " queued"));
+        return result;
+      }
+    }
+    start.run();
+    return result;
+  }
+
+  /**
+   * The number of calls in flight.
+   */
+  public int getInFlight() {
+    synchronized (lock) {
+      return inFlight;
+    }
+  }
+
+  /**
+   * The number of calls waiting to start.
+   */
+  public int getQueued() {
+    synchronized (lock) {
+      return queued.size();
+    }
+  }
+
+  private <T> void start(final Supplier<CompletableFuture<T>> call,
+      final CompletableFuture<T> result) {
+    CompletableFuture<T> started;
+    try {
+      started = call.get();
+    } catch (RuntimeException e) {
+      started = CompletableFuture.failedFuture(e);
+    }
+    started.whenComplete((value, failure) -> {
+      // Its slot goes to the next call before anything waiting on the result runs
+      release();
+      if (failure == null) {
+        result.complete(value);
+      } else {
+        result.completeExceptionally(failure);
+      }
+    });
+  }
+
+  private void release() {
+    Runnable next;
+    synchronized (lock) {
+      next = queued.poll();
+      if (next == null) {
+        inFlight--;
+        return;
+      }
+    }
+    // The slot passes straight to the next call, started by the thread already starting calls
+    // if this is one of them
+    Queue<Runnable> waiting = starting.get();
+    if (waiting != null) {
+      waiting.add(next);
+      return;
+    }
+    waiting = new ArrayDeque<>();
+    starting.set(waiting);
+    try {
+      for (; next != null; next = waiting.poll()) {
+        next.run();
+      }
+    } finally {
+      starting.remove();
+    }
+  }
+}
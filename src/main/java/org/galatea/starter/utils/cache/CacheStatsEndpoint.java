@@ -0,0 +1,97 @@
+package org.galatea.starter.utils.cache;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.statistics.StatisticsGateway;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint, at /actuator/cachestats, reporting the hit rate, evictions and load latency
+ * of each cache, whichever provider is in use, and the occupancy of its off-heap tier.
+ *
+ * <p>The same figures are published as cache.* metrics, but only as running counts; this endpoint
+ * saves working the hit rate out from them. Caffeine only records stats for caches whose spec
+ * includes recordStats.
+ */
+@RequiredArgsConstructor
+@Component
+@Endpoint(id = "cachestats")
+public class CacheStatsEndpoint {
+
+  @NonNull
+  private final CacheManager cacheManager;
+
+  /**
+   * Return the stats of every cache, by cache name.
+   */
+  @ReadOperation
+  public Map<String, CacheStatsDescriptor> cacheStats() {
+    Map<String, CacheStatsDescriptor> stats = new TreeMap<>();
+    for (String name : cacheManager.getCacheNames()) {
+      Cache cache = cacheManager.getCache(name);
+      if (cache != null) {
+        CacheStatsDescriptor descriptor = describe(cache.getNativeCache());
+        if (cache instanceof TieredCache) {
+          OffHeapStore<?> offHeapStore = ((TieredCache) cache).getOffHeapStore();
+          descriptor = descriptor.toBuilder().offHeapEntries(offHeapStore.size())
+              .offHeapUsedBytes(offHeapStore.usedBytes())
+              .offHeapCapacityBytes(offHeapStore.capacityBytes())
+              .offHeapEvictionCount(offHeapStore.evictionCount()).build();
+        }
+        stats.put(name, descriptor);
+      }
+    }
+    return stats;
+  }
+
+  private static CacheStatsDescriptor describe(final Object nativeCache) {
+    if (nativeCache instanceof com.github.benmanes.caffeine.cache.Cache) {
+      CacheStats stats = ((com.github.benmanes.caffeine.cache.Cache<?, ?>) nativeCache).stats();
+      return CacheStatsDescriptor.builder().provider("caffeine")
+          .hitRate(stats.hitRate()).hitCount(stats.hitCount()).missCount(stats.missCount())
+          .evictionCount(stats.evictionCount()).loadCount(stats.loadCount())
+          .averageLoadMillis(stats.averageLoadPenalty() / TimeUnit.MILLISECONDS.toNanos(1))
+          .build();
+    } else if (nativeCache instanceof Ehcache) {
+      // EhCache 2 doesn't load entries itself, so it has no load figures
+      StatisticsGateway stats = ((Ehcache) nativeCache).getStatistics();
+      return CacheStatsDescriptor.builder().provider("ehcache")
+          .hitRate(stats.cacheHitRatio()).hitCount(stats.cacheHitCount())
+          .missCount(stats.cacheMissCount()).evictionCount(stats.cacheEvictedCount())
+          .build();
+    }
+    return CacheStatsDescriptor.builder().provider(nativeCache.getClass().getName()).build();
+  }
+
+  /**
+   * Stats of one cache. Figures the provider doesn't track, and off-heap figures for a cache with
+   * no off-heap tier, are null.
+   */
+  @Builder(toBuilder = true)
+  @Value
+  public static class CacheStatsDescriptor {
+
+    private String provider;
+    private Double hitRate;
+    private Long hitCount;
+    private Long missCount;
+    private Long evictionCount;
+    private Long loadCount;
+    private Double averageLoadMillis;
+    private Long offHeapEntries;
+    private Long offHeapUsedBytes;
+    private Long offHeapCapacityBytes;
+    private Long offHeapEvictionCount;
+  }
+}
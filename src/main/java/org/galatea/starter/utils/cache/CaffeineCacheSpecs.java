@@ -0,0 +1,20 @@
+package org.galatea.starter.utils.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * The Caffeine spec of each cache, bound from cache.caffeine in application.yml. See
+ * com.github.benmanes.caffeine.cache.CaffeineSpec for the format.
+ */
+@Data
+@ConfigurationProperties("cache.caffeine")
+public class CaffeineCacheSpecs {
+
+  /**
+   * Spec of each cache, by cache name. Only the caches named here are created.
+   */
+  private Map<String, String> specs = new HashMap<>();
+}
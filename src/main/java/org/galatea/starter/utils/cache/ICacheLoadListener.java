@@ -0,0 +1,18 @@
+package org.galatea.starter.utils.cache;
+
+/**
+ * Told of every value a cache loads itself, rather than being given by a put, such as the values
+ * a Caffeine cache's IRefreshAheadLoader loads and reloads.
+ */
+public interface ICacheLoadListener {
+
+  /**
+   * Called once a value has been loaded into the named cache.
+   *
+   * @param cacheName the name of the cache
+   * @param key the key the value was loaded for
+   * @param previousValue the value being reloaded, or null if the key wasn't cached
+   * @param value the value loaded, or null if there is none and the entry is to be removed
+   */
+  void loaded(String cacheName, Object key, Object previousValue, Object value);
+}
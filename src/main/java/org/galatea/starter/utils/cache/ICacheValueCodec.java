@@ -0,0 +1,30 @@
+package org.galatea.starter.utils.cache;
+
+/**
+ * Encodes the values of one named cache compactly, so that they can be kept off-heap. See
+ * TieredCache.
+ *
+ * @param <V> the type of value encoded. Other values in the cache stay on-heap only
+ */
+public interface ICacheValueCodec<V> {
+
+  /**
+   * The name of the cache whose values this encodes.
+   */
+  String getCacheName();
+
+  /**
+   * The type of value encoded.
+   */
+  Class<V> getValueType();
+
+  /**
+   * Encode the given value.
+   */
+  byte[] encode(V value);
+
+  /**
+   * Decode a value previously encoded by encode().
+   */
+  V decode(byte[] bytes);
+}
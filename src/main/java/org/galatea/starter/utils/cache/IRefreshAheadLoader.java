@@ -0,0 +1,19 @@
+package org.galatea.starter.utils.cache;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+
+/**
+ * Reloads the entries of one named Caffeine cache. Caches whose spec sets refreshAfterWrite use it
+ * to reload an entry in the background once it is due, while readers keep getting the old value,
+ * so a hot entry never expires out from under them.
+ *
+ * <p>Returning null from load() removes the entry, e.g. when it no longer exists. The value
+ * returned is stored as-is, so it must be what the cache's @Cacheable methods would have cached.
+ */
+public interface IRefreshAheadLoader extends CacheLoader<Object, Object> {
+
+  /**
+   * The name of the cache whose entries this loads.
+   */
+  String getCacheName();
+}
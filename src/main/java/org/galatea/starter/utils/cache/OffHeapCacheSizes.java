@@ -0,0 +1,22 @@
+package org.galatea.starter.utils.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * The size of the off-heap tier of each cache, bound from cache.off-heap in application.yml. See
+ * TieredCacheManager.
+ */
+@Data
+@ConfigurationProperties("cache.off-heap")
+public class OffHeapCacheSizes {
+
+  /**
+   * Off-heap tier size of each cache, by cache name, e.g. 512MB. Caches not named here, or without
+   * an ICacheValueCodec, have no off-heap tier.
+   */
+  private Map<String, DataSize> sizes = new HashMap<>();
+}
@@ -0,0 +1,518 @@
+package org.galatea.starter.utils.cache;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Byte arrays, by key, held outside the Java heap in direct ByteBuffers, up to a fixed number of
+ * bytes.
+ *
+ * <p>The store is a ring: values are appended one after another and, once it is full, the oldest
+ * values are overwritten (and so evicted) to make room. The buffers are allocated a segment at a
+ * time as the ring first reaches them, so an idle store costs no memory. Direct memory is capped by
+ * -XX:MaxDirectMemorySize, which defaults to the maximum heap size.
+ *
+ * <p>Values can also be given a time to live, after which they are no longer returned, however
+ * much room there is left.
+ *
+ * <p>Larger stores are split into up to 16 stripes by key, each a ring of its own behind its own
+ * lock, so that writers to different stripes don't wait on one another. Only the index of where
+ * each value lives is kept on the heap, in open-addressed primitive arrays, so that an entry costs
+ * no objects of its own beyond its key.
+ *
+ * @param <K> the key type
+ */
+public class OffHeapStore<K> {
+
+  private static final int MAX_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+  private static final int MAX_STRIPES = 16;
+
+  // Stores smaller than this per stripe aren't split
+  private static final long MIN_STRIPE_SIZE = 1024 * 1024;
+
+  private final Stripe[] stripes;
+
+  private final long capacity;
+
+  private final Duration timeToLive;
+
+  /**
+   * Construct an OffHeapStore holding up to the given number of bytes of values, for as long as
+   * there is room for them.
+   *
+   * @param capacity the number of bytes of direct memory to use; see maxValueBytes()
+   */
+  public OffHeapStore(final long capacity) {
+    this(capacity, Duration.ZERO);
+  }
+
+  /**
+   * Construct an OffHeapStore holding up to the given number of bytes of values, each for up to
+   * the given time after it was stored.
+   *
+   * @param capacity the number of bytes of direct memory to use. Each value must fit within a
+   *     single segment, of at most 64MiB, or 1/16th of the capacity if that is smaller but over
+   *     1MiB
+   * @param timeToLive how long each value is kept, or zero to keep it until it is overwritten
+   */
+  public OffHeapStore(final long capacity, final Duration timeToLive) {
+    this(capacity, timeToLive, System::nanoTime);
+  }
+
+  OffHeapStore(final long capacity, final Duration timeToLive, final LongSupplier nanoClock) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Off-heap capacity must be positive: " + capacity);
+    }
+    if (timeToLive.isNegative()) {
+      throw new IllegalArgumentException("Time to live must not be negative: " + timeToLive);
+    }
+    int stripeCount = (int) Long.highestOneBit(
+        Math.max(1, Math.min(MAX_STRIPES, capacity / MIN_STRIPE_SIZE)));
+    this.stripes = new Stripe[stripeCount];
+    long totalCapacity = 0;
+    for (int i = 0; i < stripeCount; i++) {
+      stripes[i] = new Stripe(capacity / stripeCount, timeToLive.toNanos(), nanoClock);
+      totalCapacity += stripes[i].capacity;
+    }
+    this.capacity = totalCapacity;
+    this.timeToLive = timeToLive;
+  }
+
+  /**
+   * Return a copy of the value stored under the given key, or null if there isn't one or it has
+   * expired.
+   */
+  public byte[] get(final K key) {
+    int hash = hash(key);
+    Stripe stripe = stripeFor(hash);
+    stripe.lock.lock();
+    try {
+      return stripe.get(key, hash);
+    } finally {
+      stripe.lock.unlock();
+    }
+  }
+
+  /**
+   * Store the given value under the given key, replacing any value already stored.
+   *
+   * @return false if the value is too large to store
+   */
+  public boolean put(final K key, final byte[] value) {
+    return putIf(key, value, current -> true);
+  }
+
+  /**
+   * Store the given value under the given key, unless a value is already stored and fails the
+   * given test. The test and the write happen atomically. An expired value counts as none.
+   *
+   * @param replace decides, given a copy of the current value, whether to replace it
+   * @return true if the value was stored
+   */
+  public boolean putIf(final K key, final byte[] value, final Predicate<byte[]> replace) {
+    int hash = hash(key);
+    Stripe stripe = stripeFor(hash);
+    if (value.length > stripe.segmentSize) {
+      return false;
+    }
+    stripe.lock.lock();
+    try {
+      return stripe.putIf(key, hash, value, replace);
+    } finally {
+      stripe.lock.unlock();
+    }
+  }
+
+  /**
+   * Remove the value stored under the given key, if there is one.
+   */
+  public void remove(final K key) {
+    int hash = hash(key);
+    Stripe stripe = stripeFor(hash);
+    stripe.lock.lock();
+    try {
+      int slot = stripe.find(key, hash);
+      if (slot >= 0) {
+        stripe.removeSlot(slot);
+      }
+    } finally {
+      stripe.lock.unlock();
+    }
+  }
+
+  /**
+   * Remove every value. The direct memory already allocated is kept for reuse.
+   */
+  public void clear() {
+    for (Stripe stripe : stripes) {
+      stripe.lock.lock();
+      try {
+        stripe.clear();
+      } finally {
+        stripe.lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * The number of values stored, including any that have expired but not yet been overwritten or
+   * looked up.
+   */
+  public long size() {
+    long size = 0;
+    for (Stripe stripe : stripes) {
+      stripe.lock.lock();
+      try {
+        size += stripe.count;
+      } finally {
+        stripe.lock.unlock();
+      }
+    }
+    return size;
+  }
+
+  /**
+   * The number of bytes taken up by the values stored.
+   */
+  public long usedBytes() {
+    long usedBytes = 0;
+    for (Stripe stripe : stripes) {
+      stripe.lock.lock();
+      try {
+        usedBytes += stripe.usedBytes;
+      } finally {
+        stripe.lock.unlock();
+      }
+    }
+    return usedBytes;
+  }
+
+  /**
+   * The number of bytes of values the store can hold.
+   */
+  public long capacityBytes() {
+    return capacity;
+  }
+
+  /**
+   * How long each value is kept, or zero if it is kept until it is overwritten.
+   */
+  public Duration timeToLive() {
+    return timeToLive;
+  }
+
+  /**
+   * The size, in bytes, of the largest value the store accepts.
+   */
+  public int maxValueBytes() {
+    return stripes[0].segmentSize;
+  }
+
+  /**
+   * The number of bytes of direct memory allocated so far.
+   */
+  public long allocatedBytes() {
+    long allocated = 0;
+    for (Stripe stripe : stripes) {
+      stripe.lock.lock();
+      try {
+        for (ByteBuffer segment : stripe.segments) {
+          allocated += segment == null ? 0 : segment.capacity();
+        }
+      } finally {
+        stripe.lock.unlock();
+      }
+    }
+    return allocated;
+  }
+
+  /**
+   * The number of values overwritten to make room for newer ones.
+   */
+  public long evictionCount() {
+    long evictionCount = 0;
+    for (Stripe stripe : stripes) {
+      stripe.lock.lock();
+      try {
+        evictionCount += stripe.evictionCount;
+      } finally {
+        stripe.lock.unlock();
+      }
+    }
+    return evictionCount;
+  }
+
+  private Stripe stripeFor(final int hash) {
+    // The top bits pick the stripe, and the bottom bits the slot within it
+    return stripes[((hash * 0x9E3779B9) >>> 28) & (stripes.length - 1)];
+  }
+
+  private static int hash(final Object key) {
+    int hash = key.hashCode();
+    return hash ^ (hash >>> 16);
+  }
+
+  /*
+   * One ring and its index. The index is open-addressed with linear probing; slots are freed by
+   * shifting the entries after them back, so there are no tombstones. The ring keeps the position
+   * and key hash of every value written and not yet overwritten, oldest first, including any since
+   * replaced or removed, so that the values it overwrites can be found in the index.
+   *
+   * Every method expects the lock to be held.
+   */
+  private static final class Stripe {
+
+    private static final int INITIAL_SLOTS = 16;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final ByteBuffer[] segments;
+
+    private final int segmentSize;
+
+    private final long capacity;
+
+    private final long timeToLiveNanos;
+
+    private final LongSupplier nanoClock;
+
+    private Object[] keys = new Object[INITIAL_SLOTS];
+
+    private int[] hashes = new int[INITIAL_SLOTS];
+
+    private long[] positions = new long[INITIAL_SLOTS];
+
+    private int[] lengths = new int[INITIAL_SLOTS];
+
+    private long[] expiries = new long[INITIAL_SLOTS];
+
+    private int count;
+
+    private long[] ringPositions = new long[INITIAL_SLOTS];
+
+    private int[] ringHashes = new int[INITIAL_SLOTS];
+
+    private int ringHead;
+
+    private int ringSize;
+
+    // Where the next value goes, counting from the first byte ever written
+    private long writePosition;
+
+    private long usedBytes;
+
+    private long evictionCount;
+
+    private Stripe(final long capacity, final long timeToLiveNanos,
+        final LongSupplier nanoClock) {
+      this.segmentSize = (int) Math.min(capacity, MAX_SEGMENT_SIZE);
+      this.segments = new ByteBuffer[(int) ((capacity + segmentSize - 1) / segmentSize)];
+      this.capacity = (long) segments.length * segmentSize;
+      this.timeToLiveNanos = timeToLiveNanos;
+      this.nanoClock = nanoClock;
+    }
+
+    private byte[] get(final Object key, final int hash) {
+      int slot = find(key, hash);
+      if (slot < 0) {
+        return null;
+      }
+      if (isExpired(slot)) {
+        removeSlot(slot);
+        return null;
+      }
+      return read(positions[slot], lengths[slot]);
+    }
+
+    private boolean putIf(final Object key, final int hash, final byte[] value,
+        final Predicate<byte[]> replace) {
+      int slot = find(key, hash);
+      if (slot >= 0 && isExpired(slot)) {
+        removeSlot(slot);
+        slot = -1;
+      }
+      if (slot >= 0 && !replace.test(read(positions[slot], lengths[slot]))) {
+        return false;
+      }
+
+      // A value never straddles two segments
+      int offset = (int) (writePosition % segmentSize);
+      if (offset + value.length > segmentSize) {
+        writePosition += segmentSize - offset;
+        offset = 0;
+      }
+
+      // Index the new value first, so that overwriting the value it replaces isn't an eviction
+      long expiry = timeToLiveNanos > 0 ? nanoClock.getAsLong() + timeToLiveNanos : 0;
+      if (slot >= 0) {
+        usedBytes -= lengths[slot];
+        positions[slot] = writePosition;
+        lengths[slot] = value.length;
+        expiries[slot] = expiry;
+      } else {
+        insert(key, hash, writePosition, value.length, expiry);
+      }
+      usedBytes += value.length;
+      evictOverlapping(writePosition + value.length);
+
+      ByteBuffer target = segment(writePosition).duplicate();
+      target.position(offset);
+      target.put(value);
+      appendToRing(writePosition, hash);
+      writePosition += value.length;
+      return true;
+    }
+
+    private void clear() {
+      Arrays.fill(keys, null);
+      count = 0;
+      ringHead = 0;
+      ringSize = 0;
+      usedBytes = 0;
+    }
+
+    private int find(final Object key, final int hash) {
+      int mask = keys.length - 1;
+      for (int slot = hash & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+        if (hashes[slot] == hash && keys[slot].equals(key)) {
+          return slot;
+        }
+      }
+      return -1;
+    }
+
+    // The slot of the value stored at the given position, if it's still in the index
+    private int findAt(final long position, final int hash) {
+      int mask = keys.length - 1;
+      for (int slot = hash & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+        if (positions[slot] == position) {
+          return slot;
+        }
+      }
+      return -1;
+    }
+
+    private void insert(final Object key, final int hash, final long position, final int length,
+        final long expiry) {
+      // Kept at most three quarters full, so probes stay short
+      if ((count + 1) * 4 > keys.length * 3) {
+        resize();
+      }
+      int mask = keys.length - 1;
+      int slot = hash & mask;
+      while (keys[slot] != null) {
+        slot = (slot + 1) & mask;
+      }
+      keys[slot] = key;
+      hashes[slot] = hash;
+      positions[slot] = position;
+      lengths[slot] = length;
+      expiries[slot] = expiry;
+      count++;
+    }
+
+    private void removeSlot(final int slot) {
+      usedBytes -= lengths[slot];
+      count--;
+      int mask = keys.length - 1;
+      int gap = slot;
+      for (int next = (slot + 1) & mask; keys[next] != null; next = (next + 1) & mask) {
+        // An entry can fill the gap unless its probe starts after the gap
+        int home = hashes[next] & mask;
+        boolean startsAfterGap = gap <= next ? gap < home && home <= next
+            : gap < home || home <= next;
+        if (!startsAfterGap) {
+          moveSlot(next, gap);
+          gap = next;
+        }
+      }
+      keys[gap] = null;
+    }
+
+    private void moveSlot(final int from, final int to) {
+      keys[to] = keys[from];
+      hashes[to] = hashes[from];
+      positions[to] = positions[from];
+      lengths[to] = lengths[from];
+      expiries[to] = expiries[from];
+    }
+
+    private void resize() {
+      Object[] oldKeys = keys;
+      int[] oldHashes = hashes;
+      long[] oldPositions = positions;
+      int[] oldLengths = lengths;
+      long[] oldExpiries = expiries;
+      int slots = oldKeys.length * 2;
+      keys = new Object[slots];
+      hashes = new int[slots];
+      positions = new long[slots];
+      lengths = new int[slots];
+      expiries = new long[slots];
+      count = 0;
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldKeys[i] != null) {
+          insert(oldKeys[i], oldHashes[i], oldPositions[i], oldLengths[i], oldExpiries[i]);
+        }
+      }
+    }
+
+    private boolean isExpired(final int slot) {
+      return timeToLiveNanos > 0 && nanoClock.getAsLong() - expiries[slot] >= 0;
+    }
+
+    private void appendToRing(final long position, final int hash) {
+      if (ringSize == ringPositions.length) {
+        long[] grownPositions = new long[ringSize * 2];
+        int[] grownHashes = new int[ringSize * 2];
+        for (int i = 0; i < ringSize; i++) {
+          grownPositions[i] = ringPositions[(ringHead + i) % ringSize];
+          grownHashes[i] = ringHashes[(ringHead + i) % ringSize];
+        }
+        ringPositions = grownPositions;
+        ringHashes = grownHashes;
+        ringHead = 0;
+      }
+      int tail = (ringHead + ringSize) % ringPositions.length;
+      ringPositions[tail] = position;
+      ringHashes[tail] = hash;
+      ringSize++;
+    }
+
+    // Drop the values that writing up to the given position would overwrite
+    private void evictOverlapping(final long writeEnd) {
+      while (ringSize > 0 && ringPositions[ringHead] < writeEnd - capacity) {
+        // Values since replaced or removed are no longer in the index
+        int slot = findAt(ringPositions[ringHead], ringHashes[ringHead]);
+        ringHead = (ringHead + 1) % ringPositions.length;
+        ringSize--;
+        if (slot >= 0) {
+          removeSlot(slot);
+          evictionCount++;
+        }
+      }
+    }
+
+    private byte[] read(final long position, final int length) {
+      byte[] value = new byte[length];
+      ByteBuffer source = segment(position).duplicate();
+      source.position((int) (position % segmentSize));
+      source.get(value);
+      return value;
+    }
+
+    private ByteBuffer segment(final long position) {
+      int segmentIndex = (int) ((position / segmentSize) % segments.length);
+      if (segments[segmentIndex] == null) {
+        // Only ever reached from a write
+        segments[segmentIndex] = ByteBuffer.allocateDirect(segmentSize);
+      }
+      return segments[segmentIndex];
+    }
+  }
+}
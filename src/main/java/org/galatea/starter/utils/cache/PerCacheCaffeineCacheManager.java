@@ -0,0 +1,83 @@
+package org.galatea.starter.utils.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.CaffeineSpec;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+
+/**
+ * CaffeineCacheManager that gives every cache its own spec and, optionally, its own refresh-ahead
+ * loader. The stock CaffeineCacheManager builds all of its caches from the one spec and loader.
+ *
+ * <p>Only the caches named in the specs are created, much as only the caches declared in
+ * ehcache.xml exist when EhCache is the provider.
+ *
+ * <p>Every value a loader loads or reloads is passed to the ICacheLoadListener, if one is set, so
+ * that a TieredCacheManager can write it to the off-heap tier as well.
+ */
+@Slf4j
+public class PerCacheCaffeineCacheManager extends CaffeineCacheManager {
+
+  private final Map<String, String> specs;
+
+  private final Map<String, IRefreshAheadLoader> loaders = new HashMap<>();
+
+  private volatile ICacheLoadListener loadListener;
+
+  /**
+   * Construct a PerCacheCaffeineCacheManager and create its caches.
+   *
+   * @param specs the CaffeineSpec of each cache, by cache name
+   * @param loaders refresh-ahead loaders for the caches that need one
+   */
+  public PerCacheCaffeineCacheManager(final Map<String, String> specs,
+      final Collection<IRefreshAheadLoader> loaders) {
+    this.specs = new HashMap<>(specs);
+    for (IRefreshAheadLoader loader : loaders) {
+      this.loaders.put(loader.getCacheName(), loader);
+    }
+    setCacheNames(this.specs.keySet());
+  }
+
+  /**
+   * Set the listener told of every value the caches' loaders load or reload.
+   */
+  public void setLoadListener(final ICacheLoadListener loadListener) {
+    this.loadListener = loadListener;
+  }
+
+  @Override
+  protected Cache<Object, Object> createNativeCaffeineCache(final String name) {
+    CaffeineSpec spec = CaffeineSpec.parse(specs.get(name));
+    Caffeine<Object, Object> builder = Caffeine.from(spec);
+    IRefreshAheadLoader loader = loaders.get(name);
+    log.info("Creating Caffeine cache '{}' with spec '{}'{}", name, spec.toParsableString(),
+        loader == null ? "" : " and a refresh-ahead loader");
+    // Caffeine refuses refreshAfterWrite without a loader, with a clear enough message
+    return loader == null ? builder.build() : builder.build(new CacheLoader<Object, Object>() {
+      @Override
+      public Object load(final Object key) throws Exception {
+        return loaded(name, key, null, loader.load(key));
+      }
+
+      @Override
+      public Object reload(final Object key, final Object oldValue) throws Exception {
+        return loaded(name, key, oldValue, loader.reload(key, oldValue));
+      }
+    });
+  }
+
+  private Object loaded(final String name, final Object key, final Object previousValue,
+      final Object value) {
+    ICacheLoadListener listener = loadListener;
+    if (listener != null) {
+      listener.loaded(name, key, previousValue, value);
+    }
+    return value;
+  }
+}
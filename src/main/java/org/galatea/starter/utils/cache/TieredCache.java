@@ -0,0 +1,180 @@
+package org.galatea.starter.utils.cache;
+
+import java.util.concurrent.Callable;
+import java.util.function.Predicate;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+/**
+ * Cache with two tiers: the provider's cache on the heap, backed by a much larger OffHeapStore
+ * holding the values encoded by an ICacheValueCodec.
+ *
+ * <p>Every value written goes to both tiers, so a value evicted from the heap tier can still be
+ * found off-heap. A value found only off-heap is decoded and promoted back into the heap tier.
+ * Values the codec doesn't handle, such as the placeholder for a cached null, stay on-heap only.
+ * The off-heap tier expires its values no later than the heap tier does (see TieredCacheManager),
+ * so a value that has expired on-heap isn't promoted back from off-heap; a value that is promoted
+ * stays on-heap for up to the heap tier's time to live from then.
+ *
+ * <p>Values the heap tier loads itself, such as a refresh-ahead reload, don't pass through this
+ * cache; loaded() writes them off-heap.
+ *
+ * <p>getNativeCache() returns the heap tier's native cache, so the provider-specific code that
+ * inspects it keeps working; it must use getOffHeap() and putOffHeapIf() itself to reach the
+ * off-heap tier.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class TieredCache implements Cache {
+
+  @Getter
+  @NonNull
+  private final Cache heapCache;
+
+  @Getter
+  @NonNull
+  private final OffHeapStore<Object> offHeapStore;
+
+  @NonNull
+  private final ICacheValueCodec<?> codec;
+
+  @Override
+  public String getName() {
+    return heapCache.getName();
+  }
+
+  @Override
+  public Object getNativeCache() {
+    return heapCache.getNativeCache();
+  }
+
+  @Override
+  public ValueWrapper get(final Object key) {
+    ValueWrapper wrapper = heapCache.get(key);
+    if (wrapper != null) {
+      return wrapper;
+    }
+    Object value = getOffHeap(key);
+    return value == null ? null : new SimpleValueWrapper(value);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T get(final Object key, final Class<T> type) {
+    ValueWrapper wrapper = get(key);
+    Object value = wrapper == null ? null : wrapper.get();
+    if (value != null && type != null && !type.isInstance(value)) {
+      throw new IllegalStateException(
+          "Cached value is not of required type [" + type.getName() + "]: " + value);
+    }
+    return (T) value;
+  }
+
+  @Override
+  public <T> T get(final Object key, final Callable<T> valueLoader) {
+    // The heap tier's loader runs at most once per key at a time, so the off-heap read does too
+    return heapCache.get(key, () -> {
+      T value = decode(offHeapStore.get(key));
+      if (value == null) {
+        value = valueLoader.call();
+        putOffHeapIf(key, value, current -> true);
+      }
+      return value;
+    });
+  }
+
+  @Override
+  public void put(final Object key, final Object value) {
+    heapCache.put(key, value);
+    putOffHeapIf(key, value, current -> true);
+  }
+
+  @Override
+  public ValueWrapper putIfAbsent(final Object key, final Object value) {
+    ValueWrapper existing = get(key);
+    if (existing != null) {
+      return existing;
+    }
+    existing = heapCache.putIfAbsent(key, value);
+    if (existing == null) {
+      putOffHeapIf(key, value, current -> true);
+    }
+    return existing;
+  }
+
+  @Override
+  public void evict(final Object key) {
+    heapCache.evict(key);
+    offHeapStore.remove(key);
+  }
+
+  @Override
+  public void clear() {
+    heapCache.clear();
+    offHeapStore.clear();
+  }
+
+  /**
+   * Return the value stored off-heap under the given key, promoting it into the heap tier, or null
+   * if there isn't one.
+   */
+  public Object getOffHeap(final Object key) {
+    Object value = decode(offHeapStore.get(key));
+    if (value != null) {
+      heapCache.put(key, value);
+    }
+    return value;
+  }
+
+  /**
+   * Write a value the heap tier has just loaded itself to the off-heap tier too. A reloaded value
+   * only replaces the value it reloaded, so that it can't overwrite one put while it was loading.
+   *
+   * @param previousValue the value that was reloaded, or null if the key wasn't cached
+   * @param value the value loaded, or null to remove the key
+   */
+  public void loaded(final Object key, final Object previousValue, final Object value) {
+    if (value == null) {
+      offHeapStore.remove(key);
+    } else if (previousValue == null) {
+      putOffHeapIf(key, value, current -> true);
+    } else {
+      putOffHeapIf(key, value, previousValue::equals);
+    }
+  }
+
+  /**
+   * Store the given value off-heap under the given key, unless a value is already stored there and
+   * fails the given test. Does nothing if the codec doesn't handle the value.
+   *
+   * @param replace decides, given the value currently stored off-heap, whether to replace it
+   * @return true if the value was stored
+   */
+  public boolean putOffHeapIf(final Object key, final Object value,
+      final Predicate<Object> replace) {
+    if (!codec.getValueType().isInstance(value)) {
+      return false;
+    }
+    byte[] encoded = encode(value);
+    boolean stored = offHeapStore.putIf(key, encoded, current -> replace.test(decode(current)));
+    if (!stored && encoded.length > offHeapStore.maxValueBytes()) {
+      log.warn("Value for key {} of cache {} is too large to keep off-heap ({} bytes)", key,
+          getName(), encoded.length);
+    }
+    return stored;
+  }
+
+  @SuppressWarnings("unchecked")
+  private <V> byte[] encode(final Object value) {
+    return ((ICacheValueCodec<V>) codec).encode((V) value);
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> T decode(final byte[] bytes) {
+    return bytes == null ? null : (T) codec.decode(bytes);
+  }
+}
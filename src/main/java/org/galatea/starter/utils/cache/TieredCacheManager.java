@@ -0,0 +1,142 @@
+package org.galatea.starter.utils.cache;
+
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.Policy.Expiration;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.config.CacheConfiguration;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * CacheManager that gives selected caches of another CacheManager an off-heap tier. See
+ * TieredCache.
+ *
+ * <p>A cache gets an off-heap tier if it has both a size in cache.off-heap.sizes and an
+ * ICacheValueCodec; every other cache is returned as the wrapped CacheManager returns it.
+ *
+ * <p>The off-heap tier expires its values after the heap tier's time to live: Caffeine's
+ * expireAfterWrite, or EhCache's timeToLiveSeconds, whichever the heap tier is. A heap tier that
+ * only expires idle entries has its time to idle used instead, as off-heap values are never
+ * touched by reads of the heap tier. Values a Caffeine heap tier loads or reloads itself are
+ * written off-heap as well.
+ */
+@Slf4j
+public class TieredCacheManager implements CacheManager, InitializingBean {
+
+  private final CacheManager heapCacheManager;
+
+  private final Map<String, DataSize> offHeapSizes;
+
+  private final Map<String, ICacheValueCodec<?>> codecs = new HashMap<>();
+
+  private final ConcurrentMap<String, Cache> caches = new ConcurrentHashMap<>();
+
+  /**
+   * Construct a TieredCacheManager.
+   *
+   * @param heapCacheManager provides the heap tier of every cache
+   * @param offHeapSizes the off-heap tier size of each cache, by cache name
+   * @param codecs encode the values of the caches with an off-heap tier
+   */
+  public TieredCacheManager(final CacheManager heapCacheManager,
+      final Map<String, DataSize> offHeapSizes, final Collection<ICacheValueCodec<?>> codecs) {
+    this.heapCacheManager = heapCacheManager;
+    this.offHeapSizes = new HashMap<>(offHeapSizes);
+    for (ICacheValueCodec<?> codec : codecs) {
+      this.codecs.put(codec.getCacheName(), codec);
+    }
+    if (heapCacheManager instanceof PerCacheCaffeineCacheManager) {
+      ((PerCacheCaffeineCacheManager) heapCacheManager).setLoadListener(this::loaded);
+    }
+  }
+
+  /**
+   * Initialize the wrapped CacheManager, which as a nested object isn't initialized by Spring.
+   */
+  @Override
+  public void afterPropertiesSet() throws Exception {
+    if (heapCacheManager instanceof InitializingBean) {
+      ((InitializingBean) heapCacheManager).afterPropertiesSet();
+    }
+  }
+
+  @Override
+  public Cache getCache(final String name) {
+    Cache cache = caches.get(name);
+    if (cache != null) {
+      return cache;
+    }
+    Cache heapCache = heapCacheManager.getCache(name);
+    if (heapCache == null) {
+      return null;
+    }
+    return caches.computeIfAbsent(name, key -> tier(heapCache));
+  }
+
+  @Override
+  public Collection<String> getCacheNames() {
+    return heapCacheManager.getCacheNames();
+  }
+
+  private Cache tier(final Cache heapCache) {
+    String name = heapCache.getName();
+    DataSize size = offHeapSizes.get(name);
+    ICacheValueCodec<?> codec = codecs.get(name);
+    if (size == null || codec == null) {
+      if (size != null) {
+        log.warn("Cache '{}' has an off-heap size but no ICacheValueCodec, so stays on-heap only",
+            name);
+      }
+      return heapCache;
+    }
+    Duration timeToLive = timeToLive(heapCache);
+    log.info("Adding a {} off-heap tier to cache '{}', expiring values after {}", size, name,
+        timeToLive.isZero() ? "never" : timeToLive);
+    return new TieredCache(heapCache, new OffHeapStore<>(size.toBytes(), timeToLive), codec);
+  }
+
+  private void loaded(final String cacheName, final Object key, final Object previousValue,
+      final Object value) {
+    Cache cache = getCache(cacheName);
+    if (cache instanceof TieredCache) {
+      ((TieredCache) cache).loaded(key, previousValue, value);
+    }
+  }
+
+  // How long the heap tier keeps a value, or zero for as long as there is room
+  @SuppressWarnings("unchecked")
+  private static Duration timeToLive(final Cache heapCache) {
+    Object nativeCache = heapCache.getNativeCache();
+    if (nativeCache instanceof com.github.benmanes.caffeine.cache.Cache) {
+      Policy<Object, Object> policy =
+          ((com.github.benmanes.caffeine.cache.Cache<Object, Object>) nativeCache).policy();
+      Optional<Expiration<Object, Object>> expiration = policy.expireAfterWrite();
+      if (!expiration.isPresent()) {
+        expiration = policy.expireAfterAccess();
+      }
+      return expiration.map(e -> Duration.ofNanos(e.getExpiresAfter(TimeUnit.NANOSECONDS)))
+          .orElse(Duration.ZERO);
+    }
+    if (nativeCache instanceof Ehcache) {
+      CacheConfiguration configuration = ((Ehcache) nativeCache).getCacheConfiguration();
+      if (configuration.isEternal()) {
+        return Duration.ZERO;
+      }
+      long seconds = configuration.getTimeToLiveSeconds() > 0
+          ? configuration.getTimeToLiveSeconds() : configuration.getTimeToIdleSeconds();
+      return Duration.ofSeconds(seconds);
+    }
+    return Duration.ZERO;
+  }
+}
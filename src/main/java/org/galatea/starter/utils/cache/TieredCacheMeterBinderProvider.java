@@ -0,0 +1,59 @@
+package org.galatea.starter.utils.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.actuate.metrics.cache.CacheMeterBinderProvider;
+import org.springframework.boot.actuate.metrics.cache.CaffeineCacheMeterBinderProvider;
+import org.springframework.boot.actuate.metrics.cache.EhCache2CacheMeterBinderProvider;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.ehcache.EhCacheCache;
+import org.springframework.stereotype.Component;
+
+/**
+ * Binds the metrics of a TieredCache: the usual cache.* metrics of its heap tier, as Spring Boot
+ * would bind them for the heap tier on its own, plus the occupancy of its off-heap tier.
+ */
+@Component
+public class TieredCacheMeterBinderProvider implements CacheMeterBinderProvider<TieredCache> {
+
+  @Override
+  public MeterBinder getMeterBinder(final TieredCache cache, final Iterable<Tag> tags) {
+    MeterBinder heapBinder = heapMeterBinder(cache, tags);
+    OffHeapStore<Object> store = cache.getOffHeapStore();
+    Tags offHeapTags = Tags.of(tags).and("name", cache.getName());
+
+    return registry -> {
+      if (heapBinder != null) {
+        heapBinder.bindTo(registry);
+      }
+      Gauge.builder("cache.offheap.size", store, OffHeapStore::size).tags(offHeapTags)
+          .description("The number of entries in the off-heap tier").register(registry);
+      Gauge.builder("cache.offheap.used", store, OffHeapStore::usedBytes).tags(offHeapTags)
+          .baseUnit("bytes").description("Bytes of entries in the off-heap tier")
+          .register(registry);
+      Gauge.builder("cache.offheap.allocated", store, OffHeapStore::allocatedBytes)
+          .tags(offHeapTags).baseUnit("bytes")
+          .description("Bytes of direct memory allocated by the off-heap tier").register(registry);
+      Gauge.builder("cache.offheap.capacity", store, OffHeapStore::capacityBytes)
+          .tags(offHeapTags).baseUnit("bytes")
+          .description("Bytes of entries the off-heap tier can hold").register(registry);
+      FunctionCounter.builder("cache.offheap.evictions", store, OffHeapStore::evictionCount)
+          .tags(offHeapTags).description("Entries overwritten in the off-heap tier")
+          .register(registry);
+    };
+  }
+
+  private static MeterBinder heapMeterBinder(final TieredCache cache, final Iterable<Tag> tags) {
+    if (cache.getHeapCache() instanceof CaffeineCache) {
+      return new CaffeineCacheMeterBinderProvider()
+          .getMeterBinder((CaffeineCache) cache.getHeapCache(), tags);
+    } else if (cache.getHeapCache() instanceof EhCacheCache) {
+      return new EhCache2CacheMeterBinderProvider()
+          .getMeterBinder((EhCacheCache) cache.getHeapCache(), tags);
+    }
+    return null;
+  }
+}
@@ -0,0 +1,267 @@
+package org.galatea.starter.utils.collapse;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Collapses concurrent lookups of overlapping keys into fewer, larger calls to a bulk loader.
+ *
+ * <p>Keys asked for within maxWait of each other are gathered into one batch, loaded with a single
+ * call for the union of their keys, and the values handed back to each caller. A key that is
+ * already in a batch waiting to be loaded, or being loaded, is not added to another one; its
+ * caller just waits for that batch. A batch is loaded once maxWait has passed since it was opened
+ * or as soon as it holds maxBatchSize keys, whichever comes first, and a caller with more keys than
+ * that spreads them over several batches.
+ *
+ * <p>No threads of its own are used: a batch is loaded by the caller that opened it, once its wait
+ * is up, or by the caller that filled it. A failed load fails every caller waiting on the batch,
+ * with the loader's own exception.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+@Slf4j
+public class RequestCollapser<K, V> implements MeterBinder {
+
+  public static final String BATCH_KEYS_METER = "collapser.batch.keys";
+
+  public static final String BATCH_REQUESTS_METER = "collapser.batch.requests";
+
+  public static final String BATCH_LOAD_METER = "collapser.batch.load";
+
+  public static final String COLLAPSED_KEYS_METER = "collapser.keys.collapsed";
+
+  private final String name;
+
+  private final Function<Set<K>, Map<K, V>> loader;
+
+  private final long maxWaitNanos;
+
+  private final int maxBatchSize;
+
+  private final Object lock = new Object();
+
+  // Guarded by lock
+  private Batch<K, V> openBatch;
+
+  // Guarded by lock. Every key in a batch not yet loaded, with its batch
+  private final Map<K, Batch<K, V>> pendingKeys = new HashMap<>();
+
+  private volatile MeterRegistry registry;
+
+  /**
+   * Construct a RequestCollapser.
+   *
+   * @param name tags the collapser's metrics
+   * @param loader loads the values of a batch of keys. Keys it has no value for can be left out
+   * @param maxWait how long a batch waits for more keys after it is opened. Zero loads each
+   *     caller's keys straight away, only collapsing them into batches already being loaded
+   * @param maxBatchSize the most keys loaded in one call
+   */
+  public RequestCollapser(final String name, final Function<Set<K>, Map<K, V>> loader,
+      final Duration maxWait, final int maxBatchSize) {
+    if (maxWait.isNegative()) {
+      throw new IllegalArgumentException("Max wait must not be negative: " + maxWait);
+    }
+    if (maxBatchSize <= 0) {
+      throw new IllegalArgumentException("Max batch size must be positive: " + maxBatchSize);
+    }
+    this.name = name;
+    this.loader = loader;
+    this.maxWaitNanos = maxWait.toNanos();
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  @Override
+  public void bindTo(final MeterRegistry registry) {
+    this.registry = registry;
+  }
+
+  /**
+   * Return the values of the given keys, loading them along with whatever other keys are asked
+   * for at about the same time. Blocks until every batch holding one of the keys has been loaded.
+   *
+   * @return the values found, by key, in the order the keys were given. Keys the loader had no
+   *     value for are left out
+   */
+  public Map<K, V> getAll(final Collection<K> keys) {
+    Set<K> distinctKeys = new LinkedHashSet<>(keys);
+    if (distinctKeys.isEmpty()) {
+      return Collections.emptyMap();
+    }
+
+    Map<K, Batch<K, V>> batchByKey = new HashMap<>();
+    Set<Batch<K, V>> filled = new LinkedHashSet<>();
+    Batch<K, V> opened = null;
+    int collapsed = 0;
+    synchronized (lock) {
+      for (K key : distinctKeys) {
+        Batch<K, V> batch = pendingKeys.get(key);
+        if (batch != null) {
+          collapsed++;
+        } else {
+          if (openBatch == null) {
+            openBatch = new Batch<>(Thread.currentThread(), System.nanoTime() + maxWaitNanos);
+            opened = openBatch;
+          }
+          batch = openBatch;
+          batch.keys.add(key);
+          pendingKeys.put(key, batch);
+          if (batch.keys.size() >= maxBatchSize) {
+            closeOpenBatch();
+            filled.add(batch);
+          }
+        }
+        batchByKey.put(key, batch);
+      }
+      new LinkedHashSet<>(batchByKey.values()).forEach(batch -> batch.requests++);
+    }
+    if (collapsed > 0) {
+      countCollapsed(collapsed);
+    }
+
+    filled.forEach(this::load);
+    if (opened != null && !filled.contains(opened)) {
+      awaitMaxWait(opened);
+    }
+    return collect(distinctKeys, batchByKey);
+  }
+
+  // Wait out the batch's wait, unless someone else fills it first, then load it if it's still open.
+  // An interrupt cuts the wait short, since parkNanos() returns at once while the flag is set
+  private void awaitMaxWait(final Batch<K, V> batch) {
+    boolean interrupted = false;
+    long remaining;
+    while (!batch.closed && (remaining = batch.loadAt - System.nanoTime()) > 0) {
+      LockSupport.parkNanos(this, remaining);
+      if (Thread.interrupted()) {
+        interrupted = true;
+        break;
+      }
+    }
+    try {
+      synchronized (lock) {
+        if (batch.closed) {
+          return;
+        }
+        closeOpenBatch();
+      }
+      load(batch);
+    } finally {
+      // Restored only after the load, so that the loader isn't interrupted on the other callers'
+      // behalf
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  // Called with the lock held
+  private void closeOpenBatch() {
+    Batch<K, V> batch = openBatch;
+    openBatch = null;
+    batch.closed = true;
+    if (batch.leader != Thread.currentThread()) {
+      // Stop the caller that opened it from waiting any longer
+      LockSupport.unpark(batch.leader);
+    }
+  }
+
+  private void load(final Batch<K, V> batch) {
+    Set<K> keys = Collections.unmodifiableSet(batch.keys);
+    long start = System.nanoTime();
+    String outcome = "success";
+    try {
+      batch.values.complete(loader.apply(keys));
+    } catch (RuntimeException e) {
+      outcome = "error";
+      batch.values.completeExceptionally(e);
+    } finally {
+      // Anything else thrown still mustn't leave the callers waiting forever
+      batch.values.completeExceptionally(new IllegalStateException("Batch load failed"));
+      synchronized (lock) {
+        keys.forEach(key -> pendingKeys.remove(key, batch));
+      }
+      record(batch, System.nanoTime() - start, outcome);
+    }
+    log.debug("Loaded {} key(s) for {} request(s) in one batch", keys.size(), batch.requests);
+  }
+
+  private Map<K, V> collect(final Set<K> keys, final Map<K, Batch<K, V>> batchByKey) {
+    Map<K, V> found = new LinkedHashMap<>();
+    for (K key : keys) {
+      V value;
+      try {
+        value = batchByKey.get(key).values.join().get(key);
+      } catch (CompletionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        }
+        throw e;
+      }
+      if (value != null) {
+        found.put(key, value);
+      }
+    }
+    return found;
+  }
+
+  private void record(final Batch<K, V> batch, final long loadNanos, final String outcome) {
+    MeterRegistry meterRegistry = registry;
+    if (meterRegistry == null) {
+      return;
+    }
+    DistributionSummary.builder(BATCH_KEYS_METER).tag("collapser", name)
+        .description("Distinct keys loaded per batch").register(meterRegistry)
+        .record(batch.keys.size());
+    DistributionSummary.builder(BATCH_REQUESTS_METER).tag("collapser", name)
+        .description("Requests served per batch").register(meterRegistry)
+        .record(batch.requests);
+    Timer.builder(BATCH_LOAD_METER).tag("collapser", name).tag("outcome", outcome)
+        .description("Time taken to load a batch").register(meterRegistry)
+        .record(loadNanos, TimeUnit.NANOSECONDS);
+  }
+
+  private void countCollapsed(final int keys) {
+    MeterRegistry meterRegistry = registry;
+    if (meterRegistry != null) {
+      Counter.builder(COLLAPSED_KEYS_METER).tag("collapser", name)
+          .description("Keys asked for that were already in a batch").register(meterRegistry)
+          .increment(keys);
+    }
+  }
+
+  private static class Batch<K, V> {
+
+    private final Thread leader;
+    private final long loadAt;
+    // Guarded by the collapser's lock until the batch is closed, and not changed after
+    private final Set<K> keys = new LinkedHashSet<>();
+    // Guarded by the collapser's lock
+    private int requests;
+    private volatile boolean closed;
+    private final CompletableFuture<Map<K, V>> values = new CompletableFuture<>();
+
+    private Batch(final Thread leader, final long loadAt) {
+      this.leader = leader;
+      this.loadAt = loadAt;
+    }
+  }
+}
@@ -1,14 +1,29 @@
 package org.galatea.starter.utils.http.converter;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
 import com.fasterxml.jackson.dataformat.csv.CsvMapper;
 import com.fasterxml.jackson.dataformat.csv.CsvSchema;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 public class CsvSerializer {
 
+  // A CsvMapper is thread-safe once configured, so a single instance is shared by all callers.
+  // Note that Jackson CSV doesn't work on objects with fields that hold complex objects
+  // See https://github.com/FasterXML/jackson-dataformat-csv/issues/9
+  private static final CsvMapper MAPPER = createMapper();
+
+  // Building a schema introspects the class, so do it once per class and reuse the resulting
+  // (immutable) writer for every subsequent request
+  private static final ConcurrentMap<Class<?>, ObjectWriter> WRITERS = new ConcurrentHashMap<>();
+
   private CsvSerializer() {}
 
   /**
@@ -23,19 +38,51 @@ public class CsvSerializer {
    * @param rows the collection of objects that should be serialized into the CSV document
    * @param clazz the class that is the type of the row data
    * @param <T> the type of the row data
-   * @return an xlsx spreadsheet as a byte array
+   * @return the CSV document as a string
    */
   public static <T> String serializeToCsv(final Iterable<T> rows, final Class<T> clazz)
       throws IOException {
-    // Note that Jackson CSV doesn't work on objects with fields that hold complex objects
-    // See https://github.com/FasterXML/jackson-dataformat-csv/issues/9
-    CsvMapper mapper = new CsvMapper();
-    mapper.disable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY);
+    // See CsvSerializerTest for examples of Jackson CSV behavior
+    return getWriter(clazz).writeValueAsString(rows);
+  }
+
+  /**
+   * Serialize the given objects to a CSV document, writing each row to the given stream as soon as
+   * it has been serialized.
+   *
+   * <p>Unlike {@link #serializeToCsv(Iterable, Class)}, the document is never held in memory in
+   * its entirety; the generator flushes its internal buffer to the stream each time it fills up,
+   * so memory use stays flat regardless of how many rows are written. The stream is flushed but
+   * not closed.
+   *
+   * @param rows the collection of objects that should be serialized into the CSV document
+   * @param clazz the class that is the type of the row data
+   * @param out the stream to write the document to
+   * @param <T> the type of the row data
+   */
+  public static <T> void serializeToCsv(final Iterable<T> rows, final Class<T> clazz,
+      final OutputStream out) throws IOException {
+    try (SequenceWriter sequenceWriter = getWriter(clazz).writeValues(out)) {
+      for (T row : rows) {
+        sequenceWriter.write(row);
+      }
+    }
+  }
+
+  private static ObjectWriter getWriter(final Class<?> clazz) {
     // Jackson CSV uses the property names for the header row by default. To have a custom header
     // for one or more columns, see
     // https://stackoverflow.com/questions/40221223/jackson-dataformat-csv-are-custom-column-names-possible
-    CsvSchema schema = mapper.schemaFor(clazz).withHeader();
-    return mapper.writer(schema).writeValueAsString(rows);
-    // See CsvWriterTest for examples of Jackson CSV behavior
+    return WRITERS.computeIfAbsent(clazz,
+        key -> MAPPER.writer(MAPPER.schemaFor(key).withHeader()));
+  }
+
+  private static CsvMapper createMapper() {
+    CsvMapper mapper = new CsvMapper();
+    mapper.disable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY);
+    // The caller owns the target stream (e.g. the HTTP response body), so don't close it when the
+    // generator is closed
+    mapper.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    return mapper;
   }
 }
@@ -0,0 +1,142 @@
+package org.galatea.starter.utils.http.converter;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.MvcConfig;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionStream;
+import org.galatea.starter.utils.translation.ITranslator;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+
+/**
+ * Custom HttpMessageConverter implementation that writes a SettlementMissionStream to the HTTP
+ * response one mission at a time, as JSON, CSV, XLSX or length-delimited protobuf.
+ *
+ * <p>No format ever holds more than a handful of missions in memory, so the size of a listing is
+ * bounded by the client's patience rather than by the service's heap.
+ */
+// See comments throughout SettlementMissionCsvConverter
+@Slf4j
+public class SettlementMissionStreamConverter
+    extends AbstractHttpMessageConverter<SettlementMissionStream> {
+
+  private final ObjectMapper objectMapper;
+
+  private final ITranslator<SettlementMission, SettlementMissionProtoMessage> protoTranslator;
+
+  private final int rowAccessWindowSize;
+
+  /**
+   * Construct a SettlementMissionStreamConverter that supports JSON, CSV, Excel and protobuf
+   * MediaTypes.
+   *
+   * @param objectMapper used to write each mission as JSON
+   * @param protoTranslator used to translate each mission to protobuf
+   * @param rowAccessWindowSize the number of rows to keep in memory while streaming an XLSX
+   *     spreadsheet; older rows are flushed to a temporary file
+   */
+  public SettlementMissionStreamConverter(final ObjectMapper objectMapper,
+      final ITranslator<SettlementMission, SettlementMissionProtoMessage> protoTranslator,
+      final int rowAccessWindowSize) {
+    super(MediaType.APPLICATION_JSON, MvcConfig.TEXT_CSV, MvcConfig.APPLICATION_EXCEL,
+        MvcConfig.APPLICATION_PROTOBUF);
+    this.objectMapper = objectMapper;
+    this.protoTranslator = protoTranslator;
+    this.rowAccessWindowSize = rowAccessWindowSize;
+  }
+
+  @Override
+  protected boolean supports(final Class<?> clazz) {
+    return SettlementMissionStream.class.equals(clazz);
+  }
+
+  @Override
+  protected SettlementMissionStream readInternal(
+      final Class<? extends SettlementMissionStream> clazz,
+      final HttpInputMessage inputMessage) throws IOException {
+    throw new UnsupportedOperationException("Reading a SettlementMissionStream is not supported");
+  }
+
+  @Override
+  protected void writeInternal(final SettlementMissionStream settlementMissionStream,
+      final HttpOutputMessage outputMessage) throws IOException {
+    MediaType contentType = outputMessage.getHeaders().getContentType();
+    OutputStream out = outputMessage.getBody();
+    log.info("Streaming SettlementMissions as {} for HTTP response", contentType);
+
+    if (MvcConfig.TEXT_CSV.isCompatibleWith(contentType)) {
+      settlementMissionStream.consume(missions -> CsvSerializer.serializeToCsv(
+          iterable(missions), SettlementMission.class, out));
+    } else if (MvcConfig.APPLICATION_EXCEL.isCompatibleWith(contentType)) {
+      settlementMissionStream.consume(missions -> XlsxSerializer.serializeToXlsx(
+          iterable(missions), SettlementMission.class, out, rowAccessWindowSize));
+    } else if (MvcConfig.APPLICATION_PROTOBUF.isCompatibleWith(contentType)) {
+      settlementMissionStream.consume(missions -> writeDelimitedProtobuf(missions, out));
+    } else {
+      settlementMissionStream.consume(missions -> writeJson(missions, out));
+    }
+    log.info("Streamed SettlementMissions");
+  }
+
+  /*
+   * Write the missions in the same shape as a SettlementMissionList, i.e.
+   * {"settlementMissions":[...]}, one array element at a time.
+   */
+  private void writeJson(final Stream<SettlementMission> missions, final OutputStream out)
+      throws IOException {
+    try (JsonGenerator generator =
+        objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+      // The servlet container owns the response stream
+      generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      generator.writeStartObject();
+      generator.writeArrayFieldStart("settlementMissions");
+      for (SettlementMission mission : iterable(missions)) {
+        generator.writeObject(mission);
+      }
+      generator.writeEndArray();
+      generator.writeEndObject();
+    }
+  }
+
+  /*
+   * Write each mission as a varint length followed by the message, so that a client can read them
+   * back one at a time with SettlementMissionProtoMessage.parseDelimitedFrom().
+   */
+  private void writeDelimitedProtobuf(final Stream<SettlementMission> missions,
+      final OutputStream out) throws IOException {
+    for (SettlementMission mission : iterable(missions)) {
+      protoTranslator.translate(mission).writeDelimitedTo(out);
+    }
+  }
+
+  // Streams can only be iterated once, which is all that any of the serializers do
+  private static Iterable<SettlementMission> iterable(final Stream<SettlementMission> missions) {
+    return missions::iterator;
+  }
+
+  /**
+   * Add additional headers to the outgoing response when this converter is used.
+   */
+  @Override
+  protected void addDefaultHeaders(final HttpHeaders headers,
+      final SettlementMissionStream settlementMissionStream,
+      final MediaType contentType) throws IOException {
+    super.addDefaultHeaders(headers, settlementMissionStream, contentType);
+    if (MvcConfig.TEXT_CSV.isCompatibleWith(contentType)) {
+      headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=SettlementMissions.csv");
+    } else if (MvcConfig.APPLICATION_EXCEL.isCompatibleWith(contentType)) {
+      headers.add(HttpHeaders.CONTENT_DISPOSITION,
+          "attachment; filename=SettlementMissions.xlsx");
+    }
+  }
+}
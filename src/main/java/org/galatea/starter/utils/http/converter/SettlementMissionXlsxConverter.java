@@ -2,6 +2,7 @@ package org.galatea.starter.utils.http.converter;
 
 import java.io.IOException;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.galatea.starter.MvcConfig;
 import org.galatea.starter.domain.SettlementMission;
 import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionList;
@@ -20,11 +21,25 @@ import org.springframework.http.converter.AbstractHttpMessageConverter;
 public class SettlementMissionXlsxConverter
     extends AbstractHttpMessageConverter<SettlementMissionList> {
 
+  private final int rowAccessWindowSize;
+
   /**
-   * Construct a SettlementMissionXlsxConverter that supports an Excel MediaType.
+   * Construct a SettlementMissionXlsxConverter that supports an Excel MediaType and keeps POI's
+   * default number of rows in memory while streaming.
    */
   public SettlementMissionXlsxConverter() {
+    this(SXSSFWorkbook.DEFAULT_WINDOW_SIZE);
+  }
+
+  /**
+   * Construct a SettlementMissionXlsxConverter that supports an Excel MediaType.
+   *
+   * @param rowAccessWindowSize the number of rows to keep in memory while streaming the
+   *     spreadsheet; older rows are flushed to a temporary file
+   */
+  public SettlementMissionXlsxConverter(final int rowAccessWindowSize) {
     super(MvcConfig.APPLICATION_EXCEL);
+    this.rowAccessWindowSize = rowAccessWindowSize;
   }
 
   @Override
@@ -44,8 +59,8 @@ public class SettlementMissionXlsxConverter
   protected void writeInternal(final SettlementMissionList settlementMissionList,
       final HttpOutputMessage outputMessage) throws IOException {
     log.info("Converting SettlementMissionList to XLSX for HTTP response");
-    outputMessage.getBody().write(XlsxSerializer.serializeToXlsx(
-        settlementMissionList.getSettlementMissions(), SettlementMission.class));
+    XlsxSerializer.serializeToXlsx(settlementMissionList.getSettlementMissions(),
+        SettlementMission.class, outputMessage.getBody(), rowAccessWindowSize);
     log.info("Converted SettlementMissionList to XLSX");
   }
 
@@ -4,32 +4,50 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.BiConsumer;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.reflect.FieldUtils;
+import org.apache.commons.lang3.ClassUtils;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 @Slf4j
 // See XlsxSerializerTest for example output
 public class XlsxSerializer {
 
+  // Working out which fields to serialize, what their headers are and how to read them requires
+  // reflection, so do it once per class and reuse the result for every subsequent spreadsheet.
+  // ClassValue (rather than a map keyed on Class) lets the entry be collected along with the class.
+  private static final ClassValue<List<XlsxColumn>> COLUMNS = new ClassValue<List<XlsxColumn>>() {
+    @Override
+    protected List<XlsxColumn> computeValue(final Class<?> type) {
+      return buildColumns(type);
+    }
+  };
+
   private XlsxSerializer() {}
 
   /**
    * Serialize the given objects to an XLSX spreadsheet.
    *
-   * <p>Doesn't do any special handling of nested complex objects or collections in the given
-   * row objects - each field in the row object is basically toString()'ed and put in a cell.
+   * <p>Numeric and boolean fields are written as numeric and boolean cells. Doesn't do any special
+   * handling of nested complex objects or collections in the given row objects - every other field
+   * in the row object is basically toString()'ed and put in a cell.
    *
    * @param rows the row data that the spreadsheet should hold
    * @param clazz the class that is the type of the row data
@@ -41,14 +59,60 @@ public class XlsxSerializer {
     // XSSF is used for xlsx-format spreadsheets, HSSF is used for xls-format
     // SXSSF is the streaming version of XSSF, and is useful for working with large spreadsheets
     try (Workbook wb = new XSSFWorkbook()) {
-      Sheet sheet = wb.createSheet(clazz.getSimpleName());
-      List<Field> fieldsToSerialize = getFieldsToSerialize(clazz);
-      populateHeaderRow(sheet, getHeaderValues(fieldsToSerialize));
-      populateDataRows(sheet, fieldsToSerialize, rows);
+      populateWorkbook(wb, rows, clazz);
       return writeSpreadsheetToBytes(wb);
     }
   }
 
+  /**
+   * Serialize the given objects to an XLSX spreadsheet using the streaming (SXSSF) workbook
+   * implementation, writing the finished spreadsheet to the given stream.
+   *
+   * <p>Only the most recent {@code rowAccessWindowSize} rows are kept in memory; older rows are
+   * flushed to a temporary file as new rows are created, so heap use is bounded by the window
+   * rather than by the number of rows. The temporary file is deleted once the spreadsheet has been
+   * written. The stream is not closed.
+   *
+   * @param rows the row data that the spreadsheet should hold
+   * @param clazz the class that is the type of the row data
+   * @param out the stream to write the spreadsheet to
+   * @param rowAccessWindowSize the number of rows to keep in memory before flushing to disk
+   * @param <T> the type of the row data
+   */
+  public static <T> void serializeToXlsx(final Iterable<T> rows, final Class<T> clazz,
+      final OutputStream out, final int rowAccessWindowSize) throws IOException {
+    SXSSFWorkbook wb = new SXSSFWorkbook(rowAccessWindowSize);
+    try {
+      populateWorkbook(wb, rows, clazz);
+      wb.write(out);
+    } finally {
+      // close() alone leaves the temporary file holding the flushed rows behind
+      wb.dispose();
+      wb.close();
+    }
+  }
+
+  // Package-private so that the benchmarks can measure row population on its own
+  static <T> void populateWorkbook(final Workbook wb, final Iterable<T> rows,
+      final Class<T> clazz) {
+    Sheet sheet = wb.createSheet(clazz.getSimpleName());
+    List<XlsxColumn> columns = COLUMNS.get(clazz);
+    populateHeaderRow(sheet, columns);
+    populateDataRows(sheet, columns, rows);
+  }
+
+  /*
+   * Build the columns for the given class: which fields to serialize, what their headers are, how
+   * to read them and how to write them to a cell. This only runs once per class; see COLUMNS.
+   */
+  private static List<XlsxColumn> buildColumns(final Class<?> clazz) {
+    List<XlsxColumn> columns = new ArrayList<>();
+    for (Field field : getFieldsToSerialize(clazz)) {
+      columns.add(XlsxColumn.of(field, getHeaderValue(field)));
+    }
+    return Collections.unmodifiableList(columns);
+  }
+
   /*
    * Get a list of all fields in the given class, including inherited and private fields, but
    * excluding any @JsonIgnore'd fields.
@@ -71,7 +135,8 @@ public class XlsxSerializer {
   /*
    * Check whether a field should be serialized.
    *
-   * Returns false if the field is synthetic, transient, or @JsonIgnore-d, and true otherwise.
+   * Returns false if the field is synthetic, static, transient, or @JsonIgnore-d, and true
+   * otherwise.
    */
   private static boolean shouldSerializeField(final Field field) {
     // Jacoco adds a synthetic member variable "$jacocoData" to classes under test. Ignore such
@@ -81,6 +146,10 @@ public class XlsxSerializer {
     if (field.isSynthetic()) {
       return false;
     }
+    // Static fields (e.g. a logger or a constant) don't hold row data
+    if (Modifier.isStatic(field.getModifiers())) {
+      return false;
+    }
     // The transient keyword indicates that a variable should not be serialized
     if (Modifier.isTransient(field.getModifiers())) {
       return false;
@@ -91,49 +160,41 @@ public class XlsxSerializer {
   }
 
   /*
-   * Get the column headers that should be used for the given fields. If a @JsonProperty annotation
-   * is present on a given field, use that annotation's value as the header, otherwise use the field
+   * Get the column header that should be used for the given field. If a @JsonProperty annotation
+   * is present on the field, use that annotation's value as the header, otherwise use the field
    * name.
    */
-  private static List<String> getHeaderValues(final List<Field> fields) {
-    List<String> headers = new ArrayList<>();
-    for (Field field : fields) {
-      // Could also use a custom annotation instead of JsonProperty if different configuration is
-      // needed for JSON and XLSX serialization
-      JsonProperty customHeaderNameAnnotation = field.getAnnotation(JsonProperty.class);
-      String header = customHeaderNameAnnotation == null
-          ? field.getName()
-          : customHeaderNameAnnotation.value();
-      headers.add(header);
-    }
-    return headers;
+  private static String getHeaderValue(final Field field) {
+    // Could also use a custom annotation instead of JsonProperty if different configuration is
+    // needed for JSON and XLSX serialization
+    JsonProperty customHeaderNameAnnotation = field.getAnnotation(JsonProperty.class);
+    return customHeaderNameAnnotation == null
+        ? field.getName()
+        : customHeaderNameAnnotation.value();
   }
 
   /*
-   * Populate the first row of the given sheet using the given list of header values.
+   * Populate the first row of the given sheet using the headers of the given columns.
    */
-  private static void populateHeaderRow(final Sheet sheet, final List<String> headers) {
+  private static void populateHeaderRow(final Sheet sheet, final List<XlsxColumn> columns) {
     Row headerRow = sheet.createRow(0);
-    for (int col = 0; col < headers.size(); col++) {
+    for (int col = 0; col < columns.size(); col++) {
       Cell headerCell = headerRow.createCell(col);
-      headerCell.setCellValue(headers.get(col));
+      headerCell.setCellValue(columns.get(col).getHeader());
     }
   }
 
   /*
    * Populate the rows of the given sheet using the given row data.
    */
-  @SneakyThrows(IllegalAccessException.class)
-  private static <T> void populateDataRows(final Sheet sheet, final List<Field> fieldsToSerialize,
+  private static <T> void populateDataRows(final Sheet sheet, final List<XlsxColumn> columns,
       final Iterable<T> rows) {
     int rowIndex = 1; // header is row 0
     for (T row : rows) {
       Row dataRow = sheet.createRow(rowIndex);
       rowIndex++;
-      for (int col = 0; col < fieldsToSerialize.size(); col++) {
-        Cell dataCell = dataRow.createCell(col);
-        Object cellObject = FieldUtils.readField(fieldsToSerialize.get(col), row, true);
-        dataCell.setCellValue(stringify(cellObject));
+      for (int col = 0; col < columns.size(); col++) {
+        columns.get(col).writeCell(dataRow.createCell(col), row);
       }
     }
   }
@@ -170,4 +231,65 @@ public class XlsxSerializer {
       throw e;
     }
   }
+
+  /*
+   * A single column of the spreadsheet: its header, a getter for the underlying field, and a
+   * writer that puts the field's value into a cell using the most appropriate cell type.
+   */
+  private static final class XlsxColumn {
+
+    private final String header;
+    // Of type (Object)Object so that it can be invoked exactly, without boxing the arguments
+    private final MethodHandle getter;
+    private final BiConsumer<Cell, Object> cellWriter;
+
+    private XlsxColumn(final String header, final MethodHandle getter,
+        final BiConsumer<Cell, Object> cellWriter) {
+      this.header = header;
+      this.getter = getter;
+      this.cellWriter = cellWriter;
+    }
+
+    @SneakyThrows(IllegalAccessException.class)
+    static XlsxColumn of(final Field field, final String header) {
+      // privateLookupIn gives access to private fields without setAccessible() on every read
+      MethodHandle getter = MethodHandles
+          .privateLookupIn(field.getDeclaringClass(), MethodHandles.lookup())
+          .unreflectGetter(field)
+          .asType(MethodType.methodType(Object.class, Object.class));
+      return new XlsxColumn(header, getter, cellWriterFor(field.getType()));
+    }
+
+    String getHeader() {
+      return header;
+    }
+
+    @SneakyThrows
+    void writeCell(final Cell cell, final Object row) {
+      Object value = (Object) getter.invokeExact(row);
+      if (value == null) {
+        cell.setCellValue("");
+      } else {
+        cellWriter.accept(cell, value);
+      }
+    }
+
+    /*
+     * Choose how values of the given type are written. Primitive numbers and their wrappers become
+     * numeric cells (which Excel stores as doubles), booleans become boolean cells, and anything
+     * else, including BigDecimal, is stringified so that no precision is lost. Longs, such as ids,
+     * are stringified too, since a double only holds them exactly up to 2^53.
+     */
+    private static BiConsumer<Cell, Object> cellWriterFor(final Class<?> type) {
+      Class<?> boxed = ClassUtils.primitiveToWrapper(type);
+      if (boxed == Byte.class || boxed == Short.class || boxed == Integer.class
+          || boxed == Float.class || boxed == Double.class) {
+        return (cell, value) -> cell.setCellValue(((Number) value).doubleValue());
+      } else if (boxed == Boolean.class) {
+        return (cell, value) -> cell.setCellValue((Boolean) value);
+      } else {
+        return (cell, value) -> cell.setCellValue(stringify(value));
+      }
+    }
+  }
 }
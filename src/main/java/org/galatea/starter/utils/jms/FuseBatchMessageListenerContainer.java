@@ -0,0 +1,139 @@
+package org.galatea.starter.utils.jms;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.Session;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+import org.springframework.transaction.TransactionStatus;
+
+/**
+ * Listener container that drains up to batchSize messages, or as many as arrive within
+ * batchTimeoutMs of the first one, and hands them to an IBatchMessageListener together. The whole
+ * batch is acknowledged with a single commit of the (transacted) session.
+ *
+ * <p>If the listener throws, each message in the batch is handed to it again on its own, so that
+ * one bad message can't hold up the rest. As in FuseMessageListenerContainer, a message that fails
+ * on its own is passed to the failed message consumer and then dropped.
+ */
+@RequiredArgsConstructor
+@Slf4j
+@ToString(callSuper = true)
+@EqualsAndHashCode(callSuper = true)
+public class FuseBatchMessageListenerContainer extends DefaultMessageListenerContainer {
+
+  @NonNull
+  protected BiConsumer<Message, Exception> failedMessageConsumer;
+
+  @Getter
+  @Setter
+  private int batchSize = 100;
+
+  @Getter
+  @Setter
+  private long batchTimeoutMs = 50;
+
+  @Override
+  public void initialize() {
+    // Each batch is committed as a unit, and consumers have to outlive a single receive() so that
+    // a batch can be drained from one
+    setSessionTransacted(true);
+    setCacheLevel(CACHE_CONSUMER);
+    super.initialize();
+  }
+
+  @Override
+  protected void validateConfiguration() {
+    super.validateConfiguration();
+    if (!(getMessageListener() instanceof IBatchMessageListener)) {
+      throw new IllegalArgumentException(
+          "FuseBatchMessageListenerContainer requires an IBatchMessageListener");
+    }
+    if (getTransactionManager() != null) {
+      // The batch is committed through the JMS session itself
+      throw new IllegalArgumentException(
+          "FuseBatchMessageListenerContainer doesn't support an external transaction manager");
+    }
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("batchSize must be at least 1");
+    }
+  }
+
+  @Override
+  protected boolean doReceiveAndExecute(final Object invoker, final Session session,
+      final MessageConsumer consumer, final TransactionStatus status) throws JMSException {
+    // With CACHE_CONSUMER and no external transaction manager, the invoker always passes in its
+    // own session and consumer
+    Message first = receiveMessage(consumer);
+    if (first == null) {
+      noMessageReceived(invoker, session);
+      return false;
+    }
+    messageReceived(invoker, session);
+
+    List<Message> batch = drainBatch(consumer, first);
+    log.debug("Received a batch of {} message(s)", batch.size());
+
+    try {
+      invokeBatchListener(batch);
+    } catch (JMSException | RuntimeException | Error e) {
+      // Only reached if the failed message consumer decides to throw, in which case the whole
+      // batch goes back on the queue
+      rollbackOnExceptionIfNecessary(session, e);
+      throw e;
+    }
+    commitIfNecessary(session, batch.get(batch.size() - 1));
+    return true;
+  }
+
+  /*
+   * Keep receiving until the batch is full, the batch timeout expires, or the queue is empty.
+   */
+  private List<Message> drainBatch(final MessageConsumer consumer, final Message first)
+      throws JMSException {
+    List<Message> batch = new ArrayList<>(batchSize);
+    batch.add(first);
+    long deadline = System.currentTimeMillis() + batchTimeoutMs;
+    while (batch.size() < batchSize && isRunning()) {
+      long remaining = deadline - System.currentTimeMillis();
+      // receive(0) blocks indefinitely, so an expired deadline only takes what is already there
+      Message next = remaining > 0 ? consumer.receive(remaining) : consumer.receiveNoWait();
+      if (next == null) {
+        break;
+      }
+      batch.add(next);
+    }
+    return batch;
+  }
+
+  private void invokeBatchListener(final List<Message> batch) throws JMSException {
+    IBatchMessageListener listener = (IBatchMessageListener) getMessageListener();
+    try {
+      listener.onMessages(batch);
+    } catch (JMSException | RuntimeException e) {
+      if (batch.size() == 1) {
+        failedMessageConsumer.accept(batch.get(0), e);
+        return;
+      }
+      log.warn("Batch of {} messages failed, retrying them one at a time", batch.size(), e);
+      for (Message message : batch) {
+        try {
+          listener.onMessages(Collections.singletonList(message));
+        } catch (JMSException | RuntimeException messageError) {
+          failedMessageConsumer.accept(message, messageError);
+        }
+      }
+    }
+  }
+}
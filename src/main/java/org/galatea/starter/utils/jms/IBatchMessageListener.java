@@ -0,0 +1,33 @@
+package org.galatea.starter.utils.jms;
+
+import java.util.Collections;
+import java.util.List;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import org.springframework.jms.support.JmsUtils;
+
+/**
+ * A listener that handles several messages at once. See FuseBatchMessageListenerContainer.
+ *
+ * <p>Extends MessageListener only so that it can be registered with a listener container; a
+ * message delivered on its own is handled as a batch of one.
+ */
+@FunctionalInterface
+public interface IBatchMessageListener extends MessageListener {
+
+  /**
+   * Handle the given messages as a unit: either all of them are processed, or an exception is
+   * thrown and none of them should be considered processed.
+   */
+  void onMessages(List<Message> messages) throws JMSException;
+
+  @Override
+  default void onMessage(final Message message) {
+    try {
+      onMessages(Collections.singletonList(message));
+    } catch (JMSException e) {
+      throw JmsUtils.convertJmsAccessException(e);
+    }
+  }
+}
@@ -0,0 +1,220 @@
+package org.galatea.starter.utils.persistence;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.HibernateException;
+import org.hibernate.LockMode;
+import org.hibernate.boot.model.naming.Identifier;
+import org.hibernate.boot.model.relational.Database;
+import org.hibernate.boot.model.relational.QualifiedName;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGeneratorHelper;
+import org.hibernate.id.IntegralDataTypeHolder;
+import org.hibernate.id.enhanced.AccessCallback;
+import org.hibernate.id.enhanced.DatabaseStructure;
+import org.hibernate.id.enhanced.Optimizer;
+import org.hibernate.id.enhanced.TableStructure;
+import org.hibernate.mapping.Table;
+
+/**
+ * A sequence emulated with a single-row table, as Hibernate's TableStructure does, except that the
+ * table is read and advanced over a connection reserved for the purpose when the structure is
+ * built, rather than one taken from the pool whenever a block of ids runs out.
+ *
+ * <p>Hibernate has to advance the table outside the caller's transaction, so the caller, which
+ * already holds a pooled connection, needs a second one. Once as many callers as the pool has
+ * connections are waiting on the optimizer for an id, none is left for the one advancing the
+ * table, and every one of them waits until the pool times out. The reserved connection is only
+ * ever used by one caller at a time, under the optimizer's lock, so the table can always be read.
+ *
+ * <p>Schema generation is left to the TableStructure. The reserved connection is replaced if it
+ * fails, and otherwise held until the pool is closed.
+ */
+@Slf4j
+class ReservedConnectionTableStructure implements DatabaseStructure {
+
+  private final TableStructure tableStructure;
+
+  private final QualifiedName tableName;
+
+  private final Identifier valueColumnName;
+
+  private final Class<?> numberType;
+
+  private final ConnectionProvider connectionProvider;
+
+  private String selectQuery;
+
+  private String updateQuery;
+
+  private boolean applyIncrementSizeToSourceValues;
+
+  // Guarded by this
+  private Connection connection;
+
+  private int accessCounter;
+
+  ReservedConnectionTableStructure(final TableStructure tableStructure,
+      final QualifiedName tableName, final Identifier valueColumnName, final Class<?> numberType,
+      final ConnectionProvider connectionProvider) {
+    this.tableStructure = tableStructure;
+    this.tableName = tableName;
+    this.valueColumnName = valueColumnName;
+    this.numberType = numberType;
+    this.connectionProvider = connectionProvider;
+    synchronized (this) {
+      this.connection = reserveConnection();
+    }
+  }
+
+  @Override
+  public String getName() {
+    return tableStructure.getName();
+  }
+
+  @Override
+  public int getTimesAccessed() {
+    return accessCounter;
+  }
+
+  @Override
+  public int getInitialValue() {
+    return tableStructure.getInitialValue();
+  }
+
+  @Override
+  public int getIncrementSize() {
+    return tableStructure.getIncrementSize();
+  }
+
+  @Override
+  public void prepare(final Optimizer optimizer) {
+    tableStructure.prepare(optimizer);
+    applyIncrementSizeToSourceValues = optimizer.applyIncrementSizeToSourceValues();
+  }
+
+  @Override
+  public void registerExportables(final Database database) {
+    tableStructure.registerExportables(database);
+    Dialect dialect = database.getJdbcEnvironment().getDialect();
+    Table table = database.locateNamespace(tableName.getCatalogName(), tableName.getSchemaName())
+        .locateTable(tableName.getObjectName());
+    String tableNameText = database.getJdbcEnvironment().getQualifiedObjectNameFormatter()
+        .format(table.getQualifiedTableName(), dialect);
+    String valueColumnNameText = valueColumnName.render(dialect);
+    // The same statements as TableStructure's
+    selectQuery = "select " + valueColumnNameText + " as id_val from "
+        + dialect.appendLockHint(LockMode.PESSIMISTIC_WRITE, tableNameText)
+        + dialect.getForUpdateString();
+    updateQuery = "update " + tableNameText + " set " + valueColumnNameText + "= ? where "
+        + valueColumnNameText + "=?";
+  }
+
+  @Override
+  public AccessCallback buildCallback(final SharedSessionContractImplementor session) {
+    return new AccessCallback() {
+      @Override
+      public IntegralDataTypeHolder getNextValue() {
+        return nextValue();
+      }
+
+      @Override
+      public String getTenantIdentifier() {
+        return session.getTenantIdentifier();
+      }
+    };
+  }
+
+  @Override
+  public String[] sqlCreateStrings(final Dialect dialect) {
+    return tableStructure.sqlCreateStrings(dialect);
+  }
+
+  @Override
+  public String[] sqlDropStrings(final Dialect dialect) {
+    return tableStructure.sqlDropStrings(dialect);
+  }
+
+  @Override
+  public boolean isPhysicalSequence() {
+    return false;
+  }
+
+  private synchronized IntegralDataTypeHolder nextValue() {
+    try {
+      return advance(connection);
+    } catch (SQLException e) {
+      // The connection may have been lost, e.g. to a database restart; try once more on another
+      log.warn("Couldn't advance {}; retrying on a new connection", getName(), e);
+      releaseConnection();
+      connection = reserveConnection();
+      try {
+        return advance(connection);
+      } catch (SQLException retryFailure) {
+        throw new HibernateException("Couldn't advance " + getName(), retryFailure);
+      }
+    }
+  }
+
+  private IntegralDataTypeHolder advance(final Connection connection) throws SQLException {
+    try {
+      IntegralDataTypeHolder value = IdentifierGeneratorHelper.getIntegralDataTypeHolder(
+          numberType);
+      IntegralDataTypeHolder updateValue;
+      int rows;
+      do {
+        try (PreparedStatement select = connection.prepareStatement(selectQuery);
+            ResultSet resultSet = select.executeQuery()) {
+          if (!resultSet.next()) {
+            throw new HibernateException("Table " + getName() + " has no row to read ids from");
+          }
+          value.initialize(resultSet, 1);
+        }
+        updateValue = value.copy();
+        if (applyIncrementSizeToSourceValues) {
+          updateValue.add(getIncrementSize());
+        } else {
+          updateValue.increment();
+        }
+        try (PreparedStatement update = connection.prepareStatement(updateQuery)) {
+          updateValue.bind(update, 1);
+          value.bind(update, 2);
+          rows = update.executeUpdate();
+        }
+      } while (rows == 0);
+      connection.commit();
+      accessCounter++;
+      return value;
+    } catch (SQLException | RuntimeException e) {
+      try {
+        connection.rollback();
+      } catch (SQLException rollbackFailure) {
+        e.addSuppressed(rollbackFailure);
+      }
+      throw e;
+    }
+  }
+
+  private Connection reserveConnection() {
+    try {
+      Connection reserved = connectionProvider.getConnection();
+      reserved.setAutoCommit(false);
+      return reserved;
+    } catch (SQLException e) {
+      throw new HibernateException("Couldn't reserve a connection for " + getName(), e);
+    }
+  }
+
+  private void releaseConnection() {
+    try {
+      connectionProvider.closeConnection(connection);
+    } catch (SQLException e) {
+      log.debug("Couldn't release the connection reserved for {}", getName(), e);
+    }
+  }
+}
@@ -0,0 +1,184 @@
+package org.galatea.starter.utils.resilience;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A limit on the calls in flight to an upstream that adapts to how the upstream is coping, by
+ * additive increase and multiplicative decrease, as TCP does with its congestion window.
+ *
+ * <p>Each call that succeeds within slowCallDuration, while the limit was at least half used,
+ * raises the limit by 1/limit, so by about one per limit's worth of such calls. Each call that
+ * fails or is slow cuts it by backoffRatio. The limit stays between minLimit and maxLimit. So an
+ * upstream that slows down is soon sent fewer calls at a time, and is sent more again as it
+ * recovers, without anyone having to know its capacity up front.
+ *
+ * <p>A call beyond the limit waits its turn in a queue of up to maxQueued calls, and is let into
+ * flight, in the order they came, once there's room under the limit again.
+ */
+public class AimdLimit {
+
+  private final int minLimit;
+
+  private final int maxLimit;
+
+  private final double backoffRatio;
+
+  private final long slowCallNanos;
+
+  private final int maxQueued;
+
+  // Guarded by this
+  private double limit;
+
+  private int inFlight;
+
+  private final Queue<CompletableFuture<Void>> queued = new ArrayDeque<>();
+
+  /**
+   * Construct an AimdLimit.
+   *
+   * @param initialLimit the limit to start at
+   * @param minLimit the lowest the limit is cut to
+   * @param maxLimit the highest the limit is raised to
+   * @param backoffRatio what the limit is multiplied by on a failed or slow call, below 1.0
+   * @param slowCallDuration how long a call may take before it counts against the limit
+   * @param maxQueued the most calls waiting their turn
+   */
+  public AimdLimit(final int initialLimit, final int minLimit, final int maxLimit,
+      final double backoffRatio, final Duration slowCallDuration, final int maxQueued) {
+    if (minLimit <= 0 || minLimit > maxLimit) {
+      throw new IllegalArgumentException(
+          "Min limit must be between 1 and the max limit of " + maxLimit + ": " + minLimit);
+    }
+    if (backoffRatio <= 0 || backoffRatio >= 1) {
+      throw new IllegalArgumentException("Backoff ratio must be between 0.0 and 1.0: "
+          + backoffRatio);
+    }
+    if (maxQueued < 0) {
+      throw new IllegalArgumentException("Max queued must not be negative: " + maxQueued);
+    }
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.backoffRatio = backoffRatio;
+    this.slowCallNanos = slowCallDuration.toNanos();
+    this.maxQueued = maxQueued;
+    this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+  }
+
+  /**
+   * Permit a call once fewer than the limit are in flight and every call queued before it has
+   * been permitted. A permitted call must be followed by exactly one of onSuccess(), onFailure()
+   * or onIgnored().
+   *
+   * @return completes once the call may be made, at once if there's room already, or null if
+   *     there isn't and the queue is full. The future completes on the thread that made room
+   */
+  public CompletableFuture<Void> acquire() {
+    synchronized (this) {
+      if (queued.isEmpty() && inFlight < (int) limit) {
+        inFlight++;
+        return CompletableFuture.completedFuture(null);
+      }
+      if (queued.size() >= maxQueued) {
+        return null;
+      }
+      CompletableFuture<Void> permit = new CompletableFuture<>();
+      queued.add(permit);
+      return permit;
+    }
+  }
+
+  /**
+   * Give up on a call acquire() returned the given future for, whether it's been permitted or is
+   * still waiting.
+   */
+  public void abandon(final CompletableFuture<Void> permit) {
+    synchronized (this) {
+      if (queued.remove(permit)) {
+        return;
+      }
+    }
+    onIgnored();
+  }
+
+  /**
+   * Record that a permitted call succeeded after the given time.
+   */
+  public void onSuccess(final long elapsedNanos) {
+    synchronized (this) {
+      if (elapsedNanos > slowCallNanos) {
+        backOff();
+      } else if (inFlight * 2 >= limit) {
+        // Raising a limit that isn't being used would say nothing about whether it can be met
+        limit = Math.min(maxLimit, limit + 1 / limit);
+      }
+      inFlight--;
+    }
+    permitQueued();
+  }
+
+  /**
+   * Record that a permitted call failed.
+   */
+  public void onFailure() {
+    synchronized (this) {
+      backOff();
+      inFlight--;
+    }
+    permitQueued();
+  }
+
+  /**
+   * Record that a permitted call ended in a way that says nothing about the upstream's load, or
+   * wasn't made after all.
+   */
+  public void onIgnored() {
+    synchronized (this) {
+      inFlight--;
+    }
+    permitQueued();
+  }
+
+  /**
+   * The number of calls that may be in flight at a time.
+   */
+  public synchronized int getLimit() {
+    return (int) limit;
+  }
+
+  /**
+   * The number of calls in flight.
+   */
+  public synchronized int getInFlight() {
+    return inFlight;
+  }
+
+  /**
+   * The number of calls waiting their turn.
+   */
+  public synchronized int getQueued() {
+    return queued.size();
+  }
+
+  // Completed outside the lock, since whoever was waiting may carry on on this thread
+  private void permitQueued() {
+    while (true) {
+      CompletableFuture<Void> permit;
+      synchronized (this) {
+        if (inFlight >= (int) limit || queued.isEmpty()) {
+          return;
+        }
+        permit = queued.poll();
+        inFlight++;
+      }
+      permit.complete(null);
+    }
+  }
+
+  private void backOff() {
+    limit = Math.max(minLimit, limit * backoffRatio);
+  }
+}
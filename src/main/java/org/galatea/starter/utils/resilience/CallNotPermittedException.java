@@ -0,0 +1,32 @@
+package org.galatea.starter.utils.resilience;
+
+/**
+ * Thrown instead of making a call to an upstream that an UpstreamGuard is holding calls back from,
+ * because its circuit is open or because as many calls as it allows are waiting their turn
+ * already.
+ */
+public class CallNotPermittedException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final boolean circuitOpen;
+
+  /**
+   * Construct a CallNotPermittedException with the given message.
+   *
+   * @param circuitOpen whether the call was held back because the upstream's circuit is open,
+   *     rather than to spare the caller's own resources
+   */
+  public CallNotPermittedException(final String message, final boolean circuitOpen) {
+    super(message);
+    this.circuitOpen = circuitOpen;
+  }
+
+  /**
+   * Whether the call was held back because the upstream's circuit is open, so the upstream is
+   * known to be failing.
+   */
+  public boolean isCircuitOpen() {
+    return circuitOpen;
+  }
+}
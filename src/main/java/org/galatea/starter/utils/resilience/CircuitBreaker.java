@@ -0,0 +1,228 @@
+package org.galatea.starter.utils.resilience;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops calls to an upstream that keeps failing, so that callers fail at once rather than each
+ * wait on it to time out, and gives it room to recover.
+ *
+ * <p>While closed, the outcomes of the last windowSize calls are kept. Once at least minimumCalls
+ * of them are kept and the share of failures among them reaches failureRateThreshold, the breaker
+ * opens and permits no calls for openDuration. After that it's half open: it permits up to
+ * halfOpenCalls trial calls, closing again once they all succeed, and opening again as soon as
+ * one fails.
+ *
+ * <p>Each permit names the state the breaker was in when it was given, and an outcome only counts
+ * if the breaker is still in it. So a call made while closed that ends once the breaker is half
+ * open isn't taken for a trial call, nor one made before the breaker last closed for a sign it
+ * should open again.
+ */
+public class CircuitBreaker {
+
+  /**
+   * The states a breaker moves between.
+   */
+  public enum State {
+    CLOSED, OPEN, HALF_OPEN
+  }
+
+  /**
+   * What tryAcquire() returns when it doesn't permit a call.
+   */
+  public static final long NOT_PERMITTED = -1;
+
+  private final int minimumCalls;
+
+  private final double failureRateThreshold;
+
+  private final long openNanos;
+
+  private final int halfOpenCalls;
+
+  private final LongSupplier nanoClock;
+
+  // The outcomes kept, as a ring; true for a failure. Guarded by this
+  private final boolean[] outcomes;
+
+  private int outcomeCount;
+
+  private int nextOutcome;
+
+  private int failureCount;
+
+  private State state = State.CLOSED;
+
+  // Counts the changes of state, naming the state the breaker is in
+  private long generation;
+
+  private long openedAt;
+
+  private int trialsStarted;
+
+  private int trialsSucceeded;
+
+  /**
+   * Construct a CircuitBreaker.
+   *
+   * @param windowSize the number of latest outcomes the failure rate is taken over
+   * @param minimumCalls the fewest outcomes the failure rate is taken over, so that a couple of
+   *     failures after a quiet spell don't open the breaker
+   * @param failureRateThreshold the share of failures, 0.0 to 1.0, that opens the breaker
+   * @param openDuration how long the breaker stays open before trial calls are let through
+   * @param halfOpenCalls the number of trial calls that must succeed to close the breaker
+   */
+  public CircuitBreaker(final int windowSize, final int minimumCalls,
+      final double failureRateThreshold, final Duration openDuration, final int halfOpenCalls) {
+    this(windowSize, minimumCalls, failureRateThreshold, openDuration, halfOpenCalls,
+        System::nanoTime);
+  }
+
+  CircuitBreaker(final int windowSize, final int minimumCalls, final double failureRateThreshold,
+      final Duration openDuration, final int halfOpenCalls, final LongSupplier nanoClock) {
+    if (windowSize <= 0 || minimumCalls <= 0 || minimumCalls > windowSize) {
+      throw new IllegalArgumentException("Minimum calls must be between 1 and the window size of "
+          + windowSize + ": " + minimumCalls);
+    }
+    if (failureRateThreshold <= 0 || failureRateThreshold > 1) {
+      throw new IllegalArgumentException(
+          "Failure rate threshold must be above 0.0 and at most 1.0: " + failureRateThreshold);
+    }
+    if (halfOpenCalls <= 0) {
+      throw new IllegalArgumentException("Half open calls must be positive: " + halfOpenCalls);
+    }
+    this.outcomes = new boolean[windowSize];
+    this.minimumCalls = minimumCalls;
+    this.failureRateThreshold = failureRateThreshold;
+    this.openNanos = openDuration.toNanos();
+    this.halfOpenCalls = halfOpenCalls;
+    this.nanoClock = nanoClock;
+  }
+
+  /**
+   * Permit a call, or not. A permitted call must be followed by exactly one of onSuccess(),
+   * onFailure() or onIgnored(), given the permit.
+   *
+   * @return the permit for the call, or NOT_PERMITTED if it may not be made
+   */
+  public synchronized long tryAcquire() {
+    switch (currentState()) {
+      case CLOSED:
+        return generation;
+      case HALF_OPEN:
+        if (trialsStarted < halfOpenCalls) {
+          trialsStarted++;
+          return generation;
+        }
+        return NOT_PERMITTED;
+      default:
+        return NOT_PERMITTED;
+    }
+  }
+
+  /**
+   * Record that the call given the permit succeeded.
+   */
+  public synchronized void onSuccess(final long permit) {
+    if (isStale(permit)) {
+      return;
+    }
+    switch (currentState()) {
+      case CLOSED:
+        record(false);
+        break;
+      case HALF_OPEN:
+        trialsSucceeded++;
+        if (trialsSucceeded >= halfOpenCalls) {
+          close();
+        }
+        break;
+      default:
+    }
+  }
+
+  /**
+   * Record that the call given the permit failed.
+   */
+  public synchronized void onFailure(final long permit) {
+    if (isStale(permit)) {
+      return;
+    }
+    switch (currentState()) {
+      case CLOSED:
+        record(true);
+        if (outcomeCount >= minimumCalls
+            && failureCount >= failureRateThreshold * outcomeCount) {
+          open();
+        }
+        break;
+      case HALF_OPEN:
+        open();
+        break;
+      default:
+    }
+  }
+
+  /**
+   * Record that the call given the permit ended in a way that says nothing about the upstream,
+   * such as its rejecting a bad request, or wasn't made after all.
+   */
+  public synchronized void onIgnored(final long permit) {
+    if (!isStale(permit) && currentState() == State.HALF_OPEN
+        && trialsStarted > trialsSucceeded) {
+      trialsStarted--;
+    }
+  }
+
+  /**
+   * The breaker's state. An open breaker reports itself half open once openDuration is up.
+   */
+  public synchronized State getState() {
+    return currentState();
+  }
+
+  private State currentState() {
+    if (state == State.OPEN && nanoClock.getAsLong() - openedAt >= openNanos) {
+      state = State.HALF_OPEN;
+      generation++;
+      trialsStarted = 0;
+      trialsSucceeded = 0;
+    }
+    return state;
+  }
+
+  // Whether the permit was given in a state the breaker has since left
+  private boolean isStale(final long permit) {
+    currentState();
+    return permit != generation;
+  }
+
+  private void record(final boolean failure) {
+    if (outcomeCount == outcomes.length) {
+      if (outcomes[nextOutcome]) {
+        failureCount--;
+      }
+    } else {
+      outcomeCount++;
+    }
+    outcomes[nextOutcome] = failure;
+    if (failure) {
+      failureCount++;
+    }
+    nextOutcome = (nextOutcome + 1) % outcomes.length;
+  }
+
+  private void open() {
+    state = State.OPEN;
+    generation++;
+    openedAt = nanoClock.getAsLong();
+  }
+
+  private void close() {
+    state = State.CLOSED;
+    generation++;
+    outcomeCount = 0;
+    nextOutcome = 0;
+    failureCount = 0;
+  }
+}
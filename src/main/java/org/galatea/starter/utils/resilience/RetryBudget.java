@@ -0,0 +1,57 @@
+package org.galatea.starter.utils.resilience;
+
+/**
+ * Caps retries at a share of the calls made, so that retrying can ride out the odd failure but
+ * can't multiply the load on an upstream that's failing most calls.
+ *
+ * <p>Each first attempt at a call deposits ratio of a token, up to maxTokens, and each retry
+ * withdraws a whole one, so over time there are at most ratio retries per call. The budget starts
+ * full, so a burst of up to maxTokens retries can be made before any calls have been.
+ */
+public class RetryBudget {
+
+  private final double ratio;
+
+  private final double maxTokens;
+
+  // Guarded by this
+  private double tokens;
+
+  /**
+   * Construct a RetryBudget.
+   *
+   * @param ratio the retries allowed per call, e.g. 0.2 for one per five calls
+   * @param maxTokens the most retries saved up
+   */
+  public RetryBudget(final double ratio, final int maxTokens) {
+    if (ratio < 0) {
+      throw new IllegalArgumentException("Ratio must not be negative: " + ratio);
+    }
+    if (maxTokens < 0) {
+      throw new IllegalArgumentException("Max tokens must not be negative: " + maxTokens);
+    }
+    this.ratio = ratio;
+    this.maxTokens = maxTokens;
+    this.tokens = maxTokens;
+  }
+
+  /**
+   * Record a first attempt at a call.
+   */
+  public synchronized void onCall() {
+    tokens = Math.min(maxTokens, tokens + ratio);
+  }
+
+  /**
+   * Take a retry from the budget, if there's one left.
+   *
+   * @return whether the retry may be made
+   */
+  public synchronized boolean tryRetry() {
+    if (tokens < 1) {
+      return false;
+    }
+    tokens--;
+    return true;
+  }
+}
@@ -0,0 +1,314 @@
+package org.galatea.starter.utils.resilience;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import org.galatea.starter.utils.resilience.CircuitBreaker.State;
+
+/**
+ * Guards the calls to one upstream endpoint, so that when it slows down or fails, callers hear so
+ * straight away instead of each waiting on it, and it isn't sent more calls than it can take.
+ *
+ * <p>A call is only made if the CircuitBreaker is closed, or half open with a trial call to spare;
+ * otherwise it fails at once with a CallNotPermittedException. A call beyond the AimdLimit on calls
+ * in flight waits its turn, blocking or not as the call is made, and only fails at once if
+ * maxQueuedCalls are waiting already. A call that fails is retried, after a random wait of up to
+ * retryBackoffMs, doubled for each retry after the first, for as long as the RetryBudget allows,
+ * up to maxAttempts in all. Only failures the given predicate counts as the upstream's fault, such
+ * as 5xx responses and timeouts, count against the breaker and the limit, or are retried; a 4xx
+ * response, say, fails the call as it is.
+ *
+ * <p>Circuit state, the limit and rejected and retried calls are published as upstream.* metrics,
+ * tagged with the guard's name.
+ */
+public class UpstreamGuard implements MeterBinder {
+
+  public static final String STATE_METER = "upstream.circuit.state";
+
+  public static final String LIMIT_METER = "upstream.calls.limit";
+
+  public static final String IN_FLIGHT_METER = "upstream.calls.in.flight";
+
+  public static final String QUEUED_METER = "upstream.calls.queued";
+
+  public static final String REJECTED_METER = "upstream.calls.rejected";
+
+  public static final String RETRIED_METER = "upstream.calls.retried";
+
+  private final String name;
+
+  private final CircuitBreaker breaker;
+
+  private final AimdLimit limit;
+
+  private final RetryBudget retryBudget;
+
+  private final int maxQueued;
+
+  private final int maxAttempts;
+
+  private final long retryBackoffMillis;
+
+  private final long maxRetryBackoffMillis;
+
+  private final Predicate<Throwable> isFailure;
+
+  private final LongAdder rejectedOpen = new LongAdder();
+
+  private final LongAdder rejectedLimit = new LongAdder();
+
+  private final LongAdder retried = new LongAdder();
+
+  /**
+   * Construct an UpstreamGuard.
+   *
+   * @param name names the upstream in messages and tags the guard's metrics
+   * @param properties how calls are held back
+   * @param isFailure whether a call failing with the given exception is the upstream's fault
+   */
+  public UpstreamGuard(final String name, final UpstreamGuardProperties properties,
+      final Predicate<Throwable> isFailure) {
+    this(name, properties, isFailure, new CircuitBreaker(properties.getWindowSize(),
+        properties.getMinimumCalls(), properties.getFailureRateThreshold(),
+        Duration.ofMillis(properties.getOpenMs()), properties.getHalfOpenCalls()));
+  }
+
+  UpstreamGuard(final String name, final UpstreamGuardProperties properties,
+      final Predicate<Throwable> isFailure, final CircuitBreaker breaker) {
+    if (properties.getMaxAttempts() <= 0) {
+      throw new IllegalArgumentException("Max attempts must be positive: "
+          + properties.getMaxAttempts());
+    }
+    this.name = name;
+    this.breaker = breaker;
+    this.limit = new AimdLimit(properties.getInitialLimit(), properties.getMinLimit(),
+        properties.getMaxLimit(), properties.getBackoffRatio(),
+        Duration.ofMillis(properties.getSlowCallMs()), properties.getMaxQueuedCalls());
+    this.retryBudget = new RetryBudget(properties.getRetryRatio(),
+        properties.getMaxRetryTokens());
+    this.maxQueued = properties.getMaxQueuedCalls();
+    this.maxAttempts = properties.getMaxAttempts();
+    this.retryBackoffMillis = properties.getRetryBackoffMs();
+    this.maxRetryBackoffMillis = properties.getMaxRetryBackoffMs();
+    this.isFailure = isFailure;
+  }
+
+  @Override
+  public void bindTo(final MeterRegistry registry) {
+    for (State state : State.values()) {
+      Gauge.builder(STATE_METER, this, guard -> guard.getState() == state ? 1 : 0)
+          .tag("name", name).tag("state", state.name().toLowerCase(Locale.ROOT))
+          .description("1 if the circuit is in this state, otherwise 0").register(registry);
+    }
+    Gauge.builder(LIMIT_METER, limit, AimdLimit::getLimit).tag("name", name)
+        .description("Calls allowed in flight at a time").register(registry);
+    Gauge.builder(IN_FLIGHT_METER, limit, AimdLimit::getInFlight).tag("name", name)
+        .description("Calls in flight").register(registry);
+    Gauge.builder(QUEUED_METER, limit, AimdLimit::getQueued).tag("name", name)
+        .description("Calls waiting for room under the limit").register(registry);
+    FunctionCounter.builder(REJECTED_METER, rejectedOpen, LongAdder::sum).tag("name", name)
+        .tag("reason", "open").description("Calls failed at once because the circuit was open")
+        .register(registry);
+    FunctionCounter.builder(REJECTED_METER, rejectedLimit, LongAdder::sum).tag("name", name)
+        .tag("reason", "limit").description("Calls failed at once because the queue was full")
+        .register(registry);
+    FunctionCounter.builder(RETRIED_METER, retried, LongAdder::sum).tag("name", name)
+        .description("Calls retried after a failure").register(registry);
+  }
+
+  /**
+   * Make the given call, blocking, waiting its turn under the limit first if need be, and retrying
+   * it if it fails and the budget allows.
+   *
+   * @param call makes the call
+   * @return what the call returns
+   * @throws CallNotPermittedException if the call can't be made
+   */
+  public <T> T call(final Supplier<T> call) {
+    retryBudget.onCall();
+    for (int attempt = 1; ; attempt++) {
+      long permit = acquire();
+      long start = System.nanoTime();
+      try {
+        T result = call.get();
+        limit.onSuccess(System.nanoTime() - start);
+        breaker.onSuccess(permit);
+        return result;
+      } catch (RuntimeException e) {
+        if (!onFailure(e, permit) || !retry(attempt)) {
+          throw e;
+        }
+        try {
+          Thread.sleep(backoffMillis(attempt));
+        } catch (InterruptedException interrupted) {
+          Thread.currentThread().interrupt();
+          throw e;
+        }
+      }
+    }
+  }
+
+  /**
+   * Make the given call without blocking, retrying it if it fails and the budget allows. A call
+   * that has to wait its turn under the limit, and a retry, is made from the common pool.
+   *
+   * @param call starts the call, returning its result
+   * @return the call's result, or a future failed with a CallNotPermittedException if the call
+   *     can't be made
+   */
+  public <T> CompletableFuture<T> callAsync(final Supplier<CompletableFuture<T>> call) {
+    retryBudget.onCall();
+    CompletableFuture<T> result = new CompletableFuture<>();
+    attempt(call, 1, result);
+    return result;
+  }
+
+  /**
+   * The state of the guard's circuit.
+   */
+  public State getState() {
+    return breaker.getState();
+  }
+
+  /**
+   * The number of calls allowed in flight at a time.
+   */
+  public int getLimit() {
+    return limit.getLimit();
+  }
+
+  private <T> void attempt(final Supplier<CompletableFuture<T>> call, final int attempt,
+      final CompletableFuture<T> result) {
+    CompletableFuture<Void> turn;
+    try {
+      turn = queue();
+    } catch (CallNotPermittedException e) {
+      result.completeExceptionally(e);
+      return;
+    }
+    if (turn.isDone()) {
+      start(call, attempt, result);
+    } else {
+      // Not on the thread that made room, which is finishing a call of its own
+      turn.thenRunAsync(() -> start(call, attempt, result));
+    }
+  }
+
+  private <T> void start(final Supplier<CompletableFuture<T>> call, final int attempt,
+      final CompletableFuture<T> result) {
+    CompletableFuture<T> started;
+    long permit;
+    try {
+      permit = permit();
+    } catch (CallNotPermittedException e) {
+      result.completeExceptionally(e);
+      return;
+    }
+    long start = System.nanoTime();
+    try {
+      started = call.get();
+    } catch (RuntimeException e) {
+      started = CompletableFuture.failedFuture(e);
+    }
+    started.whenComplete((value, failure) -> {
+      if (failure == null) {
+        limit.onSuccess(System.nanoTime() - start);
+        breaker.onSuccess(permit);
+        result.complete(value);
+        return;
+      }
+      Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+          ? failure.getCause() : failure;
+      if (!onFailure(cause, permit) || !retry(attempt)) {
+        result.completeExceptionally(cause);
+        return;
+      }
+      CompletableFuture.delayedExecutor(backoffMillis(attempt), TimeUnit.MILLISECONDS)
+          .execute(() -> attempt(call, attempt + 1, result));
+    });
+  }
+
+  // Waits the call's turn under the limit, returning the breaker's permit for it
+  private long acquire() {
+    CompletableFuture<Void> turn = queue();
+    try {
+      turn.get();
+    } catch (InterruptedException e) {
+      limit.abandon(turn);
+      Thread.currentThread().interrupt();
+      throw new CallNotPermittedException("Interrupted waiting to call " + name, false);
+    } catch (ExecutionException e) {
+      // A turn only ever completes normally
+      throw new IllegalStateException(e);
+    }
+    return permit();
+  }
+
+  // A call isn't queued while the circuit is open, only to be failed once its turn comes
+  private CompletableFuture<Void> queue() {
+    if (breaker.getState() == State.OPEN) {
+      rejectedOpen.increment();
+      throw circuitOpen();
+    }
+    CompletableFuture<Void> turn = limit.acquire();
+    if (turn == null) {
+      rejectedLimit.increment();
+      throw new CallNotPermittedException(
+          name + " has as many calls waiting as it allows: " + maxQueued, false);
+    }
+    return turn;
+  }
+
+  // Takes the call's turn under the limit, so gives it back if the breaker has no permit for it
+  private long permit() {
+    long permit = breaker.tryAcquire();
+    if (permit == CircuitBreaker.NOT_PERMITTED) {
+      limit.onIgnored();
+      rejectedOpen.increment();
+      throw circuitOpen();
+    }
+    return permit;
+  }
+
+  private CallNotPermittedException circuitOpen() {
+    return new CallNotPermittedException("The circuit to " + name + " is open", true);
+  }
+
+  // Whether the failure counted against the upstream
+  private boolean onFailure(final Throwable failure, final long permit) {
+    if (isFailure.test(failure)) {
+      limit.onFailure();
+      breaker.onFailure(permit);
+      return true;
+    }
+    limit.onIgnored();
+    breaker.onIgnored(permit);
+    return false;
+  }
+
+  private boolean retry(final int attempt) {
+    if (attempt >= maxAttempts || !retryBudget.tryRetry()) {
+      return false;
+    }
+    retried.increment();
+    return true;
+  }
+
+  // Full jitter: anywhere from no wait up to the doubled cap, so retries don't arrive together
+  private long backoffMillis(final int attempt) {
+    long cap = Math.min(maxRetryBackoffMillis,
+        retryBackoffMillis << Math.min(attempt - 1, 20));
+    return cap <= 0 ? 0 : ThreadLocalRandom.current().nextLong(cap + 1);
+  }
+}
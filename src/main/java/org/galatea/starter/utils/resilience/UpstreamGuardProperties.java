@@ -0,0 +1,91 @@
+package org.galatea.starter.utils.resilience;
+
+import lombok.Data;
+
+/**
+ * How an UpstreamGuard holds back calls to its upstream. See CircuitBreaker, AimdLimit and
+ * RetryBudget for what each setting does.
+ */
+@Data
+public class UpstreamGuardProperties {
+
+  /**
+   * Number of latest outcomes the circuit breaker's failure rate is taken over.
+   */
+  private int windowSize = 20;
+
+  /**
+   * Fewest outcomes the failure rate is taken over before it can open the breaker.
+   */
+  private int minimumCalls = 10;
+
+  /**
+   * Share of failed calls, 0.0 to 1.0, that opens the breaker.
+   */
+  private double failureRateThreshold = 0.5;
+
+  /**
+   * How long an open breaker fails calls at once before letting trial calls through.
+   */
+  private long openMs = 30000;
+
+  /**
+   * Number of trial calls that must succeed to close a half open breaker.
+   */
+  private int halfOpenCalls = 3;
+
+  /**
+   * Calls let into flight at a time to begin with.
+   */
+  private int initialLimit = 16;
+
+  /**
+   * Lowest the limit on calls in flight is cut to.
+   */
+  private int minLimit = 2;
+
+  /**
+   * Highest the limit on calls in flight is raised to.
+   */
+  private int maxLimit = 64;
+
+  /**
+   * What the limit on calls in flight is multiplied by on each failed or slow call.
+   */
+  private double backoffRatio = 0.9;
+
+  /**
+   * How long a call may take before it counts as slow, cutting the limit.
+   */
+  private long slowCallMs = 2000;
+
+  /**
+   * Most calls waiting for room under the limit on calls in flight.
+   */
+  private int maxQueuedCalls = 256;
+
+  /**
+   * Most attempts at one call, the first included.
+   */
+  private int maxAttempts = 3;
+
+  /**
+   * Retries allowed per call made, over time.
+   */
+  private double retryRatio = 0.2;
+
+  /**
+   * Most retries saved up for a burst of failures.
+   */
+  private int maxRetryTokens = 10;
+
+  /**
+   * Cap on the random wait before the first retry, doubled for each retry after it.
+   */
+  private long retryBackoffMs = 50;
+
+  /**
+   * Most the cap on the wait before a retry is doubled to.
+   */
+  private long maxRetryBackoffMs = 1000;
+}
@@ -0,0 +1,48 @@
+package org.galatea.starter.utils.rest;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Helps filters that act once a request is done work with requests completed asynchronously,
+ * e.g. by a controller method returning a CompletableFuture. Such a request is only started by
+ * the time the filter chain returns; its response is written later, on another thread.
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public final class AsyncRequests {
+
+  /**
+   * Run the given action once the request is done: straight away, unless it was started
+   * asynchronously, in which case once it completes, however it completes.
+   */
+  public static void whenDone(final HttpServletRequest request, final Runnable action) {
+    if (!request.isAsyncStarted()) {
+      action.run();
+      return;
+    }
+    request.getAsyncContext().addListener(new AsyncListener() {
+      @Override
+      public void onComplete(final AsyncEvent event) {
+        action.run();
+      }
+
+      @Override
+      public void onTimeout(final AsyncEvent event) {
+        // Followed by onComplete
+      }
+
+      @Override
+      public void onError(final AsyncEvent event) {
+        // Followed by onComplete
+      }
+
+      @Override
+      public void onStartAsync(final AsyncEvent event) {
+        // Not restarted
+      }
+    });
+  }
+}
@@ -0,0 +1,141 @@
+package org.galatea.starter.utils.rest;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.core.Ordered;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Times every request handled by a controller method, recording the latency in a timer per
+ * controller method, response content type and status. Each timer's count is the number of such
+ * requests, so its rate is the endpoint's throughput. Percentiles and histogram buckets are
+ * configured under management.metrics.distribution, and the timers are served with the rest of
+ * the metrics, e.g. in Prometheus text format at /actuator/prometheus.
+ *
+ * <p>Timers are looked up without building tags or keys, so recording a request allocates nothing
+ * once its combination of method, content type and status has been seen. Requests not handled by
+ * a controller method (static resources, 404s and the like) aren't timed. Nothing is recorded
+ * until the filter has been bound to a MeterRegistry, which Spring Boot does for every
+ * MeterBinder bean.
+ */
+public class EndpointTimingFilter extends OncePerRequestFilter implements MeterBinder, Ordered {
+
+  public static final String TIMER_NAME = "http.endpoint.requests";
+
+  /**
+   * Request attribute holding the controller method the request was dispatched to, set by the
+   * interceptor from handlerInterceptor().
+   */
+  public static final String HANDLER_ATTRIBUTE = EndpointTimingFilter.class.getName() + ".handler";
+
+  private static final String NO_CONTENT_TYPE = "none";
+
+  // Status codes run from 100 to 599
+  private static final int STATUS_CODES = 600;
+
+  private final Map<Method, Map<String, AtomicReferenceArray<Timer>>> timers =
+      new ConcurrentHashMap<>();
+
+  private volatile MeterRegistry registry;
+
+  @Override
+  public void bindTo(final MeterRegistry registry) {
+    this.registry = registry;
+  }
+
+  /**
+   * Return the interceptor that tells this filter which controller method handled each request.
+   * It must be registered with Spring MVC, or no requests are timed.
+   */
+  public HandlerInterceptor handlerInterceptor() {
+    return new HandlerInterceptor() {
+      @Override
+      public boolean preHandle(final HttpServletRequest request,
+          final HttpServletResponse response, final Object handler) {
+        request.setAttribute(HANDLER_ATTRIBUTE, handler);
+        return true;
+      }
+    };
+  }
+
+  /**
+   * Run ahead of the other filters, so that the time they take is included.
+   */
+  @Override
+  public int getOrder() {
+    return Ordered.HIGHEST_PRECEDENCE + 1;
+  }
+
+  @Override
+  protected void doFilterInternal(final HttpServletRequest request,
+      final HttpServletResponse response, final FilterChain filterChain)
+      throws ServletException, IOException {
+    long start = System.nanoTime();
+    boolean failed = true;
+    try {
+      filterChain.doFilter(request, response);
+      failed = false;
+    } finally {
+      if (!request.isAsyncStarted()) {
+        record(request, response, start, failed);
+      } else {
+        // A request completed asynchronously is timed up to when its response is written
+        boolean threw = failed;
+        AsyncRequests.whenDone(request, () -> record(request, response, start, threw));
+      }
+    }
+  }
+
+  private void record(final HttpServletRequest request, final HttpServletResponse response,
+      final long start, final boolean failed) {
+    Object handler = request.getAttribute(HANDLER_ATTRIBUTE);
+    if (registry != null && handler instanceof HandlerMethod) {
+      // An exception escaping the filter chain becomes a 500 once the container handles it
+      int status = failed ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : response.getStatus();
+      timer((HandlerMethod) handler, response.getContentType(), status)
+          .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  private Timer timer(final HandlerMethod handler, final String contentType, final int status) {
+    // Keyed by the content type exactly as the response gives it; it's only parsed for the tag
+    String contentTypeKey = contentType == null ? NO_CONTENT_TYPE : contentType;
+    int statusIndex = status >= 0 && status < STATUS_CODES ? status : 0;
+
+    AtomicReferenceArray<Timer> byStatus = timers
+        .computeIfAbsent(handler.getMethod(), method -> new ConcurrentHashMap<>())
+        .computeIfAbsent(contentTypeKey, key -> new AtomicReferenceArray<>(STATUS_CODES));
+    Timer timer = byStatus.get(statusIndex);
+    if (timer == null) {
+      // Registering the same name and tags again returns the same timer, so a race is harmless
+      timer = Timer.builder(TIMER_NAME)
+          .description("Latency of requests handled by each controller method")
+          .tag("controller", handler.getBeanType().getSimpleName())
+          .tag("method", handler.getMethod().getName())
+          .tag("content.type", mediaType(contentTypeKey))
+          .tag("status", Integer.toString(status))
+          .register(registry);
+      byStatus.set(statusIndex, timer);
+    }
+    return timer;
+  }
+
+  // Drop any parameters, such as the charset
+  private static String mediaType(final String contentType) {
+    int parameters = contentType.indexOf(';');
+    return (parameters < 0 ? contentType : contentType.substring(0, parameters)).trim();
+  }
+}
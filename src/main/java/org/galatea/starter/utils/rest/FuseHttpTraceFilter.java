@@ -3,9 +3,11 @@ package org.galatea.starter.utils.rest;
 import static org.galatea.starter.entrypoint.BaseRestController.EXTERNAL_REQUEST_ID;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
+import java.util.Collection;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
@@ -20,8 +22,10 @@ import org.slf4j.MDC;
 import org.springframework.boot.actuate.trace.http.HttpExchangeTracer;
 import org.springframework.boot.actuate.trace.http.HttpTraceRepository;
 import org.springframework.boot.actuate.web.trace.servlet.HttpTraceFilter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.web.util.ContentCachingRequestWrapper;
-import org.springframework.web.util.ContentCachingResponseWrapper;
 import org.springframework.web.util.WebUtils;
 
 /**
@@ -43,17 +47,29 @@ public class FuseHttpTraceFilter extends HttpTraceFilter {
   @NonNull
   protected final Predicate<String> pathsToSkip;
 
+  protected final int maxPayloadBytes;
+
+  @NonNull
+  protected final Collection<MediaType> contentTypesNotCaptured;
+
   /**
    * Sadly we have to write our own constructor since lombok can't call super with args.
    *
    * @param repository the repository where we store our trace
    * @param pathsToSkip a predicate that will return try if we want to a skip a certain url
    *     path
+   * @param maxPayloadBytes the number of bytes of each request and response body kept for
+   *     logging
+   * @param contentTypesNotCaptured content types, such as binary formats, whose bodies aren't
+   *     kept at all
    */
   public FuseHttpTraceFilter(final HttpTraceRepository repository, final HttpExchangeTracer tracer,
-      final Predicate<String> pathsToSkip) {
+      final Predicate<String> pathsToSkip, final int maxPayloadBytes,
+      final Collection<MediaType> contentTypesNotCaptured) {
     super(repository, tracer);
     this.pathsToSkip = pathsToSkip;
+    this.maxPayloadBytes = maxPayloadBytes;
+    this.contentTypesNotCaptured = contentTypesNotCaptured;
   }
 
   @Override
@@ -82,35 +98,85 @@ public class FuseHttpTraceFilter extends HttpTraceFilter {
     boolean isFirstRequest = !isAsyncDispatch(request);
     HttpServletRequest requestToUse = request;
     HttpServletResponse responseToUse = response;
+    Instant requestReceivedTime = Instant.now();
+    long requestReceivedNanos = System.nanoTime();
 
     // We need to do this for the request and response since you can only read the stream that holds
-    // the payload once
-    if (isFirstRequest && !(request instanceof ContentCachingRequestWrapper)) {
-      requestToUse = new ContentCachingRequestWrapper(request);
+    // the payload once. Only the first maxPayloadBytes of each are kept; the rest just streams
+    // through
+    if (isFirstRequest && !(request instanceof ContentCachingRequestWrapper)
+        && capturesContentType(request.getContentType())) {
+      requestToUse = new ContentCachingRequestWrapper(request, maxPayloadBytes);
     }
-    if (isFirstRequest && !(response instanceof ContentCachingRequestWrapper)) {
-      responseToUse = new ContentCachingResponseWrapper(response);
+    if (isFirstRequest && !(response instanceof TeeCaptureResponseWrapper)) {
+      // The body goes straight out, so the audit headers have to be added before it starts to
+      responseToUse = new TeeCaptureResponseWrapper(response, maxPayloadBytes,
+          this::capturesContentType,
+          () -> addAuditHeaders(requestReceivedTime, requestReceivedNanos, response));
     }
 
-    doFilterInternalHelper(requestToUse, responseToUse, filterChain, Instant.now());
+    doFilterInternalHelper(requestToUse, responseToUse, filterChain, requestReceivedTime,
+        requestReceivedNanos);
   }
 
   @SneakyThrows
   // what's this method responsible for?
   protected void doFilterInternalHelper(final HttpServletRequest request,
       final HttpServletResponse response, final FilterChain filterChain,
-      final Instant requestReceivedTime) {
+      final Instant requestReceivedTime, final long requestReceivedNanos) {
 
     try {
       super.doFilterInternal(request, response, filterChain);
     } finally {
-      addAuditHeaders(requestReceivedTime.toString(), response);
-      updateResponse(response);
+      TeeCaptureResponseWrapper responseWrapper =
+          WebUtils.getNativeResponse(response, TeeCaptureResponseWrapper.class);
+      if (responseWrapper == null) {
+        addAuditHeaders(requestReceivedTime, requestReceivedNanos, response);
+      } else {
+        // The response of a request completed asynchronously is only written later
+        AsyncRequests.whenDone(request, () -> {
+          // Adds the audit headers now if the response had no body
+          responseWrapper.commit();
+          logPayloads(request, responseWrapper);
+        });
+      }
       MDC.clear();
     }
   }
 
-  private void addAuditHeaders(final String requestReceivedTime,
+  private boolean capturesContentType(final String contentType) {
+    if (contentType == null) {
+      return true;
+    }
+    try {
+      MediaType mediaType = MediaType.parseMediaType(contentType);
+      return contentTypesNotCaptured.stream().noneMatch(type -> type.includes(mediaType));
+    } catch (InvalidMediaTypeException e) {
+      return false;
+    }
+  }
+
+  private void logPayloads(final HttpServletRequest request,
+      final TeeCaptureResponseWrapper responseWrapper) {
+    if (!log.isDebugEnabled()) {
+      return;
+    }
+    ContentCachingRequestWrapper requestWrapper =
+        WebUtils.getNativeRequest(request, ContentCachingRequestWrapper.class);
+    if (requestWrapper != null && requestWrapper.getContentAsByteArray().length > 0) {
+      log.debug("Request payload (first {} bytes): {}", maxPayloadBytes,
+          new String(requestWrapper.getContentAsByteArray(), StandardCharsets.UTF_8));
+    }
+    // A compressed body, such as the gzipped symbol universe, would only log as noise
+    if (responseWrapper.getCapturedBody().length > 0
+        && responseWrapper.getHeader(HttpHeaders.CONTENT_ENCODING) == null) {
+      log.debug("Response payload ({} of {} bytes): {}", responseWrapper.getCapturedBody().length,
+          responseWrapper.getContentSize(),
+          new String(responseWrapper.getCapturedBody(), StandardCharsets.UTF_8));
+    }
+  }
+
+  private void addAuditHeaders(final Instant requestReceivedTime, final long requestReceivedNanos,
       final HttpServletResponse response) {
     log.info("Attempting to add audit headers");
     String internalQueryId = MDC.get(INTERNAL_REQUEST_ID);
@@ -124,10 +190,11 @@ public class FuseHttpTraceFilter extends HttpTraceFilter {
           externalQueryId.replace(" - ", "")); // externalQueryId has a ' - ' in MDC
     }
 
-    logAndAddAuditHeader(response, "requestReceivedTime", requestReceivedTime);
+    logAndAddAuditHeader(response, "requestReceivedTime", requestReceivedTime.toString());
 
+    // From the monotonic clock, which unlike the wall clock never jumps
     String requestElapsedTimeMillis =
-        String.valueOf(Instant.parse(requestReceivedTime).until(Instant.now(), ChronoUnit.MILLIS));
+        String.valueOf(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - requestReceivedNanos));
     logAndAddAuditHeader(response, "requestElapsedTimeMillis", requestElapsedTimeMillis);
   }
 
@@ -143,15 +210,4 @@ public class FuseHttpTraceFilter extends HttpTraceFilter {
       response.addHeader(headerName, headerValue);
     }
   }
-
-  /**
-   * Updates the response because we add headers *after* the filter has been applied. This way we
-   * ensure that any fields that were created during request handling (e.g. externalQueryId) will
-   * make it onto the response.
-   */
-  private void updateResponse(final HttpServletResponse response) throws IOException {
-    ContentCachingResponseWrapper responseWrapper =
-        WebUtils.getNativeResponse(response, ContentCachingResponseWrapper.class);
-    responseWrapper.copyBodyToResponse();
-  }
 }
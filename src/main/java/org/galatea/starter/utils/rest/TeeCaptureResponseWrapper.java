@@ -0,0 +1,216 @@
+package org.galatea.starter.utils.rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.function.Predicate;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Response wrapper that streams the body straight through to the client while keeping a copy of
+ * only its first few bytes, for tracing. Unlike Spring's ContentCachingResponseWrapper, which holds
+ * the whole body on the heap until copyBodyToResponse() is called, memory use doesn't grow with the
+ * size of the response.
+ *
+ * <p>Since the body is no longer held back, headers can't be added once it has started going out.
+ * A callback given to the wrapper is therefore run just before the first byte is written or the
+ * response is otherwise committed, so that headers can still be added then. commit() runs it, if
+ * it hasn't already run, for responses with no body, and flushes what is still buffered in the
+ * writer, for responses written through getWriter() and never flushed.
+ */
+public class TeeCaptureResponseWrapper extends HttpServletResponseWrapper {
+
+  private final int maxCaptureBytes;
+
+  private final Predicate<String> capturesContentType;
+
+  private final Runnable beforeCommit;
+
+  private final ByteArrayOutputStream captured = new ByteArrayOutputStream();
+
+  private ServletOutputStream outputStream;
+
+  private PrintWriter writer;
+
+  private boolean committing;
+
+  // Decided on the first write, once the content type is known
+  private Boolean capturing;
+
+  private long contentSize;
+
+  /**
+   * Construct a TeeCaptureResponseWrapper.
+   *
+   * @param response the response to write through to
+   * @param maxCaptureBytes the number of bytes of the body to keep
+   * @param capturesContentType given the response's content type, which may be null, decides
+   *     whether any of the body is kept
+   * @param beforeCommit run once, just before the response is committed
+   */
+  public TeeCaptureResponseWrapper(final HttpServletResponse response, final int maxCaptureBytes,
+      final Predicate<String> capturesContentType, final Runnable beforeCommit) {
+    super(response);
+    this.maxCaptureBytes = maxCaptureBytes;
+    this.capturesContentType = capturesContentType;
+    this.beforeCommit = beforeCommit;
+  }
+
+  @Override
+  public ServletOutputStream getOutputStream() throws IOException {
+    if (writer != null) {
+      throw new IllegalStateException("getWriter() has already been called on this response");
+    }
+    if (outputStream == null) {
+      outputStream = new TeeOutputStream(getResponse().getOutputStream());
+    }
+    return outputStream;
+  }
+
+  @Override
+  public PrintWriter getWriter() throws IOException {
+    if (writer == null) {
+      if (outputStream != null) {
+        throw new IllegalStateException(
+            "getOutputStream() has already been called on this response");
+      }
+      // Set the encoding the writer uses on the response, as the container's own writer would
+      String characterEncoding = getCharacterEncoding();
+      setCharacterEncoding(characterEncoding);
+      writer = new PrintWriter(new OutputStreamWriter(
+          new TeeOutputStream(getResponse().getOutputStream()), characterEncoding));
+    }
+    return writer;
+  }
+
+  @Override
+  public void flushBuffer() throws IOException {
+    commit();
+    super.flushBuffer();
+  }
+
+  @Override
+  public void sendError(final int sc) throws IOException {
+    beforeCommit();
+    super.sendError(sc);
+  }
+
+  @Override
+  public void sendError(final int sc, final String msg) throws IOException {
+    beforeCommit();
+    super.sendError(sc, msg);
+  }
+
+  @Override
+  public void sendRedirect(final String location) throws IOException {
+    beforeCommit();
+    super.sendRedirect(location);
+  }
+
+  /**
+   * Run the before-commit callback, unless it has already run, and flush anything still buffered
+   * in the writer through to the response, so that it's captured and counted. Call once the body
+   * is complete.
+   */
+  public void commit() {
+    beforeCommit();
+    if (writer != null) {
+      writer.flush();
+    }
+  }
+
+  /**
+   * The start of the body, up to the capture limit, or nothing if the content type isn't captured.
+   */
+  public byte[] getCapturedBody() {
+    return captured.toByteArray();
+  }
+
+  /**
+   * Whether the body was longer than the part captured.
+   */
+  public boolean isCaptureTruncated() {
+    return Boolean.TRUE.equals(capturing) && contentSize > captured.size();
+  }
+
+  /**
+   * The number of bytes of body written so far.
+   */
+  public long getContentSize() {
+    return contentSize;
+  }
+
+  // Not commit(), since the writer's own flush writes through here
+  private void beforeCommit() {
+    if (!committing) {
+      committing = true;
+      beforeCommit.run();
+    }
+  }
+
+  private void capture(final byte[] bytes, final int offset, final int length) {
+    if (capturing == null) {
+      capturing = capturesContentType.test(getContentType());
+    }
+    if (capturing) {
+      int toCapture = Math.min(length, maxCaptureBytes - captured.size());
+      if (toCapture > 0) {
+        captured.write(bytes, offset, toCapture);
+      }
+    }
+    contentSize += length;
+  }
+
+  private class TeeOutputStream extends ServletOutputStream {
+
+    private final ServletOutputStream target;
+
+    private final byte[] single = new byte[1];
+
+    TeeOutputStream(final ServletOutputStream target) {
+      this.target = target;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+      single[0] = (byte) b;
+      write(single, 0, 1);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+      if (len == 0) {
+        return;
+      }
+      beforeCommit();
+      capture(b, off, len);
+      target.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      beforeCommit();
+      target.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      beforeCommit();
+      target.close();
+    }
+
+    @Override
+    public boolean isReady() {
+      return target.isReady();
+    }
+
+    @Override
+    public void setWriteListener(final WriteListener writeListener) {
+      target.setWriteListener(writeListener);
+    }
+  }
+}
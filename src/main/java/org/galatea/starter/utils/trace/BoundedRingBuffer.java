@@ -0,0 +1,116 @@
+package org.galatea.starter.utils.trace;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free queue over a fixed ring of slots, safe for any number of producers and
+ * consumers. offer() never blocks or allocates: when the ring is full it simply returns false, so
+ * a producer on a latency-sensitive thread can drop the element and move on.
+ *
+ * <p>Each slot carries a sequence number saying whose turn it is: the producer of position p may
+ * fill the slot once its sequence is p, and the consumer of position p may empty it once its
+ * sequence is p + 1. Claiming a position is a single compare-and-set on the tail (for producers) or
+ * head (for consumers). This is Dmitry Vyukov's bounded MPMC queue.
+ *
+ * @param <E> the element type
+ */
+public class BoundedRingBuffer<E> {
+
+  private final int mask;
+
+  private final AtomicReferenceArray<E> elements;
+
+  private final AtomicLongArray sequences;
+
+  private final AtomicLong tail = new AtomicLong();
+
+  private final AtomicLong head = new AtomicLong();
+
+  /**
+   * Construct a BoundedRingBuffer.
+   *
+   * @param capacity the minimum number of elements the buffer holds; rounded up to a power of two
+   */
+  public BoundedRingBuffer(final int capacity) {
+    if (capacity < 1 || capacity > 1 << 30) {
+      throw new IllegalArgumentException("Capacity must be between 1 and 2^30: " + capacity);
+    }
+    int size = Integer.highestOneBit(capacity - 1) << 1;
+    size = Math.max(size, 1);
+    mask = size - 1;
+    elements = new AtomicReferenceArray<>(size);
+    sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  /**
+   * Add the given element, unless the buffer is full.
+   *
+   * @return false if the buffer was full and the element was not added
+   */
+  public boolean offer(final E element) {
+    long position = tail.get();
+    while (true) {
+      int slot = (int) (position & mask);
+      long turn = sequences.get(slot) - position;
+      if (turn == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          elements.set(slot, element);
+          // Hand the slot to the consumer of this position
+          sequences.set(slot, position + 1);
+          return true;
+        }
+        position = tail.get();
+      } else if (turn < 0) {
+        // The slot still holds the element from one lap ago
+        return false;
+      } else {
+        // Another producer claimed this position first
+        position = tail.get();
+      }
+    }
+  }
+
+  /**
+   * Remove and return the oldest element, or null if the buffer is empty.
+   */
+  public E poll() {
+    long position = head.get();
+    while (true) {
+      int slot = (int) (position & mask);
+      long turn = sequences.get(slot) - (position + 1);
+      if (turn == 0) {
+        if (head.compareAndSet(position, position + 1)) {
+          E element = elements.get(slot);
+          elements.set(slot, null);
+          // Hand the slot to the producer of the same position one lap on
+          sequences.set(slot, position + mask + 1);
+          return element;
+        }
+        position = head.get();
+      } else if (turn < 0) {
+        return null;
+      } else {
+        position = head.get();
+      }
+    }
+  }
+
+  /**
+   * The number of elements in the buffer. Only a snapshot while producers or consumers are active.
+   */
+  public int size() {
+    return (int) Math.max(0, Math.min(tail.get() - head.get(), capacity()));
+  }
+
+  /**
+   * The number of elements the buffer can hold.
+   */
+  public int capacity() {
+    return mask + 1;
+  }
+}
@@ -0,0 +1,44 @@
+package org.galatea.starter.utils.trace;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import lombok.Data;
+import org.springframework.boot.actuate.trace.http.Include;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * How HTTP exchanges are traced, bound from http-trace in application.yml.
+ */
+@Data
+@ConfigurationProperties("http-trace")
+public class HttpTraceProperties {
+
+  /**
+   * What each trace records.
+   */
+  private Set<Include> include = EnumSet.allOf(Include.class);
+
+  /**
+   * Fraction of exchanges traced, from 0 (none) to 1 (all).
+   */
+  private double sampleRate = 1.0;
+
+  /**
+   * Fraction of exchanges traced by request path, overriding sampleRate. The longest matching
+   * path prefix wins.
+   */
+  private Map<String, Double> pathSampleRates = new HashMap<>();
+
+  /**
+   * Whether every exchange with an error status (4xx or 5xx) is traced, whatever its sample rate.
+   */
+  private boolean alwaysSampleErrors = true;
+
+  /**
+   * Number of traces that can wait to be written. Once full, further traces are dropped rather
+   * than slowing requests down.
+   */
+  private int bufferSize = 1024;
+}
@@ -0,0 +1,55 @@
+package org.galatea.starter.utils.trace;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import org.springframework.boot.actuate.trace.http.HttpTrace;
+
+/**
+ * Decides which HTTP traces to keep, by request path and response status. See
+ * HttpTraceProperties.
+ */
+public class HttpTraceSampler {
+
+  private final double sampleRate;
+
+  private final boolean alwaysSampleErrors;
+
+  // Longest prefix first, so that the first match is the most specific
+  private final Map<String, Double> pathSampleRates =
+      new TreeMap<>(Comparator.comparingInt(String::length).reversed()
+          .thenComparing(Comparator.naturalOrder()));
+
+  /**
+   * Construct an HttpTraceSampler with the sampling settings of the given properties.
+   */
+  public HttpTraceSampler(final HttpTraceProperties properties) {
+    this.sampleRate = properties.getSampleRate();
+    this.alwaysSampleErrors = properties.isAlwaysSampleErrors();
+    this.pathSampleRates.putAll(properties.getPathSampleRates());
+  }
+
+  /**
+   * Return true if the given trace should be kept.
+   */
+  public boolean sample(final HttpTrace trace) {
+    if (alwaysSampleErrors && trace.getResponse() != null
+        && trace.getResponse().getStatus() >= 400) {
+      return true;
+    }
+    double rate = sampleRate(trace.getRequest().getUri().getPath());
+    return rate >= 1.0 || (rate > 0.0 && ThreadLocalRandom.current().nextDouble() < rate);
+  }
+
+  private double sampleRate(final String path) {
+    if (path != null) {
+      for (Map.Entry<String, Double> pathSampleRate : pathSampleRates.entrySet()) {
+        if (path.startsWith(pathSampleRate.getKey())) {
+          return pathSampleRate.getValue();
+        }
+      }
+    }
+    return sampleRate;
+  }
+}
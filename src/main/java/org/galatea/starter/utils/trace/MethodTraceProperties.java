@@ -0,0 +1,25 @@
+package org.galatea.starter.utils.trace;
+
+import java.util.HashMap;
+import java.util.Map;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * How @Traced classes are traced, bound from method-trace in application.yml.
+ */
+@Data
+@ConfigurationProperties("method-trace")
+public class MethodTraceProperties {
+
+  /**
+   * Fraction of calls traced by the simple name of the @Traced class, overriding the sample rate
+   * given in its annotation.
+   */
+  private Map<String, Double> sampleRates = new HashMap<>();
+
+  /**
+   * Maximum number of characters each argument and return value is rendered as.
+   */
+  private int maxValueLength = 200;
+}
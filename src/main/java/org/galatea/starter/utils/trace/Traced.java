@@ -0,0 +1,29 @@
+package org.galatea.starter.utils.trace;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import org.slf4j.event.Level;
+
+/**
+ * Logs entry to and exit from every public method of the annotated class, through the class's own
+ * logger. See TracingAdvisor.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Traced {
+
+  /**
+   * The level enter, exit and error events are logged at.
+   */
+  Level level() default Level.DEBUG;
+
+  /**
+   * Fraction of calls traced, from 0 (none) to 1 (all). Overridden by method-trace.sample-rates.
+   * Calls that throw are always traced.
+   */
+  double sampleRate() default 1.0;
+}
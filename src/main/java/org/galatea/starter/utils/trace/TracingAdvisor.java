@@ -0,0 +1,197 @@
+package org.galatea.starter.utils.trace;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.aop.support.StaticMethodMatcherPointcutAdvisor;
+import org.springframework.core.annotation.AnnotationUtils;
+
+/**
+ * Logs entry to and exit from the public methods of @Traced classes as structured key=value
+ * events, e.g. "event=exit method=getMission elapsedMicros=812 result=...".
+ *
+ * <p>Built to cost next to nothing when not logging: if the class's logger isn't enabled at the
+ * traced level, or the call isn't sampled, the method is called straight away, without rendering
+ * its arguments. When it is logging, arguments and return values are only rendered when the log
+ * event is formatted, collections and arrays are rendered as their type and size rather than their
+ * contents, and everything else is cut short at method-trace.max-value-length.
+ *
+ * <p>A plain Spring AOP advisor rather than an @Aspect: the methods it applies to are worked out
+ * once, when the proxy is created, and a call goes straight to the interceptor, without the
+ * JoinPoint and reflective advice call an @Around advice costs.
+ */
+public class TracingAdvisor extends StaticMethodMatcherPointcutAdvisor {
+
+  private final MethodTraceProperties properties;
+
+  private final Map<Class<?>, ClassTracer> tracers = new ConcurrentHashMap<>();
+
+  /**
+   * Construct a TracingAdvisor.
+   *
+   * @param properties the sample rates and rendering limits
+   */
+  public TracingAdvisor(final MethodTraceProperties properties) {
+    this.properties = properties;
+    setAdvice((MethodInterceptor) this::trace);
+  }
+
+  /**
+   * Return true for the public methods declared by @Traced classes.
+   */
+  @Override
+  public boolean matches(final Method method, final Class<?> targetClass) {
+    return Modifier.isPublic(method.getModifiers())
+        && AnnotationUtils.findAnnotation(method.getDeclaringClass(), Traced.class) != null;
+  }
+
+  /*
+   * A method inherited from a superclass is traced as set by the annotation on the class it is
+   * called on.
+   */
+  private Object trace(final MethodInvocation invocation) throws Throwable {
+    Class<?> targetClass = AopUtils.getTargetClass(invocation.getThis());
+    ClassTracer tracer = tracers.get(targetClass);
+    if (tracer == null) {
+      tracer = tracers.computeIfAbsent(targetClass, ClassTracer::new);
+    }
+    if (!tracer.isEnabled()) {
+      return invocation.proceed();
+    }
+
+    String method = invocation.getMethod().getName();
+    boolean sampled = tracer.isSampled();
+    if (sampled) {
+      tracer.log("event=enter method={} args={}", method,
+          new Rendered(invocation.getArguments(), true));
+    }
+    long start = System.nanoTime();
+    try {
+      Object result = invocation.proceed();
+      if (sampled) {
+        tracer.log("event=exit method={} elapsedMicros={} result={}", method, elapsedMicros(start),
+            new Rendered(result, false));
+      }
+      return result;
+    } catch (Throwable e) {
+      // Failures are always worth seeing, sampled or not
+      tracer.log("event=error method={} elapsedMicros={} exception={}", method,
+          elapsedMicros(start), new Rendered(e, false));
+      throw e;
+    }
+  }
+
+  private static long elapsedMicros(final long start) {
+    return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+  }
+
+  private class ClassTracer {
+
+    private final Logger logger;
+
+    private final Level level;
+
+    private final double sampleRate;
+
+    ClassTracer(final Class<?> targetClass) {
+      Traced traced = AnnotationUtils.findAnnotation(targetClass, Traced.class);
+      this.logger = LoggerFactory.getLogger(targetClass);
+      this.level = traced.level();
+      this.sampleRate = properties.getSampleRates()
+          .getOrDefault(targetClass.getSimpleName(), traced.sampleRate());
+    }
+
+    boolean isEnabled() {
+      switch (level) {
+        case ERROR:
+          return logger.isErrorEnabled();
+        case WARN:
+          return logger.isWarnEnabled();
+        case INFO:
+          return logger.isInfoEnabled();
+        case DEBUG:
+          return logger.isDebugEnabled();
+        default:
+          return logger.isTraceEnabled();
+      }
+    }
+
+    boolean isSampled() {
+      return sampleRate >= 1.0
+          || (sampleRate > 0.0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    void log(final String format, final Object... arguments) {
+      switch (level) {
+        case ERROR:
+          logger.error(format, arguments);
+          break;
+        case WARN:
+          logger.warn(format, arguments);
+          break;
+        case INFO:
+          logger.info(format, arguments);
+          break;
+        case DEBUG:
+          logger.debug(format, arguments);
+          break;
+        default:
+          logger.trace(format, arguments);
+      }
+    }
+  }
+
+  /**
+   * A value, or the arguments of a call, rendered only when toString() is called, i.e. when the
+   * log event is formatted.
+   */
+  private class Rendered {
+
+    private final Object value;
+
+    private final boolean arguments;
+
+    Rendered(final Object value, final boolean arguments) {
+      this.value = value;
+      this.arguments = arguments;
+    }
+
+    @Override
+    public String toString() {
+      if (arguments) {
+        StringBuilder rendered = new StringBuilder("(");
+        Object[] args = (Object[]) value;
+        for (int i = 0; i < args.length; i++) {
+          rendered.append(i == 0 ? "" : ", ").append(render(args[i]));
+        }
+        return rendered.append(')').toString();
+      }
+      return render(value);
+    }
+
+    private String render(final Object object) {
+      if (object instanceof Collection) {
+        return object.getClass().getSimpleName() + "[size=" + ((Collection<?>) object).size() + "]";
+      } else if (object instanceof Map) {
+        return object.getClass().getSimpleName() + "[size=" + ((Map<?, ?>) object).size() + "]";
+      } else if (object != null && object.getClass().isArray()) {
+        return object.getClass().getComponentType().getSimpleName() + "[" + Array.getLength(object)
+            + "]";
+      }
+      String rendered = String.valueOf(object);
+      int maxLength = properties.getMaxValueLength();
+      return rendered.length() <= maxLength ? rendered : rendered.substring(0, maxLength) + "...";
+    }
+  }
+}
@@ -14,7 +14,7 @@ import static org.junit.Assert.assertNotNull;
 
 @ContextConfiguration(classes = AppConfig.class)
 @RunWith(SpringRunner.class)
-@SpringBootTest
+@SpringBootTest(properties = "cache.provider=ehcache")
 public class AppConfigTest {
 
     @Autowired
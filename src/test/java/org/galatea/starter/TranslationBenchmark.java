@@ -0,0 +1,181 @@
+package org.galatea.starter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessages;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionMessage;
+import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessage;
+import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessages;
+import org.galatea.starter.service.IAgreementTransformer;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.galatea.starter.utils.translation.ITranslator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the translators in MessageTranslationConfig and ProtoMessageTranslationConfig, and the
+ * IAgreementTransformer from AppConfig, which between them sit on every settle and get request.
+ * Each benchmark translates a batch of BATCH messages; scores are per message.
+ *
+ * <p>Run with: mvn -Pbenchmark test -Dskip.surefire.tests -Dbenchmark.include=TranslationBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(TranslationBenchmark.BATCH)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TranslationBenchmark {
+
+  static final int BATCH = 1000;
+
+  private final MessageTranslationConfig messageConfig = new MessageTranslationConfig();
+
+  private final ProtoMessageTranslationConfig protoConfig = new ProtoMessageTranslationConfig();
+
+  private ITranslator<TradeAgreementMessages, List<TradeAgreement>> agreementMessagesTranslator;
+
+  private ITranslator<TradeAgreementProtoMessages, List<TradeAgreement>> agreementProtosTranslator;
+
+  private ITranslator<byte[], TradeAgreement> agreementBinaryTranslator;
+
+  private ITranslator<SettlementMission, SettlementMissionMessage> missionTranslator;
+
+  private ITranslator<SettlementMissionMessage, SettlementMission> missionMessageTranslator;
+
+  private ITranslator<SettlementMission, SettlementMissionProtoMessage> missionProtoTranslator;
+
+  private ITranslator<SettlementMissionProtoMessage, SettlementMission>
+      missionProtoMessageTranslator;
+
+  private IAgreementTransformer agreementTransformer;
+
+  private TradeAgreementMessages agreementMessages;
+
+  private TradeAgreementProtoMessages agreementProtos;
+
+  private List<byte[]> agreementBinaries;
+
+  private List<TradeAgreement> agreements;
+
+  private List<SettlementMission> missions;
+
+  private List<SettlementMissionMessage> missionMessages;
+
+  private List<SettlementMissionProtoMessage> missionProtos;
+
+  /**
+   * Build the translators, as the configs do, and the messages to translate.
+   */
+  @Setup
+  public void createTranslators() {
+    agreementMessagesTranslator = messageConfig
+        .tradeAgreementMessagesTranslator(messageConfig.tradeAgreementMessageTranslator());
+    agreementProtosTranslator = protoConfig
+        .tradeAgreementProtoMessagesTranslator(protoConfig.tradeAgreementProtoTranslator());
+    agreementBinaryTranslator = protoConfig
+        .tradeAgreementBinaryProtobufTranslator(protoConfig.tradeAgreementProtoTranslator());
+    missionTranslator = messageConfig.settlementMissionTranslator();
+    missionMessageTranslator = messageConfig.settlementMissionMsgTranslator();
+    missionProtoTranslator = protoConfig.settlementMissionProtoTranslator();
+    missionProtoMessageTranslator = protoConfig.settlementMissionProtoMessageTranslator();
+    agreementTransformer = new AppConfig().agreementTransformer();
+
+    TradeAgreementMessages.TradeAgreementMessagesBuilder messagesBuilder =
+        TradeAgreementMessages.builder();
+    TradeAgreementProtoMessages.Builder protosBuilder = TradeAgreementProtoMessages.newBuilder();
+    agreementBinaries = new ArrayList<>();
+    for (int i = 0; i < BATCH; i++) {
+      messagesBuilder.agreement(TradeAgreementMessage.builder().instrument("IBM")
+          .internalParty("INT-1").externalParty("EXT-1").buySell("B").qty(100d).build());
+      TradeAgreementProtoMessage proto =
+          TestDataGenerator.defaultTradeAgreementProtoMessageData().build();
+      protosBuilder.addMessage(proto);
+      agreementBinaries.add(proto.toByteArray());
+    }
+    agreementMessages = messagesBuilder.build();
+    agreementProtos = protosBuilder.build();
+    agreements = agreementMessagesTranslator.translate(agreementMessages);
+
+    missions = LongStream.range(0, BATCH)
+        .mapToObj(id -> TestDataGenerator.defaultSettlementMissionData().id(id).build())
+        .collect(Collectors.toList());
+    missionMessages = missions.stream().map(missionTranslator::translate)
+        .collect(Collectors.toList());
+    missionProtos = missions.stream().map(missionProtoTranslator::translate)
+        .collect(Collectors.toList());
+  }
+
+  @Benchmark
+  public List<TradeAgreement> tradeAgreementMessages() {
+    return agreementMessagesTranslator.translate(agreementMessages);
+  }
+
+  @Benchmark
+  public List<TradeAgreement> tradeAgreementProtoMessages() {
+    return agreementProtosTranslator.translate(agreementProtos);
+  }
+
+  /**
+   * Parse and translate binary protobuf agreements, as the protobuf JMS listener does.
+   */
+  @Benchmark
+  public void tradeAgreementBinaryProtobuf(final Blackhole blackhole) {
+    for (byte[] binary : agreementBinaries) {
+      blackhole.consume(agreementBinaryTranslator.translate(binary));
+    }
+  }
+
+  @Benchmark
+  public void agreementTransformer(final Blackhole blackhole) {
+    for (TradeAgreement agreement : agreements) {
+      blackhole.consume(agreementTransformer.transform(agreement));
+    }
+  }
+
+  @Benchmark
+  public void settlementMissionToMessage(final Blackhole blackhole) {
+    for (SettlementMission mission : missions) {
+      blackhole.consume(missionTranslator.translate(mission));
+    }
+  }
+
+  @Benchmark
+  public void settlementMissionFromMessage(final Blackhole blackhole) {
+    for (SettlementMissionMessage message : missionMessages) {
+      blackhole.consume(missionMessageTranslator.translate(message));
+    }
+  }
+
+  @Benchmark
+  public void settlementMissionToProto(final Blackhole blackhole) {
+    for (SettlementMission mission : missions) {
+      blackhole.consume(missionProtoTranslator.translate(mission));
+    }
+  }
+
+  @Benchmark
+  public void settlementMissionFromProto(final Blackhole blackhole) {
+    for (SettlementMissionProtoMessage proto : missionProtos) {
+      blackhole.consume(missionProtoMessageTranslator.translate(proto));
+    }
+  }
+}
@@ -0,0 +1,97 @@
+package org.galatea.starter.domain;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import org.junit.Test;
+
+public class IexHistoricalPriceSeriesTest {
+
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  @Test
+  public void readsIexBarsIntoColumns() throws Exception {
+    String json = "[{\"close\":146.17,\"high\":148.38,\"low\":145.8,\"open\":145,"
+        + "\"symbol\":\"IBM\",\"volume\":6983377,\"id\":\"HISTORICAL_PRICES\",\"key\":\"IBM\","
+        + "\"date\":\"2021-05-10\",\"updated\":1620694092000,\"label\":\"May 10, 21\","
+        + "\"nested\":{\"ignored\":[1,2]},\"changePercent\":-0.5},"
+        + "{\"close\":1.4617e2,\"high\":148.123456,\"low\":null,\"symbol\":\"IBM\","
+        + "\"date\":\"2021-05-11\"}]";
+
+    IexHistoricalPriceSeries series = mapper.readValue(json, IexHistoricalPriceSeries.class);
+
+    assertEquals("IBM", series.getSymbol());
+    assertEquals(2, series.size());
+    assertEquals(LocalDate.of(2021, 5, 10).toEpochDay(), series.getEpochDay(0));
+    assertEquals(1_461_700L, series.getClose(0));
+    assertEquals(1_483_800L, series.getHigh(0));
+    assertEquals(1_458_000L, series.getLow(0));
+    assertEquals(1_450_000L, series.getOpen(0));
+    assertEquals(6_983_377L, series.getVolume(0));
+    // Exponents and extra decimal places are parsed the slow way, and rounded to 4 places
+    assertEquals(1_461_700L, series.getClose(1));
+    assertEquals(1_481_235L, series.getHigh(1));
+    assertEquals(IexHistoricalPriceSeries.MISSING, series.getLow(1));
+    assertEquals(IexHistoricalPriceSeries.MISSING, series.getOpen(1));
+    assertEquals(IexHistoricalPriceSeries.MISSING, series.getVolume(1));
+  }
+
+  @Test
+  public void writesBarsAsIexDoes() throws Exception {
+    IexHistoricalPriceSeries series = IexHistoricalPriceSeries.builder().symbol("IBM")
+        .add((int) LocalDate.of(2021, 5, 10).toEpochDay(), 1_450_000L, 1_483_800L, 1_458_000L,
+            1_461_700L, 6_983_377L)
+        .add((int) LocalDate.of(2021, 5, 11).toEpochDay(), IexHistoricalPriceSeries.MISSING,
+            -5L, 1L, 100_000_000L, IexHistoricalPriceSeries.MISSING)
+        .build();
+
+    assertEquals("[{\"close\":146.17,\"high\":148.38,\"low\":145.8,\"open\":145,"
+            + "\"symbol\":\"IBM\",\"volume\":6983377,\"date\":\"2021-05-10\"},"
+            + "{\"close\":10000,\"high\":-0.0005,\"low\":0.0001,\"open\":null,"
+            + "\"symbol\":\"IBM\",\"volume\":null,\"date\":\"2021-05-11\"}]",
+        mapper.writeValueAsString(series));
+  }
+
+  @Test
+  public void roundTrips() throws Exception {
+    String json = "[{\"close\":146.17,\"high\":148.38,\"low\":145.8,\"open\":145.8,"
+        + "\"symbol\":\"IBM\",\"volume\":6983377,\"date\":\"2021-05-10\"}]";
+
+    IexHistoricalPriceSeries series = mapper.readValue(json, IexHistoricalPriceSeries.class);
+
+    assertEquals(json, mapper.writeValueAsString(series));
+    assertEquals(series, mapper.readValue(mapper.writeValueAsString(series),
+        IexHistoricalPriceSeries.class));
+  }
+
+  @Test
+  public void getsBarAsObject() {
+    IexHistoricalPriceSeries series = IexHistoricalPriceSeries.builder().symbol("IBM")
+        .add((int) LocalDate.of(2021, 5, 10).toEpochDay(), 1_450_000L, 1_483_800L,
+            IexHistoricalPriceSeries.MISSING, 1_461_700L, 6_983_377L)
+        .build();
+
+    IexHistoricalPrice bar = series.get(0);
+
+    assertEquals("IBM", bar.getSymbol());
+    assertEquals("2021-05-10", bar.getDate());
+    assertEquals(new BigDecimal("145"), bar.getOpen());
+    assertEquals(new BigDecimal("148.38"), bar.getHigh());
+    assertNull(bar.getLow());
+    assertEquals(new BigDecimal("146.17"), bar.getClose());
+    assertEquals(Integer.valueOf(6983377), bar.getVolume());
+  }
+
+  @Test
+  public void readsAndWritesEmptyArray() throws Exception {
+    IexHistoricalPriceSeries series = mapper.readValue("[]", IexHistoricalPriceSeries.class);
+
+    assertTrue(series.isEmpty());
+    assertNull(series.getSymbol());
+    assertEquals("[]", mapper.writeValueAsString(series));
+  }
+}
@@ -0,0 +1,96 @@
+package org.galatea.starter.domain;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import org.junit.Test;
+
+public class IexSymbolUniverseTest {
+
+  private static final String IEX_JSON = "[{\"symbol\":\"AA\",\"name\":\"Alcoa Corporation\","
+      + "\"date\":\"2019-08-08\",\"isEnabled\":true,\"type\":\"cs\",\"iexId\":\"12042\","
+      + "\"region\":\"US\",\"currency\":\"USD\"},"
+      + "{\"symbol\":\"A\",\"name\":\"Agilent Technologies Inc.\",\"date\":\"2019-08-08\","
+      + "\"isEnabled\":true,\"type\":\"cs\",\"iexId\":\"2\",\"extra\":{\"nested\":[1]}},"
+      + "{\"symbol\":\"AAAU\",\"name\":null,\"date\":null,\"isEnabled\":false,"
+      + "\"type\":\"et\",\"iexId\":\"14\"}]";
+
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  @Test
+  public void readsIexSymbolsInOrder() throws Exception {
+    IexSymbolUniverse universe = mapper.readValue(IEX_JSON, IexSymbolUniverse.class);
+
+    assertEquals(3, universe.size());
+    IexSymbol agilent = universe.get(0);
+    assertEquals("A", agilent.getSymbol());
+    assertEquals("Agilent Technologies Inc.", agilent.getName());
+    assertEquals(1565222400000L, agilent.getDate().getTime());
+    assertTrue(agilent.isEnabled());
+    assertEquals("cs", agilent.getType());
+    assertEquals("2", agilent.getIexId());
+    assertEquals("AA", universe.get(1).getSymbol());
+    assertNull(universe.get(2).getDate());
+    assertFalse(universe.get(2).isEnabled());
+    // Equal values share a String
+    assertSame(universe.get(0).getType(), universe.get(1).getType());
+  }
+
+  @Test
+  public void writesJsonAsJacksonWritesSymbols() throws Exception {
+    IexSymbolUniverse universe = mapper.readValue(IEX_JSON, IexSymbolUniverse.class);
+    List<IexSymbol> symbols = new ArrayList<>();
+    for (int i = 0; i < universe.size(); i++) {
+      symbols.add(universe.get(i));
+    }
+
+    assertEquals(mapper.writeValueAsString(symbols), new String(universe.getJson(), "UTF-8"));
+    try (GZIPInputStream gunzip =
+        new GZIPInputStream(new ByteArrayInputStream(universe.getGzippedJson()))) {
+      assertArrayEquals(universe.getJson(), gunzip.readAllBytes());
+    }
+    // What was written reads back the same
+    assertEquals(universe.getEtag(), mapper.readValue(universe.getJson(),
+        IexSymbolUniverse.class).getEtag());
+  }
+
+  @Test
+  public void etagChangesWithSymbols() throws Exception {
+    IexSymbolUniverse universe = mapper.readValue(IEX_JSON, IexSymbolUniverse.class);
+    IexSymbolUniverse changed = mapper.readValue(IEX_JSON.replace("Alcoa", "Alcoa Inc"),
+        IexSymbolUniverse.class);
+
+    assertTrue(universe.getEtag().startsWith("\""));
+    assertNotEquals(universe.getEtag(), changed.getEtag());
+    assertNotEquals(universe.getEtag(), universe.getGzippedEtag());
+    assertNotEquals(universe.getGzippedEtag(), changed.getGzippedEtag());
+  }
+
+  @Test
+  public void findsSymbolsAndPrefixes() throws Exception {
+    IexSymbolUniverse universe = mapper.readValue(IEX_JSON, IexSymbolUniverse.class);
+
+    assertEquals("Alcoa Corporation", universe.find("AA").get().getName());
+    assertFalse(universe.find("AAA").isPresent());
+    assertEquals(List.of("AA", "AAAU"), symbols(universe.findByPrefix("AA", 10)));
+    assertEquals(List.of("A"), symbols(universe.findByPrefix("", 1)));
+    assertEquals(List.of("AAAU"), symbols(universe.findByPrefix("AAA", 10)));
+    assertTrue(universe.findByPrefix("B", 10).isEmpty());
+    assertTrue(IexSymbolUniverse.empty().findByPrefix("A", 10).isEmpty());
+  }
+
+  private static List<String> symbols(final List<IexSymbol> symbols) {
+    return symbols.stream().map(IexSymbol::getSymbol).collect(Collectors.toList());
+  }
+}
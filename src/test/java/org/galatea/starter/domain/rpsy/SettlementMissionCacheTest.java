@@ -0,0 +1,227 @@
+package org.galatea.starter.domain.rpsy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableMap;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.config.Configuration;
+import org.galatea.starter.ASpringTest;
+import org.galatea.starter.ProtoMessageTranslationConfig;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.galatea.starter.utils.cache.PerCacheCaffeineCacheManager;
+import org.galatea.starter.utils.cache.TieredCache;
+import org.galatea.starter.utils.cache.TieredCacheManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.ehcache.EhCacheCacheManager;
+import org.springframework.util.unit.DataSize;
+
+public class SettlementMissionCacheTest extends ASpringTest {
+
+  private CacheManager ehCacheManager;
+
+  private Cache springCache;
+
+  private MeterRegistry meterRegistry;
+
+  private SettlementMissionCache missionCache;
+
+  @Before
+  public void setup() {
+    ehCacheManager = CacheManager.newInstance(new Configuration()
+        .name(SettlementMissionCacheTest.class.getSimpleName())
+        .defaultCache(new CacheConfiguration().maxEntriesLocalHeap(100)));
+    ehCacheManager.addCache(SettlementMissionCache.CACHE_NAME);
+    EhCacheCacheManager springCacheManager = new EhCacheCacheManager(ehCacheManager);
+    springCacheManager.afterPropertiesSet();
+    springCache = springCacheManager.getCache(SettlementMissionCache.CACHE_NAME);
+
+    meterRegistry = new SimpleMeterRegistry();
+    missionCache = new SettlementMissionCache(springCacheManager, meterRegistry, true);
+  }
+
+  @After
+  public void tearDown() {
+    ehCacheManager.shutdown();
+  }
+
+  @Test
+  public void testGetAllFromEhCache() {
+    SettlementMission mission1 = TestDataGenerator.defaultSettlementMissionData().id(1L).build();
+    SettlementMission mission2 = TestDataGenerator.defaultSettlementMissionData().id(2L).build();
+    missionCache.putAll(Arrays.asList(mission1, mission2));
+    // What @Cacheable stores when findById() finds nothing
+    springCache.put(3L, null);
+
+    Map<Long, SettlementMission> found = missionCache.getAll(Arrays.asList(1L, 2L, 3L, 4L));
+
+    assertEquals(2, found.size());
+    assertSame(mission1, found.get(1L));
+    assertSame(mission2, found.get(2L));
+    assertEquals(2.0, lookups("hit"), 0);
+    assertEquals(2.0, lookups("miss"), 0);
+  }
+
+  @Test
+  public void testPutAllIsVisibleToCacheable() {
+    SettlementMission mission = TestDataGenerator.defaultSettlementMissionData().id(7L).build();
+
+    missionCache.putAll(Collections.singletonList(mission));
+
+    // @Cacheable on ISettlementMissionRpsy.findById() keys entries by the id alone
+    assertSame(mission, springCache.get(7L).get());
+  }
+
+  @Test
+  public void testOlderVersionDoesNotReplaceNewer() {
+    SettlementMission version1 = TestDataGenerator.defaultSettlementMissionData()
+        .id(5L).qty(100d).version(1L).build();
+    SettlementMission version2 = TestDataGenerator.defaultSettlementMissionData()
+        .id(5L).qty(200d).version(2L).build();
+
+    assertTrue(missionCache.putIfNewer(version2));
+    // A slower writer finishing with the older version
+    assertFalse(missionCache.putIfNewer(version1));
+    assertSame(version2, springCache.get(5L).get());
+
+    SettlementMission version3 = TestDataGenerator.defaultSettlementMissionData()
+        .id(5L).qty(300d).version(3L).build();
+    assertTrue(missionCache.putIfNewer(version3));
+    assertSame(version3, springCache.get(5L).get());
+  }
+
+  @Test
+  public void testMissionReplacesNotFoundPlaceholder() {
+    springCache.put(6L, null);
+    SettlementMission mission = TestDataGenerator.defaultSettlementMissionData().id(6L).build();
+
+    assertTrue(missionCache.putIfNewer(mission));
+    assertSame(mission, springCache.get(6L).get());
+  }
+
+  @Test
+  public void testGetReadsThroughOnce() {
+    SettlementMission mission = TestDataGenerator.defaultSettlementMissionData().id(9L).build();
+    AtomicInteger loads = new AtomicInteger();
+
+    assertEquals(Optional.of(mission), missionCache.get(9L, id -> {
+      loads.incrementAndGet();
+      return Optional.of(mission);
+    }));
+    assertEquals(Optional.of(mission), missionCache.get(9L, id -> {
+      loads.incrementAndGet();
+      return Optional.empty();
+    }));
+
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  public void testGetCachesMissingMission() {
+    assertEquals(Optional.empty(), missionCache.get(10L, id -> Optional.empty()));
+
+    assertNull(springCache.get(10L).get());
+    assertEquals(Optional.empty(), missionCache.get(10L, id -> {
+      throw new AssertionError("Expected the cached placeholder to be found");
+    }));
+  }
+
+  @Test
+  public void testGetDoesNotReplaceNewerVersion() {
+    SettlementMission version1 = TestDataGenerator.defaultSettlementMissionData()
+        .id(11L).version(1L).build();
+    SettlementMission version2 = TestDataGenerator.defaultSettlementMissionData()
+        .id(11L).version(2L).build();
+
+    Optional<SettlementMission> found = missionCache.get(11L, id -> {
+      // Saved and written through while the older version was being read
+      missionCache.putIfNewer(version2);
+      return Optional.of(version1);
+    });
+
+    assertEquals(Optional.of(version2), found);
+    assertSame(version2, springCache.get(11L).get());
+  }
+
+  @Test
+  public void testWriteThroughDisabled() {
+    SettlementMissionCache readThroughOnly = new SettlementMissionCache(
+        new EhCacheCacheManager(ehCacheManager), new SimpleMeterRegistry(), false);
+    SettlementMission mission = TestDataGenerator.defaultSettlementMissionData().id(8L).build();
+
+    readThroughOnly.writeThrough(Collections.singletonList(mission));
+
+    assertNull(springCache.get(8L));
+  }
+
+  @Test
+  public void testCaffeine() {
+    PerCacheCaffeineCacheManager caffeineCacheManager = new PerCacheCaffeineCacheManager(
+        ImmutableMap.of(SettlementMissionCache.CACHE_NAME, "maximumSize=100"),
+        Collections.emptyList());
+    SettlementMissionCache caffeineMissionCache =
+        new SettlementMissionCache(caffeineCacheManager, meterRegistry, true);
+    SettlementMission version1 = TestDataGenerator.defaultSettlementMissionData()
+        .id(1L).version(1L).build();
+    SettlementMission version2 = TestDataGenerator.defaultSettlementMissionData()
+        .id(1L).version(2L).build();
+
+    assertTrue(caffeineMissionCache.putIfNewer(version2));
+    assertFalse(caffeineMissionCache.putIfNewer(version1));
+
+    Map<Long, SettlementMission> found = caffeineMissionCache.getAll(Arrays.asList(1L, 2L));
+    assertEquals(Collections.singletonMap(1L, version2), found);
+    assertEquals(1.0, lookups("hit"), 0);
+    assertEquals(1.0, lookups("miss"), 0);
+  }
+
+  @Test
+  public void testOffHeapTier() {
+    ProtoMessageTranslationConfig translationConfig = new ProtoMessageTranslationConfig();
+    TieredCacheManager tieredCacheManager = new TieredCacheManager(
+        new ConcurrentMapCacheManager(SettlementMissionCache.CACHE_NAME),
+        Collections.singletonMap(SettlementMissionCache.CACHE_NAME, DataSize.ofKilobytes(64)),
+        Collections.singletonList(new SettlementMissionProtoCodec(
+            translationConfig.settlementMissionProtoTranslator(),
+            translationConfig.settlementMissionProtoMessageTranslator())));
+    TieredCache tieredCache =
+        (TieredCache) tieredCacheManager.getCache(SettlementMissionCache.CACHE_NAME);
+    SettlementMissionCache tieredMissionCache =
+        new SettlementMissionCache(tieredCacheManager, meterRegistry, true);
+    SettlementMission version1 = TestDataGenerator.defaultSettlementMissionData()
+        .id(1L).version(1L).build();
+    SettlementMission version2 = TestDataGenerator.defaultSettlementMissionData()
+        .id(1L).version(2L).build();
+
+    assertTrue(tieredMissionCache.putIfNewer(version2));
+    // As if the heap tier had evicted it
+    tieredCache.getHeapCache().evict(1L);
+    assertFalse(tieredMissionCache.putIfNewer(version1));
+
+    Map<Long, SettlementMission> found = tieredMissionCache.getAll(Arrays.asList(1L, 2L));
+    // Decoded from its off-heap copy
+    assertEquals(Collections.singletonMap(1L, version2), found);
+    assertEquals(version2, tieredCache.getHeapCache().get(1L).get());
+  }
+
+  private double lookups(final String result) {
+    return meterRegistry.get(SettlementMissionCache.LOOKUPS_METER).tag("result", result)
+        .counter().count();
+  }
+}
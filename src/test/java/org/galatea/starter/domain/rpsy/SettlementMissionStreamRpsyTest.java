@@ -0,0 +1,88 @@
+package org.galatea.starter.domain.rpsy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.persistence.EntityManager;
+import org.galatea.starter.ASpringTest;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.SettlementMissionFilter;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+@DataJpaTest
+@Import(SettlementMissionStreamRpsy.class)
+public class SettlementMissionStreamRpsyTest extends ASpringTest {
+
+  @Autowired
+  private ISettlementMissionRpsy missionRpsy;
+
+  @Autowired
+  private SettlementMissionStreamRpsy missionStreamRpsy;
+
+  @Autowired
+  private EntityManager entityManager;
+
+  private List<Long> ids;
+
+  @Before
+  public void setup() {
+    ids = Stream.of(
+        TestDataGenerator.defaultSettlementMissionData().id(null).depot("DTC").build(),
+        TestDataGenerator.defaultSettlementMissionData().id(null).depot("EURO").build(),
+        TestDataGenerator.defaultSettlementMissionData().id(null).depot("DTC").instrument("ABC")
+            .build(),
+        TestDataGenerator.defaultSettlementMissionData().id(null).depot("DTC").build())
+        .map(missionRpsy::save)
+        .map(SettlementMission::getId)
+        .collect(Collectors.toList());
+    entityManager.flush();
+    entityManager.clear();
+  }
+
+  @Test
+  public void testStreamAll() {
+    assertEquals(ids, streamIds(SettlementMissionFilter.builder().build()));
+  }
+
+  @Test
+  public void testStreamFiltered() {
+    SettlementMissionFilter filter = SettlementMissionFilter.builder()
+        .depot("DTC").instrument("IBM").build();
+    assertEquals(Arrays.asList(ids.get(0), ids.get(3)), streamIds(filter));
+  }
+
+  @Test
+  public void testStreamPages() {
+    SettlementMissionFilter firstPage = SettlementMissionFilter.builder()
+        .depot("DTC").limit(2).build();
+    assertEquals(Arrays.asList(ids.get(0), ids.get(2)), streamIds(firstPage));
+
+    // The next page starts after the last id of the previous one
+    SettlementMissionFilter secondPage = SettlementMissionFilter.builder()
+        .depot("DTC").afterId(ids.get(2)).limit(2).build();
+    assertEquals(Arrays.asList(ids.get(3)), streamIds(secondPage));
+  }
+
+  @Test
+  public void testStreamedMissionsAreDetached() {
+    try (Stream<SettlementMission> missions =
+        missionStreamRpsy.streamMissions(SettlementMissionFilter.builder().build())) {
+      missions.forEach(mission -> assertFalse(entityManager.contains(mission)));
+    }
+  }
+
+  private List<Long> streamIds(final SettlementMissionFilter filter) {
+    try (Stream<SettlementMission> missions = missionStreamRpsy.streamMissions(filter)) {
+      return missions.map(SettlementMission::getId).collect(Collectors.toList());
+    }
+  }
+}
@@ -1,21 +1,39 @@
 package org.galatea.starter.entrypoint;
 
 import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
 import java.math.BigDecimal;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
 import junitparams.JUnitParamsRunner;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.galatea.starter.ASpringTest;
+import org.galatea.starter.service.IexAnalyticsService;
+import org.galatea.starter.service.IexHistoricalPriceFanOut;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
@@ -40,6 +58,9 @@ public class IexRestControllerTest extends ASpringTest {
   @Autowired
   private MockMvc mvc;
 
+  @Autowired
+  private ObjectMapper objectMapper;
+
   @Test
   public void testGetSymbolsEndpoint() throws Exception {
     MvcResult result = this.mvc.perform(
@@ -52,6 +73,124 @@ public class IexRestControllerTest extends ASpringTest {
         .andExpect(jsonPath("$[0].symbol", is("A")))
         .andExpect(jsonPath("$[1].symbol", is("AA")))
         .andExpect(jsonPath("$[2].symbol", is("AAAU")))
+        .andExpect(jsonPath("$[0].date", is(1565222400000L)))
+        .andExpect(jsonPath("$[0].enabled", is(true)))
+        .andReturn();
+  }
+
+  @Test
+  public void testGetSymbolsNotModified() throws Exception {
+    String etag = this.mvc.perform(
+        org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get("/iex/symbols")
+            .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+        .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+    this.mvc.perform(
+        org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get("/iex/symbols")
+            .header(HttpHeaders.IF_NONE_MATCH, etag)
+            .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(status().isNotModified())
+        .andExpect(content().bytes(new byte[0]));
+  }
+
+  @Test
+  public void testGetSymbolsGzipped() throws Exception {
+    byte[] json = this.mvc.perform(
+        org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get("/iex/symbols")
+            .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andReturn().getResponse().getContentAsByteArray();
+
+    MvcResult result = this.mvc.perform(
+        org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get("/iex/symbols")
+            .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate")
+            .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+        .andReturn();
+
+    try (GZIPInputStream gunzip = new GZIPInputStream(
+        new ByteArrayInputStream(result.getResponse().getContentAsByteArray()))) {
+      assertArrayEquals(json, gunzip.readAllBytes());
+    }
+  }
+
+  @Test
+  public void testGetSymbolsGzipRefused() throws Exception {
+    this.mvc.perform(
+        org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get("/iex/symbols")
+            .header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0, *")
+            .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(status().isOk())
+        .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING));
+  }
+
+  @Test
+  public void testGetSymbolsEtagPerEncoding() throws Exception {
+    String etag = this.mvc.perform(
+        org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get("/iex/symbols")
+            .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    String gzippedEtag = this.mvc.perform(
+        org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get("/iex/symbols")
+            .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+            .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    assertNotEquals(etag, gzippedEtag);
+
+    // The plain JSON's ETag doesn't match the gzipped JSON
+    this.mvc.perform(
+        org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get("/iex/symbols")
+            .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+            .header(HttpHeaders.IF_NONE_MATCH, etag)
+            .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"));
+  }
+
+  @Test
+  public void testGetSymbol() throws Exception {
+    MvcResult result = this.mvc.perform(
+        org.springframework.test.web.servlet.request.MockMvcRequestBuilders
+            .get("/iex/symbol?symbol=aa")
+            .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.symbol", is("AA")))
+        .andExpect(jsonPath("$.name", is("Alcoa Corporation")))
+        .andReturn();
+  }
+
+  @Test
+  public void testGetSymbolNotFound() throws Exception {
+    MvcResult result = this.mvc.perform(
+        org.springframework.test.web.servlet.request.MockMvcRequestBuilders
+            .get("/iex/symbol?symbol=NOPE")
+            .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(status().isNotFound())
+        .andReturn();
+  }
+
+  @Test
+  public void testSearchSymbols() throws Exception {
+    MvcResult result = this.mvc.perform(
+        org.springframework.test.web.servlet.request.MockMvcRequestBuilders
+            .get("/iex/symbols/search?prefix=aa&limit=5")
+            .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].symbol", is("AA")))
+        .andExpect(jsonPath("$[1].symbol", is("AAAU")))
+        .andExpect(jsonPath("$.length()", is(2)))
+        .andReturn();
+  }
+
+  @Test
+  public void testSearchSymbolsBadLimit() throws Exception {
+    MvcResult result = this.mvc.perform(
+        org.springframework.test.web.servlet.request.MockMvcRequestBuilders
+            .get("/iex/symbols/search?prefix=A&limit=0")
+            .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(status().isBadRequest())
         .andReturn();
   }
 
@@ -86,10 +225,14 @@ public class IexRestControllerTest extends ASpringTest {
   @Test
   public void testGetHistoricalPriceByRange() throws Exception {
 
-    MvcResult result = this.mvc.perform(
+    MvcResult started = this.mvc.perform(
         org.springframework.test.web.servlet.request.MockMvcRequestBuilders
             .get("/iex/historicalPrice?symbol=IBM&range=1m")
             .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+
+    MvcResult result = this.mvc.perform(asyncDispatch(started))
         .andExpect(status().isOk())
         .andExpect(jsonPath("$[0].symbol", is("IBM")))
         .andExpect(jsonPath("$[0].close").value(new BigDecimal("146.17")))
@@ -104,10 +247,14 @@ public class IexRestControllerTest extends ASpringTest {
   @Test
   public void testGetHistoricalPriceByDate() throws Exception {
 
-    MvcResult result = this.mvc.perform(
+    MvcResult started = this.mvc.perform(
         org.springframework.test.web.servlet.request.MockMvcRequestBuilders
             .get("/iex/historicalPrice?symbol=JPM&date=20210601")
             .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+
+    MvcResult result = this.mvc.perform(asyncDispatch(started))
         .andExpect(status().isOk())
         .andExpect(jsonPath("$[0].symbol", is("JPM")))
         .andExpect(jsonPath("$[0].close").value(new BigDecimal("125.87")))
@@ -118,6 +265,55 @@ public class IexRestControllerTest extends ASpringTest {
         .andReturn();
   }
 
+  @Test
+  public void testGetHistoricalPrices() throws Exception {
+    MvcResult started = this.mvc.perform(
+        org.springframework.test.web.servlet.request.MockMvcRequestBuilders
+            .get("/iex/historicalPrices?symbols=IBM,NOPE&range=1m")
+            .accept(MediaType.APPLICATION_STREAM_JSON_VALUE))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+
+    MvcResult result = this.mvc.perform(asyncDispatch(started))
+        .andExpect(status().isOk())
+        .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_STREAM_JSON))
+        .andReturn();
+
+    // A line per symbol, in the order they were fetched
+    Map<String, JsonNode> lines = new HashMap<>();
+    for (String line : result.getResponse().getContentAsString().split("\n")) {
+      JsonNode node = objectMapper.readTree(line);
+      lines.put(node.get("symbol").asText(), node);
+    }
+    assertEquals(2, lines.size());
+    assertEquals(new BigDecimal("146.17"), lines.get("IBM").at("/prices/0/close").decimalValue());
+    assertEquals("2021-05-10", lines.get("IBM").at("/prices/0/date").asText());
+    // IEX has no prices for NOPE
+    assertEquals("Not found at IEX", lines.get("NOPE").get("error").asText());
+    assertFalse(lines.get("NOPE").has("prices"));
+  }
+
+  @Test
+  public void testGetHistoricalPricesOnlyAsNewlineDelimitedJson() throws Exception {
+    this.mvc.perform(
+        org.springframework.test.web.servlet.request.MockMvcRequestBuilders
+            .get("/iex/historicalPrices?symbols=IBM&range=1m")
+            .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(status().isNotAcceptable());
+  }
+
+  @Test
+  public void testGetHistoricalPricesTooManySymbols() throws Exception {
+    String symbols = String.join(",",
+        Collections.nCopies(IexHistoricalPriceFanOut.MAX_SYMBOLS + 1, "IBM"));
+
+    this.mvc.perform(
+        org.springframework.test.web.servlet.request.MockMvcRequestBuilders
+            .get("/iex/historicalPrices?symbols=" + symbols)
+            .accept(MediaType.APPLICATION_STREAM_JSON_VALUE))
+        .andExpect(status().isBadRequest());
+  }
+
   @Test
   public void testGetHistoricalPriceNoSymbol() throws Exception {
     MvcResult result = this.mvc.perform(
@@ -130,10 +326,14 @@ public class IexRestControllerTest extends ASpringTest {
 
   @Test
   public void testGetHistoricalPriceEmpty() throws Exception {
-    MvcResult result = this.mvc.perform(
+    MvcResult started = this.mvc.perform(
         org.springframework.test.web.servlet.request.MockMvcRequestBuilders
             .get("/iex/historicalPrice?symbol=")
             .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+
+    MvcResult result = this.mvc.perform(asyncDispatch(started))
         .andExpect(status().isOk())
         .andExpect(jsonPath("$", is(Collections.emptyList())))
         .andReturn();
@@ -141,10 +341,14 @@ public class IexRestControllerTest extends ASpringTest {
 
   @Test
   public void testGetHistoricalPriceBadDate() throws Exception {
-    MvcResult result = this.mvc.perform(
+    MvcResult started = this.mvc.perform(
         org.springframework.test.web.servlet.request.MockMvcRequestBuilders
             .get("/iex/historicalPrice?symbol=FB&date=00000000")
             .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+
+    MvcResult result = this.mvc.perform(asyncDispatch(started))
         .andExpect(status().isOk())
         .andExpect(jsonPath("$", is(Collections.emptyList())))
         .andReturn();
@@ -152,12 +356,65 @@ public class IexRestControllerTest extends ASpringTest {
 
   @Test
   public void testGetHistoricalPriceBadRange() throws Exception {
-    MvcResult result = this.mvc.perform(
+    MvcResult started = this.mvc.perform(
         org.springframework.test.web.servlet.request.MockMvcRequestBuilders
             .get("/iex/historicalPrice?symbol=FB&range=4m")
             .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+
+    MvcResult result = this.mvc.perform(asyncDispatch(started))
         .andExpect(status().isOk())
         .andExpect(jsonPath("$", is(Collections.emptyList())))
         .andReturn();
   }
+
+  @Test
+  public void testGetPriceAnalytics() throws Exception {
+    MvcResult started = this.mvc.perform(
+        org.springframework.test.web.servlet.request.MockMvcRequestBuilders
+            .get("/iex/analytics?symbols=IBM,NOPE&range=1m&windows=1,5")
+            .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+
+    MvcResult result = this.mvc.perform(asyncDispatch(started))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].symbol", is("IBM")))
+        .andExpect(jsonPath("$[0].bars", is(1)))
+        .andExpect(jsonPath("$[0].from", is("2021-05-10")))
+        .andExpect(jsonPath("$[0].lastClose", is(146.17)))
+        .andExpect(jsonPath("$[0].totalReturn", is(0.0)))
+        .andExpect(jsonPath("$[0].volume", is(6983377)))
+        .andExpect(jsonPath("$[0].movingAverages.1", is(146.17)))
+        .andExpect(jsonPath("$[0].movingAverages.5").doesNotExist())
+        // A single bar has no daily returns
+        .andExpect(jsonPath("$[0].dailyVolatility").doesNotExist())
+        // IEX has no prices for NOPE
+        .andExpect(jsonPath("$[1].symbol", is("NOPE")))
+        .andExpect(jsonPath("$[1].error", is("Not found at IEX")))
+        .andReturn();
+  }
+
+  @Test
+  public void testGetPriceAnalyticsTooManySymbols() throws Exception {
+    String symbols = String.join(",",
+        Collections.nCopies(IexAnalyticsService.MAX_SYMBOLS + 1, "IBM"));
+
+    this.mvc.perform(
+        org.springframework.test.web.servlet.request.MockMvcRequestBuilders
+            .get("/iex/analytics?symbols=" + symbols)
+            .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  public void testGetPriceAnalyticsBadWindow() throws Exception {
+    MvcResult result = this.mvc.perform(
+        org.springframework.test.web.servlet.request.MockMvcRequestBuilders
+            .get("/iex/analytics?symbols=IBM&windows=0")
+            .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(status().isBadRequest())
+        .andReturn();
+  }
 }
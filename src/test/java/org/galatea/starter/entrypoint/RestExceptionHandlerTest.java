@@ -8,6 +8,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
 import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
+import org.galatea.starter.utils.resilience.CallNotPermittedException;
 import org.junit.Before;
 import org.junit.Test;
 import org.springframework.dao.DataAccessException;
@@ -68,4 +69,11 @@ public class RestExceptionHandlerTest {
     ResponseEntity<Object> response = handler.handleOptimisticLockException(exception);
     assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
   }
+
+  @Test
+  public void handleCallNotPermitted() {
+    CallNotPermittedException exception = new CallNotPermittedException("msg", true);
+    ResponseEntity<Object> response = handler.handleCallNotPermitted(exception);
+    assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+  }
 }
@@ -0,0 +1,127 @@
+package org.galatea.starter.entrypoint;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+import javax.jms.Message;
+import javax.jms.TextMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.ASpringTest;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessage;
+import org.galatea.starter.service.SettlementService;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+// A single consumer and a long batch timeout so that every message sent by a test lands in the
+// same batch
+@SpringBootTest(properties = {"jms.batch.enabled=true", "jms.batch.max-wait-ms=2000",
+    "jms.listener-concurrency=1"})
+@Slf4j
+public class SettlementJmsBatchListenerTest extends ASpringTest {
+
+  @Autowired
+  protected JmsTemplate jmsTemplate;
+
+  @MockBean
+  private SettlementService mockSettlementService;
+
+  @MockBean(name = "failedMessageConsumer")
+  private BiConsumer<Message, Exception> mockFailedMessageConsumer;
+
+  @Value("${jms.agreement-queue-json}")
+  protected String jsonQueueName;
+
+  @Value("${jms.agreement-queue-proto}")
+  protected String protoQueueName;
+
+  // See SettlementJmsListenerTest for why each test needs a fresh context
+
+  @Test
+  @DirtiesContext
+  public void testSettleAgreementBatchJson() throws Exception {
+    List<TradeAgreement> agreements = Arrays.asList(
+        TestDataGenerator.defaultTradeAgreementData().instrument("IBM").build(),
+        TestDataGenerator.defaultTradeAgreementData().instrument("AAPL").build(),
+        TestDataGenerator.defaultTradeAgreementData().instrument("MSFT").build());
+
+    for (TradeAgreement agreement : agreements) {
+      sendJson(toJson(agreement));
+    }
+
+    verify(mockSettlementService, timeout(10000)).spawnMissions(agreements);
+  }
+
+  @Test
+  @DirtiesContext
+  public void testSettleAgreementBatchProto() {
+    TradeAgreementProtoMessage message1 =
+        TestDataGenerator.defaultTradeAgreementProtoMessageData().setInstrument("IBM").build();
+    TradeAgreementProtoMessage message2 =
+        TestDataGenerator.defaultTradeAgreementProtoMessageData().setInstrument("AAPL").build();
+
+    jmsTemplate.convertAndSend(protoQueueName, message1.toByteArray());
+    jmsTemplate.convertAndSend(protoQueueName, message2.toByteArray());
+
+    verify(mockSettlementService, timeout(10000)).spawnMissions(Arrays.asList(
+        TestDataGenerator.defaultTradeAgreementData().instrument("IBM").build(),
+        TestDataGenerator.defaultTradeAgreementData().instrument("AAPL").build()));
+  }
+
+  @Test
+  @DirtiesContext
+  public void testPoisonMessageIsIsolated() throws Exception {
+    TradeAgreement agreement1 = TestDataGenerator.defaultTradeAgreementData()
+        .instrument("IBM").build();
+    TradeAgreement agreement2 = TestDataGenerator.defaultTradeAgreementData()
+        .instrument("AAPL").build();
+
+    sendJson(toJson(agreement1));
+    sendJson("this isn't an agreement");
+    sendJson(toJson(agreement2));
+
+    // The batch fails to translate, so each message is retried on its own and only the bad one
+    // ends up with the failed message consumer
+    verify(mockSettlementService, timeout(10000))
+        .spawnMissions(Collections.singletonList(agreement1));
+    verify(mockSettlementService, timeout(10000))
+        .spawnMissions(Collections.singletonList(agreement2));
+    verify(mockFailedMessageConsumer, timeout(10000)).accept(
+        argThat(msg -> msg instanceof TextMessage
+            && "this isn't an agreement".equals(getText((TextMessage) msg))),
+        any(Exception.class));
+    verify(mockSettlementService, never()).spawnMissions(Arrays.asList(agreement1, agreement2));
+  }
+
+  private void sendJson(final String json) {
+    jmsTemplate.send(jsonQueueName, s -> s.createTextMessage(json));
+  }
+
+  private static String toJson(final TradeAgreement agreement) {
+    return String.format("{\"instrument\":\"%s\",\"internalParty\":\"%s\","
+            + "\"externalParty\":\"%s\",\"buySell\":\"%s\",\"qty\":%s}",
+        agreement.getInstrument(), agreement.getInternalParty(), agreement.getExternalParty(),
+        agreement.getBuySell(), agreement.getQty());
+  }
+
+  private static String getText(final TextMessage message) {
+    try {
+      return message.getText();
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
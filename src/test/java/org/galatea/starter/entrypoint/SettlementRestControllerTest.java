@@ -3,10 +3,16 @@ package org.galatea.starter.entrypoint;
 import static io.restassured.module.mockmvc.RestAssuredMockMvc.given;
 import static java.util.Collections.singletonList;
 import static org.galatea.starter.MvcConfig.APPLICATION_EXCEL;
+import static org.galatea.starter.MvcConfig.APPLICATION_PROTOBUF;
 import static org.galatea.starter.MvcConfig.TEXT_CSV;
 import static org.hamcrest.Matchers.hasXPath;
 import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.when;
@@ -16,6 +22,9 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.Sets;
 import io.restassured.module.mockmvc.RestAssuredMockMvc;
 import io.restassured.module.mockmvc.response.MockMvcResponse;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringWriter;
 import java.util.Arrays;
 import java.util.Collections;
@@ -24,6 +33,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.Marshaller;
 import junitparams.FileParameters;
@@ -31,16 +41,22 @@ import junitparams.JUnitParamsRunner;
 import lombok.extern.slf4j.Slf4j;
 import org.galatea.starter.ASpringTest;
 import org.galatea.starter.MessageTranslationConfig;
+import org.galatea.starter.MvcConfig;
+import org.galatea.starter.ProtoMessageTranslationConfig;
 import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.SettlementMissionFilter;
 import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessage;
 import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionList;
 import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionMessage;
 import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessage;
 import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessages;
+import org.galatea.starter.service.IMissionStreamHandler;
 import org.galatea.starter.service.SettlementService;
 import org.galatea.starter.testutils.TestDataGenerator;
 import org.galatea.starter.testutils.XlsxComparator;
 import org.galatea.starter.utils.http.converter.SettlementMissionCsvConverter;
+import org.galatea.starter.utils.http.converter.SettlementMissionStreamConverter;
 import org.galatea.starter.utils.http.converter.SettlementMissionXlsxConverter;
 import org.galatea.starter.utils.translation.ITranslator;
 import org.junit.Before;
@@ -83,6 +99,9 @@ public class SettlementRestControllerTest
   @Value("${mvc.getMissionsPath}")
   private String getMissionsPath;
 
+  @Value("${mvc.listMissionsPath}")
+  private String listMissionsPath;
+
   @Value("${mvc.deleteMissionPath}")
   private String deleteMissionPath;
 
@@ -122,6 +141,7 @@ public class SettlementRestControllerTest
     mediaTypes.put("xml", MediaType.APPLICATION_XML);
     mediaTypes.put("csv", TEXT_CSV);
     mediaTypes.put("xlsx", APPLICATION_EXCEL);
+    mediaTypes.put("protobuf", APPLICATION_PROTOBUF);
 
     ParameterContentNegotiationStrategy parameterContentNegotiationStrategy =
         new ParameterContentNegotiationStrategy(mediaTypes);
@@ -136,8 +156,12 @@ public class SettlementRestControllerTest
             addPlaceholderValue("mvc.updateMissionPath", updateMissionPath).
             addPlaceholderValue("mvc.getMissionsPath", getMissionsPath).
             addPlaceholderValue("mvc.getMissionPath", getMissionPath).
+            addPlaceholderValue("mvc.listMissionsPath", listMissionsPath).
             setContentNegotiationManager(manager).
-            setMessageConverters(new MappingJackson2HttpMessageConverter(),
+            setMessageConverters(
+                new SettlementMissionStreamConverter(objectMapper,
+                    new ProtoMessageTranslationConfig().settlementMissionProtoTranslator(), 100),
+                new MappingJackson2HttpMessageConverter(),
                 new Jaxb2RootElementHttpMessageConverter(),
                 new SettlementMissionCsvConverter(),
                 new SettlementMissionXlsxConverter()).
@@ -393,6 +417,118 @@ public class SettlementRestControllerTest
     assertTrue(XlsxComparator.equals(expectedXlsx, response.asByteArray()));
   }
 
+  @Test
+  public void testListMissions_JSON() throws Exception {
+    SettlementMission mission1 = TestDataGenerator.defaultSettlementMissionData().id(2L).build();
+    SettlementMission mission2 = TestDataGenerator.defaultSettlementMissionData().id(3L).build();
+    SettlementMissionFilter expectedFilter = SettlementMissionFilter.builder()
+        .depot("DTC").instrument("IBM").afterId(1L).limit(2).build();
+    givenStreamedMissions(expectedFilter, mission1, mission2);
+
+    given()
+        .log().ifValidationFails()
+        .accept(MediaType.APPLICATION_JSON_VALUE)
+        .when()
+        .get("/settlementEngine/missions/list?depot=DTC&instrument=IBM&afterId=1&limit=2"
+            + "&requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.OK.value())
+        .contentType(MediaType.APPLICATION_JSON_VALUE)
+        .body("settlementMissions.size()", is(2))
+        .body("settlementMissions[0].id", is(2))
+        .body("settlementMissions[0].depot", is(mission1.getDepot()))
+        .body("settlementMissions[0].qty", is(mission1.getQty().floatValue()))
+        .body("settlementMissions[1].id", is(3));
+  }
+
+  @Test
+  public void testListMissions_JSONEmpty() throws Exception {
+    givenStreamedMissions(SettlementMissionFilter.builder().depot("NONE").build());
+
+    given()
+        .log().ifValidationFails()
+        .when()
+        .get("/settlementEngine/missions/list?depot=NONE&requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.OK.value())
+        .body("settlementMissions.size()", is(0));
+  }
+
+  @Test
+  public void testListMissions_CSV() throws Exception {
+    SettlementMission mission1 = SettlementMission.builder()
+        .id(1L).instrument("ABC").externalParty("EXT-1").depot("DEPOT-1").direction("REC")
+        .qty(100.0).version(0L).build();
+    SettlementMission mission2 = SettlementMission.builder()
+        .id(2L).instrument("ABC").externalParty("EXT-1").depot("DEPOT-1").direction("REC")
+        .qty(100.0).version(0L).build();
+    givenStreamedMissions(SettlementMissionFilter.builder().build(), mission1, mission2);
+
+    given()
+        .log().ifValidationFails()
+        .when()
+        .get("/settlementEngine/missions/list?format=csv&requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.OK.value())
+        .contentType("text/csv")
+        .body(is(readData("SettlementMissions.csv")));
+  }
+
+  @Test
+  public void testListMissions_XLSX() throws Exception {
+    SettlementMission mission1 = SettlementMission.builder()
+        .id(1L).instrument("ABC").externalParty("EXT-1").depot("DEPOT-1").direction("REC")
+        .qty(100.0).version(0L).build();
+    SettlementMission mission2 = SettlementMission.builder()
+        .id(2L).instrument("ABC").externalParty("EXT-1").depot("DEPOT-1").direction("REC")
+        .qty(100.0).version(0L).build();
+    givenStreamedMissions(SettlementMissionFilter.builder().build(), mission1, mission2);
+
+    MockMvcResponse response =
+        given()
+            .log().ifValidationFails()
+            .when()
+            .get("/settlementEngine/missions/list?format=xlsx&requestId=1234")
+            .then()
+            .log().ifValidationFails()
+            .statusCode(HttpStatus.OK.value())
+            .contentType("application/vnd.ms-excel")
+            .extract()
+            .response();
+
+    assertTrue(XlsxComparator.equals(readBytes("SettlementMissions.xlsx"),
+        response.asByteArray()));
+  }
+
+  @Test
+  public void testListMissions_Protobuf() throws Exception {
+    SettlementMission mission1 = TestDataGenerator.defaultSettlementMissionData().id(2L).build();
+    SettlementMission mission2 = TestDataGenerator.defaultSettlementMissionData().id(3L).build();
+    givenStreamedMissions(SettlementMissionFilter.builder().direction("REC").build(),
+        mission1, mission2);
+
+    MockMvcResponse response =
+        given()
+            .log().ifValidationFails()
+            .when()
+            .get("/settlementEngine/missions/list?direction=REC&format=protobuf&requestId=1234")
+            .then()
+            .log().ifValidationFails()
+            .statusCode(HttpStatus.OK.value())
+            .contentType(MvcConfig.APPLICATION_PROTOBUF_VALUE)
+            .extract()
+            .response();
+
+    // The body is a sequence of length-delimited messages
+    InputStream body = new ByteArrayInputStream(response.asByteArray());
+    assertEquals(2L, SettlementMissionProtoMessage.parseDelimitedFrom(body).getId());
+    assertEquals(3L, SettlementMissionProtoMessage.parseDelimitedFrom(body).getId());
+    assertNull(SettlementMissionProtoMessage.parseDelimitedFrom(body));
+  }
+
   @Test
   public void testIncorrectlyFormattedAgreement() {
     String expectedMessage = "Incorrectly formatted message.  Please consult the documentation.";
@@ -520,6 +656,15 @@ public class SettlementRestControllerTest
         .statusCode(HttpStatus.NOT_FOUND.value());
   }
 
+  // Have the mocked service pass the given missions to whichever handler the converter supplies
+  private void givenStreamedMissions(final SettlementMissionFilter expectedFilter,
+      final SettlementMission... missions) throws IOException {
+    doAnswer(invocation -> {
+      invocation.<IMissionStreamHandler>getArgument(1).handle(Stream.of(missions));
+      return null;
+    }).when(mockSettlementService).streamMissions(eq(expectedFilter), any());
+  }
+
   @Configuration
   @Import(SettlementRestController.class)
   @ConditionalOnNotWebApplication
@@ -0,0 +1,56 @@
+package org.galatea.starter.loadtest;
+
+import java.util.Map;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * What one ingest channel sustained over the measured part of a load test. Warm-up traffic is
+ * left out of every figure.
+ */
+@Builder
+@Value
+public class ChannelReport {
+
+  private String channel;
+
+  private double targetAgreementsPerSecond;
+
+  // The rate agreements actually went out at; below the target if sends were held up
+  private double offeredAgreementsPerSecond;
+
+  // Agreements settled per second, from the start of measuring until the last was settled
+  private double throughputAgreementsPerSecond;
+
+  private long agreementsSent;
+
+  private long agreementsSettled;
+
+  // Requests, or bursts of JMS messages
+  private long operations;
+
+  private long failedOperations;
+
+  private double errorRate;
+
+  // Failed operations by cause
+  private Map<String, Long> errors;
+
+  private Latency latencyMillis;
+
+  /**
+   * Time from when an operation was due to be sent until it was settled, so that time spent
+   * waiting behind a backlog counts, in milliseconds. Only operations that succeeded are included.
+   */
+  @Builder
+  @Value
+  public static class Latency {
+
+    private double p50;
+    private double p90;
+    private double p99;
+    private double p999;
+    private double max;
+    private double mean;
+  }
+}
@@ -0,0 +1,32 @@
+package org.galatea.starter.loadtest;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.galatea.starter.domain.TradeAgreement;
+
+/**
+ * One way of getting trade agreements into the settlement engine, such as posting them as JSON or
+ * putting them on a JMS queue, as driven by the LoadGenerator.
+ */
+public interface IIngestChannel extends AutoCloseable {
+
+  /**
+   * The name the channel is selected by and reported under.
+   */
+  String getName();
+
+  /**
+   * Start sending the given agreements. This should return as soon as they are on their way;
+   * the LoadGenerator calls it from the one thread that paces the load.
+   *
+   * @return completes once missions have been spawned for all of the agreements, or
+   *     exceptionally if they were rejected
+   */
+  CompletableFuture<Void> send(List<TradeAgreement> agreements);
+
+  /**
+   * Release whatever the channel holds. Agreements still in flight are abandoned.
+   */
+  @Override
+  void close();
+}
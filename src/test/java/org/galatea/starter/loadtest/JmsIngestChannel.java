@@ -0,0 +1,148 @@
+package org.galatea.starter.loadtest;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.TradeAgreement;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jms.core.JmsTemplate;
+
+/**
+ * Puts each agreement on a JMS queue, as a message of its own.
+ *
+ * <p>The JMS listeners don't reply, so a batch is taken to be settled once the missions table has
+ * grown by as many missions as had been sent up to and including it: a background thread counts
+ * the missions every millisecond or so and completes the batches it has reached. The latencies
+ * this gives are right to within the counting interval as long as messages are settled in
+ * roughly the order they were sent, which with a few listener threads they are. A message the
+ * listener fails on spawns no mission, so it shows up as the last batch sent never completing.
+ *
+ * <p>Nothing else should be spawning missions while the channel is open.
+ */
+@Slf4j
+public class JmsIngestChannel implements IIngestChannel {
+
+  private static final String COUNT_MISSIONS = "select count(*) from settlement_mission";
+
+  private static final long POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  @Getter
+  private final String name;
+
+  private final JmsTemplate jmsTemplate;
+
+  private final String queueName;
+
+  private final MessageEncoder encoder;
+
+  private final JdbcTemplate jdbcTemplate;
+
+  private final Queue<PendingBatch> pending = new ConcurrentLinkedQueue<>();
+
+  // The number of missions there will be once everything sent so far has been settled
+  private long expectedMissions;
+
+  private final Thread poller;
+
+  private volatile boolean closed;
+
+  /**
+   * Construct a JmsIngestChannel, and start counting missions.
+   *
+   * @param name the name of the channel
+   * @param jmsTemplate sends the messages
+   * @param queueName the queue to send them to
+   * @param encoder turns an agreement into a message
+   * @param jdbcTemplate counts the missions spawned
+   */
+  public JmsIngestChannel(final String name, final JmsTemplate jmsTemplate,
+      final String queueName, final MessageEncoder encoder, final JdbcTemplate jdbcTemplate) {
+    this.name = name;
+    this.jmsTemplate = jmsTemplate;
+    this.queueName = queueName;
+    this.encoder = encoder;
+    this.jdbcTemplate = jdbcTemplate;
+    this.expectedMissions = countMissions();
+    this.poller = new Thread(this::completeSettledBatches, name + "-mission-counter");
+    this.poller.setDaemon(true);
+    this.poller.start();
+  }
+
+  @Override
+  public CompletableFuture<Void> send(final List<TradeAgreement> agreements) {
+    CompletableFuture<Void> settled = new CompletableFuture<>();
+    try {
+      for (TradeAgreement agreement : agreements) {
+        jmsTemplate.send(queueName, session -> encoder.encode(session, agreement));
+      }
+    } catch (RuntimeException e) {
+      // Whatever of the batch did get sent is expected all the same, to keep the count in step
+      settled.completeExceptionally(e);
+    }
+    // Only ever called from the one thread
+    expectedMissions += agreements.size();
+    pending.add(new PendingBatch(expectedMissions, settled));
+    return settled;
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    try {
+      poller.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void completeSettledBatches() {
+    while (!closed) {
+      if (!pending.isEmpty()) {
+        try {
+          long missions = countMissions();
+          PendingBatch batch;
+          while ((batch = pending.peek()) != null && batch.expectedMissions <= missions) {
+            pending.poll().settled.complete(null);
+          }
+        } catch (DataAccessException e) {
+          // An engine that has run out of connections still has its batches time out
+          log.warn("Couldn't count the missions spawned", e);
+        }
+      }
+      LockSupport.parkNanos(POLL_INTERVAL_NANOS);
+    }
+  }
+
+  private long countMissions() {
+    return jdbcTemplate.queryForObject(COUNT_MISSIONS, Long.class);
+  }
+
+  /**
+   * Turns an agreement into a message.
+   */
+  @FunctionalInterface
+  public interface MessageEncoder {
+
+    /**
+     * Create the message for the given agreement with the given session.
+     */
+    Message encode(Session session, TradeAgreement agreement) throws JMSException;
+  }
+
+  @RequiredArgsConstructor
+  private static class PendingBatch {
+
+    private final long expectedMissions;
+    private final CompletableFuture<Void> settled;
+  }
+}
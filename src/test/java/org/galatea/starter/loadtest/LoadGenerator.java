@@ -0,0 +1,185 @@
+package org.galatea.starter.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.galatea.starter.domain.TradeAgreement;
+
+/**
+ * Drives an ingest channel with batches of agreements at a fixed rate, and measures what it
+ * sustains.
+ *
+ * <p>The load is open: each batch is due at a fixed time, and is sent then whether or not the
+ * batches before it have been settled, as it would be by independent clients. Latency is measured
+ * from when a batch was due rather than from when it was actually sent, so a channel that falls
+ * behind is charged for the time batches spent waiting to go out. Only if maxInFlight batches are
+ * outstanding does sending stop until one of them is settled.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class LoadGenerator {
+
+  private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  @NonNull
+  private final LoadTestSettings settings;
+
+  @NonNull
+  private final Supplier<TradeAgreement> agreements;
+
+  /**
+   * Drive the given channel for the warm-up and then the measured period, and wait for the last
+   * batch sent to be settled or to time out.
+   *
+   * @return what the channel sustained while it was being measured
+   */
+  public ChannelReport run(final IIngestChannel channel) throws InterruptedException {
+    long intervalNanos =
+        (long) (NANOS_PER_SECOND * settings.getBatchSize() / settings.getAgreementsPerSecond());
+    Semaphore inFlight = new Semaphore(settings.getMaxInFlight());
+    Measurements measurements = new Measurements();
+
+    long start = System.nanoTime();
+    long measureFrom = start + TimeUnit.SECONDS.toNanos(settings.getWarmupSeconds());
+    long measureUntil = measureFrom + TimeUnit.SECONDS.toNanos(settings.getDurationSeconds());
+    long lastSent = measureFrom;
+    log.info("Driving {} for {}s, then measuring for {}s", channel.getName(),
+        settings.getWarmupSeconds(), settings.getDurationSeconds());
+
+    for (long due = start; due < measureUntil; due += intervalNanos) {
+      long wait = due - System.nanoTime();
+      if (wait > 0) {
+        LockSupport.parkNanos(wait);
+      }
+      inFlight.acquire();
+
+      List<TradeAgreement> batch = nextBatch();
+      long dueAt = due;
+      boolean measured = due >= measureFrom;
+      if (measured) {
+        measurements.operations++;
+        measurements.agreementsSent += batch.size();
+        lastSent = System.nanoTime();
+      }
+      send(channel, batch).orTimeout(settings.getTimeoutSeconds(), TimeUnit.SECONDS)
+          .whenComplete((result, error) -> {
+            try {
+              if (measured) {
+                measurements.record(dueAt, batch.size(), error);
+              }
+            } finally {
+              inFlight.release();
+            }
+          });
+    }
+
+    // Everything still in flight is settled or times out within the timeout
+    inFlight.acquire(settings.getMaxInFlight());
+    return measurements.report(channel.getName(), measureFrom, lastSent);
+  }
+
+  private List<TradeAgreement> nextBatch() {
+    List<TradeAgreement> batch = new ArrayList<>(settings.getBatchSize());
+    for (int i = 0; i < settings.getBatchSize(); i++) {
+      batch.add(agreements.get());
+    }
+    return batch;
+  }
+
+  private static CompletableFuture<Void> send(final IIngestChannel channel,
+      final List<TradeAgreement> batch) {
+    try {
+      return channel.send(batch);
+    } catch (RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  private static String describe(final Throwable error) {
+    Throwable cause = error instanceof CompletionException && error.getCause() != null
+        ? error.getCause() : error;
+    if (cause instanceof TimeoutException) {
+      return "timeout";
+    }
+    return cause.getMessage() == null ? cause.getClass().getSimpleName()
+        : cause.getClass().getSimpleName() + ": " + cause.getMessage();
+  }
+
+  private class Measurements {
+
+    // Only touched by the sending thread
+    private long operations;
+    private long agreementsSent;
+
+    private final AtomicLong agreementsSettled = new AtomicLong();
+    private final Map<String, AtomicLong> errors = new ConcurrentHashMap<>();
+    private final LongAccumulator lastSettled = new LongAccumulator(Math::max, Long.MIN_VALUE);
+    // In microseconds, to 3 significant figures. Guarded by itself
+    private final Histogram latencies = new Histogram(3);
+
+    private void record(final long due, final int agreementCount, final Throwable error) {
+      long now = System.nanoTime();
+      if (error == null) {
+        synchronized (latencies) {
+          latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(now - due));
+        }
+        agreementsSettled.addAndGet(agreementCount);
+        lastSettled.accumulate(now);
+      } else {
+        errors.computeIfAbsent(describe(error), cause -> new AtomicLong()).incrementAndGet();
+      }
+    }
+
+    private ChannelReport report(final String channel, final long measureFrom,
+        final long lastSent) {
+      long failed = errors.values().stream().mapToLong(AtomicLong::get).sum();
+      Map<String, Long> errorCounts = new TreeMap<>();
+      errors.forEach((cause, count) -> errorCounts.put(cause, count.get()));
+      double sendingSeconds = Math.max(lastSent - measureFrom, 1) / (double) NANOS_PER_SECOND;
+      double settlingSeconds = Math.max(
+          Math.max(lastSettled.get(), measureFrom) - measureFrom, 1) / (double) NANOS_PER_SECOND;
+
+      return ChannelReport.builder()
+          .channel(channel)
+          .targetAgreementsPerSecond(settings.getAgreementsPerSecond())
+          .offeredAgreementsPerSecond(agreementsSent / Math.max(sendingSeconds,
+              settings.getDurationSeconds()))
+          .throughputAgreementsPerSecond(agreementsSettled.get() / Math.max(settlingSeconds,
+              settings.getDurationSeconds()))
+          .agreementsSent(agreementsSent)
+          .agreementsSettled(agreementsSettled.get())
+          .operations(operations)
+          .failedOperations(failed)
+          .errorRate(operations == 0 ? 0 : (double) failed / operations)
+          .errors(errorCounts)
+          .latencyMillis(ChannelReport.Latency.builder()
+              .p50(percentileMillis(50))
+              .p90(percentileMillis(90))
+              .p99(percentileMillis(99))
+              .p999(percentileMillis(99.9))
+              .max(latencies.getMaxValue() / 1000d)
+              .mean(latencies.getMean() / 1000)
+              .build())
+          .build();
+    }
+
+    private double percentileMillis(final double percentile) {
+      return latencies.getValueAtPercentile(percentile) / 1000d;
+    }
+  }
+}
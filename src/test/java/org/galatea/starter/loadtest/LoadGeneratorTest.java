@@ -0,0 +1,128 @@
+package org.galatea.starter.loadtest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.galatea.starter.ASpringTest;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.Test;
+
+public class LoadGeneratorTest extends ASpringTest {
+
+  private static final Executor AFTER_5_MILLIS =
+      CompletableFuture.delayedExecutor(5, TimeUnit.MILLISECONDS);
+
+  @Test
+  public void testSendsAtTheTargetRate() throws InterruptedException {
+    FakeChannel channel = new FakeChannel(
+        batch -> CompletableFuture.runAsync(() -> { }, AFTER_5_MILLIS));
+
+    ChannelReport report = generator(settings().build()).run(channel);
+
+    // 200 agreements a second, in batches of 2, for a second of warm-up and a second measured
+    assertEquals(400, channel.sent.get());
+    assertEquals(100, report.getOperations());
+    assertEquals(200, report.getAgreementsSent());
+    assertEquals(200, report.getAgreementsSettled());
+    assertEquals(0, report.getFailedOperations());
+    assertEquals(200, report.getThroughputAgreementsPerSecond(), 20);
+    assertTrue(report.getLatencyMillis().getP50() >= 5);
+    assertTrue(report.getLatencyMillis().getP50() < 100);
+  }
+
+  @Test
+  public void testCountsFailuresAndTimeouts() throws InterruptedException {
+    AtomicInteger batches = new AtomicInteger();
+    FakeChannel channel = new FakeChannel(batch -> {
+      switch (batches.getAndIncrement() % 4) {
+        case 0:
+          return CompletableFuture.failedFuture(
+              new RestIngestChannel.RejectedException("HTTP 500"));
+        case 1:
+          throw new IllegalStateException("Queue unavailable");
+        case 2:
+          // Never settled
+          return new CompletableFuture<>();
+        default:
+          return CompletableFuture.completedFuture(null);
+      }
+    });
+
+    ChannelReport report = generator(settings().build()).run(channel);
+
+    assertEquals(100, report.getOperations());
+    assertEquals(75, report.getFailedOperations());
+    assertEquals(0.75, report.getErrorRate(), 0);
+    assertEquals(50, report.getAgreementsSettled());
+    assertEquals(25L, (long) report.getErrors().get("RejectedException: HTTP 500"));
+    assertEquals(25L, (long) report.getErrors().get("IllegalStateException: Queue unavailable"));
+    assertEquals(25L, (long) report.getErrors().get("timeout"));
+  }
+
+  @Test
+  public void testHoldsBackOnceMaxInFlight() throws InterruptedException {
+    List<CompletableFuture<Void>> outstanding = Collections.synchronizedList(new ArrayList<>());
+    FakeChannel channel = new FakeChannel(batch -> {
+      CompletableFuture<Void> settled = new CompletableFuture<>();
+      outstanding.add(settled);
+      // Settle everything sent so far once the limit is reached
+      if (outstanding.size() == 10) {
+        new ArrayList<>(outstanding).forEach(future -> future.complete(null));
+        outstanding.clear();
+      }
+      return settled;
+    });
+
+    ChannelReport report = generator(settings().maxInFlight(10).build()).run(channel);
+
+    assertEquals(100, report.getOperations());
+    assertEquals(0, report.getFailedOperations());
+  }
+
+  private static LoadTestSettings.LoadTestSettingsBuilder settings() {
+    return LoadTestSettings.builder()
+        .agreementsPerSecond(200)
+        .batchSize(2)
+        .warmupSeconds(1)
+        .durationSeconds(1)
+        .maxInFlight(1000)
+        .timeoutSeconds(1);
+  }
+
+  private static LoadGenerator generator(final LoadTestSettings settings) {
+    return new LoadGenerator(settings,
+        TestDataGenerator.randomTradeAgreements(1L).iterator()::next);
+  }
+
+  @RequiredArgsConstructor
+  private static class FakeChannel implements IIngestChannel {
+
+    @Getter
+    private final String name = "fake";
+
+    private final Function<List<TradeAgreement>, CompletableFuture<Void>> send;
+
+    private final AtomicInteger sent = new AtomicInteger();
+
+    @Override
+    public CompletableFuture<Void> send(final List<TradeAgreement> agreements) {
+      sent.addAndGet(agreements.size());
+      return send.apply(agreements);
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
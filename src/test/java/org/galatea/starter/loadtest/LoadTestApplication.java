@@ -0,0 +1,252 @@
+package org.galatea.starter.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import javax.jms.BytesMessage;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.ArrayUtils;
+import org.galatea.starter.Application;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessages;
+import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessage;
+import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessages;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jms.core.JmsTemplate;
+
+/**
+ * End-to-end load test of the ways agreements come into the settlement engine: the settlement
+ * endpoint in JSON, XML and protobuf, and the JSON and protobuf JMS queues.
+ *
+ * <p>The application is started in-process, with its embedded ActiveMQ broker and in-memory H2
+ * database, and each channel is driven in turn with a stream of random agreements at the same
+ * rate. The missions spawned are deleted between channels, so each one starts with an empty
+ * table. The throughput, latency percentiles and errors of each channel are logged and written to
+ * a JSON report.
+ *
+ * <p>Run with: mvn -Ploadtest test -Dskip.surefire.tests, setting any of the loadtest.* properties
+ * read by LoadTestSettings, e.g. -Dloadtest.rate=500 -Dloadtest.channels=rest-json,jms-json.
+ * Arguments, such as --jms.batch.enabled=true, are passed on to the application.
+ */
+@Slf4j
+public class LoadTestApplication {
+
+  private static final String DELETE_MISSIONS = "delete from settlement_mission";
+
+  private static final String COUNT_MISSIONS = "select count(*) from settlement_mission";
+
+  private final LoadTestSettings settings;
+
+  private final ConfigurableApplicationContext context;
+
+  private final ObjectMapper objectMapper;
+
+  private final JdbcTemplate jdbcTemplate;
+
+  private final HttpClient httpClient;
+
+  private final JAXBContext xmlContext;
+
+  private LoadTestApplication(final LoadTestSettings settings, final ConfigurableApplicationContext context)
+      throws JAXBException {
+    this.settings = settings;
+    this.context = context;
+    this.objectMapper = context.getBean(ObjectMapper.class);
+    this.jdbcTemplate = context.getBean(JdbcTemplate.class);
+    this.httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofSeconds(settings.getTimeoutSeconds())).build();
+    this.xmlContext = JAXBContext.newInstance(TradeAgreementMessages.class);
+  }
+
+  /**
+   * Start the application, load test each channel, write the report and stop the application. It
+   * runs as a web application, on a random port, so that the test-only configs which target
+   * non-web contexts stay out of it.
+   */
+  public static void main(final String[] args) throws Exception {
+    LoadTestSettings settings = LoadTestSettings.fromSystemProperties();
+    ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+        .properties(
+            // Keep per-agreement logging from holding up the engine
+            "logging.level.org.galatea.starter=WARN",
+            "logging.level.org.galatea.starter.loadtest=INFO",
+            "logging.level.org.hibernate=WARN",
+            // Referenced by the test profile's IEX client config, but never called here
+            "wiremock.server.port=0")
+        .run(ArrayUtils.insert(0, args, "--server.port=0"));
+    try {
+      new LoadTestApplication(settings, context).run();
+    } finally {
+      context.close();
+    }
+  }
+
+  private void run() throws IOException, InterruptedException {
+    Iterator<TradeAgreement> agreements =
+        TestDataGenerator.randomTradeAgreements(settings.getSeed()).iterator();
+    LoadGenerator generator = new LoadGenerator(settings, agreements::next);
+
+    List<ChannelReport> reports = new ArrayList<>();
+    for (String channelName : settings.getChannels()) {
+      try (IIngestChannel channel = openChannel(channelName.trim())) {
+        reports.add(generator.run(channel));
+      }
+      // Let anything that timed out finish before clearing up after it
+      awaitQuiescence();
+      jdbcTemplate.update(DELETE_MISSIONS);
+    }
+
+    for (ChannelReport report : reports) {
+      log.info(String.format("%-14s target %8.1f/s  offered %8.1f/s  settled %8.1f/s  "
+              + "p50 %8.2fms  p99 %8.2fms  p99.9 %8.2fms  errors %.2f%%",
+          report.getChannel(), report.getTargetAgreementsPerSecond(),
+          report.getOfferedAgreementsPerSecond(), report.getThroughputAgreementsPerSecond(),
+          report.getLatencyMillis().getP50(), report.getLatencyMillis().getP99(),
+          report.getLatencyMillis().getP999(), 100 * report.getErrorRate()));
+    }
+    writeReport(reports);
+  }
+
+  private IIngestChannel openChannel(final String name) {
+    Environment environment = context.getEnvironment();
+    URI settleUri = URI.create("http://localhost:"
+        + ((WebServerApplicationContext) context).getWebServer().getPort()
+        + environment.getRequiredProperty("mvc.settleMissionPath"));
+    JmsTemplate jmsTemplate = context.getBean(JmsTemplate.class);
+
+    switch (name) {
+      case "rest-json":
+        return new RestIngestChannel(name, httpClient, settleUri, "application/json",
+            batch -> writeJson(toMessages(batch)));
+      case "rest-xml":
+        return new RestIngestChannel(name, httpClient, settleUri, "application/xml",
+            batch -> writeXml(toMessages(batch)));
+      case "rest-protobuf":
+        return new RestIngestChannel(name, httpClient, settleUri, "application/x-protobuf",
+            batch -> TradeAgreementProtoMessages.newBuilder()
+                .addAllMessage(batch.stream().map(LoadTestApplication::toProtoMessage)
+                    .collect(Collectors.toList()))
+                .build().toByteArray());
+      case "jms-json":
+        return new JmsIngestChannel(name, jmsTemplate,
+            environment.getRequiredProperty("jms.agreement-queue-json"),
+            (session, agreement) -> session.createTextMessage(
+                new String(writeJson(toMessage(agreement)), StandardCharsets.UTF_8)),
+            jdbcTemplate);
+      case "jms-protobuf":
+        return new JmsIngestChannel(name, jmsTemplate,
+            environment.getRequiredProperty("jms.agreement-queue-proto"),
+            (session, agreement) -> {
+              BytesMessage message = session.createBytesMessage();
+              message.writeBytes(toProtoMessage(agreement).toByteArray());
+              return message;
+            },
+            jdbcTemplate);
+      default:
+        throw new IllegalArgumentException(
+            "Unknown channel '" + name + "'; expected one of " + LoadTestSettings.ALL_CHANNELS);
+    }
+  }
+
+  // Wait, for up to a minute, until a second goes by without a mission being spawned
+  private void awaitQuiescence() throws InterruptedException {
+    long giveUpAt = System.nanoTime() + Duration.ofMinutes(1).toNanos();
+    Long missions = null;
+    Long current = countMissions();
+    while ((current == null || !current.equals(missions)) && System.nanoTime() < giveUpAt) {
+      missions = current;
+      Thread.sleep(1000);
+      current = countMissions();
+    }
+  }
+
+  // Null if the count can't be had, e.g. because the engine has used up every connection
+  private Long countMissions() {
+    try {
+      return jdbcTemplate.queryForObject(COUNT_MISSIONS, Long.class);
+    } catch (DataAccessException e) {
+      log.warn("Couldn't count the missions spawned", e);
+      return null;
+    }
+  }
+
+  private void writeReport(final List<ChannelReport> reports) throws IOException {
+    Map<String, Object> report = new LinkedHashMap<>();
+    report.put("generatedAt", Instant.now().toString());
+    report.put("settings", settings);
+    report.put("channels", reports);
+
+    File reportFile = new File(settings.getReportFile());
+    if (reportFile.getAbsoluteFile().getParentFile() != null) {
+      reportFile.getAbsoluteFile().getParentFile().mkdirs();
+    }
+    objectMapper.writerWithDefaultPrettyPrinter().writeValue(reportFile, report);
+    log.info("Wrote the load test report to {}", reportFile.getAbsolutePath());
+  }
+
+  private byte[] writeJson(final Object message) {
+    try {
+      return objectMapper.writeValueAsBytes(message);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private byte[] writeXml(final TradeAgreementMessages messages) {
+    ByteArrayOutputStream xml = new ByteArrayOutputStream();
+    try {
+      xmlContext.createMarshaller().marshal(messages, xml);
+    } catch (JAXBException e) {
+      throw new IllegalStateException("Couldn't write agreements as XML", e);
+    }
+    return xml.toByteArray();
+  }
+
+  private static TradeAgreementMessages toMessages(final List<TradeAgreement> agreements) {
+    return TradeAgreementMessages.builder()
+        .agreements(agreements.stream().map(LoadTestApplication::toMessage).collect(Collectors.toList()))
+        .build();
+  }
+
+  private static TradeAgreementMessage toMessage(final TradeAgreement agreement) {
+    return TradeAgreementMessage.builder()
+        .instrument(agreement.getInstrument())
+        .internalParty(agreement.getInternalParty())
+        .externalParty(agreement.getExternalParty())
+        .buySell(agreement.getBuySell())
+        .qty(agreement.getQty())
+        .build();
+  }
+
+  private static TradeAgreementProtoMessage toProtoMessage(final TradeAgreement agreement) {
+    return TradeAgreementProtoMessage.newBuilder()
+        .setInstrument(agreement.getInstrument())
+        .setInternalParty(agreement.getInternalParty())
+        .setExternalParty(agreement.getExternalParty())
+        .setBuySell(agreement.getBuySell())
+        .setQty(agreement.getQty())
+        .build();
+  }
+}
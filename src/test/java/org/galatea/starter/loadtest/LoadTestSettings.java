@@ -0,0 +1,59 @@
+package org.galatea.starter.loadtest;
+
+import java.util.Arrays;
+import java.util.List;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * How hard, and for how long, the LoadTestApplication drives each ingest channel. Read from loadtest.*
+ * system properties, which the loadtest Maven profile sets.
+ */
+@Builder
+@Value
+public class LoadTestSettings {
+
+  public static final String ALL_CHANNELS =
+      "rest-json,rest-xml,rest-protobuf,jms-json,jms-protobuf";
+
+  // The channels to drive, one after another
+  private List<String> channels;
+
+  // The rate agreements are offered at, whether or not the engine keeps up
+  private double agreementsPerSecond;
+
+  // Agreements per request, or per burst of JMS messages
+  private int batchSize;
+
+  // How long each channel is driven for before measuring starts, to warm it up
+  private int warmupSeconds;
+
+  private int durationSeconds;
+
+  // Requests or bursts outstanding before the generator stops sending more and falls behind
+  private int maxInFlight;
+
+  // How long a request or message has to be settled before it counts as an error
+  private int timeoutSeconds;
+
+  private long seed;
+
+  private String reportFile;
+
+  /**
+   * Read the settings from loadtest.* system properties, defaulting any that aren't set.
+   */
+  public static LoadTestSettings fromSystemProperties() {
+    return LoadTestSettings.builder()
+        .channels(Arrays.asList(System.getProperty("loadtest.channels", ALL_CHANNELS).split(",")))
+        .agreementsPerSecond(Double.parseDouble(System.getProperty("loadtest.rate", "200")))
+        .batchSize(Integer.getInteger("loadtest.batch-size", 1))
+        .warmupSeconds(Integer.getInteger("loadtest.warmup-seconds", 10))
+        .durationSeconds(Integer.getInteger("loadtest.duration-seconds", 30))
+        .maxInFlight(Integer.getInteger("loadtest.max-in-flight", 256))
+        .timeoutSeconds(Integer.getInteger("loadtest.timeout-seconds", 10))
+        .seed(Long.getLong("loadtest.seed", 1L))
+        .reportFile(System.getProperty("loadtest.report-file", "target/loadtest-report.json"))
+        .build();
+  }
+}
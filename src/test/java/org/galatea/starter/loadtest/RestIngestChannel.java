@@ -0,0 +1,68 @@
+package org.galatea.starter.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.galatea.starter.domain.TradeAgreement;
+
+/**
+ * Posts each batch of agreements to the settlement endpoint in one request, encoded in a given
+ * content type. The request is sent asynchronously, over a shared pool of keep-alive connections,
+ * and succeeds if the response status is 2xx.
+ */
+@RequiredArgsConstructor
+public class RestIngestChannel implements IIngestChannel {
+
+  @Getter
+  @NonNull
+  private final String name;
+
+  @NonNull
+  private final HttpClient httpClient;
+
+  @NonNull
+  private final URI uri;
+
+  @NonNull
+  private final String contentType;
+
+  @NonNull
+  private final Function<List<TradeAgreement>, byte[]> encoder;
+
+  @Override
+  public CompletableFuture<Void> send(final List<TradeAgreement> agreements) {
+    HttpRequest request = HttpRequest.newBuilder(uri)
+        .header("Content-Type", contentType)
+        .header("Accept", contentType)
+        .POST(HttpRequest.BodyPublishers.ofByteArray(encoder.apply(agreements)))
+        .build();
+    return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+        .thenAccept(response -> {
+          if (response.statusCode() / 100 != 2) {
+            throw new RejectedException("HTTP " + response.statusCode());
+          }
+        });
+  }
+
+  @Override
+  public void close() {
+    // The HttpClient is shared between channels, and has nothing to close
+  }
+
+  /**
+   * Thrown when the settlement endpoint answers with an error status.
+   */
+  public static class RejectedException extends RuntimeException {
+
+    public RejectedException(final String message) {
+      super(message);
+    }
+  }
+}
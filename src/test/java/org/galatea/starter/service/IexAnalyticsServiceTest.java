@@ -0,0 +1,97 @@
+package org.galatea.starter.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.galatea.starter.ASpringTest;
+import org.galatea.starter.domain.IexHistoricalPriceSeries;
+import org.galatea.starter.domain.IexPriceAnalytics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+
+public class IexAnalyticsServiceTest extends ASpringTest {
+
+  private static final int[] WINDOWS = {1};
+
+  private IexService iexService;
+
+  private IexAnalyticsService analyticsService;
+
+  @Before
+  public void setUp() {
+    iexService = mock(IexService.class);
+  }
+
+  @After
+  public void tearDown() {
+    if (analyticsService != null) {
+      analyticsService.destroy();
+    }
+  }
+
+  @Test
+  public void testEachSymbolAnalyzedInOrderOrGivenItsError() throws Exception {
+    analyticsService = new IexAnalyticsService(iexService, 4, 5000, 2);
+    long close = IexHistoricalPriceSeries.toScaled(new BigDecimal("146.17"));
+    IexHistoricalPriceSeries prices = IexHistoricalPriceSeries.builder().symbol("IBM")
+        .add((int) LocalDate.of(2021, 5, 10).toEpochDay(), close, close, close, close, 1000)
+        .build();
+    when(iexService.getHistoricalPriceAsync("IBM", "1m", null))
+        .thenReturn(CompletableFuture.completedFuture(prices));
+    when(iexService.getHistoricalPriceAsync("NOPE", "1m", null))
+        .thenReturn(CompletableFuture.failedFuture(
+            HttpClientErrorException.create(HttpStatus.NOT_FOUND, "Not Found", null, null, null)));
+
+    List<IexPriceAnalytics> analytics = analyticsService
+        .analyze(Arrays.asList("NOPE", "ibm", "IBM", ""), "1m", WINDOWS)
+        .get(5, TimeUnit.SECONDS);
+
+    assertEquals(2, analytics.size());
+    assertEquals("NOPE", analytics.get(0).getSymbol());
+    assertEquals("Not found at IEX", analytics.get(0).getError());
+    assertEquals("IBM", analytics.get(1).getSymbol());
+    assertEquals(1, analytics.get(1).getBars());
+    assertNull(analytics.get(1).getError());
+    verify(iexService, times(1)).getHistoricalPriceAsync("IBM", "1m", null);
+  }
+
+  @Test
+  public void testSlowSymbolTimesOutAlone() throws Exception {
+    analyticsService = new IexAnalyticsService(iexService, 4, 100, 2);
+    when(iexService.getHistoricalPriceAsync("SLOW", null, null))
+        .thenReturn(new CompletableFuture<>());
+    when(iexService.getHistoricalPriceAsync("IBM", null, null))
+        .thenReturn(CompletableFuture.completedFuture(IexHistoricalPriceSeries.empty()));
+
+    List<IexPriceAnalytics> analytics = analyticsService
+        .analyze(Arrays.asList("SLOW", "IBM"), null, WINDOWS)
+        .get(5, TimeUnit.SECONDS);
+
+    assertTrue(analytics.get(0).getError().startsWith("Timed out"));
+    assertEquals("IBM", analytics.get(1).getSymbol());
+    assertNull(analytics.get(1).getError());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTooManySymbolsRejected() {
+    analyticsService = new IexAnalyticsService(iexService, 4, 5000, 2);
+
+    analyticsService.analyze(
+        Collections.nCopies(IexAnalyticsService.MAX_SYMBOLS + 1, "IBM"), null, WINDOWS);
+  }
+}
@@ -0,0 +1,96 @@
+package org.galatea.starter.service;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.galatea.starter.ASpringTest;
+import org.galatea.starter.domain.IexHistoricalPriceSeries;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+@SpringBootTest
+@AutoConfigureWireMock(port = 0, files = "classpath:/wiremock")
+public class IexAsyncClientTest extends ASpringTest {
+
+  @Autowired
+  private IexAsyncClient client;
+
+  @Test
+  public void testGetHistoricalPriceByRange() throws Exception {
+    IexHistoricalPriceSeries prices =
+        client.getHistoricalPriceByRange("IBM", "1m").get(5, TimeUnit.SECONDS);
+
+    assertEquals(1, prices.size());
+    assertEquals(LocalDate.of(2021, 5, 10).toEpochDay(), prices.getEpochDay(0));
+    assertEquals(IexHistoricalPriceSeries.toScaled(new BigDecimal("146.17")),
+        prices.getClose(0));
+  }
+
+  @Test
+  public void testGetHistoricalPriceByDate() throws Exception {
+    IexHistoricalPriceSeries prices =
+        client.getHistoricalPriceByDate("JPM", "20210601").get(5, TimeUnit.SECONDS);
+
+    assertEquals(1, prices.size());
+    assertEquals(IexHistoricalPriceSeries.toScaled(new BigDecimal("125.87")),
+        prices.getClose(0));
+  }
+
+  @Test
+  public void testGetHistoricalPriceByRangeDate() throws Exception {
+    stubFor(get(urlEqualTo("/stock/AAPL/chart/5d/20210601?token=testToken"))
+        .willReturn(aResponse().withHeader("Content-Type", "application/json")
+            .withBody("[{\"date\":\"2021-06-01\",\"open\":125.08,\"high\":125.35,"
+                + "\"low\":123.94,\"close\":124.28,\"volume\":67637118}]")));
+
+    IexHistoricalPriceSeries prices =
+        client.getHistoricalPriceByRangeDate("AAPL", "5d", "20210601").get(5, TimeUnit.SECONDS);
+
+    assertEquals(1, prices.size());
+    assertEquals(67637118, prices.getVolume(0));
+  }
+
+  @Test
+  public void testClientErrorFailsWithHttpClientErrorException() throws Exception {
+    stubFor(get(urlEqualTo("/stock/NOPE/chart/1m?token=testToken"))
+        .willReturn(aResponse().withStatus(404).withBody("Unknown symbol")));
+
+    try {
+      client.getHistoricalPriceByRange("NOPE", "1m").get(5, TimeUnit.SECONDS);
+      fail("Expected IEX not to know the symbol");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof HttpClientErrorException);
+      assertEquals(HttpStatus.NOT_FOUND,
+          ((HttpClientErrorException) e.getCause()).getStatusCode());
+    }
+  }
+
+  @Test
+  public void testServerErrorFailsWithHttpServerErrorException() throws Exception {
+    stubFor(get(urlEqualTo("/stock/DOWN/chart/20210601?token=testToken"))
+        .willReturn(aResponse().withStatus(503)));
+
+    try {
+      client.getHistoricalPriceByDate("DOWN", "20210601").get(5, TimeUnit.SECONDS);
+      fail("Expected IEX to be unavailable");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof HttpServerErrorException);
+      assertEquals(HttpStatus.SERVICE_UNAVAILABLE,
+          ((HttpServerErrorException) e.getCause()).getStatusCode());
+    }
+  }
+}
@@ -0,0 +1,156 @@
+package org.galatea.starter.service;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.galatea.starter.ASpringTest;
+import org.galatea.starter.domain.IexHistoricalPriceResult;
+import org.galatea.starter.domain.IexHistoricalPriceSeries;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+
+public class IexHistoricalPriceFanOutTest extends ASpringTest {
+
+  private IexService iexService;
+
+  private IexHistoricalPriceFanOut fanOut;
+
+  private final List<IexHistoricalPriceResult> results = new CopyOnWriteArrayList<>();
+
+  @Before
+  public void setUp() {
+    iexService = mock(IexService.class);
+  }
+
+  @After
+  public void tearDown() {
+    if (fanOut != null) {
+      fanOut.destroy();
+    }
+  }
+
+  @Test
+  public void testEachSymbolHandedBackWithItsPricesOrError() throws Exception {
+    fanOut = new IexHistoricalPriceFanOut(iexService, 4, 5000, 2);
+    IexHistoricalPriceSeries prices = IexHistoricalPriceSeries.builder().symbol("IBM").build();
+    when(iexService.getHistoricalPriceAsync("IBM", "1m", null))
+        .thenReturn(CompletableFuture.completedFuture(prices));
+    when(iexService.getHistoricalPriceAsync("NOPE", "1m", null))
+        .thenReturn(CompletableFuture.failedFuture(
+            HttpClientErrorException.create(HttpStatus.NOT_FOUND, "Not Found", null, null, null)));
+    List<String> threads = new CopyOnWriteArrayList<>();
+
+    fanOut.fetch(Arrays.asList("ibm", "NOPE", "IBM", ""), "1m", null, result -> {
+      threads.add(Thread.currentThread().getName());
+      results.add(result);
+    }).get(5, TimeUnit.SECONDS);
+
+    Map<String, IexHistoricalPriceResult> bySymbol = results.stream()
+        .collect(Collectors.toMap(IexHistoricalPriceResult::getSymbol, result -> result));
+    assertEquals(2, results.size());
+    assertSame(prices, bySymbol.get("IBM").getPrices());
+    assertNull(bySymbol.get("IBM").getError());
+    assertNull(bySymbol.get("NOPE").getPrices());
+    assertEquals("Not found at IEX", bySymbol.get("NOPE").getError());
+    verify(iexService, times(1)).getHistoricalPriceAsync("IBM", "1m", null);
+    // Handed over on the fan-out's own threads, not the ones that completed the fetches
+    assertTrue(threads.stream().allMatch(name -> name.startsWith("iex-historical-prices-hand-over-")));
+  }
+
+  @Test
+  public void testFailureDescribedWithoutItsMessage() throws Exception {
+    fanOut = new IexHistoricalPriceFanOut(iexService, 4, 5000, 2);
+    when(iexService.getHistoricalPriceAsync("IBM", null, null)).thenReturn(
+        CompletableFuture.failedFuture(new IllegalStateException(
+            "Connection reset executing GET /stock/IBM/chart?token=secret")));
+
+    fanOut.fetch(Arrays.asList("IBM"), null, null, results::add).get(5, TimeUnit.SECONDS);
+
+    assertEquals("Upstream unavailable", results.get(0).getError());
+  }
+
+  @Test
+  public void testMaxDurationCoversEveryRound() {
+    fanOut = new IexHistoricalPriceFanOut(iexService, 16, 15000, 2);
+
+    assertEquals(Duration.ofSeconds(30), fanOut.maxDuration(1));
+    assertEquals(Duration.ofSeconds(30), fanOut.maxDuration(16));
+    assertEquals(Duration.ofSeconds(45), fanOut.maxDuration(17));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTooManySymbolsRejected() {
+    fanOut = new IexHistoricalPriceFanOut(iexService, 4, 5000, 2);
+
+    fanOut.fetch(Collections.nCopies(IexHistoricalPriceFanOut.MAX_SYMBOLS + 1, "IBM"), null, null,
+        results::add);
+  }
+
+  @Test
+  public void testSlowSymbolTimesOutAlone() throws Exception {
+    fanOut = new IexHistoricalPriceFanOut(iexService, 4, 100, 2);
+    when(iexService.getHistoricalPriceAsync("SLOW", null, "20210601"))
+        .thenReturn(new CompletableFuture<>());
+    when(iexService.getHistoricalPriceAsync("JPM", null, "20210601"))
+        .thenReturn(CompletableFuture.completedFuture(IexHistoricalPriceSeries.empty()));
+
+    fanOut.fetch(Arrays.asList("SLOW", "JPM"), null, "20210601", results::add)
+        .get(5, TimeUnit.SECONDS);
+
+    assertEquals(2, results.size());
+    // The fast symbol isn't held up by the slow one
+    assertEquals("JPM", results.get(0).getSymbol());
+    assertEquals("SLOW", results.get(1).getSymbol());
+    assertTrue(results.get(1).getError().startsWith("Timed out"));
+  }
+
+  @Test
+  public void testFetchesBoundedPerRequest() throws Exception {
+    fanOut = new IexHistoricalPriceFanOut(iexService, 2, 5000, 4);
+    Map<String, CompletableFuture<IexHistoricalPriceSeries>> fetches = new ConcurrentHashMap<>();
+    when(iexService.getHistoricalPriceAsync(anyString(), isNull(), isNull())).thenAnswer(
+        invocation -> fetches.computeIfAbsent(invocation.getArgument(0),
+            symbol -> new CompletableFuture<>()));
+
+    CompletableFuture<Void> done = fanOut.fetch(Arrays.asList("A", "B", "C", "D", "E"), null,
+        null, results::add);
+
+    await().atMost(5, TimeUnit.SECONDS).until(() -> fetches.size() == 2);
+    Thread.sleep(100);
+    assertEquals(2, fetches.size());
+    assertFalse(done.isDone());
+
+    // Each fetch completed makes room for one more
+    for (int completed = 0; completed < 5; completed++) {
+      int started = Math.min(completed + 2, 5);
+      await().atMost(5, TimeUnit.SECONDS).until(() -> fetches.size() == started);
+      fetches.values().stream().filter(fetch -> !fetch.isDone()).findFirst().get()
+          .complete(IexHistoricalPriceSeries.empty());
+    }
+    done.get(5, TimeUnit.SECONDS);
+    assertEquals(5, results.size());
+  }
+}
@@ -0,0 +1,187 @@
+package org.galatea.starter.service;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.failedFuture;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import org.galatea.starter.ASpringTest;
+import org.galatea.starter.domain.IexHistoricalPriceSeries;
+import org.galatea.starter.domain.rpsy.IIexDailyBarRpsy;
+import org.galatea.starter.domain.rpsy.IIexPriceHistoryRpsy;
+import org.galatea.starter.service.IexHistoricalPriceStore.DailyRange;
+import org.galatea.starter.utils.resilience.UpstreamGuardProperties;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+@DataJpaTest
+public class IexHistoricalPriceStoreTest extends ASpringTest {
+
+  private static final ZoneId NEW_YORK = ZoneId.of("America/New_York");
+
+  // After the close on Wednesday 2 June 2021, and on the Thursday after
+  private static final Clock WEDNESDAY = Clock.fixed(
+      ZonedDateTime.of(2021, 6, 2, 18, 0, 0, 0, NEW_YORK).toInstant(), NEW_YORK);
+  private static final Clock THURSDAY = Clock.fixed(
+      ZonedDateTime.of(2021, 6, 3, 18, 0, 0, 0, NEW_YORK).toInstant(), NEW_YORK);
+
+  @Autowired
+  private IIexDailyBarRpsy barRpsy;
+
+  @Autowired
+  private IIexPriceHistoryRpsy historyRpsy;
+
+  private IexAsyncClient iexAsyncClient;
+
+  @Before
+  public void setup() {
+    iexAsyncClient = mock(IexAsyncClient.class);
+    when(iexAsyncClient.getHistoricalPriceByRange("IBM", "1m"))
+        .thenReturn(completedFuture(bars(LocalDate.of(2021, 5, 3), LocalDate.of(2021, 6, 2))));
+    when(iexAsyncClient.getHistoricalPriceByRange("IBM", "3m"))
+        .thenReturn(completedFuture(bars(LocalDate.of(2021, 3, 3), LocalDate.of(2021, 6, 2))));
+    when(iexAsyncClient.getHistoricalPriceByRange("IBM", "5d"))
+        .thenReturn(completedFuture(bars(LocalDate.of(2021, 5, 28), LocalDate.of(2021, 6, 3))));
+  }
+
+  @Test
+  public void testRepeatRequestsReadFromStore() {
+    IexHistoricalPriceStore store = store(WEDNESDAY);
+
+    IexHistoricalPriceSeries first = store.getDailyPrices("IBM", DailyRange.ONE_MONTH).join();
+    IexHistoricalPriceSeries second = store.getDailyPrices("IBM", DailyRange.ONE_MONTH).join();
+
+    verify(iexAsyncClient, times(1)).getHistoricalPriceByRange(anyString(), anyString());
+    assertEquals(bars(LocalDate.of(2021, 5, 3), LocalDate.of(2021, 6, 2)), first);
+    assertEquals(first, second);
+  }
+
+  @Test
+  public void testFetchesOnlyTheDaysAfterTheLatestHeld() {
+    store(WEDNESDAY).getDailyPrices("IBM", DailyRange.ONE_MONTH).join();
+
+    IexHistoricalPriceSeries prices =
+        store(THURSDAY).getDailyPrices("IBM", DailyRange.ONE_MONTH).join();
+
+    verify(iexAsyncClient).getHistoricalPriceByRange("IBM", "5d");
+    assertEquals(bars(LocalDate.of(2021, 5, 4), LocalDate.of(2021, 6, 3)), prices);
+  }
+
+  @Test
+  public void testBackfillsALongerRangeOnce() {
+    IexHistoricalPriceStore store = store(WEDNESDAY);
+    store.getDailyPrices("IBM", DailyRange.ONE_MONTH).join();
+
+    IexHistoricalPriceSeries prices =
+        store.getDailyPrices("IBM", DailyRange.THREE_MONTHS).join();
+    store.getDailyPrices("IBM", DailyRange.THREE_MONTHS).join();
+    store.getDailyPrices("IBM", DailyRange.ONE_MONTH).join();
+
+    verify(iexAsyncClient, times(1)).getHistoricalPriceByRange("IBM", "3m");
+    verify(iexAsyncClient, times(1)).getHistoricalPriceByRange("IBM", "1m");
+    assertEquals(bars(LocalDate.of(2021, 3, 3), LocalDate.of(2021, 6, 2)), prices);
+  }
+
+  @Test
+  public void testServesHeldPricesWhenIexFails() {
+    store(WEDNESDAY).getDailyPrices("IBM", DailyRange.ONE_MONTH).join();
+    when(iexAsyncClient.getHistoricalPriceByRange("IBM", "5d"))
+        .thenReturn(failedFuture(new IllegalStateException("IEX is down")));
+
+    IexHistoricalPriceSeries prices =
+        store(THURSDAY).getDailyPrices("IBM", DailyRange.ONE_MONTH).join();
+
+    assertEquals(bars(LocalDate.of(2021, 5, 3), LocalDate.of(2021, 6, 2)), prices);
+  }
+
+  @Test
+  public void testRetriesUntilIexPublishesTheClose() {
+    store(WEDNESDAY).getDailyPrices("IBM", DailyRange.ONE_MONTH).join();
+    // A minute after Thursday's close, before IEX has its bar
+    MutableClock clock = new MutableClock(
+        ZonedDateTime.of(2021, 6, 3, 16, 1, 0, 0, NEW_YORK).toInstant());
+    IexHistoricalPriceStore store = store(clock);
+    when(iexAsyncClient.getHistoricalPriceByRange("IBM", "5d"))
+        .thenReturn(completedFuture(bars(LocalDate.of(2021, 5, 27), LocalDate.of(2021, 6, 2))));
+
+    store.getDailyPrices("IBM", DailyRange.ONE_MONTH).join();
+    clock.advance(Duration.ofMinutes(2));
+    store.getDailyPrices("IBM", DailyRange.ONE_MONTH).join();
+    // Not asked again until the backoff is up
+    verify(iexAsyncClient, times(1)).getHistoricalPriceByRange("IBM", "5d");
+
+    when(iexAsyncClient.getHistoricalPriceByRange("IBM", "5d"))
+        .thenReturn(completedFuture(bars(LocalDate.of(2021, 5, 28), LocalDate.of(2021, 6, 3))));
+    clock.advance(Duration.ofMinutes(5));
+    IexHistoricalPriceSeries prices = store.getDailyPrices("IBM", DailyRange.ONE_MONTH).join();
+    clock.advance(Duration.ofMinutes(10));
+    store.getDailyPrices("IBM", DailyRange.ONE_MONTH).join();
+
+    verify(iexAsyncClient, times(2)).getHistoricalPriceByRange("IBM", "5d");
+    assertEquals(bars(LocalDate.of(2021, 5, 4), LocalDate.of(2021, 6, 3)), prices);
+  }
+
+  private IexHistoricalPriceStore store(final Clock clock) {
+    // Not retried, and done on the test's thread, in its transaction
+    UpstreamGuardProperties properties = new UpstreamGuardProperties();
+    properties.setMaxAttempts(1);
+    return new IexHistoricalPriceStore(iexAsyncClient, new IexUpstreamGuards(properties), barRpsy,
+        historyRpsy, MoreExecutors.newDirectExecutorService(), clock);
+  }
+
+  private static class MutableClock extends Clock {
+
+    private Instant instant;
+
+    MutableClock(final Instant instant) {
+      this.instant = instant;
+    }
+
+    void advance(final Duration duration) {
+      instant = instant.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return NEW_YORK;
+    }
+
+    @Override
+    public Clock withZone(final ZoneId zone) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Instant instant() {
+      return instant;
+    }
+  }
+
+  // A bar for each weekday, its prices being the day of the month
+  private static IexHistoricalPriceSeries bars(final LocalDate from, final LocalDate to) {
+    IexHistoricalPriceSeries.Builder bars = IexHistoricalPriceSeries.builder().symbol("IBM");
+    for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+      if (date.getDayOfWeek() == DayOfWeek.SATURDAY || date.getDayOfWeek() == DayOfWeek.SUNDAY) {
+        continue;
+      }
+      long price = IexHistoricalPriceSeries.toScaled(new BigDecimal(date.getDayOfMonth() + ".25"));
+      bars.add((int) date.toEpochDay(), price, price, price, price, 1000);
+    }
+    return bars.build();
+  }
+}
@@ -0,0 +1,86 @@
+package org.galatea.starter.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import org.galatea.starter.domain.IexHistoricalPriceSeries;
+import org.galatea.starter.domain.IexPriceAnalytics;
+import org.junit.Test;
+
+public class IexPriceAnalyzerTest {
+
+  private static final double TOLERANCE = 1e-9;
+
+  @Test
+  public void testAnalyze() {
+    IexHistoricalPriceSeries series = IexHistoricalPriceSeries.builder().symbol("IBM")
+        .add(day(3), price("10"), price("11"), price("9"), price("10"), 100)
+        .add(day(4), price("11"), price("12"), price("10"), price("11"), 200)
+        // No close, so left out of everything
+        .add(day(5), price("11"), price("12"), price("10"), IexHistoricalPriceSeries.MISSING, 50)
+        .add(day(6), price("11"), price("14"), price("8"), price("12.1"),
+            IexHistoricalPriceSeries.MISSING)
+        .build();
+
+    IexPriceAnalytics analytics = IexPriceAnalyzer.analyze(series, new int[] {2, 4, 5});
+
+    assertEquals("IBM", analytics.getSymbol());
+    assertEquals(3, analytics.getBars());
+    assertEquals("2021-06-03", analytics.getFrom());
+    assertEquals("2021-06-06", analytics.getTo());
+    assertEquals(10, analytics.getFirstClose(), TOLERANCE);
+    assertEquals(12.1, analytics.getLastClose(), TOLERANCE);
+    assertEquals(14, analytics.getHigh(), TOLERANCE);
+    assertEquals(8, analytics.getLow(), TOLERANCE);
+    assertEquals(0.21, analytics.getTotalReturn(), TOLERANCE);
+    // Both daily returns are 10%
+    assertEquals(Math.log(1.1), analytics.getMeanDailyReturn(), TOLERANCE);
+    assertEquals(0, analytics.getDailyVolatility(), TOLERANCE);
+    // Typical prices 10 and 11, and no volume on the last bar
+    assertEquals((10.0 * 100 + 11.0 * 200) / 300, analytics.getVwap(), TOLERANCE);
+    assertEquals(Long.valueOf(300), analytics.getVolume());
+    // The last 2 bars have only one close between them. The series has only 4 bars
+    assertEquals(12.1, analytics.getMovingAverages().get(2), TOLERANCE);
+    assertEquals((10 + 11 + 12.1) / 3, analytics.getMovingAverages().get(4), TOLERANCE);
+    assertFalse(analytics.getMovingAverages().containsKey(5));
+  }
+
+  @Test
+  public void testVolatility() {
+    IexHistoricalPriceSeries series = IexHistoricalPriceSeries.builder().symbol("IBM")
+        .add(day(1), price("100"), price("100"), price("100"), price("100"), 1)
+        .add(day(2), price("110"), price("110"), price("110"), price("110"), 1)
+        .add(day(3), price("99"), price("99"), price("99"), price("99"), 1)
+        .build();
+
+    IexPriceAnalytics analytics = IexPriceAnalyzer.analyze(series, new int[0]);
+
+    double up = Math.log(1.1);
+    double down = Math.log(0.9);
+    double mean = (up + down) / 2;
+    double volatility = Math.sqrt(Math.pow(up - mean, 2) + Math.pow(down - mean, 2));
+    assertEquals(volatility, analytics.getDailyVolatility(), TOLERANCE);
+    assertEquals(volatility * Math.sqrt(252), analytics.getAnnualizedVolatility(), TOLERANCE);
+  }
+
+  @Test
+  public void testAnalyzeEmpty() {
+    IexPriceAnalytics analytics =
+        IexPriceAnalyzer.analyze(IexHistoricalPriceSeries.empty(), new int[] {20});
+
+    assertEquals(0, analytics.getBars());
+    assertNull(analytics.getLastClose());
+    assertNull(analytics.getMovingAverages());
+  }
+
+  private static int day(final int dayOfMonth) {
+    return (int) LocalDate.of(2021, 6, dayOfMonth).toEpochDay();
+  }
+
+  private static long price(final String price) {
+    return IexHistoricalPriceSeries.toScaled(new BigDecimal(price));
+  }
+}
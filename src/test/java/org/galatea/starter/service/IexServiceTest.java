@@ -0,0 +1,262 @@
+package org.galatea.starter.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.galatea.starter.ASpringTest;
+import org.galatea.starter.domain.IexHistoricalPriceSeries;
+import org.galatea.starter.domain.IexLastTradedPrice;
+import org.galatea.starter.domain.IexSymbolUniverse;
+import org.galatea.starter.service.IexHistoricalPriceStore.DailyRange;
+import org.galatea.starter.utils.cache.PerCacheCaffeineCacheManager;
+import org.galatea.starter.utils.resilience.CallNotPermittedException;
+import org.galatea.starter.utils.resilience.CircuitBreaker.State;
+import org.galatea.starter.utils.resilience.UpstreamGuard;
+import org.galatea.starter.utils.resilience.UpstreamGuardProperties;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.interceptor.SimpleKey;
+
+public class IexServiceTest extends ASpringTest {
+
+  private static final Map<String, String> SPECS = Map.of(
+      IexService.LAST_TRADED_PRICES_CACHE, "maximumSize=100,expireAfterWrite=10s",
+      IexService.HISTORICAL_PRICES_CACHE, "maximumSize=100,expireAfterWrite=24h",
+      IexService.RECENT_HISTORICAL_PRICES_CACHE, "maximumSize=100,expireAfterWrite=60s",
+      IexService.LAST_KNOWN_PRICES_CACHE, "maximumSize=100,expireAfterWrite=24h");
+
+  private IexClient iexClient;
+
+  private IexAsyncClient iexAsyncClient;
+
+  private IexLastTradedPriceCollapser collapser;
+
+  private IexHistoricalPriceStore historicalPriceStore;
+
+  private CacheManager cacheManager;
+
+  private IexUpstreamGuards guards;
+
+  private IexService service;
+
+  @Before
+  public void setUp() {
+    iexClient = mock(IexClient.class);
+    iexAsyncClient = mock(IexAsyncClient.class);
+    collapser = mock(IexLastTradedPriceCollapser.class);
+    historicalPriceStore = mock(IexHistoricalPriceStore.class);
+    when(collapser.getAll(anyCollection())).thenAnswer(invocation -> {
+      Map<String, IexLastTradedPrice> prices = new LinkedHashMap<>();
+      for (Object symbol : invocation.<Collection<?>>getArgument(0)) {
+        if (!"UNKNOWN".equals(symbol)) {
+          prices.put((String) symbol, IexLastTradedPrice.builder().symbol((String) symbol).build());
+        }
+      }
+      return prices;
+    });
+    cacheManager = new PerCacheCaffeineCacheManager(SPECS, Collections.emptyList());
+    // Failed calls aren't retried, so that each call a test makes reaches the mocks once
+    UpstreamGuardProperties properties = new UpstreamGuardProperties();
+    properties.setMaxAttempts(1);
+    properties.setMinimumCalls(2);
+    properties.setWindowSize(2);
+    guards = new IexUpstreamGuards(properties);
+    service = new IexService(iexClient, iexAsyncClient, collapser, cacheManager,
+        historicalPriceStore, guards);
+  }
+
+  @Test
+  public void testLastTradedPricesOnlyFetchesSymbolsNotCached() {
+    service.getLastTradedPriceForSymbols(Arrays.asList("FB", "unknown"));
+    List<IexLastTradedPrice> prices =
+        service.getLastTradedPriceForSymbols(Arrays.asList("AAPL", "fb", "UNKNOWN"));
+
+    assertEquals(2, prices.size());
+    assertEquals("AAPL", prices.get(0).getSymbol());
+    assertEquals("FB", prices.get(1).getSymbol());
+    verify(collapser).getAll(Arrays.asList("FB", "UNKNOWN"));
+    // A symbol IEX doesn't know isn't cached, so is asked for again
+    verify(collapser).getAll(Arrays.asList("AAPL", "UNKNOWN"));
+  }
+
+  @Test
+  public void testHistoricalPricesOfClosedDaysCachedApartFromRecentOnes() {
+    IexHistoricalPriceSeries prices = IexHistoricalPriceSeries.builder().symbol("IBM").build();
+    when(iexAsyncClient.getHistoricalPriceByRangeDate("IBM", "1m", "20210601"))
+        .thenReturn(CompletableFuture.completedFuture(prices));
+    when(historicalPriceStore.getDailyPrices("IBM", DailyRange.ONE_MONTH))
+        .thenReturn(CompletableFuture.completedFuture(prices));
+
+    service.getHistoricalPrice("IBM", "1m", "20210601");
+    service.getHistoricalPrice("IBM", "1m", "20210601");
+    service.getHistoricalPrice("IBM", "1m", null);
+    service.getHistoricalPrice("IBM", "1m", null);
+
+    verify(iexAsyncClient, times(1)).getHistoricalPriceByRangeDate("IBM", "1m", "20210601");
+    verify(historicalPriceStore, times(1)).getDailyPrices("IBM", DailyRange.ONE_MONTH);
+    Object closedKey = new SimpleKey("IBM", "1m", "20210601");
+    assertNotNull(cacheManager.getCache(IexService.HISTORICAL_PRICES_CACHE).get(closedKey));
+    assertNull(cacheManager.getCache(IexService.RECENT_HISTORICAL_PRICES_CACHE).get(closedKey));
+  }
+
+  @Test
+  public void testConcurrentHistoricalPriceFetchesShared() {
+    IexHistoricalPriceSeries prices = IexHistoricalPriceSeries.builder().symbol("JPM").build();
+    CompletableFuture<IexHistoricalPriceSeries> fetch = new CompletableFuture<>();
+    when(iexAsyncClient.getHistoricalPriceByDate("JPM", "20210601")).thenReturn(fetch);
+
+    CompletableFuture<IexHistoricalPriceSeries> first =
+        service.getHistoricalPriceAsync("JPM", null, "20210601");
+    CompletableFuture<IexHistoricalPriceSeries> second =
+        service.getHistoricalPriceAsync("jpm", null, "20210601");
+    assertFalse(first.isDone());
+    fetch.complete(prices);
+
+    assertSame(prices, first.join());
+    assertSame(prices, second.join());
+    assertSame(prices, service.getHistoricalPrice("JPM", null, "20210601"));
+    verify(iexAsyncClient, times(1)).getHistoricalPriceByDate("JPM", "20210601");
+  }
+
+  @Test
+  public void testHistoricalPriceFetchThatThrowsNotShared() throws Exception {
+    IexHistoricalPriceSeries prices = IexHistoricalPriceSeries.builder().symbol("JPM").build();
+    when(iexAsyncClient.getHistoricalPriceByDate("JPM", "20210601"))
+        .thenReturn(CompletableFuture.completedFuture(prices));
+    UpstreamGuard guard = guards.getHistoricalPrices();
+    IexUpstreamGuards throwingGuards = mock(IexUpstreamGuards.class);
+    UpstreamGuard throwingGuard = mock(UpstreamGuard.class);
+    when(throwingGuards.getHistoricalPrices()).thenReturn(throwingGuard);
+    when(throwingGuard.callAsync(any()))
+        .thenThrow(new IllegalStateException("Couldn't start the call"))
+        .thenAnswer(invocation -> guard.callAsync(invocation.getArgument(0)));
+    service = new IexService(iexClient, iexAsyncClient, collapser, cacheManager,
+        historicalPriceStore, throwingGuards);
+
+    assertTrue(service.getHistoricalPriceAsync("JPM", null, "20210601")
+        .isCompletedExceptionally());
+
+    // The failed fetch isn't left for the next call to share
+    assertSame(prices, service.getHistoricalPriceAsync("JPM", null, "20210601")
+        .get(5, TimeUnit.SECONDS));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testHistoricalPriceFailureNotCached() {
+    when(iexAsyncClient.getHistoricalPriceByDate("JPM", "20210601")).thenReturn(
+        CompletableFuture.failedFuture(new IllegalStateException("IEX is down")));
+
+    try {
+      service.getHistoricalPrice("JPM", null, "20210601");
+    } finally {
+      verify(iexAsyncClient, times(1)).getHistoricalPriceByDate("JPM", "20210601");
+      assertNull(cacheManager.getCache(IexService.HISTORICAL_PRICES_CACHE)
+          .get(new SimpleKey("JPM", null, "20210601")));
+    }
+  }
+
+  @Test
+  public void testSymbolsRefreshedOnlyOnceHeld() {
+    IexSymbolUniverse symbols = IexSymbolUniverse.builder()
+        .add("FB", null, IexSymbolUniverse.MISSING_DATE, true, "cs", "1").build();
+    IexSymbolUniverse refreshed = IexSymbolUniverse.builder()
+        .add("IBM", null, IexSymbolUniverse.MISSING_DATE, true, "cs", "2").build();
+    when(iexClient.getAllSymbols()).thenReturn(symbols, refreshed)
+        .thenThrow(new IllegalStateException("IEX is down"));
+
+    service.refreshSymbols();
+    verify(iexClient, times(0)).getAllSymbols();
+
+    assertSame(symbols, service.getAllSymbols());
+    assertSame(symbols, service.getAllSymbols());
+    service.refreshSymbols();
+    assertSame(refreshed, service.getAllSymbols());
+    // A failed refresh keeps the symbols held
+    service.refreshSymbols();
+    assertSame(refreshed, service.getAllSymbols());
+    verify(iexClient, times(3)).getAllSymbols();
+  }
+
+  @Test
+  public void testCallsThroughWithoutCaches() {
+    service = new IexService(iexClient, iexAsyncClient, collapser,
+        new PerCacheCaffeineCacheManager(Collections.emptyMap(), Collections.emptyList()),
+        historicalPriceStore, guards);
+
+    service.getLastTradedPriceForSymbols(Collections.singletonList("FB"));
+    service.getLastTradedPriceForSymbols(Collections.singletonList("FB"));
+
+    verify(collapser, times(2)).getAll(Collections.singletonList("FB"));
+  }
+
+  @Test
+  public void testLastKnownHistoricalPricesServedWhileCircuitOpen() {
+    IexHistoricalPriceSeries prices = IexHistoricalPriceSeries.builder().symbol("IBM").build();
+    when(iexAsyncClient.getHistoricalPriceByRange("IBM", "1mm"))
+        .thenReturn(CompletableFuture.completedFuture(prices))
+        .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("IEX is down")));
+    assertSame(prices, service.getHistoricalPrice("IBM", "1mm", null));
+    cacheManager.getCache(IexService.RECENT_HISTORICAL_PRICES_CACHE).clear();
+
+    try {
+      service.getHistoricalPrice("IBM", "1mm", null);
+      fail("Expected the call to IEX to fail");
+    } catch (IllegalStateException e) {
+      // A failure isn't fallen back on, only the circuit being open
+    }
+    assertEquals(State.OPEN, guards.getHistoricalPrices().getState());
+
+    assertSame(prices, service.getHistoricalPrice("IBM", "1mm", null));
+    verify(iexAsyncClient, times(2)).getHistoricalPriceByRange("IBM", "1mm");
+    // The last known prices are only served while the circuit is open
+    assertNull(cacheManager.getCache(IexService.RECENT_HISTORICAL_PRICES_CACHE)
+        .get(new SimpleKey("IBM", "1mm", null)));
+  }
+
+  @Test(expected = CallNotPermittedException.class)
+  public void testLastKnownLastTradedPricesServedWhileCircuitOpen() {
+    service.getLastTradedPriceForSymbols(Collections.singletonList("FB"));
+    cacheManager.getCache(IexService.LAST_TRADED_PRICES_CACHE).clear();
+    when(collapser.getAll(anyCollection()))
+        .thenThrow(new CallNotPermittedException("The circuit to IEX is open", true));
+
+    List<IexLastTradedPrice> prices =
+        service.getLastTradedPriceForSymbols(Collections.singletonList("fb"));
+    assertEquals(1, prices.size());
+    assertEquals("FB", prices.get(0).getSymbol());
+
+    // AAPL has no last known price to fall back on
+    service.getLastTradedPriceForSymbols(Arrays.asList("AAPL", "FB"));
+  }
+
+  @Test(expected = CallNotPermittedException.class)
+  public void testLastKnownPricesNotServedWhenHeldBackLocally() {
+    service.getLastTradedPriceForSymbols(Collections.singletonList("FB"));
+    cacheManager.getCache(IexService.LAST_TRADED_PRICES_CACHE).clear();
+    when(collapser.getAll(anyCollection()))
+        .thenThrow(new CallNotPermittedException("Too many calls to IEX waiting", false));
+
+    // IEX may well be fine, so an old price isn't passed off as the latest
+    service.getLastTradedPriceForSymbols(Collections.singletonList("FB"));
+  }
+}
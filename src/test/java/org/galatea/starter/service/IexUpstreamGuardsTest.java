@@ -0,0 +1,133 @@
+package org.galatea.starter.service;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.findAll;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.github.tomakehurst.wiremock.http.Fault;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import org.galatea.starter.ASpringTest;
+import org.galatea.starter.domain.IexHistoricalPriceSeries;
+import org.galatea.starter.domain.IexLastTradedPrice;
+import org.galatea.starter.utils.resilience.CallNotPermittedException;
+import org.galatea.starter.utils.resilience.CircuitBreaker.State;
+import org.galatea.starter.utils.resilience.UpstreamGuard;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+// IEX is WireMocked, with faults injected per test. Each test calls a different IEX endpoint, since
+// each endpoint's circuit lasts as long as the application context does
+@SpringBootTest(properties = {
+    "iex.resilience.window-size=3",
+    "iex.resilience.minimum-calls=3",
+    "iex.resilience.open-ms=600000",
+    "iex.resilience.max-attempts=2",
+    "iex.resilience.retry-backoff-ms=1"})
+@AutoConfigureWireMock(port = 0, files = "classpath:/wiremock")
+public class IexUpstreamGuardsTest extends ASpringTest {
+
+  @Autowired
+  private IexService iexService;
+
+  @Autowired
+  private IexUpstreamGuards guards;
+
+  @Autowired
+  private CacheManager cacheManager;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Test
+  public void testHistoricalPricesServedFromLastKnownWhileCircuitOpen() {
+    String url = "/stock/JPM/chart/20210601?token=testToken";
+    IexHistoricalPriceSeries prices = iexService.getHistoricalPrice("JPM", null, "20210601");
+    cacheManager.getCache(IexService.HISTORICAL_PRICES_CACHE).clear();
+    stubFor(get(urlEqualTo(url)).atPriority(1)
+        .willReturn(aResponse().withFault(Fault.CONNECTION_RESET_BY_PEER)));
+
+    try {
+      iexService.getHistoricalPrice("JPM", null, "20210601");
+      fail("Expected the connection to IEX to be reset");
+    } catch (RuntimeException e) {
+      // The call and its retry both fail, opening the circuit
+    }
+    assertEquals(State.OPEN, guards.getHistoricalPrices().getState());
+    int calls = findAll(getRequestedFor(urlEqualTo(url))).size();
+
+    assertSame(prices, iexService.getHistoricalPrice("JPM", null, "20210601"));
+    // None since the circuit opened
+    verify(calls, getRequestedFor(urlEqualTo(url)));
+    assertEquals(1.0, meterRegistry.get(UpstreamGuard.STATE_METER)
+        .tag("name", "iex.historical.prices").tag("state", "open").gauge().value(), 0);
+    assertEquals(1.0, meterRegistry.get(UpstreamGuard.REJECTED_METER)
+        .tag("name", "iex.historical.prices").tag("reason", "open").functionCounter().count(), 0);
+  }
+
+  @Test
+  public void testLastTradedPricesServedFromLastKnownWhileCircuitOpen() {
+    String url = "/tops/last?symbols=FB";
+    iexService.getLastTradedPriceForSymbols(Collections.singletonList("FB"));
+    cacheManager.getCache(IexService.LAST_TRADED_PRICES_CACHE).clear();
+    stubFor(get(urlEqualTo(url)).atPriority(1)
+        .willReturn(aResponse().withStatus(503)));
+
+    try {
+      iexService.getLastTradedPriceForSymbols(Collections.singletonList("FB"));
+      fail("Expected IEX to be unavailable");
+    } catch (RuntimeException e) {
+      // The call and its retry both fail, opening the circuit
+    }
+    assertEquals(State.OPEN, guards.getLastTradedPrices().getState());
+    int calls = findAll(getRequestedFor(urlEqualTo(url))).size();
+
+    List<IexLastTradedPrice> prices =
+        iexService.getLastTradedPriceForSymbols(Collections.singletonList("FB"));
+    assertEquals(1, prices.size());
+    assertEquals("FB", prices.get(0).getSymbol());
+    verify(calls, getRequestedFor(urlEqualTo(url)));
+  }
+
+  @Test
+  public void testOnlyIexsFaultsCountAgainstIt() {
+    assertFalse(IexUpstreamGuards.isFailure(
+        HttpClientErrorException.create(HttpStatus.NOT_FOUND, "Not Found", null, null, null)));
+    assertFalse(IexUpstreamGuards.isFailure(new CallNotPermittedException("Open", true)));
+    assertFalse(IexUpstreamGuards.isFailure(
+        new CompletionException(new RejectedExecutionException("Bulkhead is full"))));
+    assertTrue(IexUpstreamGuards.isFailure(HttpServerErrorException.create(
+        HttpStatus.SERVICE_UNAVAILABLE, "Service Unavailable", null, null, null)));
+    assertTrue(IexUpstreamGuards.isFailure(
+        new CompletionException(new IOException("Connection reset"))));
+  }
+
+  @Test
+  public void testFailuresDescribedWithoutTheirMessages() {
+    assertEquals("Not found at IEX", IexUpstreamGuards.describe(
+        HttpClientErrorException.create(HttpStatus.NOT_FOUND, "Not Found", null, null, null)));
+    assertEquals("Rejected by IEX with status 403", IexUpstreamGuards.describe(
+        HttpClientErrorException.create(HttpStatus.FORBIDDEN, "Forbidden", null, null, null)));
+    assertEquals("Upstream unavailable", IexUpstreamGuards.describe(new CompletionException(
+        new IOException("Connection reset executing GET /stock/IBM/chart?token=secret"))));
+  }
+}
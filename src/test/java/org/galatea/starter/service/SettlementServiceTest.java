@@ -5,23 +5,37 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 import org.galatea.starter.ASpringTest;
 import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.SettlementMissionFilter;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.domain.rpsy.ISettlementMissionRpsy;
+import org.galatea.starter.domain.rpsy.SettlementMissionCache;
+import org.galatea.starter.domain.rpsy.SettlementMissionStreamRpsy;
 import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
 import org.galatea.starter.testutils.TestDataGenerator;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 
 public class SettlementServiceTest extends ASpringTest {
 
@@ -31,11 +45,22 @@ public class SettlementServiceTest extends ASpringTest {
   @MockBean
   private IAgreementTransformer mockAgreementTransformer;
 
+  @MockBean
+  private SettlementMissionStreamRpsy mockSettlementMissionStreamRpsy;
+
   private SettlementService service;
 
+  private SettlementMissionCache missionCache;
+
+  private MeterRegistry meterRegistry;
+
   @Before
   public void setup() {
-    service = new SettlementService(mockSettlementMissionRpsy, mockAgreementTransformer);
+    meterRegistry = new SimpleMeterRegistry();
+    missionCache = new SettlementMissionCache(
+        new ConcurrentMapCacheManager(SettlementMissionCache.CACHE_NAME), meterRegistry, true);
+    service = new SettlementService(mockSettlementMissionRpsy, mockAgreementTransformer,
+        mockSettlementMissionStreamRpsy, missionCache);
   }
 
   @Test
@@ -74,12 +99,57 @@ public class SettlementServiceTest extends ASpringTest {
     List<SettlementMission> settlementMissions = Arrays.asList(
         settlementMission1, settlementMission2);
 
-    given(this.mockSettlementMissionRpsy.findAllById(ids)).willReturn(settlementMissions);
+    given(this.mockSettlementMissionRpsy.findAllById(new HashSet<>(ids)))
+        .willReturn(settlementMissions);
 
     List<SettlementMission> actual = service.findMissions(ids);
     assertEquals(settlementMissions, actual);
   }
 
+  @Test
+  public void testFindMissionsAllCached() {
+    SettlementMission settlementMission1 = TestDataGenerator.defaultSettlementMissionData()
+        .id(1L).build();
+    SettlementMission settlementMission2 = TestDataGenerator.defaultSettlementMissionData()
+        .id(2L).build();
+    missionCache.putAll(Arrays.asList(settlementMission1, settlementMission2));
+
+    List<SettlementMission> actual = service.findMissions(Arrays.asList(2L, 1L));
+
+    assertEquals(Arrays.asList(settlementMission2, settlementMission1), actual);
+    verify(this.mockSettlementMissionRpsy, never()).findAllById(any());
+    assertEquals(2.0, lookups("hit"), 0);
+    assertEquals(0.0, lookups("miss"), 0);
+  }
+
+  @Test
+  public void testFindMissionsQueriesOnlyMisses() {
+    SettlementMission settlementMission1 = TestDataGenerator.defaultSettlementMissionData()
+        .id(1L).build();
+    SettlementMission settlementMission2 = TestDataGenerator.defaultSettlementMissionData()
+        .id(2L).build();
+    missionCache.putAll(Collections.singletonList(settlementMission1));
+
+    given(this.mockSettlementMissionRpsy.findAllById(Collections.singleton(2L)))
+        .willReturn(Collections.singletonList(settlementMission2));
+
+    List<SettlementMission> actual = service.findMissions(Arrays.asList(1L, 2L, 1L));
+
+    assertEquals(Arrays.asList(settlementMission1, settlementMission2), actual);
+    assertEquals(1.0, lookups("hit"), 0);
+    assertEquals(1.0, lookups("miss"), 0);
+
+    // The miss was cached, so asking again doesn't touch the database
+    service.findMissions(Collections.singletonList(2L));
+    verify(this.mockSettlementMissionRpsy, times(1)).findAllById(any());
+    assertEquals(2.0, lookups("hit"), 0);
+  }
+
+  private double lookups(final String result) {
+    return meterRegistry.get(SettlementMissionCache.LOOKUPS_METER).tag("result", result)
+        .counter().count();
+  }
+
   @Test
   public void testFindMissionsNotFound() {
     List<Long> ids = Arrays.asList(1L, 2L);
@@ -88,7 +158,8 @@ public class SettlementServiceTest extends ASpringTest {
         .version(0L).build();
     List<SettlementMission> settlementMissions = Collections.singletonList(settlementMission1);
 
-    given(this.mockSettlementMissionRpsy.findAllById(ids)).willReturn(settlementMissions);
+    given(this.mockSettlementMissionRpsy.findAllById(new HashSet<>(ids)))
+        .willReturn(settlementMissions);
 
     try {
       service.findMissions(ids);
@@ -98,6 +169,28 @@ public class SettlementServiceTest extends ASpringTest {
     }
   }
 
+  @Test
+  public void testStreamMissions() throws Exception {
+    SettlementMissionFilter filter = SettlementMissionFilter.builder()
+        .depot("DTC").afterId(1L).limit(2).build();
+    SettlementMission settlementMission1 = TestDataGenerator.defaultSettlementMissionData()
+        .id(2L).build();
+    SettlementMission settlementMission2 = TestDataGenerator.defaultSettlementMissionData()
+        .id(3L).build();
+    AtomicBoolean closed = new AtomicBoolean();
+    Stream<SettlementMission> missions = Stream.of(settlementMission1, settlementMission2)
+        .onClose(() -> closed.set(true));
+
+    given(this.mockSettlementMissionStreamRpsy.streamMissions(filter)).willReturn(missions);
+
+    List<SettlementMission> actual = new ArrayList<>();
+    service.streamMissions(filter, stream -> stream.forEach(actual::add));
+
+    assertEquals(Arrays.asList(settlementMission1, settlementMission2), actual);
+    // The stream holds a database cursor, so it must be closed once the handler is done with it
+    assertTrue(closed.get());
+  }
+
   @Test
   public void testSpawnMissions() {
 
@@ -112,6 +205,11 @@ public class SettlementServiceTest extends ASpringTest {
 
     Set<Long> missionIds = service.spawnMissions(Collections.singletonList(testTradeAgreement));
     assertEquals(1, missionIds.size());
+
+    // Written through to the cache, so the first read doesn't go to the database
+    assertEquals(Collections.singletonList(testSettlementMission),
+        service.findMissions(Collections.singletonList(35L)));
+    verify(this.mockSettlementMissionRpsy, never()).findAllById(any());
   }
 
   @Test
@@ -124,12 +222,32 @@ public class SettlementServiceTest extends ASpringTest {
         .willReturn(testSettlementMission);
 
     SettlementService service =
-        new SettlementService(this.mockSettlementMissionRpsy, this.mockAgreementTransformer);
+        new SettlementService(this.mockSettlementMissionRpsy, this.mockAgreementTransformer,
+            this.mockSettlementMissionStreamRpsy, this.missionCache);
 
     Optional<SettlementMission> settlementMissionOptional = service.updateMission(35L, testSettlementMission);
     assertEquals((Long) 35L, settlementMissionOptional.get().getId());
   }
 
+  @Test
+  public void testUpdateMissionWritesThroughNewVersion() {
+    SettlementMission cachedMission = TestDataGenerator.defaultSettlementMissionData()
+        .id(35L).qty(100d).version(0L).build();
+    missionCache.putAll(Collections.singletonList(cachedMission));
+
+    SettlementMission update = TestDataGenerator.defaultSettlementMissionData()
+        .qty(200d).version(0L).build();
+    SettlementMission savedMission = TestDataGenerator.defaultSettlementMissionData()
+        .id(35L).qty(200d).version(1L).build();
+    given(this.mockSettlementMissionRpsy.save(update)).willReturn(savedMission);
+
+    service.updateMission(35L, update);
+
+    assertEquals(Collections.singletonList(savedMission),
+        service.findMissions(Collections.singletonList(35L)));
+    verify(this.mockSettlementMissionRpsy, never()).findAllById(any());
+  }
+
   @Test
   public void testMissionExists() {
 
@@ -137,7 +255,8 @@ public class SettlementServiceTest extends ASpringTest {
         .willReturn(true);
 
     SettlementService service =
-        new SettlementService(this.mockSettlementMissionRpsy, this.mockAgreementTransformer);
+        new SettlementService(this.mockSettlementMissionRpsy, this.mockAgreementTransformer,
+            this.mockSettlementMissionStreamRpsy, this.missionCache);
 
     boolean missionExists = service.missionExists(35L);
     assertTrue(missionExists);
@@ -149,7 +268,8 @@ public class SettlementServiceTest extends ASpringTest {
     doNothing().when(this.mockSettlementMissionRpsy).deleteById(35L);
 
     SettlementService service =
-        new SettlementService(this.mockSettlementMissionRpsy, this.mockAgreementTransformer);
+        new SettlementService(this.mockSettlementMissionRpsy, this.mockAgreementTransformer,
+            this.mockSettlementMissionStreamRpsy, this.missionCache);
 
     service.deleteMission(35L);
     boolean missionExists = service.missionExists(35L);
@@ -0,0 +1,107 @@
+package org.galatea.starter.service;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.galatea.starter.Application;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.galatea.starter.utils.persistence.PooledSequenceGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Measures how many missions per second SettlementService.spawnMissions can insert into the
+ * (in-memory) database, given how many ids are reserved per trip to the id sequence.
+ *
+ * <p>An increment size of 1 fetches every id from the sequence separately, as the old
+ * GenerationType.AUTO mapping did. Larger sizes let Hibernate batch the inserts.
+ *
+ * <p>Run with: mvn -Pbenchmark test -Dskip.surefire.tests -Dbenchmark.include=SpawnMissions
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(SpawnMissionsBenchmark.AGREEMENTS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SpawnMissionsBenchmark {
+
+  static final int AGREEMENTS = 10_000;
+
+  @Param({"1", "50"})
+  private int incrementSize;
+
+  private ConfigurableApplicationContext context;
+
+  private SettlementService settlementService;
+
+  private JdbcTemplate jdbcTemplate;
+
+  private List<TradeAgreement> agreements;
+
+  /**
+   * Start the application with the given id increment size. It runs as a web application, on a
+   * random port, so that the test-only configs which target non-web contexts stay out of it.
+   */
+  @Setup(Level.Trial)
+  public void startApplication() {
+    context = new SpringApplicationBuilder(Application.class)
+        .properties(
+            "spring.jpa.properties." + PooledSequenceGenerator.INCREMENT_SIZE_SETTING + "="
+                + incrementSize,
+            // Keep per-mission logging out of the measurements
+            "logging.level.org.galatea.starter=WARN",
+            "logging.level.org.hibernate=WARN",
+            // Referenced by the test profile's IEX client config, but never called here
+            "wiremock.server.port=0")
+        .run("--server.port=0");
+    settlementService = context.getBean(SettlementService.class);
+    jdbcTemplate = context.getBean(JdbcTemplate.class);
+    agreements = IntStream.range(0, AGREEMENTS)
+        .mapToObj(i -> TestDataGenerator.defaultTradeAgreementData().build())
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Empty the missions table so that every iteration inserts into a table of the same size.
+   */
+  @TearDown(Level.Iteration)
+  public void deleteMissions() {
+    jdbcTemplate.update("delete from settlement_mission");
+  }
+
+  /**
+   * Stop the application.
+   */
+  @TearDown(Level.Trial)
+  public void stopApplication() {
+    context.close();
+  }
+
+  /**
+   * Spawn one mission per agreement.
+   */
+  @Benchmark
+  public Set<Long> spawnMissions() {
+    return settlementService.spawnMissions(agreements);
+  }
+}
@@ -1,5 +1,7 @@
 package org.galatea.starter.testutils;
 
+import java.util.Random;
+import java.util.stream.Stream;
 import lombok.extern.slf4j.Slf4j;
 import org.galatea.starter.domain.SettlementMission;
 import org.galatea.starter.domain.TradeAgreement;
@@ -17,6 +19,10 @@ import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages;
 @Slf4j
 public class TestDataGenerator {
 
+  // Most trading is in a handful of names, so the first instruments here are picked the most often
+  private static final String[] INSTRUMENTS = {"AAPL", "MSFT", "AMZN", "IBM", "GOOGL", "JPM", "XOM",
+      "JNJ", "PG", "KO", "INTC", "CSCO", "PFE", "WMT", "BAC", "T", "VZ", "DIS", "GS", "MMM"};
+
   // Private constructor to appease Sonar
   private TestDataGenerator() {}
 
@@ -32,6 +38,35 @@ public class TestDataGenerator {
         .qty(100d);
   }
 
+  /**
+   * Generate a TradeAgreement builder populated with random but realistic values: instruments
+   * skewed towards the most traded names, a few internal and many external parties, mostly buys
+   * and sells with the odd short sale, and quantities in round lots, mostly small.
+   *
+   * @param random the source of randomness; seed it to get the same agreements every run
+   */
+  public static TradeAgreement.TradeAgreementBuilder randomTradeAgreementData(
+      final Random random) {
+    double side = random.nextDouble();
+    // Log-normal number of lots: a median of about 5 lots of 100, with the odd very large trade
+    long lots = 1 + Math.round(Math.exp(1.5 + 1.2 * random.nextGaussian()));
+    return TradeAgreement.builder()
+        .instrument(INSTRUMENTS[(int) (INSTRUMENTS.length * Math.pow(random.nextDouble(), 2))])
+        .internalParty("INT-" + (1 + random.nextInt(5)))
+        .externalParty("EXT-" + (1 + random.nextInt(100)))
+        .buySell(side < 0.48 ? "B" : side < 0.96 ? "S" : "SS")
+        .qty(100d * lots);
+  }
+
+  /**
+   * Generate an endless stream of random TradeAgreements, as randomTradeAgreementData() makes
+   * them. The same seed always gives the same stream.
+   */
+  public static Stream<TradeAgreement> randomTradeAgreements(final long seed) {
+    Random random = new Random(seed);
+    return Stream.generate(() -> randomTradeAgreementData(random).build());
+  }
+
   /**
    * Generate a TradeAgreementProtoMessage builder populated with some default test values.
    */
@@ -4,6 +4,8 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
 import org.apache.poi.ss.usermodel.DataFormatter;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
@@ -14,11 +16,13 @@ import org.apache.poi.ss.usermodel.WorkbookFactory;
 public class XlsxComparator {
 
   /**
-   * Compare the cell data of two XLSX spreadsheets, ignoring formatting differences.
+   * Compare the cell data of two XLSX spreadsheets, ignoring formatting differences. Cells must
+   * have the same type as well as the same value, so that a number written as a string cell, or a
+   * string as a number, isn't taken to match.
    *
    * @param left the binary content of one spreadsheet
    * @param right the binary content of the other spreadsheet
-   * @return whether the two spreadsheets have the same cell data
+   * @return whether the two spreadsheets have the same cell data and types
    */
   public static boolean equals(final byte[] left, final byte[] right) throws IOException {
     try (Workbook wbLeft = WorkbookFactory.create(new ByteArrayInputStream(left))) {
@@ -63,19 +67,36 @@ public class XlsxComparator {
         int leftColCount = leftRow == null ? 0 : leftRow.getLastCellNum();
         int rightColCount = rightRow == null ? 0 : rightRow.getLastCellNum();
         for (int colInd = 0; colInd < Math.max(leftColCount, rightColCount); colInd++) {
-          String leftValue
-              = leftRow == null ? "" : formatter.formatCellValue(leftRow.getCell(colInd));
-          String rightValue
-              = rightRow == null ? "" : formatter.formatCellValue(rightRow.getCell(colInd));
+          Cell leftCell = leftRow == null ? null : leftRow.getCell(colInd);
+          Cell rightCell = rightRow == null ? null : rightRow.getCell(colInd);
+          String leftValue = formatter.formatCellValue(leftCell);
+          String rightValue = formatter.formatCellValue(rightCell);
           if (!StringUtils.equals(leftValue, rightValue)) {
             log.error("Sheet {} row {} cell {} has different values: \"{}\", \"{}\"",
                 sheetInd, rowInd, colInd, leftValue, rightValue);
             equals = false;
           }
+          CellType leftType = cellType(leftCell);
+          CellType rightType = cellType(rightCell);
+          if (leftType != rightType) {
+            log.error("Sheet {} row {} cell {} has different types: {}, {}",
+                sheetInd, rowInd, colInd, leftType, rightType);
+            equals = false;
+          }
         }
       }
     }
 
     return equals;
   }
+
+  // A missing cell and an empty one are alike; an empty string cell counts as blank too, since
+  // that's what serializers write for a null
+  private static CellType cellType(final Cell cell) {
+    if (cell == null || cell.getCellType() == CellType.STRING
+        && cell.getStringCellValue().isEmpty()) {
+      return CellType.BLANK;
+    }
+    return cell.getCellType();
+  }
 }
@@ -0,0 +1,102 @@
+package org.galatea.starter.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.URI;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.galatea.starter.ASpringTest;
+import org.galatea.starter.utils.trace.HttpTraceProperties;
+import org.junit.Test;
+import org.springframework.boot.actuate.trace.http.HttpTrace;
+
+public class FuseHttpTraceRepositoryTest extends ASpringTest {
+
+  @Test
+  public void testTracesAreWrittenInTheBackground() throws Exception {
+    FuseHttpTraceRepository repository =
+        new FuseHttpTraceRepository(new ObjectMapper(), new HttpTraceProperties());
+    repository.afterPropertiesSet();
+    try {
+      repository.add(trace("/settlementEngine/missions", 200));
+      repository.add(trace("/settlementEngine/missions", 200));
+
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      while (repository.findAll().size() < 2 && System.nanoTime() < deadline) {
+        Thread.sleep(10);
+      }
+      assertEquals(2, repository.findAll().size());
+    } finally {
+      repository.destroy();
+    }
+  }
+
+  @Test
+  public void testDroppedWhenBufferIsFull() throws Exception {
+    HttpTraceProperties properties = new HttpTraceProperties();
+    properties.setBufferSize(2);
+    // The writer isn't started, so nothing is taken off the buffer
+    FuseHttpTraceRepository repository =
+        new FuseHttpTraceRepository(new ObjectMapper(), properties);
+    MeterRegistry registry = new SimpleMeterRegistry();
+    repository.bindTo(registry);
+
+    for (int i = 0; i < 5; i++) {
+      repository.add(trace("/settlementEngine/missions", 200));
+    }
+
+    assertEquals(3, repository.getDroppedCount());
+    assertEquals(3.0,
+        registry.get(FuseHttpTraceRepository.DROPPED_METER).functionCounter().count(), 0);
+    assertEquals(2.0, registry.get(FuseHttpTraceRepository.PENDING_METER).gauge().value(), 0);
+
+    // Whatever is still waiting is written on shutdown
+    repository.destroy();
+    assertEquals(2, repository.findAll().size());
+  }
+
+  @Test
+  public void testSampling() throws Exception {
+    HttpTraceProperties properties = new HttpTraceProperties();
+    properties.setSampleRate(0.0);
+    properties.setPathSampleRates(Collections.singletonMap("/settlementEngine/mission/", 1.0));
+    FuseHttpTraceRepository repository =
+        new FuseHttpTraceRepository(new ObjectMapper(), properties);
+
+    repository.add(trace("/settlementEngine/missions", 200));
+    repository.add(trace("/settlementEngine/mission/1", 200));
+    // Errors are kept whatever the sample rate
+    repository.add(trace("/settlementEngine/missions", 500));
+    repository.destroy();
+
+    assertEquals(2, repository.findAll().size());
+    assertEquals(1, repository.getSampledOutCount());
+    assertEquals(0, repository.getDroppedCount());
+  }
+
+  @Test
+  public void testErrorsSampledLikeAnythingElse() throws Exception {
+    HttpTraceProperties properties = new HttpTraceProperties();
+    properties.setSampleRate(0.0);
+    properties.setAlwaysSampleErrors(false);
+    FuseHttpTraceRepository repository =
+        new FuseHttpTraceRepository(new ObjectMapper(), properties);
+
+    repository.add(trace("/settlementEngine/missions", 500));
+    repository.destroy();
+
+    assertEquals(0, repository.findAll().size());
+    assertEquals(1, repository.getSampledOutCount());
+  }
+
+  private static HttpTrace trace(final String path, final int status) {
+    return new HttpTrace(
+        new HttpTrace.Request("GET", URI.create("http://localhost" + path),
+            Collections.emptyMap(), null),
+        new HttpTrace.Response(status, Collections.emptyMap()), Instant.now(), null, null, 5L);
+  }
+}
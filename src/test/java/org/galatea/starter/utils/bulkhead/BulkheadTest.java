@@ -0,0 +1,123 @@
+package org.galatea.starter.utils.bulkhead;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.galatea.starter.ASpringTest;
+import org.junit.Test;
+
+public class BulkheadTest extends ASpringTest {
+
+  @Test
+  public void testCallsBeyondMaxConcurrentWaitTheirTurn() {
+    Bulkhead bulkhead = new Bulkhead("test", 2, 10);
+    List<CompletableFuture<String>> calls = new ArrayList<>();
+    AtomicInteger started = new AtomicInteger();
+
+    List<CompletableFuture<String>> results = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      CompletableFuture<String> call = new CompletableFuture<>();
+      calls.add(call);
+      results.add(bulkhead.submit(() -> {
+        started.incrementAndGet();
+        return call;
+      }));
+    }
+
+    assertEquals(2, started.get());
+    assertEquals(2, bulkhead.getInFlight());
+    assertEquals(1, bulkhead.getQueued());
+
+    calls.get(0).complete("first");
+    assertEquals("first", results.get(0).join());
+    // The first call's slot went to the third
+    assertEquals(3, started.get());
+    assertEquals(2, bulkhead.getInFlight());
+    assertEquals(0, bulkhead.getQueued());
+
+    calls.get(1).complete("second");
+    calls.get(2).completeExceptionally(new IllegalStateException("third"));
+    assertEquals("second", results.get(1).join());
+    assertTrue(results.get(2).isCompletedExceptionally());
+    assertEquals(0, bulkhead.getInFlight());
+  }
+
+  @Test
+  public void testCallsBeyondQueueRejected() {
+    Bulkhead bulkhead = new Bulkhead("test", 1, 1);
+    MeterRegistry registry = new SimpleMeterRegistry();
+    bulkhead.bindTo(registry);
+    CompletableFuture<String> call = new CompletableFuture<>();
+
+    bulkhead.submit(() -> call);
+    CompletableFuture<String> queued = bulkhead.submit(() -> CompletableFuture.completedFuture("q"));
+    AtomicInteger started = new AtomicInteger();
+    CompletableFuture<String> rejected = bulkhead.submit(() -> {
+      started.incrementAndGet();
+      return CompletableFuture.completedFuture("r");
+    });
+
+    assertFalse(queued.isDone());
+    assertEquals(0, started.get());
+    try {
+      rejected.join();
+      fail("Expected the call to be rejected");
+    } catch (CompletionException e) {
+      assertTrue(e.getCause() instanceof RejectedExecutionException);
+    }
+    assertEquals(1.0, registry.get(Bulkhead.REJECTED_METER).counter().count(), 0);
+    assertEquals(1.0, registry.get(Bulkhead.QUEUED_METER).gauge().value(), 0);
+
+    call.complete("done");
+    assertEquals("q", queued.join());
+    assertEquals(0, bulkhead.getInFlight());
+  }
+
+  @Test
+  public void testQueuedCallsCompletingAtOnceStartedWithoutNesting() throws Exception {
+    Bulkhead bulkhead = new Bulkhead("test", 1, 10_000);
+    CompletableFuture<String> first = new CompletableFuture<>();
+    bulkhead.submit(() -> first);
+    AtomicInteger deepest = new AtomicInteger();
+    List<CompletableFuture<String>> results = new ArrayList<>();
+    for (int i = 0; i < 10_000; i++) {
+      results.add(bulkhead.submit(() -> {
+        deepest.accumulateAndGet(Thread.currentThread().getStackTrace().length, Math::max);
+        return CompletableFuture.completedFuture("cached");
+      }));
+    }
+
+    int depth = Thread.currentThread().getStackTrace().length;
+    first.complete("first");
+
+    for (CompletableFuture<String> result : results) {
+      assertEquals("cached", result.get(5, TimeUnit.SECONDS));
+    }
+    assertTrue("Started " + (deepest.get() - depth) + " frames deep",
+        deepest.get() - depth < 100);
+    assertEquals(0, bulkhead.getInFlight());
+  }
+
+  @Test
+  public void testCallThatThrowsReleasesItsSlot() {
+    Bulkhead bulkhead = new Bulkhead("test", 1, 0);
+
+    CompletableFuture<String> failed = bulkhead.submit(() -> {
+      throw new IllegalStateException("Couldn't start");
+    });
+
+    assertTrue(failed.isCompletedExceptionally());
+    assertEquals("ok", bulkhead.submit(() -> CompletableFuture.completedFuture("ok")).join());
+  }
+}
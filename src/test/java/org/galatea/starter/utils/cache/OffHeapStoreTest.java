@@ -0,0 +1,148 @@
+package org.galatea.starter.utils.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.galatea.starter.ASpringTest;
+import org.junit.Test;
+
+public class OffHeapStoreTest extends ASpringTest {
+
+  @Test
+  public void testPutGetRemove() {
+    OffHeapStore<String> store = new OffHeapStore<>(1024);
+    assertEquals(0, store.allocatedBytes());
+
+    assertTrue(store.put("a", bytes("alpha")));
+    assertTrue(store.put("b", bytes("bravo!")));
+
+    assertArrayEquals(bytes("alpha"), store.get("a"));
+    assertArrayEquals(bytes("bravo!"), store.get("b"));
+    assertNull(store.get("c"));
+    assertEquals(2, store.size());
+    assertEquals(11, store.usedBytes());
+    assertEquals(1024, store.allocatedBytes());
+
+    store.remove("a");
+    assertNull(store.get("a"));
+    assertEquals(1, store.size());
+    assertEquals(6, store.usedBytes());
+  }
+
+  @Test
+  public void testReplace() {
+    OffHeapStore<String> store = new OffHeapStore<>(1024);
+    store.put("a", bytes("first"));
+    store.put("a", bytes("second"));
+
+    assertArrayEquals(bytes("second"), store.get("a"));
+    assertEquals(1, store.size());
+    assertEquals(6, store.usedBytes());
+  }
+
+  @Test
+  public void testPutIf() {
+    OffHeapStore<String> store = new OffHeapStore<>(1024);
+    store.put("a", bytes("2"));
+
+    assertFalse(store.putIf("a", bytes("1"), current -> current[0] < '1'));
+    assertArrayEquals(bytes("2"), store.get("a"));
+    assertTrue(store.putIf("a", bytes("3"), current -> current[0] < '3'));
+    assertArrayEquals(bytes("3"), store.get("a"));
+    // Nothing to test against
+    assertTrue(store.putIf("b", bytes("1"), current -> false));
+  }
+
+  @Test
+  public void testOldestValuesAreOverwrittenWhenFull() {
+    OffHeapStore<Integer> store = new OffHeapStore<>(40);
+    for (int i = 0; i < 4; i++) {
+      store.put(i, new byte[10]);
+    }
+    assertEquals(4, store.size());
+    assertEquals(0, store.evictionCount());
+
+    store.put(4, new byte[10]);
+
+    assertNull(store.get(0));
+    assertEquals(10, store.get(4).length);
+    assertEquals(4, store.size());
+    assertEquals(40, store.usedBytes());
+    assertEquals(1, store.evictionCount());
+
+    // Overwriting the old copy of the value being replaced isn't an eviction
+    store.put(1, bytes("one"));
+    assertArrayEquals(bytes("one"), store.get(1));
+    assertEquals(10, store.get(2).length);
+    assertEquals(1, store.evictionCount());
+    assertEquals(33, store.usedBytes());
+  }
+
+  @Test
+  public void testValueTooLarge() {
+    OffHeapStore<String> store = new OffHeapStore<>(8);
+
+    assertFalse(store.put("a", new byte[9]));
+    assertNull(store.get("a"));
+  }
+
+  @Test
+  public void testExpiredValuesAreNotReturned() {
+    AtomicLong nanos = new AtomicLong();
+    OffHeapStore<String> store = new OffHeapStore<>(1024, Duration.ofSeconds(10), nanos::get);
+    store.put("a", bytes("alpha"));
+    nanos.addAndGet(Duration.ofSeconds(5).toNanos());
+    store.put("b", bytes("bravo"));
+
+    nanos.addAndGet(Duration.ofSeconds(5).toNanos());
+    assertNull(store.get("a"));
+    assertArrayEquals(bytes("bravo"), store.get("b"));
+    assertEquals(1, store.size());
+    assertEquals(5, store.usedBytes());
+
+    // An expired value counts as none, so putIf has nothing to test against
+    nanos.addAndGet(Duration.ofSeconds(5).toNanos());
+    assertTrue(store.putIf("b", bytes("bravo2"), current -> false));
+    assertArrayEquals(bytes("bravo2"), store.get("b"));
+  }
+
+  @Test
+  public void testManyKeysAcrossStripes() {
+    OffHeapStore<Integer> store = new OffHeapStore<>(16 * 1024 * 1024);
+    assertEquals(16 * 1024 * 1024, store.capacityBytes());
+    // Each of the 16 stripes takes values of up to its own size
+    assertEquals(1024 * 1024, store.maxValueBytes());
+
+    for (int i = 0; i < 10000; i++) {
+      assertTrue(store.put(i, bytes(Integer.toString(i))));
+    }
+    // Removing keys shifts the ones that collided with them back along the index
+    for (int i = 0; i < 10000; i += 3) {
+      store.remove(i);
+    }
+
+    for (int i = 0; i < 10000; i++) {
+      if (i % 3 == 0) {
+        assertNull(store.get(i));
+      } else {
+        assertArrayEquals(bytes(Integer.toString(i)), store.get(i));
+      }
+    }
+    assertEquals(6666, store.size());
+    assertEquals(0, store.evictionCount());
+
+    store.clear();
+    assertNull(store.get(1));
+    assertEquals(0, store.size());
+  }
+
+  private static byte[] bytes(final String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+}
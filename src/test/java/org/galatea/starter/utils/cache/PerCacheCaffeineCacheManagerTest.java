@@ -0,0 +1,85 @@
+package org.galatea.starter.utils.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.galatea.starter.ASpringTest;
+import org.galatea.starter.utils.cache.CacheStatsEndpoint.CacheStatsDescriptor;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+
+public class PerCacheCaffeineCacheManagerTest extends ASpringTest {
+
+  @Test
+  public void testCachesAreBuiltFromTheirOwnSpecs() {
+    PerCacheCaffeineCacheManager cacheManager = new PerCacheCaffeineCacheManager(ImmutableMap.of(
+        "small", "maximumSize=10,recordStats",
+        "large", "maximumSize=1000,expireAfterWrite=60s"), Collections.emptyList());
+
+    assertEquals(2, cacheManager.getCacheNames().size());
+    com.github.benmanes.caffeine.cache.Cache<?, ?> small = nativeCache(cacheManager, "small");
+    com.github.benmanes.caffeine.cache.Cache<?, ?> large = nativeCache(cacheManager, "large");
+    assertEquals(10L, small.policy().eviction().get().getMaximum());
+    assertEquals(1000L, large.policy().eviction().get().getMaximum());
+    assertTrue(large.policy().expireAfterWrite().isPresent());
+    // Only the caches named in the specs exist
+    assertNull(cacheManager.getCache("unknown"));
+  }
+
+  @Test
+  public void testRefreshAheadLoader() {
+    AtomicInteger loads = new AtomicInteger();
+    IRefreshAheadLoader loader = new IRefreshAheadLoader() {
+      @Override
+      public String getCacheName() {
+        return "refreshing";
+      }
+
+      @Override
+      public Object load(final Object key) {
+        return key + "-" + loads.incrementAndGet();
+      }
+    };
+    PerCacheCaffeineCacheManager cacheManager = new PerCacheCaffeineCacheManager(
+        ImmutableMap.of("refreshing", "maximumSize=10,refreshAfterWrite=1s"),
+        Collections.singletonList(loader));
+
+    com.github.benmanes.caffeine.cache.Cache<?, ?> nativeCache =
+        nativeCache(cacheManager, "refreshing");
+    assertTrue(nativeCache instanceof LoadingCache);
+
+    // Refreshes run in the background, but use the same loader as a synchronous load does
+    assertEquals("a-1", ((LoadingCache<Object, Object>) nativeCache).get("a"));
+  }
+
+  @Test
+  public void testCacheStats() {
+    PerCacheCaffeineCacheManager cacheManager = new PerCacheCaffeineCacheManager(
+        ImmutableMap.of("stats", "maximumSize=10,recordStats"), Collections.emptyList());
+    Cache cache = cacheManager.getCache("stats");
+    cache.put("a", "A");
+    cache.get("a");
+    cache.get("a");
+    cache.get("b");
+
+    Map<String, CacheStatsDescriptor> stats = new CacheStatsEndpoint(cacheManager).cacheStats();
+
+    CacheStatsDescriptor descriptor = stats.get("stats");
+    assertEquals("caffeine", descriptor.getProvider());
+    assertEquals(2L, (long) descriptor.getHitCount());
+    assertEquals(1L, (long) descriptor.getMissCount());
+    assertEquals(2.0 / 3, descriptor.getHitRate(), 0.0001);
+  }
+
+  private static com.github.benmanes.caffeine.cache.Cache<?, ?> nativeCache(
+      final PerCacheCaffeineCacheManager cacheManager, final String name) {
+    return (com.github.benmanes.caffeine.cache.Cache<?, ?>) cacheManager.getCache(name)
+        .getNativeCache();
+  }
+}
@@ -0,0 +1,210 @@
+package org.galatea.starter.utils.cache;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.galatea.starter.ASpringTest;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.util.unit.DataSize;
+
+public class TieredCacheTest extends ASpringTest {
+
+  private ConcurrentMapCache heapCache;
+
+  private OffHeapStore<Object> offHeapStore;
+
+  private TieredCache cache;
+
+  @Before
+  public void setup() {
+    heapCache = new ConcurrentMapCache("strings");
+    offHeapStore = new OffHeapStore<>(1024);
+    cache = new TieredCache(heapCache, offHeapStore, new StringCodec());
+  }
+
+  @Test
+  public void testPutWritesBothTiers() {
+    cache.put(1L, "one");
+
+    assertEquals("one", heapCache.get(1L).get());
+    assertEquals(1, offHeapStore.size());
+  }
+
+  @Test
+  public void testOffHeapHitIsPromoted() {
+    cache.put(1L, "one");
+    // As if the heap tier had evicted it
+    heapCache.evict(1L);
+
+    assertEquals("one", cache.get(1L).get());
+    assertEquals("one", heapCache.get(1L).get());
+  }
+
+  @Test
+  public void testValueLoaderFallsBackToOffHeap() {
+    cache.put(1L, "one");
+    heapCache.evict(1L);
+
+    assertEquals("one", cache.get(1L, () -> "loaded"));
+    assertEquals("two", cache.get(2L, () -> "two"));
+    // Loaded values are kept off-heap too
+    assertEquals(2, offHeapStore.size());
+  }
+
+  @Test
+  public void testValuesTheCodecDoesNotHandleStayOnHeap() {
+    cache.put(1L, null);
+    cache.put(2L, 2);
+
+    assertNull(cache.get(1L).get());
+    assertEquals(2, cache.get(2L).get());
+    assertEquals(0, offHeapStore.size());
+  }
+
+  @Test
+  public void testEvictAndClearBothTiers() {
+    cache.put(1L, "one");
+    cache.put(2L, "two");
+
+    cache.evict(1L);
+    assertNull(cache.get(1L));
+    assertEquals(1, offHeapStore.size());
+
+    cache.clear();
+    assertNull(cache.get(2L));
+    assertEquals(0, offHeapStore.size());
+  }
+
+  @Test
+  public void testExpiredOffHeapValueIsNotPromoted() {
+    AtomicLong nanos = new AtomicLong();
+    TieredCache expiringCache = new TieredCache(heapCache,
+        new OffHeapStore<>(1024, Duration.ofSeconds(10), nanos::get), new StringCodec());
+    expiringCache.put(1L, "one");
+    // As if the heap tier had expired it
+    heapCache.evict(1L);
+    nanos.addAndGet(Duration.ofSeconds(10).toNanos());
+
+    assertNull(expiringCache.get(1L));
+    assertNull(heapCache.get(1L));
+  }
+
+  @Test
+  public void testReloadDoesNotReplaceNewerPut() {
+    cache.put(1L, "one");
+
+    // Put while "one" was being reloaded as "uno"
+    cache.put(1L, "newer");
+    cache.loaded(1L, "one", "uno");
+    assertEquals("newer", cache.getOffHeap(1L));
+
+    cache.loaded(1L, "newer", "newest");
+    assertEquals("newest", cache.getOffHeap(1L));
+    cache.loaded(1L, "newest", null);
+    assertEquals(0, offHeapStore.size());
+  }
+
+  @Test
+  public void testRefreshAheadWritesBothTiers() {
+    AtomicInteger loads = new AtomicInteger();
+    IRefreshAheadLoader loader = new IRefreshAheadLoader() {
+      @Override
+      public String getCacheName() {
+        return "strings";
+      }
+
+      @Override
+      public Object load(final Object key) {
+        return key + "-" + loads.incrementAndGet();
+      }
+    };
+    TieredCacheManager cacheManager = new TieredCacheManager(
+        new PerCacheCaffeineCacheManager(
+            ImmutableMap.of("strings", "maximumSize=10,expireAfterWrite=60s"),
+            Collections.singletonList(loader)),
+        Collections.singletonMap("strings", DataSize.ofKilobytes(1)),
+        Collections.singletonList(new StringCodec()));
+    TieredCache tieredCache = (TieredCache) cacheManager.getCache("strings");
+    LoadingCache<Object, Object> nativeCache =
+        (LoadingCache<Object, Object>) tieredCache.getNativeCache();
+
+    // Loaded by the heap tier itself
+    assertEquals("a-1", tieredCache.get("a").get());
+    assertEquals("a-1", offHeap(tieredCache, "a"));
+
+    // Reloaded in the background
+    nativeCache.refresh("a");
+    await().until(() -> "a-2".equals(nativeCache.getIfPresent("a")));
+    assertEquals("a-2", offHeap(tieredCache, "a"));
+  }
+
+  @Test
+  public void testOffHeapTierExpiresWithHeapTier() {
+    TieredCacheManager cacheManager = new TieredCacheManager(
+        new PerCacheCaffeineCacheManager(
+            ImmutableMap.of("strings", "maximumSize=10,expireAfterWrite=60s"),
+            Collections.emptyList()),
+        Collections.singletonMap("strings", DataSize.ofKilobytes(1)),
+        Collections.singletonList(new StringCodec()));
+
+    TieredCache tieredCache = (TieredCache) cacheManager.getCache("strings");
+    assertEquals(Duration.ofSeconds(60), tieredCache.getOffHeapStore().timeToLive());
+  }
+
+  @Test
+  public void testOffHeapMetrics() {
+    MeterRegistry registry = new SimpleMeterRegistry();
+    new TieredCacheMeterBinderProvider().getMeterBinder(cache, Tags.empty()).bindTo(registry);
+
+    cache.put(1L, "one");
+    cache.put(2L, "three");
+
+    assertEquals(2.0, registry.get("cache.offheap.size").tag("name", "strings").gauge().value(),
+        0);
+    assertEquals(8.0, registry.get("cache.offheap.used").tag("name", "strings").gauge().value(),
+        0);
+    assertEquals(1024.0,
+        registry.get("cache.offheap.capacity").tag("name", "strings").gauge().value(), 0);
+  }
+
+  private static String offHeap(final TieredCache tieredCache, final Object key) {
+    byte[] value = tieredCache.getOffHeapStore().get(key);
+    return value == null ? null : new String(value, StandardCharsets.UTF_8);
+  }
+
+  private static class StringCodec implements ICacheValueCodec<String> {
+
+    @Override
+    public String getCacheName() {
+      return "strings";
+    }
+
+    @Override
+    public Class<String> getValueType() {
+      return String.class;
+    }
+
+    @Override
+    public byte[] encode(final String value) {
+      return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String decode(final byte[] bytes) {
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  }
+}
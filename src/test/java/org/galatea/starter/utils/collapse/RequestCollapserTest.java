@@ -0,0 +1,174 @@
+package org.galatea.starter.utils.collapse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.galatea.starter.ASpringTest;
+import org.junit.After;
+import org.junit.Test;
+
+public class RequestCollapserTest extends ASpringTest {
+
+  private final List<Set<String>> loads = new CopyOnWriteArrayList<>();
+
+  private final ExecutorService callers = Executors.newCachedThreadPool();
+
+  @After
+  public void tearDown() {
+    callers.shutdownNow();
+  }
+
+  @Test
+  public void testConcurrentRequestsShareOneLoad() throws Exception {
+    RequestCollapser<String, String> collapser =
+        new RequestCollapser<>("test", this::lowerCase, Duration.ofMillis(500), 100);
+    MeterRegistry registry = new SimpleMeterRegistry();
+    collapser.bindTo(registry);
+    CyclicBarrier start = new CyclicBarrier(3);
+
+    List<Future<Map<String, String>>> results = new ArrayList<>();
+    for (List<String> keys : Arrays.asList(Arrays.asList("A", "B"), Arrays.asList("B", "C"),
+        Arrays.asList("C", "A", "D"))) {
+      results.add(callers.submit(() -> {
+        start.await();
+        return collapser.getAll(keys);
+      }));
+    }
+
+    assertEquals(ImmutableMap.of("A", "a", "B", "b"), results.get(0).get(5, TimeUnit.SECONDS));
+    assertEquals(ImmutableMap.of("B", "b", "C", "c"), results.get(1).get(5, TimeUnit.SECONDS));
+    assertEquals(ImmutableMap.of("C", "c", "A", "a", "D", "d"),
+        results.get(2).get(5, TimeUnit.SECONDS));
+    assertEquals(Collections.singletonList(ImmutableSet.of("A", "B", "C", "D")), loads);
+
+    assertEquals(4, registry.get(RequestCollapser.BATCH_KEYS_METER).summary().totalAmount(), 0);
+    assertEquals(3, registry.get(RequestCollapser.BATCH_REQUESTS_METER).summary().totalAmount(),
+        0);
+    assertEquals(1, registry.get(RequestCollapser.BATCH_LOAD_METER).tag("outcome", "success")
+        .timer().count());
+    assertEquals(3, registry.get(RequestCollapser.COLLAPSED_KEYS_METER).counter().count(), 0);
+  }
+
+  @Test
+  public void testBatchSizeIsCapped() {
+    RequestCollapser<String, String> collapser =
+        new RequestCollapser<>("test", this::lowerCase, Duration.ofSeconds(10), 2);
+
+    // The last batch is loaded straight away too, since the caller filled it
+    Map<String, String> found = collapser.getAll(Arrays.asList("A", "B", "C", "D", "A"));
+
+    assertEquals(ImmutableMap.of("A", "a", "B", "b", "C", "c", "D", "d"), found);
+    assertEquals(Arrays.asList(ImmutableSet.of("A", "B"), ImmutableSet.of("C", "D")), loads);
+  }
+
+  @Test
+  public void testMissingKeysAreLeftOut() {
+    RequestCollapser<String, String> collapser = new RequestCollapser<>("test",
+        keys -> lowerCase(keys.stream().filter(key -> !key.equals("X"))
+            .collect(Collectors.toSet())),
+        Duration.ZERO, 100);
+
+    assertEquals(ImmutableMap.of("A", "a"), collapser.getAll(Arrays.asList("X", "A")));
+  }
+
+  @Test
+  public void testLoadFailureFailsEveryCaller() throws Exception {
+    IllegalStateException failure = new IllegalStateException("Upstream unavailable");
+    RequestCollapser<String, String> collapser = new RequestCollapser<>("test", keys -> {
+      throw failure;
+    }, Duration.ofMillis(500), 100);
+    CyclicBarrier start = new CyclicBarrier(2);
+
+    List<Future<Map<String, String>>> results = new ArrayList<>();
+    for (String key : Arrays.asList("A", "B")) {
+      results.add(callers.submit(() -> {
+        start.await();
+        return collapser.getAll(Collections.singletonList(key));
+      }));
+    }
+
+    for (Future<Map<String, String>> result : results) {
+      try {
+        result.get(5, TimeUnit.SECONDS);
+        fail("Expected the load to fail");
+      } catch (ExecutionException e) {
+        assertSame(failure, e.getCause());
+      }
+    }
+  }
+
+  @Test
+  public void testInterruptCutsWaitShort() {
+    RequestCollapser<String, String> collapser =
+        new RequestCollapser<>("test", this::lowerCase, Duration.ofSeconds(30), 100);
+    long start = System.nanoTime();
+
+    Thread.currentThread().interrupt();
+    Map<String, String> found = collapser.getAll(Collections.singletonList("A"));
+
+    // Still interrupted, and cleared for the next test
+    assertTrue(Thread.interrupted());
+    assertEquals(ImmutableMap.of("A", "a"), found);
+    assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+  }
+
+  @Test
+  public void testJoinsBatchBeingLoaded() throws Exception {
+    Semaphore loading = new Semaphore(0);
+    CountDownLatch finishLoad = new CountDownLatch(1);
+    RequestCollapser<String, String> collapser = new RequestCollapser<>("test", keys -> {
+      loading.release();
+      try {
+        finishLoad.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return lowerCase(keys);
+    }, Duration.ZERO, 100);
+
+    Future<Map<String, String>> first =
+        callers.submit(() -> collapser.getAll(Collections.singletonList("A")));
+    loading.acquire();
+    Future<Map<String, String>> second =
+        callers.submit(() -> collapser.getAll(Arrays.asList("A", "B")));
+    // The second caller joins the first batch before loading its other key itself
+    loading.acquire();
+    finishLoad.countDown();
+
+    assertEquals(ImmutableMap.of("A", "a"), first.get(5, TimeUnit.SECONDS));
+    assertEquals(ImmutableMap.of("A", "a", "B", "b"), second.get(5, TimeUnit.SECONDS));
+    // Both loads finish at once, so in either order
+    assertEquals(2, loads.size());
+    assertEquals(ImmutableSet.of(ImmutableSet.of("A"), ImmutableSet.of("B")),
+        ImmutableSet.copyOf(loads));
+  }
+
+  private Map<String, String> lowerCase(final Set<String> keys) {
+    loads.add(ImmutableSet.copyOf(keys));
+    return keys.stream().collect(Collectors.toMap(Function.identity(), String::toLowerCase));
+  }
+}
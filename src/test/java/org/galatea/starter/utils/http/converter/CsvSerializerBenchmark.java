@@ -0,0 +1,77 @@
+package org.galatea.starter.utils.http.converter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares serializing missions to a CSV document held in memory as a String with streaming them
+ * row by row to an OutputStream, as the CSV converters do.
+ *
+ * <p>Run with: mvn -Pbenchmark test -Dskip.surefire.tests -Dbenchmark.include=CsvSerializer
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvSerializerBenchmark {
+
+  @Param({"1000", "10000", "100000"})
+  private int rows;
+
+  private List<SettlementMission> missions;
+
+  /**
+   * Generate the row data.
+   */
+  @Setup(Level.Trial)
+  public void generateRows() {
+    missions = LongStream.range(0, rows)
+        .mapToObj(id -> TestDataGenerator.defaultSettlementMissionData().id(id).build())
+        .collect(Collectors.toList());
+  }
+
+  @Benchmark
+  public String toDocument() throws IOException {
+    return CsvSerializer.serializeToCsv(missions, SettlementMission.class);
+  }
+
+  /**
+   * Stream the document to a sink that only counts the bytes, as if to a client.
+   */
+  @Benchmark
+  public void toStream(final Blackhole blackhole) throws IOException {
+    OutputStream sink = new OutputStream() {
+      @Override
+      public void write(final int b) {
+        blackhole.consume(b);
+      }
+
+      @Override
+      public void write(final byte[] b, final int off, final int len) {
+        blackhole.consume(len);
+      }
+    };
+    CsvSerializer.serializeToCsv(missions, SettlementMission.class, sink);
+  }
+}
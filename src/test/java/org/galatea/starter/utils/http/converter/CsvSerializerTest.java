@@ -4,9 +4,13 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -100,6 +104,47 @@ public class CsvSerializerTest {
     assertEquals(expected, actual);
   }
 
+  @Test
+  public void serializeToCsv_stream() throws Exception {
+    BasicClass row1 = new BasicClass("foo", "bar");
+    BasicClass row2 = new BasicClass("baz", null);
+
+    String expected
+        = "field1,field2\n"
+        + "foo,bar\n"
+        + "baz,\n";
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    CsvSerializer.serializeToCsv(Arrays.asList(row1, row2), BasicClass.class, out);
+    assertEquals(expected, out.toString(StandardCharsets.UTF_8.name()));
+  }
+
+  @Test
+  public void serializeToCsv_streamManyRows() throws Exception {
+    // Enough rows that the generator has to flush its buffer to the stream several times
+    List<BasicClass> rows = IntStream.range(0, 10000)
+        .mapToObj(i -> new BasicClass("foo" + i, "bar" + i))
+        .collect(Collectors.toList());
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    CsvSerializer.serializeToCsv(rows, BasicClass.class, out);
+    assertEquals(CsvSerializer.serializeToCsv(rows, BasicClass.class),
+        out.toString(StandardCharsets.UTF_8.name()));
+  }
+
+  @Test
+  public void serializeToCsv_streamChildClass2() throws Exception {
+    BasicClass row1 = new ChildClass("foo", "bar", "baz");
+
+    try {
+      CsvSerializer.serializeToCsv(Collections.singletonList(row1), BasicClass.class,
+          new ByteArrayOutputStream());
+      fail("A JsonProcessingException was expected but not thrown");
+    } catch (JsonProcessingException e) {
+      // Same behavior as the non-streaming version; see serializeToCsv_childClass2
+      log.info("Caught expected JsonProcessingException with message: {}", e.getMessage());
+    }
+  }
+
   @AllArgsConstructor
   @NoArgsConstructor
   @Getter
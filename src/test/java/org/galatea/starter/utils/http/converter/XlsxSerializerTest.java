@@ -1,21 +1,28 @@
 package org.galatea.starter.utils.http.converter;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.ss.usermodel.CellType;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.galatea.starter.testutils.XlsxComparator;
 import org.junit.Test;
@@ -128,7 +135,7 @@ public class XlsxSerializerTest {
       row.createCell(0).setCellValue("field1");
       row.createCell(1).setCellValue("field2");
       row = sheet.createRow(1);
-      row.createCell(0).setCellValue("1");
+      row.createCell(0).setCellValue(1);
       row.createCell(1).setCellValue("XlsxSerializerTest.BasicClass(field1=foo, field2=bar)");
 
       expected = writeSpreadsheetToBytes(wbExpected);
@@ -160,6 +167,67 @@ public class XlsxSerializerTest {
     assertTrue(XlsxComparator.equals(expected, actual));
   }
 
+  @Test
+  public void serializeToXlsx_typedCells() throws Exception {
+    TypedClass row1 = new TypedClass(1, 2L, 3.5, true, null, new BigDecimal("4.10"));
+
+    byte[] actual = XlsxSerializer.serializeToXlsx(
+        Collections.singletonList(row1), TypedClass.class);
+    try (Workbook wb = WorkbookFactory.create(new ByteArrayInputStream(actual))) {
+      Row row = wb.getSheetAt(0).getRow(1);
+      assertEquals(CellType.NUMERIC, row.getCell(0).getCellType());
+      assertEquals(1, row.getCell(0).getNumericCellValue(), 0);
+      // Longs are stringified, since a double would lose the low digits of a large one
+      assertEquals(CellType.STRING, row.getCell(1).getCellType());
+      assertEquals("2", row.getCell(1).getStringCellValue());
+      assertEquals(CellType.NUMERIC, row.getCell(2).getCellType());
+      assertEquals(3.5, row.getCell(2).getNumericCellValue(), 0);
+      assertEquals(CellType.BOOLEAN, row.getCell(3).getCellType());
+      assertTrue(row.getCell(3).getBooleanCellValue());
+      // Null boxed numbers are written the same way as any other null
+      assertEquals("", row.getCell(4).getStringCellValue());
+      // BigDecimal is stringified so that its scale and precision are kept
+      assertEquals("4.10", row.getCell(5).getStringCellValue());
+    }
+  }
+
+  @Test
+  public void serializeToXlsx_largeLongKeptExact() throws Exception {
+    TypedClass row1 = new TypedClass(1, 9007199254740993L, 0, false, null, BigDecimal.ONE);
+
+    byte[] actual = XlsxSerializer.serializeToXlsx(
+        Collections.singletonList(row1), TypedClass.class);
+    try (Workbook wb = WorkbookFactory.create(new ByteArrayInputStream(actual))) {
+      assertEquals("9007199254740993",
+          wb.getSheetAt(0).getRow(1).getCell(1).getStringCellValue());
+    }
+  }
+
+  @Test
+  public void serializeToXlsx_stream() throws Exception {
+    BasicClass row1 = new BasicClass("foo", "bar");
+    BasicClass row2 = new BasicClass("baz", null);
+    List<BasicClass> rows = Arrays.asList(row1, row2);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    XlsxSerializer.serializeToXlsx(rows, BasicClass.class, out, 100);
+    assertTrue(XlsxComparator.equals(
+        XlsxSerializer.serializeToXlsx(rows, BasicClass.class), out.toByteArray()));
+  }
+
+  @Test
+  public void serializeToXlsx_streamMoreRowsThanWindow() throws Exception {
+    // Rows beyond the window are flushed to a temp file; they must all still end up in the output
+    List<BasicClass> rows = IntStream.range(0, 500)
+        .mapToObj(i -> new BasicClass("foo" + i, "bar" + i))
+        .collect(Collectors.toList());
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    XlsxSerializer.serializeToXlsx(rows, BasicClass.class, out, 10);
+    assertTrue(XlsxComparator.equals(
+        XlsxSerializer.serializeToXlsx(rows, BasicClass.class), out.toByteArray()));
+  }
+
   private static byte[] writeSpreadsheetToBytes(final Workbook wb) throws IOException {
     try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
       wb.write(baos);
@@ -205,6 +273,17 @@ public class XlsxSerializerTest {
     private BasicClass field2;
   }
 
+  @AllArgsConstructor
+  private static class TypedClass {
+
+    private int field1;
+    private Long field2;
+    private double field3;
+    private boolean field4;
+    private Integer field5;
+    private BigDecimal field6;
+  }
+
   @AllArgsConstructor
   private static class CustomHeadersClass {
 
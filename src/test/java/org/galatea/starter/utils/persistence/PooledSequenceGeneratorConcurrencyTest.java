@@ -0,0 +1,96 @@
+package org.galatea.starter.utils.persistence;
+
+import static org.junit.Assert.assertEquals;
+
+import com.zaxxer.hikari.HikariDataSource;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.galatea.starter.ASpringTest;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.rpsy.ISettlementMissionRpsy;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Runs against a small connection pool of its own, rather than the embedded database @DataJpaTest
+// would otherwise use, which has no pool at all. The pool gives up quickly so a deadlock fails the
+// test rather than hanging it
+@DataJpaTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:pooledSequenceGeneratorConcurrencyTest",
+    "spring.datasource.hikari.maximum-pool-size=4",
+    "spring.datasource.hikari.connection-timeout=5000",
+    "spring.jpa.properties." + PooledSequenceGenerator.INCREMENT_SIZE_SETTING + "=50"})
+@AutoConfigureTestDatabase(replace = Replace.NONE)
+public class PooledSequenceGeneratorConcurrencyTest extends ASpringTest {
+
+  private static final int MISSIONS_PER_INSERT = 20;
+
+  @Autowired
+  private ISettlementMissionRpsy missionRpsy;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Autowired
+  private HikariDataSource dataSource;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Test
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  public void testConcurrentInsertsDontExhaustPool() throws Exception {
+    // Every connection the pool will still hand out is held by an insert before any of them asks
+    // for an id, so the block the first one needs has to be read without taking another
+    int freeConnections = dataSource.getMaximumPoolSize()
+        - dataSource.getHikariPoolMXBean().getActiveConnections();
+    CyclicBarrier allConnectionsHeld = new CyclicBarrier(freeConnections);
+    TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+    // More inserts than the pool has connections
+    int inserts = 2 * freeConnections;
+    ExecutorService executor = Executors.newFixedThreadPool(inserts);
+
+    try {
+      List<Future<List<Long>>> results = new ArrayList<>();
+      for (int i = 0; i < inserts; i++) {
+        results.add(executor.submit(() -> transaction.execute(status -> {
+          jdbcTemplate.queryForObject("select 1", Integer.class);
+          try {
+            allConnectionsHeld.await(10, TimeUnit.SECONDS);
+          } catch (Exception e) {
+            throw new IllegalStateException(e);
+          }
+          List<Long> ids = new ArrayList<>();
+          for (int j = 0; j < MISSIONS_PER_INSERT; j++) {
+            ids.add(missionRpsy.save(
+                TestDataGenerator.defaultSettlementMissionData().id(null).build()).getId());
+          }
+          return ids;
+        })));
+      }
+
+      HashSet<Long> ids = new HashSet<>();
+      for (Future<List<Long>> result : results) {
+        ids.addAll(result.get(30, TimeUnit.SECONDS));
+      }
+      assertEquals(inserts * MISSIONS_PER_INSERT, ids.size());
+    } finally {
+      executor.shutdownNow();
+      missionRpsy.deleteAll();
+    }
+  }
+}
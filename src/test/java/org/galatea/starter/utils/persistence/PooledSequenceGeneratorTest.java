@@ -0,0 +1,45 @@
+package org.galatea.starter.utils.persistence;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.galatea.starter.ASpringTest;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.rpsy.ISettlementMissionRpsy;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@DataJpaTest(properties = "spring.jpa.properties." + PooledSequenceGenerator.INCREMENT_SIZE_SETTING
+    + "=50")
+public class PooledSequenceGeneratorTest extends ASpringTest {
+
+  @Autowired
+  private ISettlementMissionRpsy missionRpsy;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Test
+  public void testIdsAreReservedInBlocks() {
+    List<SettlementMission> missions = IntStream.range(0, 60)
+        .mapToObj(i -> TestDataGenerator.defaultSettlementMissionData().id(null).build())
+        .collect(Collectors.toList());
+
+    List<Long> ids = IntStream.range(0, 60).mapToObj(i -> missionRpsy.save(missions.get(i)))
+        .map(SettlementMission::getId)
+        .collect(Collectors.toList());
+
+    // Ids are handed out in order from each block
+    assertEquals(IntStream.rangeClosed(1, 60).mapToObj(Long::valueOf)
+        .collect(Collectors.toList()), ids);
+    // 60 ids only needed two blocks of 50, so the sequence was only advanced twice. MySQL5Dialect
+    // has no sequences, so the sequence is emulated with a table
+    assertEquals(Long.valueOf(101), jdbcTemplate.queryForObject(
+        "select next_val from settlement_mission_seq", Long.class));
+  }
+}
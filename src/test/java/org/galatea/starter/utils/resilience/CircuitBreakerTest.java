@@ -0,0 +1,145 @@
+package org.galatea.starter.utils.resilience;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.galatea.starter.ASpringTest;
+import org.galatea.starter.utils.resilience.CircuitBreaker.State;
+import org.junit.Test;
+
+public class CircuitBreakerTest extends ASpringTest {
+
+  private final AtomicLong nanos = new AtomicLong();
+
+  private final CircuitBreaker breaker =
+      new CircuitBreaker(4, 3, 0.5, Duration.ofSeconds(10), 2, nanos::get);
+
+  @Test
+  public void testOpensOnceFailureRateReachedOverMinimumCalls() {
+    call(false);
+    call(true);
+    // One failure in two calls is half, but two calls are too few to go on
+    assertEquals(State.CLOSED, breaker.getState());
+
+    call(false);
+    call(false);
+    call(false);
+    call(true);
+    // The window is the last four, so the first failure has left it
+    assertEquals(State.CLOSED, breaker.getState());
+
+    call(true);
+    assertEquals(State.OPEN, breaker.getState());
+    assertEquals(CircuitBreaker.NOT_PERMITTED, breaker.tryAcquire());
+  }
+
+  @Test
+  public void testClosesOnceTrialCallsSucceed() {
+    open();
+    nanos.addAndGet(Duration.ofSeconds(10).toNanos());
+    assertEquals(State.HALF_OPEN, breaker.getState());
+
+    long first = permit();
+    long second = permit();
+    // Only two trial calls at a time
+    assertEquals(CircuitBreaker.NOT_PERMITTED, breaker.tryAcquire());
+    breaker.onSuccess(first);
+    assertEquals(State.HALF_OPEN, breaker.getState());
+    breaker.onSuccess(second);
+
+    assertEquals(State.CLOSED, breaker.getState());
+    // The failures from before it opened are forgotten
+    call(true);
+    call(true);
+    assertEquals(State.CLOSED, breaker.getState());
+  }
+
+  @Test
+  public void testReopensWhenTrialCallFails() {
+    open();
+    nanos.addAndGet(Duration.ofSeconds(10).toNanos());
+
+    breaker.onFailure(permit());
+
+    assertEquals(State.OPEN, breaker.getState());
+    nanos.addAndGet(Duration.ofSeconds(9).toNanos());
+    assertEquals(CircuitBreaker.NOT_PERMITTED, breaker.tryAcquire());
+  }
+
+  @Test
+  public void testIgnoredTrialCallFreesItsTurn() {
+    open();
+    nanos.addAndGet(Duration.ofSeconds(10).toNanos());
+
+    permit();
+    breaker.onIgnored(permit());
+
+    permit();
+    assertEquals(State.HALF_OPEN, breaker.getState());
+  }
+
+  @Test
+  public void testCallsFromBeforeHalfOpenNotTakenForTrials() {
+    long closed = permit();
+    long stillClosed = permit();
+    open();
+    nanos.addAndGet(Duration.ofSeconds(10).toNanos());
+
+    long trial = permit();
+    // Made while closed, so neither fails nor passes a trial
+    breaker.onFailure(closed);
+    breaker.onSuccess(stillClosed);
+    assertEquals(State.HALF_OPEN, breaker.getState());
+    breaker.onIgnored(closed);
+    permit();
+    assertEquals(CircuitBreaker.NOT_PERMITTED, breaker.tryAcquire());
+
+    breaker.onSuccess(trial);
+    assertEquals(State.HALF_OPEN, breaker.getState());
+  }
+
+  @Test
+  public void testTrialsEndingAfterCloseNotCounted() {
+    open();
+    nanos.addAndGet(Duration.ofSeconds(10).toNanos());
+    long first = permit();
+    long second = permit();
+    breaker.onSuccess(first);
+    breaker.onSuccess(second);
+    assertEquals(State.CLOSED, breaker.getState());
+
+    long[] late = {permit(), permit(), permit()};
+    open();
+    nanos.addAndGet(Duration.ofSeconds(10).toNanos());
+    for (long permit : late) {
+      breaker.onSuccess(permit);
+    }
+
+    // Successes from before the breaker last opened don't close it
+    assertEquals(State.HALF_OPEN, breaker.getState());
+  }
+
+  private void open() {
+    call(true);
+    call(true);
+    call(true);
+    assertEquals(State.OPEN, breaker.getState());
+  }
+
+  private void call(final boolean fail) {
+    long permit = permit();
+    if (fail) {
+      breaker.onFailure(permit);
+    } else {
+      breaker.onSuccess(permit);
+    }
+  }
+
+  private long permit() {
+    long permit = breaker.tryAcquire();
+    assertNotEquals(CircuitBreaker.NOT_PERMITTED, permit);
+    return permit;
+  }
+}
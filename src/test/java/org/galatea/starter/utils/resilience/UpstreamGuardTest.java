@@ -0,0 +1,205 @@
+package org.galatea.starter.utils.resilience;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.galatea.starter.ASpringTest;
+import org.galatea.starter.utils.resilience.CircuitBreaker.State;
+import org.junit.Before;
+import org.junit.Test;
+
+public class UpstreamGuardTest extends ASpringTest {
+
+  private UpstreamGuardProperties properties;
+
+  @Before
+  public void setUp() {
+    properties = new UpstreamGuardProperties();
+    properties.setRetryBackoffMs(1);
+    properties.setMaxRetryBackoffMs(1);
+  }
+
+  @Test
+  public void testFailedCallRetried() {
+    UpstreamGuard guard = guard();
+    MeterRegistry registry = new SimpleMeterRegistry();
+    guard.bindTo(registry);
+    AtomicInteger attempts = new AtomicInteger();
+
+    String result = guard.call(() -> {
+      if (attempts.incrementAndGet() < 3) {
+        throw new IllegalStateException("Upstream is down");
+      }
+      return "ok";
+    });
+
+    assertEquals("ok", result);
+    assertEquals(3, attempts.get());
+    assertEquals(2.0, registry.get(UpstreamGuard.RETRIED_METER).functionCounter().count(), 0);
+  }
+
+  @Test
+  public void testRetriesCappedByBudget() {
+    properties.setMaxRetryTokens(2);
+    properties.setRetryRatio(0);
+    properties.setMinimumCalls(properties.getWindowSize());
+    UpstreamGuard guard = guard();
+    AtomicInteger attempts = new AtomicInteger();
+
+    for (int i = 0; i < 3; i++) {
+      try {
+        guard.call(() -> {
+          attempts.incrementAndGet();
+          throw new IllegalStateException("Upstream is down");
+        });
+        fail("Expected the call to fail");
+      } catch (IllegalStateException e) {
+        // Expected
+      }
+    }
+
+    // Three calls, and the two retries the budget held
+    assertEquals(5, attempts.get());
+  }
+
+  @Test
+  public void testFailureNotUpstreamsFaultNotRetriedOrCounted() {
+    properties.setMinimumCalls(1);
+    UpstreamGuard guard = new UpstreamGuard("test", properties,
+        failure -> !(failure instanceof IllegalArgumentException));
+    AtomicInteger attempts = new AtomicInteger();
+
+    try {
+      guard.call(() -> {
+        attempts.incrementAndGet();
+        throw new IllegalArgumentException("Bad request");
+      });
+      fail("Expected the call to fail");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+
+    assertEquals(1, attempts.get());
+    assertEquals(State.CLOSED, guard.getState());
+  }
+
+  @Test
+  public void testOpenCircuitFailsCallsAtOnce() {
+    properties.setMaxAttempts(1);
+    properties.setMinimumCalls(2);
+    UpstreamGuard guard = guard();
+    MeterRegistry registry = new SimpleMeterRegistry();
+    guard.bindTo(registry);
+    AtomicInteger attempts = new AtomicInteger();
+
+    for (int i = 0; i < 3; i++) {
+      CompletableFuture<String> result = guard.callAsync(() -> {
+        attempts.incrementAndGet();
+        return CompletableFuture.failedFuture(new IllegalStateException("Upstream is down"));
+      });
+      try {
+        result.join();
+        fail("Expected the call to fail");
+      } catch (CompletionException e) {
+        assertEquals(i < 2, e.getCause() instanceof IllegalStateException);
+      }
+    }
+
+    assertEquals(2, attempts.get());
+    assertEquals(State.OPEN, guard.getState());
+    assertEquals(1.0, registry.get(UpstreamGuard.STATE_METER).tag("state", "open").gauge()
+        .value(), 0);
+    assertEquals(1.0, registry.get(UpstreamGuard.REJECTED_METER).tag("reason", "open")
+        .functionCounter().count(), 0);
+  }
+
+  @Test
+  public void testCallsBeyondLimitWaitTheirTurnAndFailuresCutLimit() throws Exception {
+    properties.setInitialLimit(4);
+    properties.setMinLimit(1);
+    properties.setBackoffRatio(0.5);
+    properties.setMaxAttempts(1);
+    UpstreamGuard guard = guard();
+    Map<Integer, CompletableFuture<String>> calls = new ConcurrentHashMap<>();
+
+    List<CompletableFuture<String>> results = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      int index = i;
+      results.add(guard.callAsync(() -> calls.computeIfAbsent(index,
+          key -> new CompletableFuture<>())));
+    }
+
+    assertEquals(4, calls.size());
+    assertFalse(results.get(4).isDone());
+    calls.get(0).completeExceptionally(new IllegalStateException("Upstream is slow"));
+    assertEquals(2, guard.getLimit());
+    // Three are still in flight, over the new limit, so the queued calls wait on
+    calls.get(1).complete("second");
+    Thread.sleep(100);
+    assertEquals(4, calls.size());
+    calls.get(2).complete("third");
+    await().atMost(5, TimeUnit.SECONDS).until(() -> calls.size() == 5);
+    calls.get(3).complete("fourth");
+    await().atMost(5, TimeUnit.SECONDS).until(() -> calls.size() == 6);
+    calls.get(4).complete("fifth");
+    calls.get(5).complete("sixth");
+
+    assertEquals("sixth", results.get(5).get(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testBlockingCallWaitsItsTurn() throws Exception {
+    properties.setInitialLimit(1);
+    properties.setMinLimit(1);
+    UpstreamGuard guard = guard();
+    CompletableFuture<String> first = new CompletableFuture<>();
+    guard.callAsync(() -> first);
+
+    CompletableFuture<String> second =
+        CompletableFuture.supplyAsync(() -> guard.call(() -> "second"));
+    Thread.sleep(100);
+    assertFalse(second.isDone());
+    first.complete("first");
+
+    assertEquals("second", second.get(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testCallsBeyondQueueFailAtOnceWithoutCircuitOpen() {
+    properties.setInitialLimit(1);
+    properties.setMinLimit(1);
+    properties.setMaxQueuedCalls(1);
+    UpstreamGuard guard = guard();
+    MeterRegistry registry = new SimpleMeterRegistry();
+    guard.bindTo(registry);
+    guard.callAsync(CompletableFuture::new);
+    guard.callAsync(CompletableFuture::new);
+
+    try {
+      guard.callAsync(() -> CompletableFuture.completedFuture("more")).join();
+      fail("Expected the call to be rejected");
+    } catch (CompletionException e) {
+      assertFalse(((CallNotPermittedException) e.getCause()).isCircuitOpen());
+    }
+    assertEquals(1.0, registry.get(UpstreamGuard.QUEUED_METER).gauge().value(), 0);
+    assertEquals(1.0, registry.get(UpstreamGuard.REJECTED_METER).tag("reason", "limit")
+        .functionCounter().count(), 0);
+  }
+
+  private UpstreamGuard guard() {
+    return new UpstreamGuard("test", properties, failure -> true);
+  }
+}
@@ -0,0 +1,105 @@
+package org.galatea.starter.utils.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import org.galatea.starter.ASpringTest;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+public class EndpointTimingFilterTest extends ASpringTest {
+
+  private MeterRegistry registry;
+
+  private EndpointTimingFilter filter;
+
+  private HandlerMethod handler;
+
+  @Before
+  public void setup() throws Exception {
+    registry = new SimpleMeterRegistry();
+    filter = new EndpointTimingFilter();
+    filter.bindTo(registry);
+    handler = new HandlerMethod(new TestController(), TestController.class.getMethod("get"));
+  }
+
+  @Test
+  public void testTimesByMethodContentTypeAndStatus() throws Exception {
+    filter.doFilter(new MockHttpServletRequest(), new MockHttpServletResponse(),
+        handle("application/json;charset=UTF-8", 200));
+    filter.doFilter(new MockHttpServletRequest(), new MockHttpServletResponse(),
+        handle("application/json;charset=UTF-8", 200));
+    filter.doFilter(new MockHttpServletRequest(), new MockHttpServletResponse(),
+        handle("text/csv", 404));
+
+    assertEquals(2, timer("application/json", "200").count());
+    assertEquals(1, timer("text/csv", "404").count());
+  }
+
+  @Test
+  public void testTimerIsReused() throws Exception {
+    filter.doFilter(new MockHttpServletRequest(), new MockHttpServletResponse(),
+        handle("text/csv", 200));
+    Timer first = timer("text/csv", "200");
+    filter.doFilter(new MockHttpServletRequest(), new MockHttpServletResponse(),
+        handle("text/csv", 200));
+
+    assertSame(first, timer("text/csv", "200"));
+    assertEquals(2, first.count());
+  }
+
+  @Test
+  public void testFailureRecordedAsServerError() throws Exception {
+    FilterChain failing = (request, response) -> {
+      request.setAttribute(EndpointTimingFilter.HANDLER_ATTRIBUTE, handler);
+      throw new ServletException("boom");
+    };
+    try {
+      filter.doFilter(new MockHttpServletRequest(), new MockHttpServletResponse(), failing);
+    } catch (ServletException expected) {
+      // Still timed
+    }
+
+    assertEquals(1, timer("none", "500").count());
+  }
+
+  @Test
+  public void testRequestsWithoutHandlerMethodAreNotTimed() throws Exception {
+    filter.doFilter(new MockHttpServletRequest(), new MockHttpServletResponse(),
+        (request, response) -> { });
+
+    assertNull(registry.find(EndpointTimingFilter.TIMER_NAME).timer());
+  }
+
+  private FilterChain handle(final String contentType, final int status) {
+    return (request, response) -> {
+      request.setAttribute(EndpointTimingFilter.HANDLER_ATTRIBUTE, handler);
+      MockHttpServletResponse mockResponse = (MockHttpServletResponse) response;
+      mockResponse.setContentType(contentType);
+      mockResponse.setStatus(status);
+    };
+  }
+
+  private Timer timer(final String contentType, final String status) {
+    return registry.get(EndpointTimingFilter.TIMER_NAME)
+        .tags("controller", "TestController", "method", "get", "content.type", contentType,
+            "status", status)
+        .timer();
+  }
+
+  public static class TestController {
+
+    public String get() {
+      return "";
+    }
+  }
+}
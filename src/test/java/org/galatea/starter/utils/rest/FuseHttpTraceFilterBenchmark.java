@@ -0,0 +1,90 @@
+package org.galatea.starter.utils.rest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.galatea.starter.MvcConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.actuate.trace.http.HttpExchangeTracer;
+import org.springframework.boot.actuate.trace.http.InMemoryHttpTraceRepository;
+import org.springframework.boot.actuate.trace.http.Include;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * Measures what FuseHttpTraceFilter adds to a request: handling a small JSON GET directly, and
+ * through the filter with tracing, body capture and audit headers, configured as MvcConfig does.
+ * Traces go to an in-memory repository, so that only the filter itself is measured.
+ *
+ * <p>Run with: mvn -Pbenchmark test -Dskip.surefire.tests -Dbenchmark.include=FuseHttpTraceFilter
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FuseHttpTraceFilterBenchmark {
+
+  private static final byte[] BODY = ("{\"id\":100,\"instrument\":\"IBM\",\"externalParty\":\"EXT-1\","
+      + "\"direction\":\"REC\",\"depot\":\"DTC\",\"qty\":100.0,\"version\":0}")
+      .getBytes(StandardCharsets.UTF_8);
+
+  private final FilterChain handler = (request, response) -> {
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    response.getOutputStream().write(BODY);
+  };
+
+  private FuseHttpTraceFilter filter;
+
+  /**
+   * Create the filter. The filter logs every request at INFO, which would swamp the measurement
+   * with console output, so its logging is turned down.
+   */
+  @Setup
+  public void createFilter() {
+    Configurator.setLevel("org.galatea.starter", Level.WARN);
+    filter = new FuseHttpTraceFilter(new InMemoryHttpTraceRepository(),
+        new HttpExchangeTracer(EnumSet.of(Include.REQUEST_HEADERS, Include.RESPONSE_HEADERS,
+            Include.REMOTE_ADDRESS, Include.TIME_TAKEN)),
+        path -> path.startsWith("/trace"), 50_000,
+        Arrays.asList(MvcConfig.APPLICATION_PROTOBUF, MvcConfig.APPLICATION_EXCEL));
+  }
+
+  @Benchmark
+  public MockHttpServletResponse direct() throws IOException, ServletException {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    handler.doFilter(request(), response);
+    return response;
+  }
+
+  @Benchmark
+  public MockHttpServletResponse traced() throws IOException, ServletException {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    filter.doFilter(request(), response, handler);
+    return response;
+  }
+
+  private static MockHttpServletRequest request() {
+    MockHttpServletRequest request =
+        new MockHttpServletRequest("GET", "/settlementEngine/mission/100");
+    request.addHeader("Accept", MediaType.APPLICATION_JSON_VALUE);
+    return request;
+  }
+}
@@ -0,0 +1,104 @@
+package org.galatea.starter.utils.rest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.galatea.starter.ASpringTest;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class TeeCaptureResponseWrapperTest extends ASpringTest {
+
+  @Test
+  public void testStreamsThroughAndCapturesOnlyTheStart() throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    TeeCaptureResponseWrapper wrapper = new TeeCaptureResponseWrapper(response, 4,
+        contentType -> true, () -> response.addHeader("audit", "yes"));
+    wrapper.setContentType("text/csv");
+
+    wrapper.getOutputStream().write(bytes("id,qty\n"));
+    // Already with the client, not held back
+    assertEquals("id,qty\n", response.getContentAsString());
+    wrapper.getOutputStream().write(bytes("1,100\n"));
+
+    assertEquals("id,qty\n1,100\n", response.getContentAsString());
+    assertArrayEquals(bytes("id,q"), wrapper.getCapturedBody());
+    assertTrue(wrapper.isCaptureTruncated());
+    assertEquals(13, wrapper.getContentSize());
+    assertEquals("yes", response.getHeader("audit"));
+  }
+
+  @Test
+  public void testBeforeCommitRunsOnceBeforeFirstByte() throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    AtomicInteger runs = new AtomicInteger();
+    TeeCaptureResponseWrapper wrapper = new TeeCaptureResponseWrapper(response, 100,
+        contentType -> true, () -> {
+          // Nothing has been written yet
+          assertEquals(0, response.getContentAsByteArray().length);
+          runs.incrementAndGet();
+        });
+
+    wrapper.getWriter().write("hello");
+    wrapper.getWriter().flush();
+    wrapper.flushBuffer();
+    wrapper.commit();
+
+    assertEquals(1, runs.get());
+    assertEquals("hello", response.getContentAsString());
+    assertArrayEquals(bytes("hello"), wrapper.getCapturedBody());
+    assertFalse(wrapper.isCaptureTruncated());
+  }
+
+  @Test
+  public void testCommitFlushesWriter() throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    AtomicInteger runs = new AtomicInteger();
+    TeeCaptureResponseWrapper wrapper = new TeeCaptureResponseWrapper(response, 100,
+        contentType -> true, runs::incrementAndGet);
+
+    // Left in the writer's buffer
+    wrapper.getWriter().write("hello");
+    assertEquals(0, wrapper.getContentSize());
+    wrapper.commit();
+
+    assertEquals(1, runs.get());
+    assertEquals("hello", response.getContentAsString());
+    assertArrayEquals(bytes("hello"), wrapper.getCapturedBody());
+    assertEquals(5, wrapper.getContentSize());
+  }
+
+  @Test
+  public void testCommitWithoutBody() {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    TeeCaptureResponseWrapper wrapper = new TeeCaptureResponseWrapper(response, 100,
+        contentType -> true, () -> response.addHeader("audit", "yes"));
+
+    wrapper.commit();
+
+    assertEquals("yes", response.getHeader("audit"));
+  }
+
+  @Test
+  public void testContentTypeNotCaptured() throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    TeeCaptureResponseWrapper wrapper = new TeeCaptureResponseWrapper(response, 100,
+        contentType -> !"application/x-protobuf".equals(contentType), () -> { });
+    wrapper.setContentType("application/x-protobuf");
+
+    wrapper.getOutputStream().write(new byte[] {1, 2, 3});
+
+    assertArrayEquals(new byte[] {1, 2, 3}, response.getContentAsByteArray());
+    assertEquals(0, wrapper.getCapturedBody().length);
+    assertFalse(wrapper.isCaptureTruncated());
+    assertEquals(3, wrapper.getContentSize());
+  }
+
+  private static byte[] bytes(final String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+}
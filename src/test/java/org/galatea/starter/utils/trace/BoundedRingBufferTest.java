@@ -0,0 +1,101 @@
+package org.galatea.starter.utils.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.galatea.starter.ASpringTest;
+import org.junit.Test;
+
+public class BoundedRingBufferTest extends ASpringTest {
+
+  @Test
+  public void testCapacityRoundsUpToPowerOfTwo() {
+    assertEquals(1, new BoundedRingBuffer<>(1).capacity());
+    assertEquals(8, new BoundedRingBuffer<>(5).capacity());
+    assertEquals(8, new BoundedRingBuffer<>(8).capacity());
+  }
+
+  @Test
+  public void testFifo() {
+    BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(4);
+    assertNull(buffer.poll());
+
+    // Enough laps around the ring to reuse every slot
+    for (int i = 0; i < 10; i++) {
+      assertTrue(buffer.offer(i));
+      assertTrue(buffer.offer(i + 100));
+      assertEquals(2, buffer.size());
+      assertEquals(Integer.valueOf(i), buffer.poll());
+      assertEquals(Integer.valueOf(i + 100), buffer.poll());
+    }
+    assertEquals(0, buffer.size());
+  }
+
+  @Test
+  public void testOfferWhenFull() {
+    BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(2);
+    assertTrue(buffer.offer(1));
+    assertTrue(buffer.offer(2));
+
+    assertFalse(buffer.offer(3));
+    assertEquals(Integer.valueOf(1), buffer.poll());
+    assertTrue(buffer.offer(3));
+    assertEquals(Integer.valueOf(2), buffer.poll());
+    assertEquals(Integer.valueOf(3), buffer.poll());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testZeroCapacity() {
+    new BoundedRingBuffer<>(0);
+  }
+
+  @Test
+  public void testConcurrentProducersAndConsumer() throws Exception {
+    int producers = 4;
+    int perProducer = 10_000;
+    BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(64);
+    ExecutorService executor = Executors.newFixedThreadPool(producers);
+    try {
+      List<Future<?>> produced = new ArrayList<>();
+      for (int p = 0; p < producers; p++) {
+        int first = p * perProducer;
+        produced.add(executor.submit(() -> {
+          for (int i = first; i < first + perProducer; i++) {
+            while (!buffer.offer(i)) {
+              Thread.yield();
+            }
+          }
+        }));
+      }
+
+      // Every element comes out exactly once
+      BitSet seen = new BitSet(producers * perProducer);
+      int taken = 0;
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+      while (taken < producers * perProducer && System.nanoTime() < deadline) {
+        Integer element = buffer.poll();
+        if (element != null) {
+          assertFalse(seen.get(element));
+          seen.set(element);
+          taken++;
+        }
+      }
+      for (Future<?> future : produced) {
+        future.get();
+      }
+      assertEquals(producers * perProducer, seen.cardinality());
+      assertNull(buffer.poll());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package org.galatea.starter.utils.trace;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.event.Level;
+import org.springframework.aop.framework.ProxyFactory;
+
+/**
+ * Measures what @Traced adds to a call when it isn't logging: calling the object directly, through
+ * a proxy with no advice, and through the TracingAdvisor with the level disabled and with the call
+ * sampled out.
+ *
+ * <p>Run with: mvn -Pbenchmark test -Dskip.surefire.tests -Dbenchmark.include=TracingAdvisor
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TracingAdvisorBenchmark {
+
+  private final List<Long> ids = Arrays.asList(1L, 2L, 3L);
+
+  private DisabledTarget direct;
+
+  private DisabledTarget proxyOnly;
+
+  private DisabledTarget levelDisabled;
+
+  private SampledOutTarget sampledOut;
+
+  /**
+   * Build the targets and their proxies.
+   */
+  @Setup
+  public void createTargets() {
+    direct = new DisabledTarget();
+    proxyOnly = proxy(new DisabledTarget());
+    levelDisabled = traced(new DisabledTarget());
+    sampledOut = traced(new SampledOutTarget());
+  }
+
+  @Benchmark
+  public int direct() {
+    return direct.count(ids);
+  }
+
+  @Benchmark
+  public int proxyWithoutAdvisor() {
+    return proxyOnly.count(ids);
+  }
+
+  @Benchmark
+  public int tracedLevelDisabled() {
+    return levelDisabled.count(ids);
+  }
+
+  @Benchmark
+  public int tracedSampledOut() {
+    return sampledOut.count(ids);
+  }
+
+  private static <T> T proxy(final T target) {
+    ProxyFactory factory = new ProxyFactory(target);
+    factory.setProxyTargetClass(true);
+    return (T) factory.getProxy();
+  }
+
+  private static <T> T traced(final T target) {
+    ProxyFactory factory = new ProxyFactory(target);
+    factory.setProxyTargetClass(true);
+    factory.addAdvisor(new TracingAdvisor(new MethodTraceProperties()));
+    return (T) factory.getProxy();
+  }
+
+  /**
+   * Traced at TRACE, which the test logging config leaves disabled.
+   */
+  @Traced(level = Level.TRACE)
+  public static class DisabledTarget {
+
+    public int count(final List<Long> ids) {
+      return ids.size();
+    }
+  }
+
+  /**
+   * Traced at DEBUG, which is enabled, but never sampled.
+   */
+  @Traced(level = Level.DEBUG, sampleRate = 0.0)
+  public static class SampledOutTarget extends DisabledTarget {
+  }
+}
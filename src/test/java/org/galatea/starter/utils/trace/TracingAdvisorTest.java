@@ -0,0 +1,86 @@
+package org.galatea.starter.utils.trace;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.galatea.starter.ASpringTest;
+import org.junit.Test;
+import org.slf4j.event.Level;
+import org.springframework.aop.framework.ProxyFactory;
+
+public class TracingAdvisorTest extends ASpringTest {
+
+  // The tests log org.galatea.starter at DEBUG, so TRACE is disabled
+
+  @Test
+  public void testArgumentsNotRenderedWhenLevelDisabled() {
+    CountingArgument argument = new CountingArgument();
+
+    assertEquals("done", proxy(new TraceLevelTarget(), new MethodTraceProperties()).call(argument));
+    assertEquals(0, argument.renders.get());
+  }
+
+  @Test
+  public void testArgumentsRenderedWhenLogged() {
+    CountingArgument argument = new CountingArgument();
+
+    assertEquals("done", proxy(new DebugLevelTarget(), new MethodTraceProperties()).call(argument));
+    assertEquals(1, argument.renders.get());
+  }
+
+  @Test
+  public void testSampledOutByProperties() {
+    MethodTraceProperties properties = new MethodTraceProperties();
+    properties.setSampleRates(Collections.singletonMap("DebugLevelTarget", 0.0));
+    CountingArgument argument = new CountingArgument();
+
+    proxy(new DebugLevelTarget(), properties).call(argument);
+    assertEquals(0, argument.renders.get());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testExceptionRethrown() {
+    proxy(new DebugLevelTarget(), new MethodTraceProperties()).call(null);
+  }
+
+  private static <T> T proxy(final T target, final MethodTraceProperties properties) {
+    ProxyFactory factory = new ProxyFactory(target);
+    factory.setProxyTargetClass(true);
+    factory.addAdvisor(new TracingAdvisor(properties));
+    return (T) factory.getProxy();
+  }
+
+  private static class CountingArgument {
+
+    private final AtomicInteger renders = new AtomicInteger();
+
+    @Override
+    public String toString() {
+      renders.incrementAndGet();
+      return "argument";
+    }
+  }
+
+  @Traced(level = Level.TRACE)
+  public static class TraceLevelTarget {
+
+    public String call(final Object argument) {
+      return "done";
+    }
+  }
+
+  @Traced
+  public static class DebugLevelTarget {
+
+    /**
+     * Return "done", or throw if the argument is null.
+     */
+    public String call(final Object argument) {
+      if (argument == null) {
+        throw new IllegalStateException("No argument");
+      }
+      return "done";
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package org.galatea.starter.utils.validation;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import javax.validation.ValidatorFactory;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures StringEnumerationValidator on its own, and validating a whole TradeAgreement (whose
+ * buySell is checked by it) through Hibernate Validator, as SettlementService does for every
+ * agreement it settles.
+ *
+ * <p>Run with: mvn -Pbenchmark test -Dskip.surefire.tests
+ * -Dbenchmark.include=StringEnumerationValidator
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StringEnumerationValidatorBenchmark {
+
+  private StringEnumerationValidator validator;
+
+  private ValidatorFactory validatorFactory;
+
+  private Validator beanValidator;
+
+  private TradeAgreement agreement;
+
+  private String side;
+
+  /**
+   * Initialize the validators as Hibernate Validator would.
+   */
+  @Setup
+  public void createValidators() throws NoSuchFieldException {
+    validator = new StringEnumerationValidator();
+    validator.initialize(
+        TradeAgreement.class.getDeclaredField("buySell").getAnnotation(StringEnumeration.class));
+    validatorFactory = Validation.buildDefaultValidatorFactory();
+    beanValidator = validatorFactory.getValidator();
+    agreement = TestDataGenerator.defaultTradeAgreementData().build();
+    side = agreement.getBuySell();
+  }
+
+  @TearDown
+  public void closeValidatorFactory() {
+    validatorFactory.close();
+  }
+
+  @Benchmark
+  public boolean isValid() {
+    return validator.isValid(side, null);
+  }
+
+  @Benchmark
+  public Set<ConstraintViolation<TradeAgreement>> validateAgreement() {
+    return beanValidator.validate(agreement);
+  }
+}